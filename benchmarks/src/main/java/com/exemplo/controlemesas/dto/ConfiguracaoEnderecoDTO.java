@@ -0,0 +1,17 @@
+package com.exemplo.controlemesas.dto;
+
+import lombok.Data;
+
+/**
+ * Substituto mínimo do endereço do emitente da aplicação de exemplo.
+ */
+@Data
+public class ConfiguracaoEnderecoDTO {
+
+    private String logradouro;
+    private String numero;
+    private String bairro;
+    private String cidade;
+    private String uf;
+    private String cep;
+}
@@ -0,0 +1,21 @@
+package com.exemplo.controlemesas.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Substituto mínimo do modelo da aplicação de exemplo, apenas com os campos
+ * usados pelo NfeXmlBuilder, para compilar e medir o código de ../nfe.
+ */
+@Data
+public class ComandaResumo {
+
+    private Long id;
+    private LocalDateTime dataFechamento;
+    private String nomeCliente;
+    private List<ItemComandaResumo> itens;
+    private BigDecimal total;
+}
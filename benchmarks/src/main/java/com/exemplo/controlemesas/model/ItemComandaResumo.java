@@ -0,0 +1,25 @@
+package com.exemplo.controlemesas.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Substituto mínimo do item de comanda da aplicação de exemplo.
+ */
+@Data
+public class ItemComandaResumo {
+
+    private int itemNo;
+    private String descricao;
+    private String ncm;
+    private String cfop;
+    private String origem;
+    private String cst;
+    private String unMedida;
+    private BigDecimal quantidade;
+    private BigDecimal precoUnitario;
+    private BigDecimal subtotal;
+    private BigDecimal aliqIcms;
+    private BigDecimal valorIcms;
+}
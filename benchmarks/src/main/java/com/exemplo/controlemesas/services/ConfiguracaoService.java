@@ -0,0 +1,32 @@
+package com.exemplo.controlemesas.services;
+
+import com.exemplo.controlemesas.dto.ConfiguracaoEnderecoDTO;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Substituto mínimo do serviço de configuração da aplicação de exemplo,
+ * com as configurações mantidas em memória.
+ */
+public class ConfiguracaoService {
+
+    private final Map<String, String> valores = new HashMap<>();
+    private ConfiguracaoEnderecoDTO enderecoEmpresa = new ConfiguracaoEnderecoDTO();
+
+    public String get(String chave, String padrao) {
+        return valores.getOrDefault(chave, padrao);
+    }
+
+    public void set(String chave, String valor) {
+        valores.put(chave, valor);
+    }
+
+    public ConfiguracaoEnderecoDTO getEnderecoEmpresa() {
+        return enderecoEmpresa;
+    }
+
+    public void setEnderecoEmpresa(ConfiguracaoEnderecoDTO enderecoEmpresa) {
+        this.enderecoEmpresa = enderecoEmpresa;
+    }
+}
@@ -0,0 +1,59 @@
+package com.sefaz.nfe.benchmark;
+
+import com.exemplo.controlemesas.nfe.NfeXmlBuilder;
+import com.sefaz.nfe.AssinaturaDigital;
+import com.sefaz.nfe.CertificadoDigital;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AssinaturaDigital.assinar com certificado RSA 2048 gerado no setup: caminho sem DOM
+ * (padrão) e JSR-105.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssinaturaBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itens;
+
+    private AssinaturaDigital assinatura;
+    private AssinaturaDigital assinaturaJsr105;
+    private String xml;
+
+    @Setup
+    public void preparar() throws Exception {
+        CertificadoDigital certificado = new CertificadoDigital();
+        certificado.carregar(CertificadosTeste.gravarPfx(CertificadosTeste.gerarCliente()).toString(),
+                CertificadosTeste.SENHA);
+        assinatura = new AssinaturaDigital(certificado);
+        assinaturaJsr105 = new AssinaturaDigital(certificado);
+        assinaturaJsr105.setAssinaturaIncremental(false);
+        xml = NfeXmlBuilder.buildNFe(DadosTeste.comanda(1, itens), DadosTeste.configuracao());
+    }
+
+    @Benchmark
+    public String assinar() throws Exception {
+        return assinatura.assinar(xml);
+    }
+
+    @Benchmark
+    public String assinarJsr105() throws Exception {
+        return assinaturaJsr105.assinar(xml);
+    }
+}
@@ -0,0 +1,322 @@
+package com.sefaz.nfe.benchmark;
+
+import com.exemplo.controlemesas.nfe.NfeXmlBuilder;
+import com.exemplo.controlemesas.services.ConfiguracaoService;
+import com.sefaz.nfe.Ambiente;
+import com.sefaz.nfe.AssinaturaDigital;
+import com.sefaz.nfe.AutorizacaoSincrona;
+import com.sefaz.nfe.CertificadoDigital;
+import com.sefaz.nfe.ExecutorRetentativa;
+import com.sefaz.nfe.FalhaSefazException;
+import com.sefaz.nfe.LimitadorTaxa;
+import com.sefaz.nfe.MetricasSefaz;
+import com.sefaz.nfe.ResultadoAutorizacao;
+import com.sefaz.nfe.SefazSoapClient;
+import com.sefaz.nfe.ServicoSefaz;
+import com.sefaz.nfe.TransporteHttpsSefaz;
+
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Teste de carga do fluxo de autorização contra o {@link SimuladorSefaz}.
+ *
+ * Cada thread envia uma NF-e (NFeAutorizacao4) e consulta o recibo (NFeRetAutorizacao4)
+ * até obter o protocolo (ou usa indSinc=1), registrando a latência de ponta a ponta da emissão.
+ * As NF-e são construídas e assinadas antes da medição, para que o resultado reflita
+ * apenas transporte, limitador de taxa, novas tentativas e o processamento simulado.
+ *
+ * Uso:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.sefaz.nfe.benchmark.CargaSefaz \
+ *      --threads=32 --duracao=30 --latencia=lognormal:20:250 --erro-http=0.01 --processamento=200
+ * </pre>
+ *
+ * Opções (padrão entre parênteses):
+ * - {@code --threads} emissões simultâneas (8)
+ * - {@code --duracao} segundos de medição (10) e {@code --aquecimento} segundos descartados (3)
+ * - {@code --latencia} distribuição do simulador, ver {@link Latencia#parse} (0)
+ * - {@code --erro-http} fração de respostas HTTP 503 (0)
+ * - {@code --cstat656}, {@code --cstat204}, {@code --cstat539} fração de rejeições injetadas (0)
+ * - {@code --processamento} milissegundos até o lote ficar processado (0)
+ * - {@code --intervalo-consulta} milissegundos entre consultas de recibo (20)
+ * - {@code --itens} itens por NF-e (10) e {@code --massa} NF-e distintas pré-assinadas (500)
+ * - {@code --sincrono} envia com indSinc=1 pelo {@link AutorizacaoSincrona} (false)
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class CargaSefaz {
+
+    private CargaSefaz() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = opcoes(args);
+        int threads = Integer.parseInt(opcoes.getOrDefault("threads", "8"));
+        Duration duracao = Duration.ofSeconds(Long.parseLong(opcoes.getOrDefault("duracao", "10")));
+        Duration aquecimento = Duration.ofSeconds(Long.parseLong(opcoes.getOrDefault("aquecimento", "3")));
+        String latencia = opcoes.getOrDefault("latencia", "0");
+        long intervaloConsulta = Long.parseLong(opcoes.getOrDefault("intervalo-consulta", "20"));
+        int itens = Integer.parseInt(opcoes.getOrDefault("itens", "10"));
+        int massa = Integer.parseInt(opcoes.getOrDefault("massa", "500"));
+        boolean sincrono = Boolean.parseBoolean(opcoes.getOrDefault("sincrono", "false"));
+
+        KeyStore chaveCliente = CertificadosTeste.gerarCliente();
+        KeyStore chaveServidor = CertificadosTeste.gerarServidor();
+
+        // Cada emissão ocupa uma thread do simulador durante a latência simulada
+        try (SimuladorSefaz simulador = new SimuladorSefaz(chaveServidor, CertificadosTeste.confiarEm(chaveCliente),
+                Math.max(16, threads * 2))) {
+            simulador.setLatencia(Latencia.parse(latencia));
+            simulador.setTaxaErroHttp(Double.parseDouble(opcoes.getOrDefault("erro-http", "0")));
+            simulador.setTaxaConsumoIndevido(Double.parseDouble(opcoes.getOrDefault("cstat656", "0")));
+            simulador.setTaxaDuplicidade(Double.parseDouble(opcoes.getOrDefault("cstat204", "0")));
+            simulador.setTaxaDuplicidadeChaveDiferente(Double.parseDouble(opcoes.getOrDefault("cstat539", "0")));
+            simulador.setTempoProcessamentoLote(Duration.ofMillis(Long.parseLong(opcoes.getOrDefault("processamento", "0"))));
+            // A massa pré-assinada é reenviada em ciclo
+            simulador.setDetectarDuplicidade(false);
+            simulador.iniciar();
+
+            CertificadoDigital certificado = new CertificadoDigital();
+            certificado.carregar(CertificadosTeste.gravarPfx(chaveCliente).toString(), CertificadosTeste.SENHA);
+
+            LimitadorTaxa limitador = new LimitadorTaxa();
+            limitador.configurar(ServicoSefaz.AUTORIZACAO, 1_000_000, 1_000_000);
+            limitador.configurar(ServicoSefaz.RET_AUTORIZACAO, 1_000_000, 1_000_000);
+
+            try (TransporteHttpsSefaz transporte = new TransporteHttpsSefaz(certificado)) {
+                transporte.setTrustStore(CertificadosTeste.confiarEm(chaveServidor));
+                transporte.setMaxConexoes(Math.max(20, threads), Math.max(200, threads));
+
+                SefazSoapClient cliente = new SefazSoapClient(certificado, limitador, transporte,
+                        new ExecutorRetentativa(), MetricasSefaz.DESABILITADO);
+
+                AutorizacaoSincrona autorizacao = sincrono ? new AutorizacaoSincrona(cliente) : null;
+                if (autorizacao != null) {
+                    autorizacao.setIntervaloConsulta(Duration.ofMillis(intervaloConsulta));
+                }
+
+                String[] notas = assinarMassa(certificado, massa, itens);
+                Execucao execucao = new Execucao(cliente, autorizacao, notas,
+                        simulador.getUrl(SimuladorSefaz.CAMINHO_AUTORIZACAO),
+                        simulador.getUrl(SimuladorSefaz.CAMINHO_RET_AUTORIZACAO),
+                        intervaloConsulta);
+
+                System.out.printf("Threads: %d | aquecimento: %d s | medição: %d s | latência simulada: %s | %s%n",
+                        threads, aquecimento.toSeconds(), duracao.toSeconds(), latencia,
+                        sincrono ? "síncrono" : "assíncrono");
+
+                Resultado resultado = execucao.executar(threads, aquecimento, duracao);
+                imprimir(resultado, duracao, simulador);
+            }
+        }
+    }
+
+    private static String[] assinarMassa(CertificadoDigital certificado, int quantidade, int itens) throws Exception {
+        ConfiguracaoService cfg = DadosTeste.configuracao();
+        AssinaturaDigital assinatura = new AssinaturaDigital(certificado);
+        String[] notas = new String[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            notas[i] = assinatura.assinar(NfeXmlBuilder.buildNFe(DadosTeste.comanda(i + 1, itens), cfg));
+        }
+        return notas;
+    }
+
+    private static void imprimir(Resultado resultado, Duration duracao, SimuladorSefaz simulador) {
+        long[] latencias = resultado.latencias;
+        Arrays.sort(latencias);
+
+        System.out.printf("Emissões autorizadas: %d (%.1f/s)%n",
+                latencias.length, latencias.length / (double) duracao.toSeconds());
+        if (latencias.length > 0) {
+            System.out.printf("Latência (ms): p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    ms(percentil(latencias, 0.50)), ms(percentil(latencias, 0.90)),
+                    ms(percentil(latencias, 0.99)), ms(percentil(latencias, 0.999)),
+                    ms(latencias[latencias.length - 1]));
+        }
+
+        Map<String, Long> respostas = new TreeMap<>();
+        for (String cStat : new String[]{"103", "104", "105", "204", "539", "656", "HTTP 503"}) {
+            long total = simulador.getRespostas(cStat);
+            if (total > 0) {
+                respostas.put(cStat, total);
+            }
+        }
+        System.out.println("Respostas do simulador: " + respostas);
+        System.out.println("Falhas no cliente: " + new TreeMap<>(resultado.falhas));
+    }
+
+    static long percentil(long[] ordenados, double p) {
+        int indice = (int) Math.ceil(p * ordenados.length) - 1;
+        return ordenados[Math.max(0, Math.min(indice, ordenados.length - 1))];
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Map<String, String> opcoes(String[] args) {
+        Map<String, String> opcoes = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Opção inválida: " + arg + " (use --nome=valor)");
+            }
+            int igual = arg.indexOf('=');
+            opcoes.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+        return opcoes;
+    }
+
+    private record Resultado(long[] latencias, Map<String, Long> falhas) {
+    }
+
+    /**
+     * Laço de emissões das threads de carga.
+     */
+    private static final class Execucao {
+
+        private final SefazSoapClient cliente;
+        private final AutorizacaoSincrona autorizacao;
+        private final String[] notas;
+        private final String urlAutorizacao;
+        private final String urlRetAutorizacao;
+        private final long intervaloConsulta;
+        private final Map<String, LongAdder> falhas = new ConcurrentHashMap<>();
+
+        private volatile long inicioMedicao;
+        private volatile long fimMedicao;
+
+        Execucao(SefazSoapClient cliente, AutorizacaoSincrona autorizacao, String[] notas, String urlAutorizacao,
+                 String urlRetAutorizacao, long intervaloConsulta) {
+            this.cliente = cliente;
+            this.autorizacao = autorizacao;
+            this.notas = notas;
+            this.urlAutorizacao = urlAutorizacao;
+            this.urlRetAutorizacao = urlRetAutorizacao;
+            this.intervaloConsulta = intervaloConsulta;
+        }
+
+        Resultado executar(int threads, Duration aquecimento, Duration duracao) throws InterruptedException {
+            long agora = System.nanoTime();
+            inicioMedicao = agora + aquecimento.toNanos();
+            fimMedicao = inicioMedicao + duracao.toNanos();
+
+            Amostras[] amostras = new Amostras[threads];
+            CountDownLatch fim = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                Amostras a = new Amostras();
+                amostras[t] = a;
+                int primeira = t;
+                Thread thread = new Thread(() -> {
+                    try {
+                        emitir(primeira, threads, a);
+                    } finally {
+                        fim.countDown();
+                    }
+                }, "carga-" + t);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            fim.await();
+
+            int total = 0;
+            for (Amostras a : amostras) {
+                total += a.tamanho;
+            }
+            long[] todas = new long[total];
+            int pos = 0;
+            for (Amostras a : amostras) {
+                System.arraycopy(a.valores, 0, todas, pos, a.tamanho);
+                pos += a.tamanho;
+            }
+
+            Map<String, Long> resumoFalhas = new HashMap<>();
+            falhas.forEach((tipo, contador) -> resumoFalhas.put(tipo, contador.sum()));
+            return new Resultado(todas, resumoFalhas);
+        }
+
+        private void emitir(int indice, int passo, Amostras amostras) {
+            while (System.nanoTime() - fimMedicao < 0) {
+                long inicio = System.nanoTime();
+                boolean autorizada = emitirUma(notas[indice % notas.length], inicio - inicioMedicao >= 0);
+                long fim = System.nanoTime();
+                if (autorizada && inicio - inicioMedicao >= 0 && fim - fimMedicao <= 0) {
+                    amostras.adicionar(fim - inicio);
+                }
+                indice += passo;
+            }
+        }
+
+        private boolean emitirUma(String xml, boolean medindo) {
+            try {
+                if (autorizacao != null) {
+                    ResultadoAutorizacao resultado = autorizacao.autorizar(xml, Ambiente.HOMOLOGACAO, urlAutorizacao,
+                            urlRetAutorizacao);
+                    if (!resultado.isProcessado()) {
+                        falha(medindo, "cStat " + resultado.codigoStatus());
+                    }
+                    return resultado.isProcessado();
+                }
+
+                String resposta = cliente.enviarNFe(xml, urlAutorizacao);
+                String cStat = cliente.extrairCodigoStatus(resposta);
+                if (!"103".equals(cStat)) {
+                    falha(medindo, "cStat " + cStat);
+                    return false;
+                }
+
+                String nRec = cliente.extrairNumeroRecibo(resposta);
+                while (true) {
+                    String retorno = cliente.consultarRecibo(nRec, Ambiente.HOMOLOGACAO, urlRetAutorizacao);
+                    String status = cliente.extrairCodigoStatus(retorno);
+                    if ("104".equals(status)) {
+                        return true;
+                    }
+                    if (!"105".equals(status)) {
+                        falha(medindo, "cStat " + status);
+                        return false;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(intervaloConsulta);
+                }
+            } catch (FalhaSefazException e) {
+                falha(medindo, e.getOrigem().name());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                falha(medindo, e.getClass().getSimpleName());
+            }
+            return false;
+        }
+
+        private void falha(boolean medindo, String tipo) {
+            if (medindo) {
+                falhas.computeIfAbsent(tipo, k -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    /**
+     * Latências de uma thread (sem boxing, sem sincronização).
+     */
+    private static final class Amostras {
+
+        long[] valores = new long[4096];
+        int tamanho;
+
+        void adicionar(long valor) {
+            if (tamanho == valores.length) {
+                valores = Arrays.copyOf(valores, tamanho * 2);
+            }
+            valores[tamanho++] = valor;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.sefaz.nfe.benchmark;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Gera certificados autoassinados para benchmarks e simulações.
+ *
+ * - Certificado de cliente no formato e-CNPJ (CN "RAZAO SOCIAL:CNPJ"), gravado como PFX
+ * - Certificado de servidor para localhost/127.0.0.1
+ *
+ * Os certificados não têm valor jurídico e só servem para os testes locais.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class CertificadosTeste {
+
+    public static final String SENHA = "benchmark";
+    public static final String CNPJ = "12345678000190";
+    public static final String ALIAS = "teste";
+
+    private CertificadosTeste() {
+    }
+
+    /**
+     * Certificado de cliente (e-CNPJ de teste) com a chave privada.
+     */
+    public static KeyStore gerarCliente() throws Exception {
+        return gerar("CN=EMPRESA TESTE LTDA:" + CNPJ + ", OU=Benchmark, O=ICP-Brasil Teste, C=BR", false);
+    }
+
+    /**
+     * Certificado de servidor válido para localhost e 127.0.0.1.
+     */
+    public static KeyStore gerarServidor() throws Exception {
+        return gerar("CN=localhost, O=Simulador SEFAZ, C=BR", true);
+    }
+
+    /**
+     * Grava o keystore como PFX em um arquivo temporário, protegido por {@link #SENHA}.
+     */
+    public static Path gravarPfx(KeyStore keyStore) throws Exception {
+        Path arquivo = Files.createTempFile("certificado-teste", ".pfx");
+        arquivo.toFile().deleteOnExit();
+        try (OutputStream out = Files.newOutputStream(arquivo)) {
+            keyStore.store(out, SENHA.toCharArray());
+        }
+        return arquivo;
+    }
+
+    /**
+     * Trust store contendo apenas o certificado do keystore informado.
+     */
+    public static KeyStore confiarEm(KeyStore keyStore) throws Exception {
+        KeyStore trust = KeyStore.getInstance("PKCS12");
+        trust.load(null, null);
+        trust.setCertificateEntry(ALIAS, keyStore.getCertificate(ALIAS));
+        return trust;
+    }
+
+    public static X509Certificate certificado(KeyStore keyStore) throws Exception {
+        return (X509Certificate) keyStore.getCertificate(ALIAS);
+    }
+
+    private static KeyStore gerar(String dn, boolean servidor) throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(2048);
+        KeyPair par = gerador.generateKeyPair();
+
+        Instant agora = Instant.now();
+        X500Name nome = new X500Name(dn);
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                nome,
+                BigInteger.valueOf(agora.toEpochMilli()),
+                Date.from(agora.minus(Duration.ofDays(1))),
+                Date.from(agora.plus(Duration.ofDays(365))),
+                nome,
+                par.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false));
+        if (servidor) {
+            builder.addExtension(Extension.subjectAlternativeName, false, new GeneralNames(new GeneralName[]{
+                    new GeneralName(GeneralName.dNSName, "localhost"),
+                    new GeneralName(GeneralName.iPAddress, "127.0.0.1")
+            }));
+        }
+
+        X509Certificate certificado = new JcaX509CertificateConverter().getCertificate(
+                builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(par.getPrivate())));
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(ALIAS, par.getPrivate(), SENHA.toCharArray(), new Certificate[]{certificado});
+        return keyStore;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sefaz.nfe.benchmark;
+
+import br.gov.sefaz.dce.DadosDCe;
+import br.gov.sefaz.dce.DadosDCeCompacta;
+import br.gov.sefaz.dce.DceXmlBuilder;
+import br.gov.sefaz.dce.DceXmlWriter;
+import com.exemplo.controlemesas.model.ComandaResumo;
+import com.exemplo.controlemesas.nfe.NfeXmlBuilder;
+import com.exemplo.controlemesas.services.ConfiguracaoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construção do XML não assinado: NfeXmlBuilder.buildNFe, DceXmlBuilder.construirXmlDCe
+ * e o DceXmlWriter sobre o modelo compacto (primitivos e itens em colunas).
+ *
+ * O setup confere que o DceXmlWriter gera exatamente o mesmo XML do DceXmlBuilder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConstrucaoXmlBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itens;
+
+    private ComandaResumo comanda;
+    private ConfiguracaoService cfg;
+    private DadosDCe dce;
+    private DadosDCeCompacta dceCompacta;
+    private StringBuilder buffer;
+
+    @Setup
+    public void preparar() {
+        cfg = DadosTeste.configuracao();
+        comanda = DadosTeste.comanda(1, itens);
+        dce = DadosTeste.dce(1, itens);
+        dceCompacta = DadosDCeCompacta.de(dce);
+        buffer = new StringBuilder(64 * 1024);
+
+        if (!DceXmlBuilder.construirXmlDCe(dce).equals(DceXmlWriter.construirXmlDCe(dceCompacta))) {
+            throw new IllegalStateException("DceXmlWriter difere do DceXmlBuilder");
+        }
+    }
+
+    @Benchmark
+    public String buildNFe() {
+        return NfeXmlBuilder.buildNFe(comanda, cfg);
+    }
+
+    @Benchmark
+    public String construirXmlDCe() {
+        return DceXmlBuilder.construirXmlDCe(dce);
+    }
+
+    @Benchmark
+    public String construirXmlDCeCompacta() {
+        return DceXmlWriter.construirXmlDCe(dceCompacta);
+    }
+
+    /**
+     * Geração em massa: o mesmo StringBuilder é reaproveitado entre as DC-e.
+     */
+    @Benchmark
+    public int escreverDCeCompactaReaproveitando() {
+        buffer.setLength(0);
+        DceXmlWriter.escreverXmlDCe(dceCompacta, buffer);
+        return buffer.length();
+    }
+}
@@ -0,0 +1,134 @@
+package com.sefaz.nfe.benchmark;
+
+import br.gov.sefaz.dce.DadosDCe;
+import br.gov.sefaz.dce.ItemDCe;
+import com.exemplo.controlemesas.dto.ConfiguracaoEnderecoDTO;
+import com.exemplo.controlemesas.model.ComandaResumo;
+import com.exemplo.controlemesas.model.ItemComandaResumo;
+import com.exemplo.controlemesas.services.ConfiguracaoService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Massas de dados determinísticas para os benchmarks.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class DadosTeste {
+
+    private DadosTeste() {
+    }
+
+    /**
+     * Configuração do emitente de teste (SP, homologação, CSC fictício).
+     */
+    public static ConfiguracaoService configuracao() {
+        ConfiguracaoService cfg = new ConfiguracaoService();
+        cfg.set("empresa.cnpj", CertificadosTeste.CNPJ);
+        cfg.set("empresa.razaoSocial", "EMPRESA TESTE LTDA");
+        cfg.set("empresa.nomeFantasia", "TESTE");
+        cfg.set("empresa.ie", "123456789012");
+        cfg.set("nfce.csc.id", "000001");
+        cfg.set("nfce.csc.codigo", "0123456789ABCDEF0123456789ABCDEF0123");
+
+        ConfiguracaoEnderecoDTO end = new ConfiguracaoEnderecoDTO();
+        end.setLogradouro("RUA TESTE");
+        end.setNumero("100");
+        end.setBairro("CENTRO");
+        end.setCidade("SÃO PAULO");
+        end.setUf("SP");
+        end.setCep("01001-000");
+        cfg.setEnderecoEmpresa(end);
+        return cfg;
+    }
+
+    /**
+     * Comanda com a quantidade de itens informada.
+     */
+    public static ComandaResumo comanda(long numero, int quantidadeItens) {
+        List<ItemComandaResumo> itens = new ArrayList<>(quantidadeItens);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= quantidadeItens; i++) {
+            BigDecimal preco = BigDecimal.valueOf(500 + i * 37L, 2);
+            BigDecimal quantidade = BigDecimal.valueOf(1 + i % 3);
+            BigDecimal subtotal = preco.multiply(quantidade);
+
+            ItemComandaResumo item = new ItemComandaResumo();
+            item.setItemNo(i);
+            item.setDescricao("PRODUTO " + i);
+            item.setNcm("21069090");
+            item.setCfop("5102");
+            item.setOrigem("0");
+            item.setCst("102");
+            item.setUnMedida("UN");
+            item.setQuantidade(quantidade);
+            item.setPrecoUnitario(preco);
+            item.setSubtotal(subtotal);
+            itens.add(item);
+            total = total.add(subtotal);
+        }
+
+        ComandaResumo resumo = new ComandaResumo();
+        resumo.setId(numero);
+        resumo.setDataFechamento(LocalDateTime.of(2025, 1, 15, 12, 30));
+        resumo.setItens(itens);
+        resumo.setTotal(total);
+        return resumo;
+    }
+
+    /**
+     * DC-e com a quantidade de itens informada.
+     */
+    public static DadosDCe dce(int numero, int quantidadeItens) {
+        DadosDCe dados = new DadosDCe();
+        dados.setNumeroLote(1);
+        dados.setCodigoUF(42);
+        dados.setCodigoNumerico(12345678);
+        dados.setSerie(1);
+        dados.setNumero(numero);
+        dados.setDataEmissao(LocalDateTime.of(2025, 1, 15, 12, 30));
+        dados.setTipoAmbiente(2);
+        dados.setVersaoAplicativo("1.0");
+
+        dados.setRemetenteCNPJ(CertificadosTeste.CNPJ);
+        dados.setRemetenteNome("EMPRESA TESTE LTDA");
+        dados.setRemetenteLogradouro("RUA TESTE");
+        dados.setRemetenteNumero("100");
+        dados.setRemetenteBairro("CENTRO");
+        dados.setRemetenteCodigoMunicipio("4205407");
+        dados.setRemetenteMunicipio("FLORIANOPOLIS");
+        dados.setRemetenteUF("SC");
+        dados.setRemetenteCEP("88010-000");
+
+        dados.setDestinatarioCPF("12345678909");
+        dados.setDestinatarioNome("DESTINATARIO TESTE");
+        dados.setDestinatarioLogradouro("AV TESTE");
+        dados.setDestinatarioNumero("200");
+        dados.setDestinatarioBairro("CENTRO");
+        dados.setDestinatarioCodigoMunicipio("4205407");
+        dados.setDestinatarioMunicipio("FLORIANOPOLIS");
+        dados.setDestinatarioUF("SC");
+        dados.setDestinatarioCEP("88010-100");
+
+        List<ItemDCe> itens = new ArrayList<>(quantidadeItens);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= quantidadeItens; i++) {
+            ItemDCe item = new ItemDCe();
+            item.setCodigoProduto(String.valueOf(i));
+            item.setDescricao("ITEM " + i);
+            item.setNcm("21069090");
+            item.setQuantidade(BigDecimal.ONE);
+            item.setValorUnitario(BigDecimal.valueOf(1000 + i, 2));
+            item.setValorTotal(item.getValorUnitario());
+            itens.add(item);
+            total = total.add(item.getValorTotal());
+        }
+        dados.setItens(itens);
+        dados.setValorTotal(total);
+        return dados;
+    }
+}
@@ -0,0 +1,88 @@
+package com.sefaz.nfe.benchmark;
+
+import com.sefaz.nfe.EnvelopeSoap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corpo da requisição de autorização até o socket: envelope montado por concatenação de
+ * Strings + getBytes (implementação anterior) contra o {@link EnvelopeSoap} com início e fim
+ * pré-codificados. Rodar com {@code -prof gc} para comparar os bytes alocados por requisição.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    /** Quantidade de NF-e no enviNFe. */
+    @Param({"1", "50"})
+    public int notas;
+
+    private String enviNFe;
+    private OutputStream socket;
+
+    @Setup
+    public void preparar() {
+        StringBuilder xml = new StringBuilder("<enviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+                "<idLote>1</idLote><indSinc>0</indSinc>");
+        for (int i = 0; i < notas; i++) {
+            xml.append("<NFe><infNFe Id=\"NFe35250112345678000190650010000000011000000019\" versao=\"4.00\">")
+                    .append("<det nItem=\"1\"><prod><xProd>PÃO FRANCÊS</xProd><vProd>12.50</vProd></prod></det>".repeat(10))
+                    .append("</infNFe></NFe>");
+        }
+        enviNFe = xml.append("</enviNFe>").toString();
+        socket = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    @Benchmark
+    public void concatenado(Blackhole bh) throws IOException {
+        String xmlBase64 = Base64.getEncoder().encodeToString(enviNFe.getBytes(StandardCharsets.UTF_8));
+        String envelope = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" " +
+                "xmlns:nfe=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeAutorizacao4\">" +
+                "<soap:Header/>" +
+                "<soap:Body>" +
+                "<nfe:nfeAutorizacaoLote>" +
+                "<nfe:nfeDadosMsg>" + xmlBase64 + "</nfe:nfeDadosMsg>" +
+                "</nfe:nfeAutorizacaoLote>" +
+                "</soap:Body>" +
+                "</soap:Envelope>";
+        byte[] corpo = envelope.getBytes(StandardCharsets.UTF_8);
+        socket.write(corpo);
+        bh.consume(corpo.length);
+    }
+
+    @Benchmark
+    public void prefixado(Blackhole bh) throws IOException {
+        EnvelopeSoap.Mensagem mensagem = EnvelopeSoap.AUTORIZACAO.montar(enviNFe);
+        mensagem.escrever(socket);
+        bh.consume(mensagem.tamanho());
+    }
+}
@@ -0,0 +1,70 @@
+package com.sefaz.nfe.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribuição de latência simulada para as respostas do {@link SimuladorSefaz}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Latencia {
+
+    /** z do percentil 99 da distribuição normal padrão. */
+    double Z_P99 = 2.326;
+
+    /**
+     * Sorteia uma latência em nanossegundos.
+     */
+    long amostraNanos();
+
+    static Latencia nenhuma() {
+        return () -> 0;
+    }
+
+    static Latencia fixa(Duration valor) {
+        long nanos = valor.toNanos();
+        return () -> nanos;
+    }
+
+    static Latencia uniforme(Duration minimo, Duration maximo) {
+        long min = minimo.toNanos();
+        long max = maximo.toNanos();
+        if (max < min) {
+            throw new IllegalArgumentException("Máximo deve ser maior ou igual ao mínimo");
+        }
+        return () -> min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+    }
+
+    /**
+     * Log-normal definida pela mediana e pelo p99, formato típico dos webservices da SEFAZ
+     * (maioria das respostas rápidas, cauda longa).
+     */
+    static Latencia logNormal(Duration mediana, Duration p99) {
+        if (p99.compareTo(mediana) < 0) {
+            throw new IllegalArgumentException("p99 deve ser maior ou igual à mediana");
+        }
+        double mu = Math.log(mediana.toNanos());
+        double sigma = Math.log((double) p99.toNanos() / mediana.toNanos()) / Z_P99;
+        return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+    }
+
+    /**
+     * Interpreta a especificação textual usada na linha de comando:
+     * "0", "fixa:50", "uniforme:10:80" ou "lognormal:20:250" (milissegundos).
+     */
+    static Latencia parse(String especificacao) {
+        String[] partes = especificacao.split(":");
+        return switch (partes[0]) {
+            case "0", "nenhuma" -> nenhuma();
+            case "fixa" -> fixa(Duration.ofMillis(Long.parseLong(partes[1])));
+            case "uniforme" -> uniforme(Duration.ofMillis(Long.parseLong(partes[1])),
+                    Duration.ofMillis(Long.parseLong(partes[2])));
+            case "lognormal" -> logNormal(Duration.ofMillis(Long.parseLong(partes[1])),
+                    Duration.ofMillis(Long.parseLong(partes[2])));
+            default -> throw new IllegalArgumentException("Latência inválida: " + especificacao);
+        };
+    }
+}
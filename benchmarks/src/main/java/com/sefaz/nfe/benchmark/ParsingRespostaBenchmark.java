@@ -0,0 +1,72 @@
+package com.sefaz.nfe.benchmark;
+
+import com.sefaz.nfe.CertificadoDigital;
+import com.sefaz.nfe.SefazSoapClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extração de cStat, xMotivo, nRec e nProt das respostas pelo SefazSoapClient.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingRespostaBenchmark {
+
+    private static final String RET_ENVI_NFE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+            "<nfeResultMsg xmlns=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeAutorizacao4\">" +
+            "<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+            "<tpAmb>2</tpAmb><verAplic>SP_NFE_PL009_V4</verAplic><cStat>103</cStat>" +
+            "<xMotivo>Lote recebido com sucesso</xMotivo><cUF>35</cUF><dhRecbto>2025-01-15T12:30:00-03:00</dhRecbto>" +
+            "<infRec><nRec>351000000000001</nRec><tMed>1</tMed></infRec></retEnviNFe>" +
+            "</nfeResultMsg></soap:Body></soap:Envelope>";
+
+    private static final String RET_CONS_RECI_NFE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+            "<nfeResultMsg xmlns=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeRetAutorizacao4\">" +
+            "<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+            "<tpAmb>2</tpAmb><verAplic>SP_NFE_PL009_V4</verAplic><nRec>351000000000001</nRec>" +
+            "<cStat>104</cStat><xMotivo>Lote processado</xMotivo><cUF>35</cUF>" +
+            "<protNFe versao=\"4.00\"><infProt><tpAmb>2</tpAmb><verAplic>SP_NFE_PL009_V4</verAplic>" +
+            "<chNFe>35250112345678000190650010000000011000000014</chNFe>" +
+            "<dhRecbto>2025-01-15T12:30:01-03:00</dhRecbto><nProt>135250000000001</nProt>" +
+            "<digVal>q3pWJ5Qx8Z0CEe3iRz6mLkD2p0A=</digVal><cStat>100</cStat>" +
+            "<xMotivo>Autorizado o uso da NF-e</xMotivo></infProt></protNFe></retConsReciNFe>" +
+            "</nfeResultMsg></soap:Body></soap:Envelope>";
+
+    private SefazSoapClient cliente;
+
+    @Setup
+    public void preparar() {
+        cliente = new SefazSoapClient(new CertificadoDigital());
+    }
+
+    @Benchmark
+    public void retornoAutorizacao(Blackhole bh) throws Exception {
+        bh.consume(cliente.extrairCodigoStatus(RET_ENVI_NFE));
+        bh.consume(cliente.extrairMensagem(RET_ENVI_NFE));
+        bh.consume(cliente.extrairNumeroRecibo(RET_ENVI_NFE));
+    }
+
+    @Benchmark
+    public void retornoConsultaRecibo(Blackhole bh) throws Exception {
+        bh.consume(cliente.extrairCodigoStatus(RET_CONS_RECI_NFE));
+        bh.consume(cliente.extrairMensagem(RET_CONS_RECI_NFE));
+        bh.consume(cliente.extrairProtocolo(RET_CONS_RECI_NFE));
+    }
+}
@@ -0,0 +1,89 @@
+package com.sefaz.nfe.benchmark;
+
+import com.exemplo.controlemesas.nfe.NfeXmlBuilder;
+import com.exemplo.controlemesas.services.ConfiguracaoService;
+import com.sefaz.nfe.AssinaturaDigital;
+import com.sefaz.nfe.CertificadoDigital;
+import com.sefaz.nfe.ExecutorRetentativa;
+import com.sefaz.nfe.LimitadorTaxa;
+import com.sefaz.nfe.MetricasSefaz;
+import com.sefaz.nfe.SefazSoapClient;
+import com.sefaz.nfe.ServicoSefaz;
+import com.sefaz.nfe.TransporteHttpsSefaz;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline completo contra o {@link SimuladorSefaz} local (mTLS):
+ * construção, assinatura, envio para autorização e leitura do recibo.
+ *
+ * Use {@code -t N} para medir com N threads concorrentes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class PipelineBenchmark {
+
+    private final AtomicLong numeracao = new AtomicLong();
+
+    private SimuladorSefaz simulador;
+    private TransporteHttpsSefaz transporte;
+    private AssinaturaDigital assinatura;
+    private SefazSoapClient cliente;
+    private ConfiguracaoService cfg;
+    private String urlAutorizacao;
+
+    @Setup
+    public void preparar() throws Exception {
+        KeyStore chaveCliente = CertificadosTeste.gerarCliente();
+        KeyStore chaveServidor = CertificadosTeste.gerarServidor();
+
+        simulador = new SimuladorSefaz(chaveServidor, CertificadosTeste.confiarEm(chaveCliente), 8);
+        simulador.iniciar();
+        urlAutorizacao = simulador.getUrl(SimuladorSefaz.CAMINHO_AUTORIZACAO);
+
+        CertificadoDigital certificado = new CertificadoDigital();
+        certificado.carregar(CertificadosTeste.gravarPfx(chaveCliente).toString(), CertificadosTeste.SENHA);
+
+        LimitadorTaxa limitador = new LimitadorTaxa();
+        limitador.configurar(ServicoSefaz.AUTORIZACAO, 1_000_000, 1_000_000);
+
+        transporte = new TransporteHttpsSefaz(certificado);
+        transporte.setTrustStore(CertificadosTeste.confiarEm(chaveServidor));
+
+        assinatura = new AssinaturaDigital(certificado);
+        cliente = new SefazSoapClient(certificado, limitador, transporte, new ExecutorRetentativa(),
+                MetricasSefaz.DESABILITADO);
+        cfg = DadosTeste.configuracao();
+    }
+
+    @Benchmark
+    public String emitir() throws Exception {
+        String xml = NfeXmlBuilder.buildNFe(DadosTeste.comanda(numeracao.incrementAndGet(), 10), cfg);
+        String xmlAssinado = assinatura.assinar(xml);
+        String resposta = cliente.enviarNFe(xmlAssinado, urlAutorizacao);
+        return cliente.extrairNumeroRecibo(resposta);
+    }
+
+    @TearDown
+    public void encerrar() {
+        transporte.close();
+        simulador.close();
+    }
+}
@@ -0,0 +1,392 @@
+package com.sefaz.nfe.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SEFAZ local (HTTPS com autenticação mútua) para benchmarks e testes de carga.
+ *
+ * Serviços implementados:
+ * - NFeStatusServico4: cStat 107 (serviço em operação)
+ * - NFeAutorizacao4: lote assíncrono (103 + nRec) ou síncrono (indSinc=1, 104 + protNFe)
+ * - NFeRetAutorizacao4: 105 enquanto o lote está em processamento, depois 104 + protNFe
+ * - DCeRecepcao / DCeRetRecepcao: mesmo fluxo assíncrono para a DC-e
+ *
+ * Comportamento configurável em tempo de execução:
+ * - Distribuição de latência das respostas ({@link Latencia})
+ * - Taxa de erros HTTP 503
+ * - Injeção de cStat 656 (consumo indevido), 204 (duplicidade) e 539 (duplicidade com chave diferente)
+ * - Detecção real de duplicidade: reenviar uma chave já recebida retorna 204 com o nRec original
+ * - Tempo de processamento dos lotes assíncronos
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public class SimuladorSefaz implements AutoCloseable {
+
+    public static final String CAMINHO_STATUS_SERVICO = "/ws/NFeStatusServico4";
+    public static final String CAMINHO_AUTORIZACAO = "/ws/NFeAutorizacao4";
+    public static final String CAMINHO_RET_AUTORIZACAO = "/ws/NFeRetAutorizacao4";
+    public static final String CAMINHO_DCE_RECEPCAO = "/ws/DCeRecepcao";
+    public static final String CAMINHO_DCE_RET_RECEPCAO = "/ws/DCeRetRecepcao";
+
+    private static final Pattern ID_DOCUMENTO = Pattern.compile("Id=\"(NFe|DCe)(\\d{44})\"");
+    private static final Pattern NREC = Pattern.compile("<nRec>(\\d+)</nRec>");
+    private static final DateTimeFormatter DATA_HORA = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    private static final ZoneOffset FUSO = ZoneOffset.ofHours(-3);
+
+    private final HttpsServer servidor;
+    private final ExecutorService executor;
+    private final AtomicLong recibos = new AtomicLong(351000000000000L);
+    private final AtomicLong protocolos = new AtomicLong(135250000000000L);
+    private final Map<String, Lote> lotes = new ConcurrentHashMap<>();
+    private final Map<String, String> reciboPorChave = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> respostas = new ConcurrentHashMap<>();
+
+    private volatile Latencia latencia = Latencia.nenhuma();
+    private volatile double taxaErroHttp;
+    private volatile double taxaConsumoIndevido;
+    private volatile double taxaDuplicidade;
+    private volatile double taxaDuplicidadeChaveDiferente;
+    private volatile boolean detectarDuplicidade = true;
+    private volatile Duration tempoProcessamentoLote = Duration.ZERO;
+
+    /**
+     * Sem {@code -Dsun.net.httpserver.nodelay=true} na linha de comando da JVM o atraso de ACK
+     * do cliente (~40 ms) domina a latência medida. A propriedade é lida uma única vez pelo
+     * HttpServer do JDK, por isso faz parte da configuração de execução e não é alterada aqui.
+     *
+     * @param keyStoreServidor Certificado e chave do servidor (senha {@link CertificadosTeste#SENHA})
+     * @param trustStoreClientes Certificados de cliente aceitos
+     * @param threads Threads de atendimento (limitam as requisições simultâneas em latência)
+     */
+    public SimuladorSefaz(KeyStore keyStoreServidor, KeyStore trustStoreClientes, int threads) throws Exception {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStoreServidor, CertificadosTeste.SENHA.toCharArray());
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStoreClientes);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+
+        servidor = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        servidor.setHttpsConfigurator(new HttpsConfigurator(sslContext) {
+            @Override
+            public void configure(HttpsParameters params) {
+                SSLParameters ssl = sslContext.getDefaultSSLParameters();
+                ssl.setNeedClientAuth(true);
+                params.setSSLParameters(ssl);
+            }
+        });
+        servidor.createContext(CAMINHO_STATUS_SERVICO, t -> atender(t, this::statusServico));
+        servidor.createContext(CAMINHO_AUTORIZACAO, t -> atender(t, c -> recepcao(c, Documento.NFE)));
+        servidor.createContext(CAMINHO_RET_AUTORIZACAO, t -> atender(t, c -> retRecepcao(c, Documento.NFE)));
+        servidor.createContext(CAMINHO_DCE_RECEPCAO, t -> atender(t, c -> recepcao(c, Documento.DCE)));
+        servidor.createContext(CAMINHO_DCE_RET_RECEPCAO, t -> atender(t, c -> retRecepcao(c, Documento.DCE)));
+
+        executor = Executors.newFixedThreadPool(threads);
+        servidor.setExecutor(executor);
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * URL do serviço no simulador (ex: {@link #CAMINHO_AUTORIZACAO}).
+     */
+    public String getUrl(String caminho) {
+        return "https://localhost:" + servidor.getAddress().getPort() + caminho;
+    }
+
+    // ===== Configuração =====
+
+    public void setLatencia(Latencia latencia) {
+        this.latencia = latencia;
+    }
+
+    /** Fração (0 a 1) das requisições respondidas com HTTP 503. */
+    public void setTaxaErroHttp(double taxa) {
+        this.taxaErroHttp = taxa;
+    }
+
+    /** Fração (0 a 1) das recepções rejeitadas com cStat 656. */
+    public void setTaxaConsumoIndevido(double taxa) {
+        this.taxaConsumoIndevido = taxa;
+    }
+
+    /** Fração (0 a 1) das recepções rejeitadas com cStat 204. */
+    public void setTaxaDuplicidade(double taxa) {
+        this.taxaDuplicidade = taxa;
+    }
+
+    /** Fração (0 a 1) das recepções rejeitadas com cStat 539. */
+    public void setTaxaDuplicidadeChaveDiferente(double taxa) {
+        this.taxaDuplicidadeChaveDiferente = taxa;
+    }
+
+    /** Se false, chaves repetidas são aceitas (útil para reenviar a mesma massa em testes de carga). */
+    public void setDetectarDuplicidade(boolean detectar) {
+        this.detectarDuplicidade = detectar;
+    }
+
+    /** Tempo até o lote assíncrono ficar processado (antes disso a consulta retorna 105). */
+    public void setTempoProcessamentoLote(Duration tempo) {
+        this.tempoProcessamentoLote = tempo;
+    }
+
+    /**
+     * Quantidade de respostas enviadas com o cStat informado (ou "HTTP 503").
+     */
+    public long getRespostas(String cStat) {
+        LongAdder contador = respostas.get(cStat);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    // ===== Serviços =====
+
+    private Resposta statusServico(String corpo) {
+        return new Resposta("107", "nfeResultMsg", "NFeStatusServico4",
+                "<retConsStatServ xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+                        "<tpAmb>2</tpAmb><verAplic>SIMULADOR</verAplic><cStat>107</cStat>" +
+                        "<xMotivo>Servico em Operacao</xMotivo><cUF>35</cUF>" +
+                        "<dhRecbto>" + agora() + "</dhRecbto><tMed>1</tMed></retConsStatServ>");
+    }
+
+    private Resposta recepcao(String corpo, Documento doc) {
+        String dados = dadosMsg(corpo);
+        List<String> chaves = new ArrayList<>();
+        Matcher m = ID_DOCUMENTO.matcher(dados);
+        while (m.find()) {
+            chaves.add(m.group(2));
+        }
+
+        double sorteio = ThreadLocalRandom.current().nextDouble();
+        if (sorteio < taxaConsumoIndevido) {
+            return rejeicao(doc, "656", "Rejeicao: Consumo Indevido");
+        }
+        sorteio -= taxaConsumoIndevido;
+        if (sorteio < taxaDuplicidadeChaveDiferente && !chaves.isEmpty()) {
+            return rejeicao(doc, "539", "Rejeicao: Duplicidade de " + doc.sigla + " com diferenca na Chave de Acesso" +
+                    " [chNFe:" + chaves.get(0) + "][nRec:" + recibos.get() + "]");
+        }
+        sorteio -= taxaDuplicidadeChaveDiferente;
+        if (sorteio < taxaDuplicidade) {
+            return rejeicao(doc, "204", "Rejeicao: Duplicidade de " + doc.sigla + " [nRec:" + recibos.get() + "]");
+        }
+
+        String nRec = String.valueOf(recibos.incrementAndGet());
+        if (detectarDuplicidade) {
+            for (String chave : chaves) {
+                String anterior = reciboPorChave.putIfAbsent(chave, nRec);
+                if (anterior != null) {
+                    return rejeicao(doc, "204", "Rejeicao: Duplicidade de " + doc.sigla + " [nRec:" + anterior + "]");
+                }
+            }
+        }
+
+        if (doc == Documento.NFE && dados.contains("<indSinc>1</indSinc>")) {
+            return new Resposta("104", doc.elementoResultado, doc.wsdlRecepcao,
+                    "<retEnviNFe xmlns=\"" + doc.namespace + "\" versao=\"4.00\">" +
+                            "<tpAmb>2</tpAmb><verAplic>SIMULADOR</verAplic><cStat>104</cStat>" +
+                            "<xMotivo>Lote processado</xMotivo><cUF>35</cUF><dhRecbto>" + agora() + "</dhRecbto>" +
+                            protocolos(doc, chaves) + "</retEnviNFe>");
+        }
+
+        lotes.put(nRec, new Lote(chaves, System.nanoTime() + tempoProcessamentoLote.toNanos()));
+        return new Resposta("103", doc.elementoResultado, doc.wsdlRecepcao,
+                "<retEnvi" + doc.sigla + " xmlns=\"" + doc.namespace + "\" versao=\"" + doc.versao + "\">" +
+                        "<tpAmb>2</tpAmb><verAplic>SIMULADOR</verAplic><cStat>103</cStat>" +
+                        "<xMotivo>Lote recebido com sucesso</xMotivo><cUF>35</cUF><dhRecbto>" + agora() + "</dhRecbto>" +
+                        "<infRec><nRec>" + nRec + "</nRec><tMed>1</tMed></infRec></retEnvi" + doc.sigla + ">");
+    }
+
+    private Resposta retRecepcao(String corpo, Documento doc) {
+        Matcher m = NREC.matcher(dadosMsg(corpo));
+        String nRec = m.find() ? m.group(1) : "";
+        Lote lote = lotes.get(nRec);
+
+        String cStat;
+        String xMotivo;
+        String protocolos = "";
+        if (lote == null) {
+            cStat = "106";
+            xMotivo = "Lote nao localizado";
+        } else if (System.nanoTime() - lote.prontoEm < 0) {
+            cStat = "105";
+            xMotivo = "Lote em processamento";
+        } else {
+            cStat = "104";
+            xMotivo = "Lote processado";
+            protocolos = protocolos(doc, lote.chaves);
+        }
+
+        return new Resposta(cStat, doc.elementoResultado, doc.wsdlRetRecepcao,
+                "<retConsReci" + doc.sigla + " xmlns=\"" + doc.namespace + "\" versao=\"" + doc.versao + "\">" +
+                        "<tpAmb>2</tpAmb><verAplic>SIMULADOR</verAplic><nRec>" + nRec + "</nRec>" +
+                        "<cStat>" + cStat + "</cStat><xMotivo>" + xMotivo + "</xMotivo><cUF>35</cUF>" +
+                        "<dhRecbto>" + agora() + "</dhRecbto>" + protocolos +
+                        "</retConsReci" + doc.sigla + ">");
+    }
+
+    private String protocolos(Documento doc, List<String> chaves) {
+        StringBuilder sb = new StringBuilder();
+        for (String chave : chaves) {
+            sb.append("<prot").append(doc.sigla).append(" versao=\"").append(doc.versao).append("\"><infProt>")
+                    .append("<tpAmb>2</tpAmb><verAplic>SIMULADOR</verAplic>")
+                    .append("<ch").append(doc.sigla).append('>').append(chave).append("</ch").append(doc.sigla).append('>')
+                    .append("<dhRecbto>").append(agora()).append("</dhRecbto>")
+                    .append("<nProt>").append(protocolos.incrementAndGet()).append("</nProt>")
+                    .append("<cStat>100</cStat><xMotivo>Autorizado o uso da ").append(doc.sigla).append("</xMotivo>")
+                    .append("</infProt></prot").append(doc.sigla).append('>');
+        }
+        return sb.toString();
+    }
+
+    private static Resposta rejeicao(Documento doc, String cStat, String xMotivo) {
+        return new Resposta(cStat, doc.elementoResultado, doc.wsdlRecepcao,
+                "<retEnvi" + doc.sigla + " xmlns=\"" + doc.namespace + "\" versao=\"" + doc.versao + "\">" +
+                        "<tpAmb>2</tpAmb><verAplic>SIMULADOR</verAplic><cStat>" + cStat + "</cStat>" +
+                        "<xMotivo>" + xMotivo + "</xMotivo><cUF>35</cUF><dhRecbto>" + agora() + "</dhRecbto>" +
+                        "</retEnvi" + doc.sigla + ">");
+    }
+
+    // ===== Infraestrutura =====
+
+    private void atender(HttpExchange troca, Servico servico) throws IOException {
+        try (troca) {
+            String corpo;
+            try (InputStream in = troca.getRequestBody()) {
+                corpo = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            long espera = latencia.amostraNanos();
+            if (espera > 0) {
+                TimeUnit.NANOSECONDS.sleep(espera);
+            }
+
+            if (ThreadLocalRandom.current().nextDouble() < taxaErroHttp) {
+                contar("HTTP 503");
+                troca.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            Resposta resposta = servico.atender(corpo);
+            contar(resposta.cStat);
+            byte[] bytes = resposta.envelope().getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().set("Content-Type", "application/soap+xml; charset=utf-8");
+            troca.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = troca.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void contar(String chave) {
+        respostas.computeIfAbsent(chave, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Conteúdo do elemento *DadosMsg (XML direto ou em Base64).
+     */
+    private static String dadosMsg(String corpo) {
+        int inicio = corpo.indexOf("DadosMsg");
+        int fim = corpo.lastIndexOf("DadosMsg");
+        if (inicio < 0 || fim <= inicio) {
+            return corpo;
+        }
+        inicio = corpo.indexOf('>', inicio) + 1;
+        fim = corpo.lastIndexOf('<', fim);
+        String conteudo = corpo.substring(inicio, fim).trim();
+        if (conteudo.startsWith("<")) {
+            return conteudo;
+        }
+        return new String(Base64.getMimeDecoder().decode(conteudo), StandardCharsets.UTF_8);
+    }
+
+    private static String agora() {
+        return OffsetDateTime.now(FUSO).truncatedTo(ChronoUnit.SECONDS).format(DATA_HORA);
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Servico {
+        Resposta atender(String corpo);
+    }
+
+    private record Lote(List<String> chaves, long prontoEm) {
+    }
+
+    private record Resposta(String cStat, String elementoResultado, String wsdl, String retorno) {
+
+        String envelope() {
+            return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                    "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+                    "<" + elementoResultado + " xmlns=\"http://www.portalfiscal.inf.br/" + wsdl + "\">" +
+                    retorno +
+                    "</" + elementoResultado + "></soap:Body></soap:Envelope>";
+        }
+    }
+
+    private enum Documento {
+        NFE("NFe", "4.00", "http://www.portalfiscal.inf.br/nfe", "nfeResultMsg",
+                "nfe/wsdl/NFeAutorizacao4", "nfe/wsdl/NFeRetAutorizacao4"),
+        DCE("DCe", "1.00", "http://www.portalfiscal.inf.br/dce", "dceResultMsg",
+                "dce/wsdl/DCeRecepcao", "dce/wsdl/DCeRetRecepcao");
+
+        final String sigla;
+        final String versao;
+        final String namespace;
+        final String elementoResultado;
+        final String wsdlRecepcao;
+        final String wsdlRetRecepcao;
+
+        Documento(String sigla, String versao, String namespace, String elementoResultado,
+                  String wsdlRecepcao, String wsdlRetRecepcao) {
+            this.sigla = sigla;
+            this.versao = versao;
+            this.namespace = namespace;
+            this.elementoResultado = elementoResultado;
+            this.wsdlRecepcao = wsdlRecepcao;
+            this.wsdlRetRecepcao = wsdlRetRecepcao;
+        }
+    }
+}
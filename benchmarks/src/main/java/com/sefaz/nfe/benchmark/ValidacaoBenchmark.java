@@ -0,0 +1,62 @@
+package com.sefaz.nfe.benchmark;
+
+import com.exemplo.controlemesas.nfe.NfeXmlBuilder;
+import com.exemplo.controlemesas.nfe.NfeXmlValidator;
+import com.sefaz.nfe.ValidadorRegrasNFe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NfeXmlValidator.validarXml (XSD) e as regras de negócio do ValidadorRegrasNFe.
+ *
+ * Os schemas XSD da SEFAZ não são distribuídos com o projeto: copie o pacote
+ * PL_009 para src/main/resources/schemas (nfe_v4.00.xsd e dependências).
+ * Sem eles o validador retorna sem validar e o resultado mede apenas esse atalho.
+ * As regras não dependem dos schemas; o setup confere que a nota do builder não seria rejeitada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidacaoBenchmark {
+
+    private NfeXmlValidator validador;
+    private ValidadorRegrasNFe regras;
+    private String xml;
+
+    @Setup
+    public void preparar() {
+        validador = new NfeXmlValidator();
+        regras = new ValidadorRegrasNFe();
+        xml = NfeXmlBuilder.buildNFe(DadosTeste.comanda(1, 10), DadosTeste.configuracao());
+        ValidadorRegrasNFe.Resultado resultado = regras.validar(xml);
+        if (!resultado.isValida()) {
+            throw new IllegalStateException("NF-e do builder seria rejeitada: " + resultado.rejeicoes());
+        }
+        if (getClass().getClassLoader().getResource("schemas/nfe_v4.00.xsd") == null) {
+            System.err.println("AVISO: schemas/nfe_v4.00.xsd ausente; a validação não será exercitada.");
+        }
+    }
+
+    @Benchmark
+    public boolean validarXml() {
+        return validador.validarXml(xml);
+    }
+
+    @Benchmark
+    public ValidadorRegrasNFe.Resultado validarRegras() {
+        return regras.validar(xml);
+    }
+}
@@ -0,0 +1,233 @@
+package br.gov.sefaz.dce;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Versão compacta de {@link DadosDCe} para geração de DC-e em massa.
+ * 
+ * Os campos numéricos são primitivos, o valor total é mantido em centavos e os itens
+ * ficam em colunas ({@link ItensDCe}), sem um BigDecimal por quantidade ou valor.
+ * O XML é gerado pelo {@link DceXmlWriter}, com o mesmo conteúdo do {@link DceXmlBuilder}.
+ * 
+ * A instância pode ser reaproveitada entre DC-e (ex: uma por thread), alterando apenas
+ * os campos que mudam e chamando {@link ItensDCe#limpar()}.
+ */
+public class DadosDCeCompacta {
+
+    // Identificação da DC-e
+    private long numeroLote;
+    private int codigoUF;
+    private int codigoNumerico;
+    private int modelo = 59; // Modelo 59 para DC-e
+    private int serie;
+    private int numero;
+    private LocalDateTime dataEmissao;
+    private int tipoEmissao = 1; // 1=Normal
+    private int tipoAmbiente = 2; // 1=Produção, 2=Homologação
+    private int finalidade = 1; // 1=DC-e normal
+    private int processoEmissao = 0; // 0=Aplicativo próprio
+    private String versaoAplicativo;
+
+    // Remetente
+    private String remetenteCNPJ;
+    private String remetenteNome;
+    private String remetenteLogradouro;
+    private String remetenteNumero;
+    private String remetenteComplemento;
+    private String remetenteBairro;
+    private String remetenteCodigoMunicipio;
+    private String remetenteMunicipio;
+    private String remetenteUF;
+    private String remetenteCEP;
+
+    // Destinatário
+    private String destinatarioCNPJ;
+    private String destinatarioCPF;
+    private String destinatarioNome;
+    private String destinatarioLogradouro;
+    private String destinatarioNumero;
+    private String destinatarioComplemento;
+    private String destinatarioBairro;
+    private String destinatarioCodigoMunicipio;
+    private String destinatarioMunicipio;
+    private String destinatarioUF;
+    private String destinatarioCEP;
+
+    // Itens e totais
+    private final ItensDCe itens = new ItensDCe();
+    private long valorTotal; // vDC em centavos
+
+    // Transporte e dados postais
+    private int modalidadeFrete = 9; // 9=Sem frete (padrão DC-e)
+    private String codigoRastreio;
+
+    /**
+     * Converte o modelo com BigDecimal (quantidade com 4 casas, valores com 2, arredondamento HALF_UP).
+     */
+    public static DadosDCeCompacta de(DadosDCe dados) {
+        DadosDCeCompacta c = new DadosDCeCompacta();
+        c.numeroLote = dados.getNumeroLote();
+        c.codigoUF = dados.getCodigoUF();
+        c.codigoNumerico = dados.getCodigoNumerico();
+        c.modelo = dados.getModelo();
+        c.serie = dados.getSerie();
+        c.numero = dados.getNumero();
+        c.dataEmissao = dados.getDataEmissao();
+        c.tipoEmissao = dados.getTipoEmissao();
+        c.tipoAmbiente = dados.getTipoAmbiente();
+        c.finalidade = dados.getFinalidade();
+        c.processoEmissao = dados.getProcessoEmissao();
+        c.versaoAplicativo = dados.getVersaoAplicativo();
+        c.remetenteCNPJ = dados.getRemetenteCNPJ();
+        c.remetenteNome = dados.getRemetenteNome();
+        c.remetenteLogradouro = dados.getRemetenteLogradouro();
+        c.remetenteNumero = dados.getRemetenteNumero();
+        c.remetenteComplemento = dados.getRemetenteComplemento();
+        c.remetenteBairro = dados.getRemetenteBairro();
+        c.remetenteCodigoMunicipio = dados.getRemetenteCodigoMunicipio();
+        c.remetenteMunicipio = dados.getRemetenteMunicipio();
+        c.remetenteUF = dados.getRemetenteUF();
+        c.remetenteCEP = dados.getRemetenteCEP();
+        c.destinatarioCNPJ = dados.getDestinatarioCNPJ();
+        c.destinatarioCPF = dados.getDestinatarioCPF();
+        c.destinatarioNome = dados.getDestinatarioNome();
+        c.destinatarioLogradouro = dados.getDestinatarioLogradouro();
+        c.destinatarioNumero = dados.getDestinatarioNumero();
+        c.destinatarioComplemento = dados.getDestinatarioComplemento();
+        c.destinatarioBairro = dados.getDestinatarioBairro();
+        c.destinatarioCodigoMunicipio = dados.getDestinatarioCodigoMunicipio();
+        c.destinatarioMunicipio = dados.getDestinatarioMunicipio();
+        c.destinatarioUF = dados.getDestinatarioUF();
+        c.destinatarioCEP = dados.getDestinatarioCEP();
+        List<ItemDCe> itens = dados.getItens();
+        if (itens != null) {
+            for (ItemDCe item : itens) {
+                c.itens.adicionar(item.getCodigoProduto(), item.getDescricao(), item.getNcm(),
+                        escalar(item.getQuantidade(), 4), escalar(item.getValorUnitario(), 2),
+                        escalar(item.getValorTotal(), 2));
+            }
+        }
+        c.valorTotal = escalar(dados.getValorTotal(), 2);
+        c.modalidadeFrete = dados.getModalidadeFrete();
+        c.codigoRastreio = dados.getCodigoRastreio();
+        return c;
+    }
+
+    private static long escalar(BigDecimal valor, int casasDecimais) {
+        return valor.setScale(casasDecimais, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    // Getters e Setters
+    public long getNumeroLote() { return numeroLote; }
+    public void setNumeroLote(long numeroLote) { this.numeroLote = numeroLote; }
+
+    public int getCodigoUF() { return codigoUF; }
+    public void setCodigoUF(int codigoUF) { this.codigoUF = codigoUF; }
+
+    public int getCodigoNumerico() { return codigoNumerico; }
+    public void setCodigoNumerico(int codigoNumerico) { this.codigoNumerico = codigoNumerico; }
+
+    public int getModelo() { return modelo; }
+    public void setModelo(int modelo) { this.modelo = modelo; }
+
+    public int getSerie() { return serie; }
+    public void setSerie(int serie) { this.serie = serie; }
+
+    public int getNumero() { return numero; }
+    public void setNumero(int numero) { this.numero = numero; }
+
+    public LocalDateTime getDataEmissao() { return dataEmissao; }
+    public void setDataEmissao(LocalDateTime dataEmissao) { this.dataEmissao = dataEmissao; }
+
+    public int getTipoEmissao() { return tipoEmissao; }
+    public void setTipoEmissao(int tipoEmissao) { this.tipoEmissao = tipoEmissao; }
+
+    public int getTipoAmbiente() { return tipoAmbiente; }
+    public void setTipoAmbiente(int tipoAmbiente) { this.tipoAmbiente = tipoAmbiente; }
+
+    public int getFinalidade() { return finalidade; }
+    public void setFinalidade(int finalidade) { this.finalidade = finalidade; }
+
+    public int getProcessoEmissao() { return processoEmissao; }
+    public void setProcessoEmissao(int processoEmissao) { this.processoEmissao = processoEmissao; }
+
+    public String getVersaoAplicativo() { return versaoAplicativo; }
+    public void setVersaoAplicativo(String versaoAplicativo) { this.versaoAplicativo = versaoAplicativo; }
+
+    public String getRemetenteCNPJ() { return remetenteCNPJ; }
+    public void setRemetenteCNPJ(String remetenteCNPJ) { this.remetenteCNPJ = remetenteCNPJ; }
+
+    public String getRemetenteNome() { return remetenteNome; }
+    public void setRemetenteNome(String remetenteNome) { this.remetenteNome = remetenteNome; }
+
+    public String getRemetenteLogradouro() { return remetenteLogradouro; }
+    public void setRemetenteLogradouro(String remetenteLogradouro) { this.remetenteLogradouro = remetenteLogradouro; }
+
+    public String getRemetenteNumero() { return remetenteNumero; }
+    public void setRemetenteNumero(String remetenteNumero) { this.remetenteNumero = remetenteNumero; }
+
+    public String getRemetenteComplemento() { return remetenteComplemento; }
+    public void setRemetenteComplemento(String remetenteComplemento) { this.remetenteComplemento = remetenteComplemento; }
+
+    public String getRemetenteBairro() { return remetenteBairro; }
+    public void setRemetenteBairro(String remetenteBairro) { this.remetenteBairro = remetenteBairro; }
+
+    public String getRemetenteCodigoMunicipio() { return remetenteCodigoMunicipio; }
+    public void setRemetenteCodigoMunicipio(String remetenteCodigoMunicipio) { this.remetenteCodigoMunicipio = remetenteCodigoMunicipio; }
+
+    public String getRemetenteMunicipio() { return remetenteMunicipio; }
+    public void setRemetenteMunicipio(String remetenteMunicipio) { this.remetenteMunicipio = remetenteMunicipio; }
+
+    public String getRemetenteUF() { return remetenteUF; }
+    public void setRemetenteUF(String remetenteUF) { this.remetenteUF = remetenteUF; }
+
+    public String getRemetenteCEP() { return remetenteCEP; }
+    public void setRemetenteCEP(String remetenteCEP) { this.remetenteCEP = remetenteCEP; }
+
+    public String getDestinatarioCNPJ() { return destinatarioCNPJ; }
+    public void setDestinatarioCNPJ(String destinatarioCNPJ) { this.destinatarioCNPJ = destinatarioCNPJ; }
+
+    public String getDestinatarioCPF() { return destinatarioCPF; }
+    public void setDestinatarioCPF(String destinatarioCPF) { this.destinatarioCPF = destinatarioCPF; }
+
+    public String getDestinatarioNome() { return destinatarioNome; }
+    public void setDestinatarioNome(String destinatarioNome) { this.destinatarioNome = destinatarioNome; }
+
+    public String getDestinatarioLogradouro() { return destinatarioLogradouro; }
+    public void setDestinatarioLogradouro(String destinatarioLogradouro) { this.destinatarioLogradouro = destinatarioLogradouro; }
+
+    public String getDestinatarioNumero() { return destinatarioNumero; }
+    public void setDestinatarioNumero(String destinatarioNumero) { this.destinatarioNumero = destinatarioNumero; }
+
+    public String getDestinatarioComplemento() { return destinatarioComplemento; }
+    public void setDestinatarioComplemento(String destinatarioComplemento) { this.destinatarioComplemento = destinatarioComplemento; }
+
+    public String getDestinatarioBairro() { return destinatarioBairro; }
+    public void setDestinatarioBairro(String destinatarioBairro) { this.destinatarioBairro = destinatarioBairro; }
+
+    public String getDestinatarioCodigoMunicipio() { return destinatarioCodigoMunicipio; }
+    public void setDestinatarioCodigoMunicipio(String destinatarioCodigoMunicipio) { this.destinatarioCodigoMunicipio = destinatarioCodigoMunicipio; }
+
+    public String getDestinatarioMunicipio() { return destinatarioMunicipio; }
+    public void setDestinatarioMunicipio(String destinatarioMunicipio) { this.destinatarioMunicipio = destinatarioMunicipio; }
+
+    public String getDestinatarioUF() { return destinatarioUF; }
+    public void setDestinatarioUF(String destinatarioUF) { this.destinatarioUF = destinatarioUF; }
+
+    public String getDestinatarioCEP() { return destinatarioCEP; }
+    public void setDestinatarioCEP(String destinatarioCEP) { this.destinatarioCEP = destinatarioCEP; }
+
+    public ItensDCe getItens() { return itens; }
+
+    public long getValorTotal() { return valorTotal; }
+    public void setValorTotal(long valorTotal) { this.valorTotal = valorTotal; }
+
+    public int getModalidadeFrete() { return modalidadeFrete; }
+    public void setModalidadeFrete(int modalidadeFrete) { this.modalidadeFrete = modalidadeFrete; }
+
+    public String getCodigoRastreio() { return codigoRastreio; }
+    public void setCodigoRastreio(String codigoRastreio) { this.codigoRastreio = codigoRastreio; }
+}
@@ -25,13 +25,38 @@ public class DceXmlBuilder {
      * @return XML da DC-e (ainda não assinado digitalmente)
      */
     public static String construirXmlDCe(DadosDCe dados) {
-        String chave = gerarChaveAcesso(dados);
-        
         StringBuilder xml = new StringBuilder();
         xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
         xml.append("<enviDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\">");
         xml.append("<idLote>").append(dados.getNumeroLote()).append("</idLote>");
         xml.append("<DCe>");
+        construirInfDCe(xml, dados);
+        xml.append("</DCe>");
+        xml.append("</enviDCe>");
+        
+        return xml.toString();
+    }
+
+    /**
+     * Constrói apenas o elemento DCe (não assinado), com o namespace declarado.
+     * 
+     * Usado para montar lotes com várias DC-e (ex: com.sefaz.nfe.AutorizacaoDCe,
+     * que agrupa, assina e envia os lotes).
+     * 
+     * @param dados Dados da DC-e
+     * @return Elemento DCe (ainda não assinado digitalmente)
+     */
+    public static String construirDCe(DadosDCe dados) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<DCe xmlns=\"http://www.portalfiscal.inf.br/dce\">");
+        construirInfDCe(xml, dados);
+        xml.append("</DCe>");
+        return xml.toString();
+    }
+
+    private static void construirInfDCe(StringBuilder xml, DadosDCe dados) {
+        String chave = gerarChaveAcesso(dados);
+
         xml.append("<infDCe versao=\"1.00\" Id=\"DCe").append(chave).append("\">");
         
         // Identificação
@@ -123,10 +148,6 @@ public class DceXmlBuilder {
         xml.append("</infAdic>");
 
         xml.append("</infDCe>");
-        xml.append("</DCe>");
-        xml.append("</enviDCe>");
-        
-        return xml.toString();
     }
 
     /**
@@ -192,7 +213,8 @@ public class DceXmlBuilder {
         int resto = soma % 11;
         int dv = 11 - resto;
         
-        if (dv == 0 || dv == 1 || dv >= 10) {
+        // Resto 0 ou 1 resulta em DV 0 (resto 10 resulta em DV 1)
+        if (dv >= 10) {
             return 0;
         }
         
@@ -0,0 +1,288 @@
+package br.gov.sefaz.dce;
+
+import java.time.LocalDateTime;
+
+/**
+ * Escritor especializado do XML da DC-e a partir de {@link DadosDCeCompacta}.
+ *
+ * Gera o mesmo XML do {@link DceXmlBuilder}, sem String.format, sem BigDecimal e sem
+ * strings intermediárias: números e valores em centavos são escritos dígito a dígito,
+ * a chave de acesso é montada em um char[] e o texto só é copiado quando precisa de escape.
+ * Os valores usam sempre o ponto como separador decimal, independente do Locale padrão.
+ *
+ * Para geração em massa, reaproveite o StringBuilder com {@link #escreverDCe(DadosDCeCompacta, StringBuilder)}.
+ */
+public final class DceXmlWriter {
+
+    private static final long[] POTENCIAS = {1L, 10L, 100L, 1_000L, 10_000L};
+
+    private DceXmlWriter() {
+    }
+
+    /**
+     * XML completo da DC-e (enviDCe com uma DC-e, não assinado), como {@link DceXmlBuilder#construirXmlDCe}.
+     */
+    public static String construirXmlDCe(DadosDCeCompacta dados) {
+        StringBuilder xml = new StringBuilder(estimarTamanho(dados));
+        escreverXmlDCe(dados, xml);
+        return xml.toString();
+    }
+
+    /**
+     * Apenas o elemento DCe (não assinado), como {@link DceXmlBuilder#construirDCe}.
+     */
+    public static String construirDCe(DadosDCeCompacta dados) {
+        StringBuilder xml = new StringBuilder(estimarTamanho(dados));
+        escreverDCe(dados, xml);
+        return xml.toString();
+    }
+
+    /**
+     * Acrescenta o enviDCe completo ao StringBuilder.
+     */
+    public static void escreverXmlDCe(DadosDCeCompacta dados, StringBuilder xml) {
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        xml.append("<enviDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\">");
+        xml.append("<idLote>").append(dados.getNumeroLote()).append("</idLote>");
+        xml.append("<DCe>");
+        escreverInfDCe(dados, xml);
+        xml.append("</DCe>");
+        xml.append("</enviDCe>");
+    }
+
+    /**
+     * Acrescenta o elemento DCe, com o namespace declarado, ao StringBuilder.
+     */
+    public static void escreverDCe(DadosDCeCompacta dados, StringBuilder xml) {
+        xml.append("<DCe xmlns=\"http://www.portalfiscal.inf.br/dce\">");
+        escreverInfDCe(dados, xml);
+        xml.append("</DCe>");
+    }
+
+    private static void escreverInfDCe(DadosDCeCompacta dados, StringBuilder xml) {
+        char[] chave = gerarChaveAcesso(dados);
+
+        xml.append("<infDCe versao=\"1.00\" Id=\"DCe").append(chave).append("\">");
+
+        // Identificação
+        xml.append("<ide>");
+        xml.append("<cUF>").append(dados.getCodigoUF()).append("</cUF>");
+        xml.append("<cDC>").append(dados.getCodigoNumerico()).append("</cDC>");
+        xml.append("<mod>").append(dados.getModelo()).append("</mod>");
+        xml.append("<serie>").append(dados.getSerie()).append("</serie>");
+        xml.append("<nDC>").append(dados.getNumero()).append("</nDC>");
+        xml.append("<dhEmi>");
+        escreverDataHora(xml, dados.getDataEmissao());
+        xml.append("</dhEmi>");
+        xml.append("<tpEmis>").append(dados.getTipoEmissao()).append("</tpEmis>");
+        xml.append("<cDV>").append(chave[43]).append("</cDV>");
+        xml.append("<tpAmb>").append(dados.getTipoAmbiente()).append("</tpAmb>");
+        xml.append("<finDCe>").append(dados.getFinalidade()).append("</finDCe>");
+        xml.append("<procEmi>").append(dados.getProcessoEmissao()).append("</procEmi>");
+        xml.append("<verProc>").append(dados.getVersaoAplicativo()).append("</verProc>");
+        xml.append("</ide>");
+
+        // Remetente
+        xml.append("<rem>");
+        xml.append("<CNPJ>").append(dados.getRemetenteCNPJ()).append("</CNPJ>");
+        xml.append("<xNome>");
+        escapar(xml, dados.getRemetenteNome());
+        xml.append("</xNome>");
+        xml.append("<enderRem>");
+        escreverEndereco(xml, dados.getRemetenteLogradouro(), dados.getRemetenteNumero(),
+                dados.getRemetenteComplemento(), dados.getRemetenteBairro(), dados.getRemetenteCodigoMunicipio(),
+                dados.getRemetenteMunicipio(), dados.getRemetenteUF(), dados.getRemetenteCEP());
+        xml.append("</enderRem>");
+        xml.append("</rem>");
+
+        // Destinatário
+        xml.append("<dest>");
+        if (dados.getDestinatarioCNPJ() != null && !dados.getDestinatarioCNPJ().isEmpty()) {
+            xml.append("<CNPJ>").append(dados.getDestinatarioCNPJ()).append("</CNPJ>");
+        } else if (dados.getDestinatarioCPF() != null && !dados.getDestinatarioCPF().isEmpty()) {
+            xml.append("<CPF>").append(dados.getDestinatarioCPF()).append("</CPF>");
+        }
+        xml.append("<xNome>");
+        escapar(xml, dados.getDestinatarioNome());
+        xml.append("</xNome>");
+        xml.append("<enderDest>");
+        escreverEndereco(xml, dados.getDestinatarioLogradouro(), dados.getDestinatarioNumero(),
+                dados.getDestinatarioComplemento(), dados.getDestinatarioBairro(), dados.getDestinatarioCodigoMunicipio(),
+                dados.getDestinatarioMunicipio(), dados.getDestinatarioUF(), dados.getDestinatarioCEP());
+        xml.append("</enderDest>");
+        xml.append("</dest>");
+
+        // Itens, lidos direto das colunas
+        ItensDCe itens = dados.getItens();
+        for (int i = 0; i < itens.tamanho(); i++) {
+            xml.append("<det nItem=\"").append(i + 1).append("\">");
+            xml.append("<prod>");
+            xml.append("<cProd>").append(itens.getCodigoProduto(i)).append("</cProd>");
+            xml.append("<xProd>");
+            escapar(xml, itens.getDescricao(i));
+            xml.append("</xProd>");
+            xml.append("<NCM>").append(itens.getNcm(i)).append("</NCM>");
+            xml.append("<qCom>");
+            escreverDecimal(xml, itens.getQuantidade(i), 4);
+            xml.append("</qCom>");
+            xml.append("<vUnCom>");
+            escreverDecimal(xml, itens.getValorUnitario(i), 2);
+            xml.append("</vUnCom>");
+            xml.append("<vProd>");
+            escreverDecimal(xml, itens.getValorTotal(i), 2);
+            xml.append("</vProd>");
+            xml.append("</prod>");
+            xml.append("</det>");
+        }
+
+        // Totais
+        xml.append("<total>");
+        xml.append("<vDC>");
+        escreverDecimal(xml, dados.getValorTotal(), 2);
+        xml.append("</vDC>");
+        xml.append("</total>");
+
+        xml.append("<transp>");
+        xml.append("<modFrete>").append(dados.getModalidadeFrete()).append("</modFrete>");
+        xml.append("</transp>");
+
+        xml.append("<infAdic>");
+        if (dados.getCodigoRastreio() != null && !dados.getCodigoRastreio().isEmpty()) {
+            xml.append("<infCpl>Código de Rastreio: ").append(dados.getCodigoRastreio()).append("</infCpl>");
+        }
+        xml.append("</infAdic>");
+
+        xml.append("</infDCe>");
+    }
+
+    private static void escreverEndereco(StringBuilder xml, String logradouro, String numero, String complemento,
+                                         String bairro, String codigoMunicipio, String municipio, String uf, String cep) {
+        xml.append("<xLgr>");
+        escapar(xml, logradouro);
+        xml.append("</xLgr>");
+        xml.append("<nro>").append(numero).append("</nro>");
+        if (complemento != null && !complemento.isEmpty()) {
+            xml.append("<xCpl>");
+            escapar(xml, complemento);
+            xml.append("</xCpl>");
+        }
+        xml.append("<xBairro>");
+        escapar(xml, bairro);
+        xml.append("</xBairro>");
+        xml.append("<cMun>").append(codigoMunicipio).append("</cMun>");
+        xml.append("<xMun>");
+        escapar(xml, municipio);
+        xml.append("</xMun>");
+        xml.append("<UF>").append(uf).append("</UF>");
+        xml.append("<CEP>");
+        for (int i = 0; i < cep.length(); i++) {
+            char c = cep.charAt(i);
+            if (c != '-') {
+                xml.append(c);
+            }
+        }
+        xml.append("</CEP>");
+    }
+
+    /**
+     * Chave de acesso de 44 dígitos: UF(2) + AAMM(4) + CNPJ(14) + Mod(2) + Série(3) + Número(9)
+     * + TpEmis(1) + CódigoNum(8) + DV(1).
+     */
+    static char[] gerarChaveAcesso(DadosDCeCompacta dados) {
+        String cnpj = dados.getRemetenteCNPJ();
+        if (cnpj == null || cnpj.length() != 14) {
+            throw new IllegalArgumentException("CNPJ do remetente deve ter 14 dígitos: " + cnpj);
+        }
+
+        char[] chave = new char[44];
+        digitos(chave, 0, dados.getCodigoUF(), 2);
+        digitos(chave, 2, dados.getDataEmissao().getYear() % 100, 2);
+        digitos(chave, 4, dados.getDataEmissao().getMonthValue(), 2);
+        cnpj.getChars(0, 14, chave, 6);
+        digitos(chave, 20, dados.getModelo(), 2);
+        digitos(chave, 22, dados.getSerie(), 3);
+        digitos(chave, 25, dados.getNumero(), 9);
+        digitos(chave, 34, dados.getTipoEmissao(), 1);
+        digitos(chave, 35, dados.getCodigoNumerico(), 8);
+
+        // Módulo 11 com pesos de 2 a 9 da direita para a esquerda
+        int soma = 0;
+        int peso = 2;
+        for (int i = 42; i >= 0; i--) {
+            soma += (chave[i] - '0') * peso;
+            peso = peso == 9 ? 2 : peso + 1;
+        }
+        int dv = 11 - soma % 11;
+        chave[43] = (char) ('0' + (dv >= 10 ? 0 : dv));
+        return chave;
+    }
+
+    private static void digitos(char[] destino, int inicio, long valor, int tamanho) {
+        for (int i = inicio + tamanho - 1; i >= inicio; i--) {
+            destino[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+    }
+
+    private static void escreverDataHora(StringBuilder xml, LocalDateTime data) {
+        zeros(xml, data.getYear(), 4);
+        xml.append('-');
+        zeros(xml, data.getMonthValue(), 2);
+        xml.append('-');
+        zeros(xml, data.getDayOfMonth(), 2);
+        xml.append('T');
+        zeros(xml, data.getHour(), 2);
+        xml.append(':');
+        zeros(xml, data.getMinute(), 2);
+        xml.append(':');
+        zeros(xml, data.getSecond(), 2);
+    }
+
+    /**
+     * Escreve um valor escalado (ex: centavos com 2 casas) com ponto decimal.
+     */
+    static void escreverDecimal(StringBuilder xml, long valor, int casasDecimais) {
+        if (valor < 0) {
+            xml.append('-');
+            valor = -valor;
+        }
+        long escala = POTENCIAS[casasDecimais];
+        xml.append(valor / escala).append('.');
+        zeros(xml, valor % escala, casasDecimais);
+    }
+
+    private static void zeros(StringBuilder xml, long valor, int tamanho) {
+        for (int i = tamanho - 1; i > 0 && valor < POTENCIAS[i]; i--) {
+            xml.append('0');
+        }
+        xml.append(valor);
+    }
+
+    /**
+     * Escapa & < > " ' copiando o texto apenas se houver algum desses caracteres.
+     */
+    private static void escapar(StringBuilder xml, String texto) {
+        if (texto == null) {
+            return;
+        }
+        int inicio = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            String entidade;
+            switch (texto.charAt(i)) {
+                case '&': entidade = "&amp;"; break;
+                case '<': entidade = "&lt;"; break;
+                case '>': entidade = "&gt;"; break;
+                case '"': entidade = "&quot;"; break;
+                case '\'': entidade = "&apos;"; break;
+                default: continue;
+            }
+            xml.append(texto, inicio, i).append(entidade);
+            inicio = i + 1;
+        }
+        xml.append(texto, inicio, texto.length());
+    }
+
+    private static int estimarTamanho(DadosDCeCompacta dados) {
+        return 1400 + 220 * dados.getItens().tamanho();
+    }
+}
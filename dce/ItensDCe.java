@@ -0,0 +1,110 @@
+package br.gov.sefaz.dce;
+
+import java.util.Arrays;
+
+/**
+ * Itens da DC-e em formato colunar, para geração em massa.
+ *
+ * Em vez de um objeto {@link ItemDCe} com três BigDecimal por item, cada coluna é um
+ * array: quantidades em décimos de milésimo (qCom com 4 casas) e valores em centavos.
+ * Os arrays crescem conforme os itens são adicionados e podem ser reaproveitados
+ * com {@link #limpar()}.
+ */
+public class ItensDCe {
+
+    /** Escala da quantidade: 1 unidade = 10000 (4 casas decimais). */
+    public static final long ESCALA_QUANTIDADE = 10_000L;
+
+    private int tamanho;
+    private String[] codigoProduto;
+    private String[] descricao;
+    private String[] ncm;
+    private long[] quantidade;
+    private long[] valorUnitario;
+    private long[] valorTotal;
+
+    public ItensDCe() {
+        this(8);
+    }
+
+    public ItensDCe(int capacidade) {
+        int c = Math.max(1, capacidade);
+        codigoProduto = new String[c];
+        descricao = new String[c];
+        ncm = new String[c];
+        quantidade = new long[c];
+        valorUnitario = new long[c];
+        valorTotal = new long[c];
+    }
+
+    /**
+     * Adiciona um item.
+     *
+     * @param codigoProduto cProd
+     * @param descricao xProd
+     * @param ncm NCM (8 dígitos)
+     * @param quantidade qCom em décimos de milésimo (ex: 1,5 = 15000)
+     * @param valorUnitario vUnCom em centavos
+     * @param valorTotal vProd em centavos
+     */
+    public void adicionar(String codigoProduto, String descricao, String ncm,
+                          long quantidade, long valorUnitario, long valorTotal) {
+        if (tamanho == this.quantidade.length) {
+            crescer();
+        }
+        this.codigoProduto[tamanho] = codigoProduto;
+        this.descricao[tamanho] = descricao;
+        this.ncm[tamanho] = ncm;
+        this.quantidade[tamanho] = quantidade;
+        this.valorUnitario[tamanho] = valorUnitario;
+        this.valorTotal[tamanho] = valorTotal;
+        tamanho++;
+    }
+
+    private void crescer() {
+        int c = quantidade.length * 2;
+        codigoProduto = Arrays.copyOf(codigoProduto, c);
+        descricao = Arrays.copyOf(descricao, c);
+        ncm = Arrays.copyOf(ncm, c);
+        quantidade = Arrays.copyOf(quantidade, c);
+        valorUnitario = Arrays.copyOf(valorUnitario, c);
+        valorTotal = Arrays.copyOf(valorTotal, c);
+    }
+
+    /**
+     * Remove todos os itens, mantendo os arrays alocados.
+     */
+    public void limpar() {
+        Arrays.fill(codigoProduto, 0, tamanho, null);
+        Arrays.fill(descricao, 0, tamanho, null);
+        Arrays.fill(ncm, 0, tamanho, null);
+        tamanho = 0;
+    }
+
+    /**
+     * Soma de vProd de todos os itens, em centavos.
+     */
+    public long somarValorTotal() {
+        long soma = 0;
+        for (int i = 0; i < tamanho; i++) {
+            soma += valorTotal[i];
+        }
+        return soma;
+    }
+
+    public int tamanho() { return tamanho; }
+
+    public String getCodigoProduto(int i) { return codigoProduto[indice(i)]; }
+    public String getDescricao(int i) { return descricao[indice(i)]; }
+    public String getNcm(int i) { return ncm[indice(i)]; }
+    public long getQuantidade(int i) { return quantidade[indice(i)]; }
+    public long getValorUnitario(int i) { return valorUnitario[indice(i)]; }
+    public long getValorTotal(int i) { return valorTotal[indice(i)]; }
+
+    private int indice(int i) {
+        if (i < 0 || i >= tamanho) {
+            throw new IndexOutOfBoundsException("Item " + i + " de " + tamanho);
+        }
+        return i;
+    }
+}
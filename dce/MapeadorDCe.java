@@ -0,0 +1,141 @@
+package br.gov.sefaz.dce;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converte registros lidos de CSV ou JSON Lines ({@code campo -> valor}) em {@link DadosDCeCompacta}.
+ *
+ * Os campos têm os mesmos nomes das propriedades de {@link DadosDCe} (numero, serie,
+ * remetenteCNPJ, destinatarioCPF, ...) e os itens ficam na lista "itens", com
+ * codigoProduto, descricao, ncm, quantidade, valorUnitario e valorTotal. Valores
+ * decimais usam ponto ("12.50") e a data de emissão é ISO ("2024-03-15T10:30:00").
+ * Se valorTotal não for informado, é a soma dos itens.
+ *
+ * Campos obrigatórios ausentes ou inválidos geram IllegalArgumentException com o nome
+ * do campo. Os endereços do remetente e do destinatário são obrigatórios (exceto complemento).
+ */
+public final class MapeadorDCe {
+
+    private MapeadorDCe() {
+    }
+
+    public static DadosDCeCompacta mapear(Map<String, ?> registro) {
+        DadosDCeCompacta d = new DadosDCeCompacta();
+
+        // Identificação
+        d.setNumeroLote(longo(registro, "numeroLote", 1));
+        d.setCodigoUF(inteiro(registro, "codigoUF", -1));
+        d.setCodigoNumerico(inteiro(registro, "codigoNumerico", -1));
+        d.setModelo(inteiro(registro, "modelo", d.getModelo()));
+        d.setSerie(inteiro(registro, "serie", -1));
+        d.setNumero(inteiro(registro, "numero", -1));
+        d.setDataEmissao(LocalDateTime.parse(obrigatorio(registro, "dataEmissao")));
+        d.setTipoEmissao(inteiro(registro, "tipoEmissao", d.getTipoEmissao()));
+        d.setTipoAmbiente(inteiro(registro, "tipoAmbiente", d.getTipoAmbiente()));
+        d.setFinalidade(inteiro(registro, "finalidade", d.getFinalidade()));
+        d.setProcessoEmissao(inteiro(registro, "processoEmissao", d.getProcessoEmissao()));
+        d.setVersaoAplicativo(texto(registro, "versaoAplicativo"));
+
+        // Remetente
+        d.setRemetenteCNPJ(obrigatorio(registro, "remetenteCNPJ"));
+        d.setRemetenteNome(obrigatorio(registro, "remetenteNome"));
+        d.setRemetenteLogradouro(obrigatorio(registro, "remetenteLogradouro"));
+        d.setRemetenteNumero(obrigatorio(registro, "remetenteNumero"));
+        d.setRemetenteComplemento(texto(registro, "remetenteComplemento"));
+        d.setRemetenteBairro(obrigatorio(registro, "remetenteBairro"));
+        d.setRemetenteCodigoMunicipio(obrigatorio(registro, "remetenteCodigoMunicipio"));
+        d.setRemetenteMunicipio(obrigatorio(registro, "remetenteMunicipio"));
+        d.setRemetenteUF(obrigatorio(registro, "remetenteUF"));
+        d.setRemetenteCEP(obrigatorio(registro, "remetenteCEP"));
+
+        // Destinatário
+        d.setDestinatarioCNPJ(texto(registro, "destinatarioCNPJ"));
+        d.setDestinatarioCPF(texto(registro, "destinatarioCPF"));
+        d.setDestinatarioNome(obrigatorio(registro, "destinatarioNome"));
+        d.setDestinatarioLogradouro(obrigatorio(registro, "destinatarioLogradouro"));
+        d.setDestinatarioNumero(obrigatorio(registro, "destinatarioNumero"));
+        d.setDestinatarioComplemento(texto(registro, "destinatarioComplemento"));
+        d.setDestinatarioBairro(obrigatorio(registro, "destinatarioBairro"));
+        d.setDestinatarioCodigoMunicipio(obrigatorio(registro, "destinatarioCodigoMunicipio"));
+        d.setDestinatarioMunicipio(obrigatorio(registro, "destinatarioMunicipio"));
+        d.setDestinatarioUF(obrigatorio(registro, "destinatarioUF"));
+        d.setDestinatarioCEP(obrigatorio(registro, "destinatarioCEP"));
+
+        // Itens e totais
+        Object itens = registro.get("itens");
+        if (!(itens instanceof List<?> lista) || lista.isEmpty()) {
+            throw new IllegalArgumentException("DC-e sem itens");
+        }
+        for (Object o : lista) {
+            if (!(o instanceof Map<?, ?> item)) {
+                throw new IllegalArgumentException("Item inválido: " + o);
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, ?> campos = (Map<String, ?>) item;
+            d.getItens().adicionar(obrigatorio(campos, "codigoProduto"), obrigatorio(campos, "descricao"),
+                    obrigatorio(campos, "ncm"), decimal(campos, "quantidade", 4),
+                    decimal(campos, "valorUnitario", 2), decimal(campos, "valorTotal", 2));
+        }
+        d.setValorTotal(texto(registro, "valorTotal") != null
+                ? decimal(registro, "valorTotal", 2) : d.getItens().somarValorTotal());
+
+        // Transporte
+        d.setModalidadeFrete(inteiro(registro, "modalidadeFrete", d.getModalidadeFrete()));
+        d.setCodigoRastreio(texto(registro, "codigoRastreio"));
+        return d;
+    }
+
+    private static String texto(Map<String, ?> registro, String campo) {
+        Object valor = registro.get(campo);
+        if (valor == null) {
+            return null;
+        }
+        String s = valor.toString().trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static String obrigatorio(Map<String, ?> registro, String campo) {
+        String valor = texto(registro, campo);
+        if (valor == null) {
+            throw new IllegalArgumentException("Campo obrigatório ausente: " + campo);
+        }
+        return valor;
+    }
+
+    /**
+     * Campo inteiro; padrão negativo indica campo obrigatório.
+     */
+    private static int inteiro(Map<String, ?> registro, String campo, int padrao) {
+        return (int) longo(registro, campo, padrao);
+    }
+
+    private static long longo(Map<String, ?> registro, String campo, long padrao) {
+        String valor = padrao < 0 ? obrigatorio(registro, campo) : texto(registro, campo);
+        if (valor == null) {
+            return padrao;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Campo " + campo + " inválido: " + valor);
+        }
+    }
+
+    /**
+     * Valor decimal escalado (4 casas = décimos de milésimo, 2 casas = centavos), HALF_UP
+     * como em {@link DadosDCeCompacta#de(DadosDCe)}.
+     */
+    private static long decimal(Map<String, ?> registro, String campo, int casasDecimais) {
+        String valor = obrigatorio(registro, campo);
+        try {
+            return new BigDecimal(valor).setScale(casasDecimais, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Campo " + campo + " inválido: " + valor);
+        }
+    }
+}
@@ -4,9 +4,14 @@ import com.exemplo.controlemesas.dto.ConfiguracaoEnderecoDTO;
 import com.exemplo.controlemesas.model.ComandaResumo;
 import com.exemplo.controlemesas.model.ItemComandaResumo;
 import com.exemplo.controlemesas.services.ConfiguracaoService;
+import com.sefaz.nfe.Ambiente;
+import com.sefaz.nfe.ContextoEmissao;
+import com.sefaz.nfe.TotaisNFe;
+import com.sefaz.nfe.Uf;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -19,9 +24,50 @@ public class NfeXmlBuilder {
 
     private static final DateTimeFormatter FORMATO_DATA_EMISSAO = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
     private static final Random RANDOM = new Random();
+    /** Contexto das versões sem {@link ContextoEmissao}: NFC-e série 1, SP homologação. */
+    private static final ContextoEmissao CONTEXTO_PADRAO = ContextoEmissao.of(Ambiente.HOMOLOGACAO, Uf.SP, 65, 1);
 
     // ✅ Método antigo restaurado (compatível com NfeService)
     public static String buildNFe(ComandaResumo resumo, ConfiguracaoService cfg) {
+        return buildNFe(resumo, cfg, CONTEXTO_PADRAO);
+    }
+
+    /**
+     * Gera a NFC-e com ambiente, UF, modelo, série e tpEmis do contexto do emitente.
+     */
+    public static String buildNFe(ComandaResumo resumo, ConfiguracaoService cfg, ContextoEmissao contexto) {
+        if (contexto.getTipoEmissao() == 9) {
+            throw new IllegalArgumentException("Contingência offline (tpEmis=9): use buildNFeContingenciaOffline");
+        }
+        return construir(resumo, cfg, contexto, null, null);
+    }
+
+    /**
+     * Gera a NFC-e em contingência offline (tpEmis=9).
+     *
+     * O QR Code offline depende do DigestValue da assinatura: após assinar o XML,
+     * chame {@link #aplicarQRCodeOffline(String, ConfiguracaoService)} antes de imprimir o DANFE.
+     *
+     * @param justificativa Motivo da entrada em contingência (15 a 256 caracteres)
+     */
+    public static String buildNFeContingenciaOffline(ComandaResumo resumo, ConfiguracaoService cfg, String justificativa) {
+        return buildNFeContingenciaOffline(resumo, cfg, CONTEXTO_PADRAO, justificativa);
+    }
+
+    /**
+     * Gera a NFC-e em contingência offline (tpEmis=9) no ambiente e UF do contexto.
+     */
+    public static String buildNFeContingenciaOffline(ComandaResumo resumo, ConfiguracaoService cfg,
+                                                     ContextoEmissao contexto, String justificativa) {
+        if (justificativa == null || justificativa.trim().length() < 15 || justificativa.trim().length() > 256) {
+            throw new IllegalArgumentException("Justificativa da contingência deve ter de 15 a 256 caracteres");
+        }
+        ZonedDateTime dhCont = ZonedDateTime.now(ZoneId.of("America/Sao_Paulo"));
+        return construir(resumo, cfg, contexto.comTipoEmissao(9), dhCont, justificativa.trim());
+    }
+
+    private static String construir(ComandaResumo resumo, ConfiguracaoService cfg, ContextoEmissao contexto,
+                                    ZonedDateTime dhCont, String xJust) {
         ZonedDateTime data = resumo.getDataFechamento().atZone(ZoneId.systemDefault());
         String dataEmissao = FORMATO_DATA_EMISSAO.format(data);
 
@@ -33,16 +79,16 @@ public class NfeXmlBuilder {
         ConfiguracaoEnderecoDTO end = cfg.getEnderecoEmpresa();
 
         // 2. DADOS DA NOTA
-        String cUF = "35";
+        String cUF = contexto.getCodigoUf();
         String aamm = String.format("%ty%<tm", resumo.getDataFechamento());
-        String mod = "65";
-        String serie = "1";
+        int mod = contexto.getModelo();
+        int serie = contexto.getSerie();
         String nNF = String.format("%09d", resumo.getId());
-        String tpEmis = "1";
+        int tpEmis = contexto.getTipoEmissao();
         String cNF = String.format("%08d", RANDOM.nextInt(100_000_000));
 
         // 3. CÁLCULO DA CHAVE DE ACESSO
-        String baseChave = cUF + aamm + cnpj + mod + String.format("%03d", Integer.parseInt(serie)) + nNF + tpEmis + cNF;
+        String baseChave = cUF + aamm + cnpj + mod + contexto.getSerieChave() + nNF + tpEmis + cNF;
         String cDV = String.valueOf(calcularDigitoVerificador(baseChave));
         String chave = baseChave + cDV;
         String id = "NFe" + chave;
@@ -62,9 +108,13 @@ public class NfeXmlBuilder {
         sb.append("<nNF>").append(Long.parseLong(nNF)).append("</nNF>");
         sb.append("<dhEmi>").append(dataEmissao).append("</dhEmi>");
         sb.append("<tpNF>1</tpNF><idDest>1</idDest><cMunFG>").append(getCodigoMunicipio(end.getCidade())).append("</cMunFG>");
-        sb.append("<tpImp>4</tpImp><tpEmis>").append(tpEmis).append("</tpEmis><cDV>").append(cDV).append("</cDV><tpAmb>2</tpAmb>");
+        sb.append("<tpImp>4</tpImp><tpEmis>").append(tpEmis).append("</tpEmis><cDV>").append(cDV).append("</cDV><tpAmb>").append(contexto.getTpAmb()).append("</tpAmb>");
         sb.append("<finNFe>1</finNFe><indFinal>1</indFinal><indPres>1</indPres>");
         sb.append("<procEmi>0</procEmi><verProc>1.0</verProc>");
+        if (dhCont != null) {
+            sb.append("<dhCont>").append(FORMATO_DATA_EMISSAO.format(dhCont)).append("</dhCont>");
+            sb.append("<xJust>").append(escapar(xJust)).append("</xJust>");
+        }
         sb.append("</ide>");
 
         // emit - Emitente
@@ -93,7 +143,7 @@ public class NfeXmlBuilder {
 
         // det - Detalhes dos Produtos
         int item = 1;
-        BigDecimal totalProdutos = BigDecimal.ZERO;
+        TotaisNFe totais = new TotaisNFe();
         List<ItemComandaResumo> itens = resumo.getItens() == null ? java.util.Collections.emptyList() : resumo.getItens();
         for (ItemComandaResumo i : itens) {
             String ncm = safeNcm(i.getNcm());
@@ -102,53 +152,45 @@ public class NfeXmlBuilder {
             String cst = safe(i.getCst(), "102");
             boolean csosnFormat = cst != null && cst.length() == 3;
 
+            // Impostos do item calculados em centavos; os totais são a soma exata dos valores escritos
+            long vProd = TotaisNFe.escalar(i.getSubtotal(), TotaisNFe.CASAS_VALOR);
+            long pICMS = csosnFormat ? 0 : TotaisNFe.escalar(i.getAliqIcms(), TotaisNFe.CASAS_ALIQUOTA);
+            totais.adicionarItem(vProd, !csosnFormat, pICMS, 0, 0);
+
             sb.append("<det nItem=\"").append(item++).append("\">");
             sb.append("<prod><cProd>").append(i.getItemNo()).append("</cProd><xProd>").append(i.getDescricao()).append("</xProd>");
             sb.append("<NCM>").append(ncm).append("</NCM><CFOP>").append(cfop).append("</CFOP>");
             sb.append("<uCom>").append(i.getUnMedida()).append("</uCom><qCom>").append(fmt(i.getQuantidade())).append("</qCom>");
-            sb.append("<vUnCom>").append(fmt(i.getPrecoUnitario())).append("</vUnCom><vProd>").append(fmt(i.getSubtotal())).append("</vProd><indTot>1</indTot></prod>");
+            sb.append("<vUnCom>").append(fmt(i.getPrecoUnitario())).append("</vUnCom><vProd>");
+            TotaisNFe.escreverDecimal(sb, vProd, TotaisNFe.CASAS_VALOR);
+            sb.append("</vProd><indTot>1</indTot></prod>");
 
-            sb.append("<imposto>");
+            sb.append("<imposto><vTotTrib>");
+            TotaisNFe.escreverDecimal(sb, totais.getItemValorTributosAproximados(), TotaisNFe.CASAS_VALOR);
+            sb.append("</vTotTrib>");
             if (csosnFormat) {
                 sb.append("<ICMS><ICMSSN102><orig>").append(origem).append("</orig><CSOSN>").append(cst).append("</CSOSN></ICMSSN102></ICMS>");
             } else {
                 sb.append("<ICMS><ICMS00><orig>").append(origem).append("</orig><CST>").append(cst).append("</CST>");
-                sb.append("<modBC>0</modBC><vBC>").append(fmt(i.getSubtotal())).append("</vBC>");
-                sb.append("<pICMS>").append(fmt(i.getAliqIcms())).append("</pICMS><vICMS>").append(fmt(i.getValorIcms())).append("</vICMS></ICMS00></ICMS>");
+                sb.append("<modBC>0</modBC><vBC>");
+                TotaisNFe.escreverDecimal(sb, totais.getItemValorBaseIcms(), TotaisNFe.CASAS_VALOR);
+                sb.append("</vBC><pICMS>");
+                escreverAliquota(sb, pICMS);
+                sb.append("</pICMS><vICMS>");
+                TotaisNFe.escreverDecimal(sb, totais.getItemValorIcms(), TotaisNFe.CASAS_VALOR);
+                sb.append("</vICMS></ICMS00></ICMS>");
             }
 
             // PIS/COFINS - usa CST 49 (Outras Operações) para Simples Nacional com alíquota zero
             sb.append("<PIS><PISOutr><CST>49</CST><vBC>0.00</vBC><pPIS>0.00</pPIS><vPIS>0.00</vPIS></PISOutr></PIS>");
             sb.append("<COFINS><COFINSOutr><CST>49</CST><vBC>0.00</vBC><pCOFINS>0.00</pCOFINS><vCOFINS>0.00</vCOFINS></COFINSOutr></COFINS>");
             sb.append("</imposto></det>");
-
-            BigDecimal subtotal = i.getSubtotal() == null ? BigDecimal.ZERO : i.getSubtotal();
-            totalProdutos = totalProdutos.add(subtotal);
         }
 
-        // total - Totais da Nota (NFe 4.0 - ordem EXATA conforme schema)
-        sb.append("<total><ICMSTot>");
-        sb.append("<vBC>0.00</vBC>");           // Base de cálculo ICMS
-        sb.append("<vICMS>0.00</vICMS>");       // Valor total do ICMS
-        sb.append("<vICMSDeson>0.00</vICMSDeson>"); // Valor ICMS desonerado
-        sb.append("<vFCP>0.00</vFCP>");         // FCP (Fundo de Combate à Pobreza)
-        sb.append("<vBCST>0.00</vBCST>");       // Base de cálculo ICMS ST
-        sb.append("<vST>0.00</vST>");           // Valor total do ICMS ST
-        sb.append("<vFCPST>0.00</vFCPST>");     // FCP retido ST
-        sb.append("<vFCPSTRet>0.00</vFCPSTRet>"); // FCP retido anteriormente por ST
-        sb.append("<vProd>").append(totalProdutos).append("</vProd>"); // Valor total dos produtos
-        sb.append("<vFrete>0.00</vFrete>");     // Valor total do frete
-        sb.append("<vSeg>0.00</vSeg>");         // Valor total do seguro
-        sb.append("<vDesc>0.00</vDesc>");       // Valor total de desconto
-        sb.append("<vII>0.00</vII>");           // Imposto de Importação
-        sb.append("<vIPI>0.00</vIPI>");         // Valor total do IPI
-        sb.append("<vIPIDevol>0.00</vIPIDevol>"); // IPI devolvido
-        sb.append("<vPIS>0.00</vPIS>");         // Valor total do PIS
-        sb.append("<vCOFINS>0.00</vCOFINS>");   // Valor total do COFINS
-        sb.append("<vOutro>0.00</vOutro>");     // Outras despesas acessórias
-        sb.append("<vNF>").append(resumo.getTotal()).append("</vNF>"); // Valor total da NF-e
-        sb.append("<vTotTrib>0.00</vTotTrib>"); // Total aproximado dos tributos (Lei 12.741/12)
-        sb.append("</ICMSTot></total>");
+        // total - Totais da Nota (NFe 4.0 - ordem EXATA conforme schema), vNF = soma dos itens
+        sb.append("<total>");
+        totais.escreverICMSTot(sb);
+        sb.append("</total>");
 
         // transp - Informações de Transporte (obrigatório NFCe)
         sb.append("<transp><modFrete>9</modFrete></transp>"); // 9=Sem frete
@@ -158,7 +200,9 @@ public class NfeXmlBuilder {
         sb.append("<pag><detPag>");
         sb.append("<indPag>0</indPag>"); // Pagamento à vista
         sb.append("<tPag>01</tPag>"); // Dinheiro
-        sb.append("<vPag>").append(resumo.getTotal()).append("</vPag>");
+        sb.append("<vPag>");
+        TotaisNFe.escreverDecimal(sb, totais.getValorNota(), TotaisNFe.CASAS_VALOR);
+        sb.append("</vPag>");
         sb.append("<vTroco>0.00</vTroco>"); // Troco obrigatório quando tPag=01
         sb.append("</detPag></pag>");
 
@@ -168,7 +212,8 @@ public class NfeXmlBuilder {
         sb.append("</infNFe>");
         
         // ===== QR CODE (OBRIGATÓRIO PARA NFCe) =====
-        String qrCode = gerarQRCode(chave, cfg);
+        // Em contingência offline o QR Code é preenchido após a assinatura (usa o DigestValue)
+        String qrCode = dhCont == null ? gerarQRCode(chave, cfg, contexto) : "";
         sb.append("<infNFeSupl>");
         sb.append("<qrCode><![CDATA[").append(qrCode).append("]]></qrCode>");
         sb.append("</infNFeSupl>");
@@ -184,12 +229,14 @@ public class NfeXmlBuilder {
      * 
      * @param chave Chave de acesso da NFCe (44 dígitos)
      * @param cfg Serviço de configuração para obter CSC
+     * @param contexto Contexto de emissão (tpAmb e URL de consulta da UF)
      * @return URL do QR Code
      */
-    private static String gerarQRCode(String chave, ConfiguracaoService cfg) {
+    private static String gerarQRCode(String chave, ConfiguracaoService cfg, ContextoEmissao contexto) {
         try {
             // Configurações
-            String tpAmb = "2"; // Homologação
+            int tpAmb = contexto.getTpAmb();
+            String urlQrCode = urlQrCode(contexto);
             String cDest = ""; // Vazio para NFCe sem destinatário
             String dhEmi = java.time.ZonedDateTime.now(ZoneId.of("America/Sao_Paulo"))
                     .format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME);
@@ -216,16 +263,88 @@ public class NfeXmlBuilder {
             }
             String cHashQRCode = hexString.toString().toUpperCase();
             
-            // Monta URL do QR Code (SP Homologação)
-            String urlQRCode = "https://www.homologacao.nfce.fazenda.sp.gov.br/NFCeConsultaPublica/Paginas/ConsultaQRCode.aspx";
-            
-            return urlQRCode + "?p=" + chave + "|" + tpAmb + "|" + idCSC + "|" + cHashQRCode;
+            return urlQrCode + "?p=" + chave + "|" + tpAmb + "|" + idCSC + "|" + cHashQRCode;
             
         } catch (Exception e) {
             throw new RuntimeException("Erro ao gerar QR Code da NFCe: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Preenche o QR Code (versão 2) da NFC-e emitida em contingência offline.
+     * URL: chNFe|2|tpAmb|diaEmi|vNF|digVal(hex)|idCSC|hash
+     *
+     * O infNFeSupl não faz parte do conteúdo assinado, portanto a assinatura continua válida.
+     *
+     * @param xmlAssinado NFC-e assinada gerada por {@link #buildNFeContingenciaOffline}
+     * @param cfg Serviço de configuração para obter CSC
+     * @return XML assinado com o QR Code
+     */
+    public static String aplicarQRCodeOffline(String xmlAssinado, ConfiguracaoService cfg) {
+        return aplicarQRCodeOffline(xmlAssinado, cfg, CONTEXTO_PADRAO);
+    }
+
+    /**
+     * Preenche o QR Code offline com a URL de consulta da UF do contexto.
+     */
+    public static String aplicarQRCodeOffline(String xmlAssinado, ConfiguracaoService cfg, ContextoEmissao contexto) {
+        try {
+            String chave = extrair(xmlAssinado, "Id=\"NFe", "\"");
+            String tpAmb = extrair(xmlAssinado, "<tpAmb>", "</tpAmb>");
+            String dhEmi = extrair(xmlAssinado, "<dhEmi>", "</dhEmi>");
+            String vNF = extrair(xmlAssinado, "<vNF>", "</vNF>");
+            String digestValue = extrair(xmlAssinado, "DigestValue>", "</");
+
+            String idCSC = cfg.get("nfce.csc.id", "000001");
+            String csc = cfg.get("nfce.csc.codigo", "");
+            if (csc.isEmpty()) {
+                throw new IllegalStateException("CSC não configurado! Configure nfce.csc.codigo no banco.");
+            }
+
+            String parametros = chave + "|2|" + tpAmb + "|" + dhEmi.substring(8, 10) + "|" + vNF + "|"
+                    + hex(digestValue.getBytes(StandardCharsets.UTF_8)) + "|" + Integer.parseInt(idCSC);
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            String cHashQRCode = hex(md.digest((parametros + csc).getBytes(StandardCharsets.UTF_8)));
+
+            String qrCode = urlQrCode(contexto) + "?p=" + parametros + "|" + cHashQRCode;
+            // A assinatura pode ter serializado o qrCode vazio como <qrCode/>
+            int inicio = xmlAssinado.indexOf("<qrCode");
+            int fim = xmlAssinado.startsWith("<qrCode/>", inicio)
+                    ? inicio + "<qrCode/>".length()
+                    : xmlAssinado.indexOf("</qrCode>", inicio) + "</qrCode>".length();
+            return xmlAssinado.substring(0, inicio) + "<qrCode><![CDATA[" + qrCode + "]]></qrCode>" + xmlAssinado.substring(fim);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Erro ao gerar QR Code offline da NFCe: " + e.getMessage(), e);
+        }
+    }
+
+    private static String urlQrCode(ContextoEmissao contexto) {
+        if (contexto.getUrlQrCode() == null) {
+            throw new IllegalStateException("URL do QR Code não cadastrada para " + contexto.getUf()
+                    + ": use ContextoEmissao.comUrlQrCode");
+        }
+        return contexto.getUrlQrCode();
+    }
+
+    private static String extrair(String xml, String inicio, String fim) {
+        int i = xml.indexOf(inicio);
+        if (i < 0) {
+            throw new IllegalArgumentException(inicio + " não encontrado no XML");
+        }
+        i += inicio.length();
+        return xml.substring(i, xml.indexOf(fim, i)).trim();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hexString = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hexString.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+        return hexString.toString();
+    }
+
     // 🔢 Cálculo do dígito verificador
     private static int calcularDigitoVerificador(String chave43) {
         int soma = 0, peso = 2;
@@ -252,6 +371,10 @@ public class NfeXmlBuilder {
     }
 
     // ⚙️ Funções utilitárias
+    private static String escapar(String texto) {
+        return texto.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
     private static String safe(String value, String fallback) {
         return (value == null || value.isBlank()) ? fallback : value;
     }
@@ -264,6 +387,17 @@ public class NfeXmlBuilder {
         return String.format("%1$8s", onlyDigits).replace(' ', '0');
     }
 
+    /**
+     * pICMS com 2 casas quando a alíquota for inteira em centésimos (18.00), senão com 4 (schema: 2 a 4).
+     */
+    private static void escreverAliquota(StringBuilder sb, long aliquota) {
+        if (aliquota % 100 == 0) {
+            TotaisNFe.escreverDecimal(sb, aliquota / 100, TotaisNFe.CASAS_VALOR);
+        } else {
+            TotaisNFe.escreverDecimal(sb, aliquota, TotaisNFe.CASAS_ALIQUOTA);
+        }
+    }
+
     private static String fmt(BigDecimal value) {
         if (value == null) return "0.00";
         return value.setScale(2, RoundingMode.HALF_UP).toPlainString();
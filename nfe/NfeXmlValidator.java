@@ -1,6 +1,9 @@
 package com.exemplo.controlemesas.nfe;
 
+import com.sefaz.nfe.MetricasSefaz;
+import com.sefaz.nfe.ValidadorRegrasNFe;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.xml.sax.SAXException;
 
@@ -22,13 +25,35 @@ import java.util.List;
 @Service
 public class NfeXmlValidator {
 
+    private final ValidadorRegrasNFe regras = new ValidadorRegrasNFe();
+    private final MetricasSefaz metricas;
+
+    public NfeXmlValidator() {
+        this(MetricasSefaz.DESABILITADO);
+    }
+
+    @Autowired
+    public NfeXmlValidator(MetricasSefaz metricas) {
+        this.metricas = metricas;
+    }
+
     /**
-     * Valida XML da NFCe contra o schema XSD.
+     * Valida XML da NFCe contra o schema XSD (etapa "validacao" das métricas).
      *
      * @param xmlContent Conteúdo XML da NFCe
      * @return true se válido, false se inválido
      */
     public boolean validarXml(String xmlContent) {
+        try {
+            String chave = metricas.isHabilitado() ? MetricasSefaz.extrairChave(xmlContent) : null;
+            return metricas.observar(MetricasSefaz.Etapa.VALIDACAO, chave, () -> validarSchema(xmlContent));
+        } catch (Exception e) {
+            log.error("❌ Erro ao validar XML: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private boolean validarSchema(String xmlContent) {
         try {
             log.info("🔍 Iniciando validação local do XML NFCe contra schema XSD");
             
@@ -102,6 +127,22 @@ public class NfeXmlValidator {
         }
     }
     
+    /**
+     * Confere as regras de negócio da SEFAZ (totais, CFOP, CST/CSOSN x CRT, NCM, nItem)
+     * antes do envio, prevendo o cStat da rejeição sem consumir a cota do webservice.
+     *
+     * @param xmlContent Conteúdo XML da NFCe
+     * @return Resultado com as rejeições previstas (vazio se nenhuma)
+     */
+    public ValidadorRegrasNFe.Resultado validarRegras(String xmlContent) {
+        ValidadorRegrasNFe.Resultado resultado = regras.validar(xmlContent);
+        if (!resultado.isValida()) {
+            log.error("❌ NFCe seria rejeitada pela SEFAZ (cStat {}):", resultado.getCodigoStatus());
+            resultado.rejeicoes().forEach(rejeicao -> log.error("  - {}", rejeicao));
+        }
+        return resultado;
+    }
+
     /**
      * Valida arquivo XML.
      *
@@ -0,0 +1,39 @@
+package com.sefaz.nfe;
+
+/**
+ * Ambiente de emissão (tpAmb).
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public enum Ambiente {
+    PRODUCAO(1), HOMOLOGACAO(2);
+
+    private final int codigo;
+
+    Ambiente(int codigo) {
+        this.codigo = codigo;
+    }
+
+    /** Valor do campo tpAmb. */
+    public int getCodigo() {
+        return codigo;
+    }
+
+    public boolean isHomologacao() {
+        return this == HOMOLOGACAO;
+    }
+
+    /**
+     * Retorna o ambiente correspondente ao tpAmb.
+     *
+     * @throws IllegalArgumentException Se o código não for 1 nem 2
+     */
+    public static Ambiente porCodigo(int codigo) {
+        return switch (codigo) {
+            case 1 -> PRODUCAO;
+            case 2 -> HOMOLOGACAO;
+            default -> throw new IllegalArgumentException("tpAmb inválido: " + codigo);
+        };
+    }
+}
@@ -1,7 +1,7 @@
 package com.sefaz.nfe;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -23,9 +23,11 @@ import javax.xml.transform.stream.StreamResult;
 import java.io.ByteArrayInputStream;
 import java.io.StringWriter;
 import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Realiza a assinatura digital XML conforme padrão NFe.
@@ -35,16 +37,45 @@ import java.util.List;
  * - Algoritmo de digest: SHA1
  * - Canonicalização: Inclusive
  * - Transform: Enveloped
+ *
+ * Qualquer elemento com atributo Id pode ser assinado (infNFe, infEvento, infInut, infDCe),
+ * inclusive vários elementos do mesmo documento em uma única passada.
+ *
+ * XMLs recebidos como String são assinados por {@link AssinaturaIncremental}, sem DOM: a
+ * forma canônica vai direto para o digest e apenas o Signature é acrescentado ao texto
+ * original (idêntico byte a byte ao gerado pelo JSR-105). XMLs fora do subconjunto tratado
+ * (ex: com DOCTYPE) usam o caminho DOM/JSR-105.
  * 
  * @author Comunidade Open Source
  * @version 1.0
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AssinaturaDigital {
 
+    /** Namespaces dos leiautes assinados: NF-e/NFC-e (notas, eventos, inutilização) e DC-e. */
+    private static final Set<String> NAMESPACES = Set.of(
+            "http://www.portalfiscal.inf.br/nfe",
+            "http://www.portalfiscal.inf.br/dce");
+
     private final CertificadoDigital certificadoDigital;
+    private final MetricasSefaz metricas;
+    private volatile boolean incremental = true;
+    private volatile CertificadoCodificado certificadoCodificado;
+
+    /** Certificado já em Base64, reaproveitado enquanto o mesmo certificado estiver carregado. */
+    private record CertificadoCodificado(X509Certificate certificado, String base64) {
+    }
+
+    public AssinaturaDigital(CertificadoDigital certificadoDigital) {
+        this(certificadoDigital, MetricasSefaz.DESABILITADO);
+    }
+
+    @Autowired
+    public AssinaturaDigital(CertificadoDigital certificadoDigital, MetricasSefaz metricas) {
+        this.certificadoDigital = certificadoDigital;
+        this.metricas = metricas;
+    }
 
     /**
      * Assina o XML da NF-e.
@@ -58,51 +89,122 @@ public class AssinaturaDigital {
             throw new IllegalStateException("Certificado digital não foi carregado.");
         }
 
+        String chave = metricas.isHabilitado() ? MetricasSefaz.extrairChave(xml) : null;
+        return metricas.observar(MetricasSefaz.Etapa.ASSINATURA, chave, () -> assinarDocumento(xml, "infNFe", false));
+    }
+
+    /**
+     * Assina outro elemento que possua o atributo Id (ex: infEvento, infInut, infDCe).
+     *
+     * A assinatura é inserida no elemento pai do elemento assinado. Apenas a primeira
+     * ocorrência é assinada; para lotes use {@link #assinarTodos(String, String)}.
+     *
+     * @param xml XML sem assinatura
+     * @param elemento Nome local do elemento a assinar (namespace da NF-e ou da DC-e)
+     * @return XML assinado
+     * @throws Exception Se houver erro na assinatura
+     */
+    public String assinar(String xml, String elemento) throws Exception {
+        if (!certificadoDigital.isCarregado()) {
+            throw new IllegalStateException("Certificado digital não foi carregado.");
+        }
+
+        return metricas.observar(MetricasSefaz.Etapa.ASSINATURA, null, () -> assinarDocumento(xml, elemento, false));
+    }
+
+    /**
+     * Assina todas as ocorrências do elemento em uma única passada (ex: cada infNFe de um
+     * enviNFe, cada infDCe de um enviDCe, cada infEvento de um envEvento).
+     *
+     * O XML é lido uma única vez e o material do certificado (chave privada e KeyInfo)
+     * é preparado uma vez para todas as assinaturas.
+     *
+     * @param xml XML sem assinatura
+     * @param elemento Nome local dos elementos a assinar
+     * @return XML com todos os elementos assinados
+     * @throws Exception Se houver erro na assinatura
+     */
+    public String assinarTodos(String xml, String elemento) throws Exception {
+        if (!certificadoDigital.isCarregado()) {
+            throw new IllegalStateException("Certificado digital não foi carregado.");
+        }
+
+        return metricas.observar(MetricasSefaz.Etapa.ASSINATURA, null, () -> assinarDocumento(xml, elemento, true));
+    }
+
+    /**
+     * Assina todas as ocorrências do elemento em um documento já lido, sem serializá-lo.
+     *
+     * @param doc Documento (namespace-aware)
+     * @param elemento Nome local dos elementos a assinar
+     * @return Quantidade de elementos assinados
+     * @throws Exception Se houver erro na assinatura
+     */
+    public int assinarTodos(Document doc, String elemento) throws Exception {
+        if (!certificadoDigital.isCarregado()) {
+            throw new IllegalStateException("Certificado digital não foi carregado.");
+        }
+
+        return metricas.observar(MetricasSefaz.Etapa.ASSINATURA, null, () -> assinarElementos(doc, elemento, true));
+    }
+
+    /**
+     * Liga ou desliga a assinatura sem DOM (padrão: ligada). Desligada, todo XML passa pelo
+     * JSR-105 e o resultado é re-serializado com a declaração XML.
+     */
+    public void setAssinaturaIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    private String assinarDocumento(String xml, String elemento, boolean todos) throws Exception {
+
         log.debug("Iniciando assinatura do XML");
 
+        if (incremental) {
+            try {
+                return AssinaturaIncremental.assinar(xml, elemento, todos, NAMESPACES, this::material);
+            } catch (AssinaturaIncremental.NaoSuportado e) {
+                log.debug("Assinatura sem DOM não aplicável ({}); usando JSR-105", e.getMessage());
+            }
+        }
+
         // Parse do XML
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware(true);
         DocumentBuilder builder = dbf.newDocumentBuilder();
         Document doc = builder.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
 
-        // Localiza o elemento infNFe (que contém o atributo Id)
-        NodeList infNFeList = doc.getElementsByTagNameNS("http://www.portalfiscal.inf.br/nfe", "infNFe");
-        if (infNFeList.getLength() == 0) {
-            throw new IllegalArgumentException("Elemento infNFe não encontrado no XML");
-        }
+        assinarElementos(doc, elemento, todos);
+
+        // Converte de volta para String
+        return documentToString(doc);
+    }
+
+    private int assinarElementos(Document doc, String elemento, boolean todos) throws Exception {
 
-        Element infNFe = (Element) infNFeList.item(0);
-        String id = infNFe.getAttribute("Id");
-        if (id == null || id.isEmpty()) {
-            throw new IllegalArgumentException("Atributo Id não encontrado em infNFe");
+        // Localiza os elementos a assinar (que contêm o atributo Id)
+        List<Element> alvos = localizar(doc, elemento, todos);
+        if (alvos.isEmpty()) {
+            throw new IllegalArgumentException("Elemento " + elemento + " não encontrado no XML");
         }
 
-        log.debug("Assinando elemento com Id: {}", id);
+        for (Element alvo : alvos) {
+            String id = alvo.getAttribute("Id");
+            if (id == null || id.isEmpty()) {
+                throw new IllegalArgumentException("Atributo Id não encontrado em " + elemento);
+            }
+            // Registra Id como atributo do tipo ID para que a Reference "#Id" seja resolvida
+            alvo.setIdAttribute("Id", true);
+        }
 
-        // Configuração da assinatura
+        // Configuração da assinatura, comum a todos os elementos
         XMLSignatureFactory fac = XMLSignatureFactory.getInstance("DOM");
-
-        // Reference ao elemento a ser assinado
-        Reference ref = fac.newReference(
-                "#" + id,
-                fac.newDigestMethod(DigestMethod.SHA1, null),
-                Collections.singletonList(
-                        fac.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null)
-                ),
-                null,
-                null
-        );
-
-        // SignedInfo
-        SignedInfo si = fac.newSignedInfo(
-                fac.newCanonicalizationMethod(
-                        CanonicalizationMethod.INCLUSIVE,
-                        (C14NMethodParameterSpec) null
-                ),
-                fac.newSignatureMethod(SignatureMethod.RSA_SHA1, null),
-                Collections.singletonList(ref)
-        );
+        DigestMethod digest = fac.newDigestMethod(DigestMethod.SHA1, null);
+        List<Transform> transforms = Collections.singletonList(
+                fac.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null));
+        CanonicalizationMethod c14n = fac.newCanonicalizationMethod(
+                CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null);
+        SignatureMethod metodo = fac.newSignatureMethod(SignatureMethod.RSA_SHA1, null);
 
         // KeyInfo (informações do certificado)
         KeyInfoFactory kif = fac.getKeyInfoFactory();
@@ -110,18 +212,53 @@ public class AssinaturaDigital {
         x509Content.add(certificadoDigital.getCertificate());
         X509Data xd = kif.newX509Data(x509Content);
         KeyInfo ki = kif.newKeyInfo(Collections.singletonList(xd));
-
-        // Cria a assinatura
         PrivateKey privateKey = certificadoDigital.getPrivateKey();
-        DOMSignContext dsc = new DOMSignContext(privateKey, doc.getDocumentElement());
 
-        XMLSignature signature = fac.newXMLSignature(si, ki);
-        signature.sign(dsc);
+        for (Element alvo : alvos) {
+            String id = alvo.getAttribute("Id");
+            log.debug("Assinando elemento com Id: {}", id);
 
-        log.debug("Assinatura digital realizada com sucesso");
+            // Reference ao elemento a ser assinado
+            Reference ref = fac.newReference("#" + id, digest, transforms, null, null);
+            SignedInfo si = fac.newSignedInfo(c14n, metodo, Collections.singletonList(ref));
 
-        // Converte de volta para String
-        return documentToString(doc);
+            // Cria a assinatura no elemento pai
+            DOMSignContext dsc = new DOMSignContext(privateKey, alvo.getParentNode());
+            XMLSignature signature = fac.newXMLSignature(si, ki);
+            signature.sign(dsc);
+        }
+
+        log.debug("Assinatura digital realizada com sucesso ({} elementos)", alvos.size());
+        return alvos.size();
+    }
+
+    private AssinaturaIncremental.Material material() throws Exception {
+        X509Certificate certificado = certificadoDigital.getCertificate();
+        CertificadoCodificado codificado = certificadoCodificado;
+        if (codificado == null || codificado.certificado() != certificado) {
+            codificado = new CertificadoCodificado(certificado,
+                    AssinaturaIncremental.base64(certificado.getEncoded()));
+            certificadoCodificado = codificado;
+        }
+        return new AssinaturaIncremental.Material(certificadoDigital.getPrivateKey(), codificado.base64());
+    }
+
+    /**
+     * Elementos com o nome local informado nos namespaces da NF-e e da DC-e, na ordem do documento.
+     */
+    private static List<Element> localizar(Document doc, String elemento, boolean todos) {
+        NodeList elementos = doc.getElementsByTagNameNS("*", elemento);
+        List<Element> alvos = new ArrayList<>(elementos.getLength());
+        for (int i = 0; i < elementos.getLength(); i++) {
+            Element e = (Element) elementos.item(i);
+            if (NAMESPACES.contains(e.getNamespaceURI())) {
+                alvos.add(e);
+                if (!todos) {
+                    break;
+                }
+            }
+        }
+        return alvos;
     }
 
     /**
@@ -0,0 +1,859 @@
+package com.sefaz.nfe;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * Assinatura XMLDSig em uma única leitura do XML, sem DOM.
+ *
+ * O XML é percorrido uma vez: fora dos elementos assinados o texto é apenas copiado; dentro
+ * deles cada caractere é canonicalizado (C14N inclusiva 1.0, sem comentários) e vai direto
+ * para o digest SHA-1 em blocos, sem materializar a forma canônica. No fechamento do elemento
+ * pai é inserido o {@code Signature}, com os mesmos bytes que o JSR-105 produziria
+ * (a SEFAZ exige a C14N inclusiva, então a canonicalização exclusiva não é aceita).
+ *
+ * O restante do documento é mantido exatamente como recebido. Construções que o XML dos
+ * builders não usa (DOCTYPE, instruções de processamento ou assinaturas aninhadas dentro do
+ * elemento assinado, atributos xml:* herdados) geram {@link NaoSuportado}, e a
+ * {@link AssinaturaDigital} usa o caminho DOM.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+final class AssinaturaIncremental {
+
+    static final String XMLDSIG = "http://www.w3.org/2000/09/xmldsig#";
+    static final String C14N = "http://www.w3.org/TR/2001/REC-xml-c14n-20010315";
+    static final String RSA_SHA1 = XMLDSIG + "rsa-sha1";
+    static final String ENVELOPED = XMLDSIG + "enveloped-signature";
+    static final String SHA1 = XMLDSIG + "sha1";
+    private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+    /**
+     * O JSR-105 quebra o Base64 a cada 76 caracteres com CR LF, serializado como "&amp;#13;\n",
+     * exceto com a propriedade abaixo.
+     */
+    private static final boolean QUEBRAR_LINHAS =
+            !Boolean.getBoolean("com.sun.org.apache.xml.internal.security.ignoreLineBreaks");
+
+    /**
+     * Construção fora do subconjunto tratado; o chamador usa o caminho DOM.
+     */
+    static final class NaoSuportado extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        NaoSuportado(String motivo) {
+            super(motivo, null, false, false);
+        }
+    }
+
+    /**
+     * Chave privada e certificado já em Base64 (com as quebras do JSR-105).
+     */
+    record Material(PrivateKey chave, String certificado) {
+    }
+
+    private final CharSequence xml;
+    private final String elemento;
+    private final boolean todos;
+    private final Set<String> namespaces;
+    private final Callable<Material> fonteMaterial;
+    private final StringBuilder saida;
+    private Material material;
+
+    private Elemento[] pilha = new Elemento[16];
+    private int profundidade;
+    private int copiado;
+    private int encontrados;
+    private int assinados;
+
+    /** Elemento assinado em andamento (null fora dele). */
+    private Alvo alvo;
+
+    private AssinaturaIncremental(CharSequence xml, String elemento, boolean todos, Set<String> namespaces,
+                                  Callable<Material> fonteMaterial) {
+        this.xml = xml;
+        this.elemento = elemento;
+        this.todos = todos;
+        this.namespaces = namespaces;
+        this.fonteMaterial = fonteMaterial;
+        this.saida = new StringBuilder(xml.length() + 2048);
+    }
+
+    /**
+     * Assina a primeira (ou todas as) ocorrência do elemento.
+     *
+     * @param material Chave e certificado, obtidos só na primeira assinatura
+     * @return XML com os Signature inseridos no fim de cada elemento pai
+     * @throws IllegalArgumentException Se o elemento não existir ou não tiver o atributo Id
+     * @throws NaoSuportado Se o XML usar construções fora do subconjunto tratado
+     */
+    static String assinar(CharSequence xml, String elemento, boolean todos, Set<String> namespaces,
+                          Callable<Material> material) throws Exception {
+        return new AssinaturaIncremental(xml, elemento, todos, namespaces, material).executar();
+    }
+
+    /**
+     * Certificado em Base64 como o JSR-105 o serializa no X509Certificate.
+     */
+    static String base64(byte[] dados) {
+        String base64 = Base64.getEncoder().encodeToString(dados);
+        if (!QUEBRAR_LINHAS || base64.length() <= 76) {
+            return base64;
+        }
+        StringBuilder sb = new StringBuilder(base64.length() + base64.length() / 76 * 6);
+        for (int i = 0; i < base64.length(); i += 76) {
+            if (i > 0) {
+                sb.append("&#13;\n");
+            }
+            sb.append(base64, i, Math.min(i + 76, base64.length()));
+        }
+        return sb.toString();
+    }
+
+    private String executar() throws Exception {
+        int n = xml.length();
+        int i = 0;
+        while (i < n && !(assinados > 0 && !todos)) {
+            if (xml.charAt(i) != '<') {
+                int fim = indexOf("<", i);
+                if (fim < 0) {
+                    fim = n;
+                }
+                if (alvo != null) {
+                    alvo.canonico.texto(xml, i, fim, false);
+                } else if (profundidade == 0 && !brancos(i, fim)) {
+                    throw new NaoSuportado("conteúdo fora do elemento raiz");
+                }
+                i = fim;
+            } else if (comeca(i, "<!--")) {
+                i = depois(i + 4, "-->");
+            } else if (comeca(i, "<![CDATA[")) {
+                int fim = indexOf("]]>", i + 9);
+                if (fim < 0 || profundidade == 0) {
+                    throw new NaoSuportado("CDATA");
+                }
+                if (alvo != null) {
+                    alvo.canonico.texto(xml, i + 9, fim, true);
+                }
+                i = fim + 3;
+            } else if (comeca(i, "<!")) {
+                throw new NaoSuportado("DOCTYPE");
+            } else if (comeca(i, "<?")) {
+                if (alvo != null) {
+                    throw new NaoSuportado("instrução de processamento no elemento assinado");
+                }
+                i = depois(i + 2, "?>");
+            } else if (comeca(i, "</")) {
+                i = fimElemento(i);
+            } else {
+                i = inicioElemento(i);
+            }
+        }
+        if (encontrados == 0) {
+            throw new IllegalArgumentException("Elemento " + elemento + " não encontrado no XML");
+        }
+        if (alvo != null || assinados < encontrados) {
+            throw new NaoSuportado("documento incompleto");
+        }
+        return saida.append(xml, copiado, n).toString();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Elementos
+    // ---------------------------------------------------------------------------------------
+
+    private int inicioElemento(int inicio) throws Exception {
+        int n = xml.length();
+        int i = inicio + 1;
+        int fimNome = nome(i);
+        if (fimNome == i) {
+            throw new NaoSuportado("nome de elemento inválido");
+        }
+        Elemento e = new Elemento(xml.subSequence(i, fimNome).toString());
+        i = fimNome;
+
+        boolean vazio;
+        while (true) {
+            i = pularBrancos(i);
+            if (i >= n) {
+                throw new NaoSuportado("tag incompleta");
+            }
+            char c = xml.charAt(i);
+            if (c == '>') {
+                vazio = false;
+                i++;
+                break;
+            }
+            if (c == '/' && i + 1 < n && xml.charAt(i + 1) == '>') {
+                vazio = true;
+                i += 2;
+                break;
+            }
+            int fimAtributo = nome(i);
+            if (fimAtributo == i) {
+                throw new NaoSuportado("atributo inválido");
+            }
+            String nomeAtributo = xml.subSequence(i, fimAtributo).toString();
+            i = pularBrancos(fimAtributo);
+            if (i >= n || xml.charAt(i) != '=') {
+                throw new NaoSuportado("atributo sem valor");
+            }
+            i = pularBrancos(i + 1);
+            if (i >= n || (xml.charAt(i) != '"' && xml.charAt(i) != '\'')) {
+                throw new NaoSuportado("atributo sem aspas");
+            }
+            int fimValor = indexOf(xml.charAt(i) == '"' ? "\"" : "'", i + 1);
+            if (fimValor < 0) {
+                throw new NaoSuportado("atributo sem aspas");
+            }
+            String valor = valorAtributo(i + 1, fimValor);
+            i = fimValor + 1;
+
+            if (nomeAtributo.equals("xmlns")) {
+                e.declarar("", valor);
+            } else if (nomeAtributo.startsWith("xmlns:")) {
+                if (valor.isEmpty()) {
+                    throw new NaoSuportado("namespace vazio");
+                }
+                e.declarar(nomeAtributo.substring(6), valor);
+            } else {
+                if (nomeAtributo.startsWith("xml:")) {
+                    e.atributoXml = true;
+                }
+                e.atributo(nomeAtributo, valor);
+            }
+        }
+
+        empilhar(e);
+        String uri = resolver(prefixo(e.nome), profundidade);
+        if (uri == null) {
+            throw new NaoSuportado("prefixo não declarado");
+        }
+
+        if (alvo == null && (todos || encontrados == 0) && localName(e.nome).equals(elemento)
+                && namespaces.contains(uri)) {
+            iniciarAlvo(e);
+        } else if (alvo != null) {
+            if (localName(e.nome).equals(elemento) && namespaces.contains(uri)) {
+                throw new NaoSuportado("elementos assinados aninhados");
+            }
+            canonicalizarInicio(e, false);
+        }
+
+        if (vazio) {
+            fechar(i);
+        }
+        return i;
+    }
+
+    private int fimElemento(int inicio) throws Exception {
+        int i = inicio + 2;
+        int fimNome = nome(i);
+        i = pularBrancos(fimNome);
+        if (profundidade == 0 || i >= xml.length() || xml.charAt(i) != '>'
+                || !pilha[profundidade - 1].nome.contentEquals(xml.subSequence(inicio + 2, fimNome))) {
+            throw new NaoSuportado("tag de fechamento inválida");
+        }
+        fechar(inicio);
+        return i + 1;
+    }
+
+    /**
+     * Fecha o elemento do topo; {@code posicao} é onde inserir os Signature pendentes.
+     */
+    private void fechar(int posicao) throws Exception {
+        Elemento e = pilha[profundidade - 1];
+        if (alvo != null) {
+            Canonico c = alvo.canonico;
+            c.ascii("</");
+            c.texto(e.nome);
+            c.ascii('>');
+            if (profundidade == alvo.profundidade) {
+                pilha[profundidade - 2].pendentes.add(assinatura(alvo));
+                alvo = null;
+            }
+        }
+        if (e.pendentes != null && !e.pendentes.isEmpty()) {
+            saida.append(xml, copiado, posicao);
+            for (String assinatura : e.pendentes) {
+                saida.append(assinatura);
+            }
+            copiado = posicao;
+            assinados += e.pendentes.size();
+        }
+        pilha[--profundidade] = null;
+    }
+
+    private void iniciarAlvo(Elemento e) throws Exception {
+        String id = e.valor("Id");
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Atributo Id não encontrado em " + elemento);
+        }
+        for (int i = 0; i < profundidade; i++) {
+            if (pilha[i].atributoXml) {
+                throw new NaoSuportado("atributo xml:* herdado");
+            }
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c == '&' || c == '<' || c == '>' || c == '"' || c < ' ') {
+                throw new NaoSuportado("Id com caracteres especiais");
+            }
+        }
+        if (profundidade == 1) {
+            throw new NaoSuportado("elemento assinado é a raiz");
+        }
+        encontrados++;
+        Elemento pai = pilha[profundidade - 2];
+        if (pai.pendentes == null) {
+            pai.pendentes = new ArrayList<>(1);
+        }
+        alvo = new Alvo(id, profundidade, emEscopo(profundidade - 1), new Canonico(MessageDigest.getInstance("SHA-1")));
+        canonicalizarInicio(e, true);
+    }
+
+    /**
+     * Tag de início canônica: namespaces (padrão primeiro, depois por prefixo) e atributos
+     * ordenados por (URI do namespace, nome local).
+     */
+    private void canonicalizarInicio(Elemento e, boolean apice) throws NaoSuportado {
+        Canonico c = alvo.canonico;
+        c.ascii('<');
+        c.texto(e.nome);
+
+        if (apice) {
+            // No elemento assinado são renderizados todos os namespaces em escopo
+            for (Map.Entry<String, String> ns : emEscopo(profundidade).entrySet()) {
+                if (!ns.getKey().isEmpty() || !ns.getValue().isEmpty()) {
+                    c.namespace(ns.getKey(), ns.getValue());
+                }
+            }
+        } else if (e.declaracoes != null) {
+            // Nos descendentes, apenas o que difere do elemento pai
+            List<String[]> renderizar = new ArrayList<>(e.declaracoes.size());
+            for (String[] d : e.declaracoes) {
+                String doPai = resolver(d[0], profundidade - 1);
+                if (!d[1].equals(doPai == null ? "" : doPai)) {
+                    renderizar.add(d);
+                }
+            }
+            renderizar.sort(Comparator.comparing(d -> d[0]));
+            for (String[] d : renderizar) {
+                c.namespace(d[0], d[1]);
+            }
+        }
+
+        if (e.atributos != null) {
+            int total = e.atributos.size() / 2;
+            String[][] ordenados = new String[total][];
+            for (int i = 0; i < total; i++) {
+                String nome = e.atributos.get(2 * i);
+                String prefixo = prefixo(nome);
+                String uri = prefixo.isEmpty() ? "" : resolver(prefixo, profundidade);
+                if (uri == null) {
+                    throw new NaoSuportado("prefixo não declarado");
+                }
+                ordenados[i] = new String[]{uri, localName(nome), nome, e.atributos.get(2 * i + 1)};
+            }
+            if (total > 1) {
+                Arrays.sort(ordenados, Comparator.<String[], String>comparing(a -> a[0]).thenComparing(a -> a[1]));
+            }
+            for (String[] a : ordenados) {
+                c.ascii(' ');
+                c.texto(a[2]);
+                c.ascii("=\"");
+                c.atributo(a[3]);
+                c.ascii('"');
+            }
+        }
+        c.ascii('>');
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Assinatura
+    // ---------------------------------------------------------------------------------------
+
+    private String assinatura(Alvo a) throws Exception {
+        String digest = Base64.getEncoder().encodeToString(a.canonico.digest());
+
+        // SignedInfo herda os namespaces com prefixo do elemento pai do Signature
+        StringBuilder herdados = new StringBuilder();
+        for (Map.Entry<String, String> ns : a.escopoPai.entrySet()) {
+            if (!ns.getKey().isEmpty()) {
+                herdados.append(" xmlns:").append(ns.getKey()).append("=\"");
+                Canonico.escaparAtributo(ns.getValue(), herdados);
+                herdados.append('"');
+            }
+        }
+        String signedInfo = "<SignedInfo xmlns=\"" + XMLDSIG + "\"" + herdados + ">" +
+                "<CanonicalizationMethod Algorithm=\"" + C14N + "\"></CanonicalizationMethod>" +
+                "<SignatureMethod Algorithm=\"" + RSA_SHA1 + "\"></SignatureMethod>" +
+                "<Reference URI=\"#" + a.id + "\">" +
+                "<Transforms><Transform Algorithm=\"" + ENVELOPED + "\"></Transform></Transforms>" +
+                "<DigestMethod Algorithm=\"" + SHA1 + "\"></DigestMethod>" +
+                "<DigestValue>" + digest + "</DigestValue>" +
+                "</Reference></SignedInfo>";
+
+        if (material == null) {
+            material = fonteMaterial.call();
+        }
+        Signature rsa = Signature.getInstance("SHA1withRSA");
+        rsa.initSign(material.chave());
+        rsa.update(signedInfo.getBytes(StandardCharsets.UTF_8));
+        String valor = base64(rsa.sign());
+
+        return "<Signature xmlns=\"" + XMLDSIG + "\">" +
+                "<SignedInfo>" +
+                "<CanonicalizationMethod Algorithm=\"" + C14N + "\"/>" +
+                "<SignatureMethod Algorithm=\"" + RSA_SHA1 + "\"/>" +
+                "<Reference URI=\"#" + a.id + "\">" +
+                "<Transforms><Transform Algorithm=\"" + ENVELOPED + "\"/></Transforms>" +
+                "<DigestMethod Algorithm=\"" + SHA1 + "\"/>" +
+                "<DigestValue>" + digest + "</DigestValue>" +
+                "</Reference></SignedInfo>" +
+                "<SignatureValue>" + valor + "</SignatureValue>" +
+                "<KeyInfo><X509Data><X509Certificate>" + material.certificado() + "</X509Certificate></X509Data></KeyInfo>" +
+                "</Signature>";
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Namespaces
+    // ---------------------------------------------------------------------------------------
+
+    private void empilhar(Elemento e) {
+        if (profundidade == pilha.length) {
+            pilha = Arrays.copyOf(pilha, profundidade * 2);
+        }
+        pilha[profundidade++] = e;
+    }
+
+    /**
+     * URI do prefixo nos {@code nivel} primeiros elementos da pilha ("" = namespace padrão).
+     */
+    private String resolver(String prefixo, int nivel) {
+        if (prefixo.equals("xml")) {
+            return XML_NS;
+        }
+        for (int i = nivel - 1; i >= 0; i--) {
+            String uri = pilha[i].declarado(prefixo);
+            if (uri != null) {
+                return uri;
+            }
+        }
+        return prefixo.isEmpty() ? "" : null;
+    }
+
+    /**
+     * Namespaces em escopo nos {@code nivel} primeiros elementos, ordenados por prefixo.
+     */
+    private TreeMap<String, String> emEscopo(int nivel) {
+        TreeMap<String, String> escopo = new TreeMap<>();
+        for (int i = 0; i < nivel; i++) {
+            if (pilha[i].declaracoes != null) {
+                for (String[] d : pilha[i].declaracoes) {
+                    escopo.put(d[0], d[1]);
+                }
+            }
+        }
+        return escopo;
+    }
+
+    private static String prefixo(String nome) {
+        int i = nome.indexOf(':');
+        return i < 0 ? "" : nome.substring(0, i);
+    }
+
+    private static String localName(String nome) {
+        return nome.substring(nome.indexOf(':') + 1);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Leitura
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Valor do atributo normalizado como o parser faria: referências resolvidas e
+     * quebras de linha/tabulações literais convertidas em espaço.
+     */
+    private String valorAtributo(int inicio, int fim) throws NaoSuportado {
+        StringBuilder sb = null;
+        for (int i = inicio; i < fim; i++) {
+            char c = xml.charAt(i);
+            if (c == '&' || c == '<' || c == '\t' || c == '\n' || c == '\r') {
+                sb = new StringBuilder(fim - inicio).append(xml, inicio, i);
+                break;
+            }
+        }
+        if (sb == null) {
+            return xml.subSequence(inicio, fim).toString();
+        }
+        for (int i = inicio + sb.length(); i < fim; i++) {
+            char c = xml.charAt(i);
+            if (c == '<') {
+                throw new NaoSuportado("'<' em atributo");
+            } else if (c == '&') {
+                int fimRef = Canonico.fimReferencia(xml, i, fim);
+                sb.appendCodePoint(Canonico.referencia(xml, i + 1, fimRef));
+                i = fimRef;
+            } else if (c == '\r') {
+                sb.append(' ');
+                if (i + 1 < fim && xml.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (c == '\t' || c == '\n') {
+                sb.append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private int nome(int i) {
+        int n = xml.length();
+        while (i < n) {
+            char c = xml.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '>' || c == '/' || c == '='
+                    || c == '<' || c == '"' || c == '\'') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int pularBrancos(int i) {
+        int n = xml.length();
+        while (i < n && branco(xml.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean brancos(int inicio, int fim) {
+        for (int i = inicio; i < fim; i++) {
+            if (!branco(xml.charAt(i)) && xml.charAt(i) != '\uFEFF') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean branco(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private boolean comeca(int i, String prefixo) {
+        if (i + prefixo.length() > xml.length()) {
+            return false;
+        }
+        for (int k = 0; k < prefixo.length(); k++) {
+            if (xml.charAt(i + k) != prefixo.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String s, int de) {
+        if (xml instanceof String str) {
+            return str.indexOf(s, de);
+        }
+        if (xml instanceof StringBuilder sb) {
+            return sb.indexOf(s, de);
+        }
+        for (int i = de; i + s.length() <= xml.length(); i++) {
+            if (comeca(i, s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int depois(int de, String fim) throws NaoSuportado {
+        int i = indexOf(fim, de);
+        if (i < 0) {
+            throw new NaoSuportado("marcação incompleta");
+        }
+        return i + fim.length();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Estado
+    // ---------------------------------------------------------------------------------------
+
+    private static final class Elemento {
+        final String nome;
+        /** Pares {prefixo, uri} declarados no elemento. */
+        List<String[]> declaracoes;
+        /** Nome e valor normalizado, alternados. */
+        List<String> atributos;
+        boolean atributoXml;
+        /** Signature a inserir antes da tag de fechamento. */
+        List<String> pendentes;
+
+        Elemento(String nome) {
+            this.nome = nome;
+        }
+
+        void declarar(String prefixo, String uri) {
+            if (declaracoes == null) {
+                declaracoes = new ArrayList<>(2);
+            }
+            declaracoes.add(new String[]{prefixo, uri});
+        }
+
+        String declarado(String prefixo) {
+            if (declaracoes != null) {
+                for (String[] d : declaracoes) {
+                    if (d[0].equals(prefixo)) {
+                        return d[1];
+                    }
+                }
+            }
+            return null;
+        }
+
+        void atributo(String nome, String valor) {
+            if (atributos == null) {
+                atributos = new ArrayList<>(4);
+            }
+            atributos.add(nome);
+            atributos.add(valor);
+        }
+
+        String valor(String nome) {
+            if (atributos != null) {
+                for (int i = 0; i < atributos.size(); i += 2) {
+                    if (atributos.get(i).equals(nome)) {
+                        return atributos.get(i + 1);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private record Alvo(String id, int profundidade, TreeMap<String, String> escopoPai, Canonico canonico) {
+    }
+
+    /**
+     * Forma canônica codificada em UTF-8 direto para o digest, em blocos de 8 KB.
+     */
+    static final class Canonico {
+
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[8192];
+        private int posicao;
+
+        Canonico(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        byte[] digest() {
+            descarregar();
+            return digest.digest();
+        }
+
+        void ascii(char c) {
+            if (posicao == buffer.length) {
+                descarregar();
+            }
+            buffer[posicao++] = (byte) c;
+        }
+
+        void ascii(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                ascii(s.charAt(i));
+            }
+        }
+
+        /** Nomes: copiados sem escape. */
+        void texto(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    ascii(c);
+                } else {
+                    i = naoAscii(s, i, s.length());
+                }
+            }
+        }
+
+        void namespace(String prefixo, String uri) {
+            ascii(" xmlns");
+            if (!prefixo.isEmpty()) {
+                ascii(':');
+                texto(prefixo);
+            }
+            ascii("=\"");
+            atributo(uri);
+            ascii('"');
+        }
+
+        /** Valor de atributo já normalizado. */
+        void atributo(String valor) {
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                switch (c) {
+                    case '&' -> ascii("&amp;");
+                    case '<' -> ascii("&lt;");
+                    case '"' -> ascii("&quot;");
+                    case '\t' -> ascii("&#x9;");
+                    case '\n' -> ascii("&#xA;");
+                    case '\r' -> ascii("&#xD;");
+                    default -> {
+                        if (c < 0x80) {
+                            ascii(c);
+                        } else {
+                            i = naoAscii(valor, i, valor.length());
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Texto bruto do documento: normaliza quebras de linha, resolve referências e escapa
+         * &amp;, &lt;, &gt; e CR. Em CDATA não há referências.
+         */
+        void texto(CharSequence xml, int inicio, int fim, boolean cdata) throws NaoSuportado {
+            for (int i = inicio; i < fim; i++) {
+                char c = xml.charAt(i);
+                if (c == '&' && !cdata) {
+                    int fimRef = fimReferencia(xml, i, fim);
+                    caractere(referencia(xml, i + 1, fimRef));
+                    i = fimRef;
+                } else if (c == '\r') {
+                    ascii('\n');
+                    if (i + 1 < fim && xml.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                } else if (c == '&') {
+                    ascii("&amp;");
+                } else if (c == '>') {
+                    ascii("&gt;");
+                } else if (c == '<') {
+                    ascii("&lt;");
+                } else if (c < 0x80) {
+                    ascii(c);
+                } else {
+                    i = naoAscii(xml, i, fim);
+                }
+            }
+        }
+
+        private void caractere(int cp) {
+            switch (cp) {
+                case '&' -> ascii("&amp;");
+                case '<' -> ascii("&lt;");
+                case '>' -> ascii("&gt;");
+                case '\r' -> ascii("&#xD;");
+                default -> utf8(cp);
+            }
+        }
+
+        /**
+         * Posição do ';' da referência que começa em {@code inicio}.
+         */
+        static int fimReferencia(CharSequence xml, int inicio, int limite) throws NaoSuportado {
+            for (int i = inicio + 1; i < limite && i < inicio + 12; i++) {
+                if (xml.charAt(i) == ';') {
+                    return i;
+                }
+            }
+            throw new NaoSuportado("referência inválida");
+        }
+
+        /**
+         * Caractere de uma referência ({@code xml[inicio, fim)} sem '&amp;' e ';').
+         */
+        static int referencia(CharSequence xml, int inicio, int fim) throws NaoSuportado {
+            if (fim - inicio > 1 && xml.charAt(inicio) == '#') {
+                try {
+                    return xml.charAt(inicio + 1) == 'x'
+                            ? Integer.parseInt(xml, inicio + 2, fim, 16)
+                            : Integer.parseInt(xml, inicio + 1, fim, 10);
+                } catch (NumberFormatException e) {
+                    throw new NaoSuportado("referência inválida");
+                }
+            }
+            return switch (xml.subSequence(inicio, fim).toString()) {
+                case "amp" -> '&';
+                case "lt" -> '<';
+                case "gt" -> '>';
+                case "quot" -> '"';
+                case "apos" -> '\'';
+                default -> throw new NaoSuportado("entidade " + xml.subSequence(inicio, fim));
+            };
+        }
+
+        /**
+         * Codifica o caractere não ASCII em {@code i} (par substituto inclusive); retorna o
+         * último índice consumido.
+         */
+        private int naoAscii(CharSequence s, int i, int fim) {
+            char c = s.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < fim && Character.isLowSurrogate(s.charAt(i + 1))) {
+                utf8(Character.toCodePoint(c, s.charAt(i + 1)));
+                return i + 1;
+            }
+            utf8(c);
+            return i;
+        }
+
+        private void utf8(int cp) {
+            if (posicao + 4 > buffer.length) {
+                descarregar();
+            }
+            if (cp < 0x80) {
+                buffer[posicao++] = (byte) cp;
+            } else if (cp < 0x800) {
+                buffer[posicao++] = (byte) (0xC0 | cp >> 6);
+                buffer[posicao++] = (byte) (0x80 | cp & 0x3F);
+            } else if (cp < 0x10000) {
+                buffer[posicao++] = (byte) (0xE0 | cp >> 12);
+                buffer[posicao++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                buffer[posicao++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                buffer[posicao++] = (byte) (0xF0 | cp >> 18);
+                buffer[posicao++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                buffer[posicao++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                buffer[posicao++] = (byte) (0x80 | cp & 0x3F);
+            }
+        }
+
+        private void descarregar() {
+            digest.update(buffer, 0, posicao);
+            posicao = 0;
+        }
+
+        static void escaparAtributo(String valor, StringBuilder sb) {
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                switch (c) {
+                    case '&' -> sb.append("&amp;");
+                    case '<' -> sb.append("&lt;");
+                    case '"' -> sb.append("&quot;");
+                    case '\t' -> sb.append("&#x9;");
+                    case '\n' -> sb.append("&#xA;");
+                    case '\r' -> sb.append("&#xD;");
+                    default -> sb.append(c);
+                }
+            }
+        }
+    }
+}
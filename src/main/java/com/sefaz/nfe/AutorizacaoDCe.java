@@ -0,0 +1,212 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Autorização de DC-e (Declaração de Conteúdo Eletrônica, modelo 59) pelos webservices
+ * DCeRecepcao e DCeRetRecepcao.
+ *
+ * As DC-e são agrupadas em lotes enviDCe de até 50 documentos; todos os infDCe de um
+ * lote são assinados em uma única passada. Os lotes são enviados em sequência e só
+ * depois os recibos são consultados, de forma que o processamento de um lote na SEFAZ
+ * se sobrepõe ao envio dos seguintes. Se o envio de um lote falhar, os recibos dos lotes
+ * já recebidos são consultados antes de propagar a falha ({@link FalhaEnvioLote}), de
+ * forma que o chamador conhece os protocolos e reenvia apenas as DC-e seguintes.
+ *
+ * A comunicação usa o {@link SefazSoapClient}: mesmo pool HTTPS com certificado,
+ * limitador de taxa e novas tentativas da NF-e.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class AutorizacaoDCe {
+
+    /** Quantidade máxima de DC-e por lote enviDCe. */
+    public static final int MAXIMO_DCE_LOTE = 50;
+
+    private final SefazSoapClient sefazClient;
+    private final AssinaturaDigital assinaturaDigital;
+    private final AtomicLong idLote = new AtomicLong(System.currentTimeMillis());
+
+    private int tamanhoLote = MAXIMO_DCE_LOTE;
+    private Duration intervaloConsulta = Duration.ofSeconds(2);
+    private Duration prazoConsulta = Duration.ofSeconds(60);
+
+    @Autowired
+    public AutorizacaoDCe(SefazSoapClient sefazClient, AssinaturaDigital assinaturaDigital) {
+        this.sefazClient = sefazClient;
+        this.assinaturaDigital = assinaturaDigital;
+    }
+
+    /**
+     * Assina, envia e aguarda a autorização das DC-e.
+     *
+     * @param dces Elementos DCe não assinados (com o namespace da DC-e declarado)
+     * @param ambiente Ambiente dos documentos (tpAmb)
+     * @param urlRecepcao URL do webservice DCeRecepcao
+     * @param urlRetRecepcao URL do webservice DCeRetRecepcao
+     * @return Um resultado por lote, na ordem de envio; rejeições do lote retornam sem protocolo
+     * @throws FalhaEnvioLote Se o envio de um lote seguinte ao primeiro falhar; contém os resultados
+     *                        dos lotes anteriores
+     * @throws FalhaSefazException Se algum lote continuar em processamento após o prazo de consulta
+     * @throws Exception Se houver erro na assinatura ou na comunicação
+     */
+    public List<ResultadoAutorizacao> autorizar(List<String> dces, Ambiente ambiente,
+                                                String urlRecepcao, String urlRetRecepcao) throws Exception {
+        List<ResultadoAutorizacao> resultados = new ArrayList<>();
+        for (int inicio = 0; inicio < dces.size(); inicio += tamanhoLote) {
+            List<String> lote = dces.subList(inicio, Math.min(inicio + tamanhoLote, dces.size()));
+            try {
+                resultados.add(enviarLote(lote, urlRecepcao));
+            } catch (Exception e) {
+                if (resultados.isEmpty()) {
+                    throw e;
+                }
+                throw falhaEnvio(e, resultados, inicio, ambiente, urlRetRecepcao);
+            }
+        }
+
+        aguardarProcessamento(resultados, ambiente, urlRetRecepcao);
+        return resultados;
+    }
+
+    /**
+     * Consulta os lotes já recebidos para que os protocolos não se percam com a falha do envio.
+     * Falhas da consulta são anexadas como suprimidas; os lotes ainda pendentes mantêm o recibo.
+     */
+    private FalhaEnvioLote falhaEnvio(Exception causa, List<ResultadoAutorizacao> resultados, int enviadas,
+                                      Ambiente ambiente, String urlRetRecepcao) {
+        FalhaEnvioLote falha = new FalhaEnvioLote(enviadas, resultados, causa);
+        log.warn("Falha no envio do lote {} de DC-e ({}). Consultando os recibos dos lotes anteriores",
+                resultados.size() + 1, causa.toString());
+        try {
+            aguardarProcessamento(resultados, ambiente, urlRetRecepcao);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            falha.addSuppressed(e);
+        } catch (Exception e) {
+            falha.addSuppressed(e);
+        }
+        return falha;
+    }
+
+    private ResultadoAutorizacao enviarLote(List<String> lote, String urlRecepcao) throws Exception {
+        long id = idLote.incrementAndGet();
+        StringBuilder enviDCe = new StringBuilder("<enviDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\">")
+                .append("<idLote>").append(id).append("</idLote>");
+        for (String dce : lote) {
+            enviDCe.append(SefazSoapClient.removerDeclaracaoXml(dce));
+        }
+        enviDCe.append("</enviDCe>");
+
+        String assinado = assinaturaDigital.assinarTodos(enviDCe.toString(), "infDCe");
+
+        log.info("Enviando lote {} com {} DC-e", id, lote.size());
+        return ResultadoAutorizacao.ler(sefazClient.enviarLoteDCe(assinado, urlRecepcao));
+    }
+
+    /**
+     * Consulta os recibos dos lotes recebidos (103) até todos deixarem de estar em processamento.
+     */
+    private void aguardarProcessamento(List<ResultadoAutorizacao> resultados, Ambiente ambiente,
+                                       String urlRetRecepcao) throws Exception {
+        long limite = System.nanoTime() + prazoConsulta.toNanos();
+        while (true) {
+            List<Integer> pendentes = new ArrayList<>();
+            for (int i = 0; i < resultados.size(); i++) {
+                if (resultados.get(i).isPendente()) {
+                    pendentes.add(i);
+                }
+            }
+            if (pendentes.isEmpty()) {
+                return;
+            }
+
+            if (System.nanoTime() + intervaloConsulta.toNanos() - limite > 0) {
+                throw new FalhaSefazException(
+                        pendentes.size() + " lote(s) de DC-e ainda em processamento após " + prazoConsulta.toSeconds() + " s",
+                        FalhaSefazException.Origem.PRAZO, FalhaSefazException.Classificacao.RETENTAVEL,
+                        0, resultados.get(pendentes.get(0)).codigoStatus(), null);
+            }
+            TimeUnit.NANOSECONDS.sleep(intervaloConsulta.toNanos());
+
+            for (int i : pendentes) {
+                String recibo = resultados.get(i).recibo();
+                if (recibo == null) {
+                    throw new IllegalStateException("Resposta " + resultados.get(i).codigoStatus() + " sem número de recibo");
+                }
+                ResultadoAutorizacao consulta = ResultadoAutorizacao.ler(
+                        sefazClient.consultarReciboDCe(recibo, ambiente, urlRetRecepcao));
+                resultados.set(i, consulta.recibo() == null
+                        ? new ResultadoAutorizacao(consulta.codigoStatus(), consulta.mensagem(), recibo, consulta.protocolos())
+                        : consulta);
+            }
+        }
+    }
+
+    /**
+     * Falha no envio de um lote após o envio dos anteriores.
+     *
+     * Os resultados dos lotes anteriores já foram consultados (ou mantêm o recibo, se a
+     * consulta falhou ou o prazo esgotou); as DC-e a partir de {@link #getEnviadas()} não
+     * chegaram à SEFAZ ou devem ser conferidas pela consulta da chave.
+     */
+    public static class FalhaEnvioLote extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int enviadas;
+        private final transient List<ResultadoAutorizacao> resultados;
+
+        public FalhaEnvioLote(int enviadas, List<ResultadoAutorizacao> resultados, Throwable causa) {
+            super("Falha no envio do lote de DC-e a partir do documento " + (enviadas + 1) + ": " + causa.getMessage(),
+                    causa);
+            this.enviadas = enviadas;
+            this.resultados = resultados;
+        }
+
+        /** Quantidade de DC-e nos lotes enviados com sucesso (índice da primeira não enviada). */
+        public int getEnviadas() {
+            return enviadas;
+        }
+
+        /** Um resultado por lote enviado com sucesso, na ordem de envio. */
+        public List<ResultadoAutorizacao> getResultados() {
+            return resultados == null ? List.of() : resultados;
+        }
+    }
+
+    /**
+     * Quantidade de DC-e por lote (1 a 50).
+     */
+    public void setTamanhoLote(int tamanhoLote) {
+        if (tamanhoLote < 1 || tamanhoLote > MAXIMO_DCE_LOTE) {
+            throw new IllegalArgumentException("Tamanho de lote inválido: " + tamanhoLote);
+        }
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    /**
+     * Intervalo entre as rodadas de consulta de recibo.
+     */
+    public void setIntervaloConsulta(Duration intervaloConsulta) {
+        this.intervaloConsulta = intervaloConsulta;
+    }
+
+    /**
+     * Tempo máximo aguardando o processamento dos lotes.
+     */
+    public void setPrazoConsulta(Duration prazoConsulta) {
+        this.prazoConsulta = prazoConsulta;
+    }
+}
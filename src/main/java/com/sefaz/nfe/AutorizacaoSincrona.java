@@ -0,0 +1,163 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Autorização síncrona de NFC-e (indSinc=1), sem a ida e volta da consulta de recibo.
+ *
+ * A nota é enviada em um lote unitário com indSinc=1 e o protNFe da resposta
+ * (cStat 104) é lido diretamente em um {@link ResultadoAutorizacao}.
+ * Quando a SEFAZ decide processar o lote de forma assíncrona (cStat 103),
+ * o recibo é consultado automaticamente até o lote ser processado ou o prazo esgotar.
+ *
+ * Lotes assíncronos de várias notas (ex: transmissão da contingência offline)
+ * usam o mesmo fluxo de consulta em {@link #autorizarLote}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class AutorizacaoSincrona {
+
+    private final SefazSoapClient sefazClient;
+    private final AtomicLong idLote = new AtomicLong(System.currentTimeMillis());
+
+    private Duration intervaloConsulta = Duration.ofSeconds(1);
+    private Duration prazoConsulta = Duration.ofSeconds(30);
+
+    @Autowired
+    public AutorizacaoSincrona(SefazSoapClient sefazClient) {
+        this.sefazClient = sefazClient;
+    }
+
+    /**
+     * Envia a NF-e/NFC-e no modo síncrono, com o ambiente e as URLs do contexto.
+     *
+     * @see #autorizar(String, Ambiente, String, String)
+     */
+    public ResultadoAutorizacao autorizar(String xmlAssinado, ContextoEmissao contexto) throws Exception {
+        return autorizar(xmlAssinado, contexto.getAmbiente(), contexto.getUrlAutorizacao(),
+                contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Envia a NF-e/NFC-e no modo síncrono e retorna o resultado já com o protocolo.
+     *
+     * @param xmlAssinado XML da nota assinado
+     * @param ambiente Ambiente da nota (tpAmb da consulta de recibo)
+     * @param urlAutorizacao URL do webservice NFeAutorizacao4
+     * @param urlRetAutorizacao URL do webservice NFeRetAutorizacao4 (usada apenas se a SEFAZ responder 103)
+     * @return Resultado do lote; rejeições do lote (ex: 225) retornam sem protocolo
+     * @throws FalhaSefazException Se o lote continuar em processamento após o prazo de consulta
+     * @throws Exception Se houver erro na comunicação
+     */
+    public ResultadoAutorizacao autorizar(String xmlAssinado, Ambiente ambiente, String urlAutorizacao,
+                                          String urlRetAutorizacao) throws Exception {
+        String resposta = sefazClient.enviarLoteNFe(xmlAssinado, idLote.incrementAndGet(), true, urlAutorizacao);
+        return concluir(resposta, ambiente, urlRetAutorizacao);
+    }
+
+    /**
+     * Envia um lote assíncrono com o ambiente e as URLs do contexto.
+     *
+     * @see #autorizarLote(List, Ambiente, String, String)
+     */
+    public ResultadoAutorizacao autorizarLote(List<String> xmlsAssinados, ContextoEmissao contexto) throws Exception {
+        return autorizarLote(xmlsAssinados, contexto.getAmbiente(), contexto.getUrlAutorizacao(),
+                contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Envia um lote assíncrono (indSinc=0) de até 50 notas e aguarda o processamento.
+     *
+     * @param xmlsAssinados XMLs das notas assinados
+     * @param ambiente Ambiente das notas (tpAmb da consulta de recibo)
+     * @param urlAutorizacao URL do webservice NFeAutorizacao4
+     * @param urlRetAutorizacao URL do webservice NFeRetAutorizacao4
+     * @return Resultado do lote com um protocolo por nota, ou a rejeição do lote
+     * @throws FalhaSefazException Se o lote continuar em processamento após o prazo de consulta
+     * @throws Exception Se houver erro na comunicação
+     */
+    public ResultadoAutorizacao autorizarLote(List<String> xmlsAssinados, Ambiente ambiente, String urlAutorizacao,
+                                              String urlRetAutorizacao) throws Exception {
+        String resposta = sefazClient.enviarLoteNFe(xmlsAssinados, idLote.incrementAndGet(), false, urlAutorizacao);
+        return concluir(resposta, ambiente, urlRetAutorizacao);
+    }
+
+    /**
+     * Consulta a situação da nota pela chave (NFeConsultaProtocolo4), por exemplo para obter o
+     * protocolo de uma nota já autorizada cujo reenvio foi rejeitado por duplicidade (204).
+     *
+     * @param chave Chave de acesso de 44 dígitos
+     * @param ambiente Ambiente da nota (tpAmb)
+     * @param urlConsultaProtocolo URL do webservice NFeConsultaProtocolo4
+     * @return O protNFe da nota, ou um protocolo sem nProt com o cStat da consulta (ex: 217)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public ResultadoAutorizacao.Protocolo consultarProtocolo(String chave, Ambiente ambiente,
+                                                             String urlConsultaProtocolo) throws Exception {
+        return ResultadoAutorizacao.lerSituacao(sefazClient.consultarProtocolo(chave, ambiente, urlConsultaProtocolo));
+    }
+
+    private ResultadoAutorizacao concluir(String resposta, Ambiente ambiente, String urlRetAutorizacao)
+            throws Exception {
+        ResultadoAutorizacao resultado = ResultadoAutorizacao.ler(resposta);
+
+        if (!ResultadoAutorizacao.CSTAT_LOTE_RECEBIDO.equals(resultado.codigoStatus())) {
+            return resultado;
+        }
+
+        log.info("Lote recebido para processamento assíncrono (cStat 103). Consultando recibo {}", resultado.recibo());
+        return aguardarProcessamento(resultado.recibo(), ambiente, urlRetAutorizacao);
+    }
+
+    /**
+     * Consulta o recibo até o lote deixar de estar em processamento (105).
+     */
+    ResultadoAutorizacao aguardarProcessamento(String recibo, Ambiente ambiente, String urlRetAutorizacao)
+            throws Exception {
+        if (recibo == null) {
+            throw new IllegalStateException("Resposta 103 sem número de recibo");
+        }
+
+        long limite = System.nanoTime() + prazoConsulta.toNanos();
+        while (true) {
+            TimeUnit.NANOSECONDS.sleep(intervaloConsulta.toNanos());
+
+            ResultadoAutorizacao resultado = ResultadoAutorizacao.ler(
+                    sefazClient.consultarRecibo(recibo, ambiente, urlRetAutorizacao));
+            if (!resultado.isPendente()) {
+                return resultado;
+            }
+
+            if (System.nanoTime() + intervaloConsulta.toNanos() - limite > 0) {
+                throw new FalhaSefazException(
+                        "Lote do recibo " + recibo + " ainda em processamento após " + prazoConsulta.toSeconds() + " s",
+                        FalhaSefazException.Origem.PRAZO, FalhaSefazException.Classificacao.RETENTAVEL,
+                        0, resultado.codigoStatus(), null);
+            }
+        }
+    }
+
+    /**
+     * Intervalo entre as consultas de recibo após um cStat 103.
+     */
+    public void setIntervaloConsulta(Duration intervaloConsulta) {
+        this.intervaloConsulta = intervaloConsulta;
+    }
+
+    /**
+     * Tempo máximo aguardando o processamento assíncrono.
+     */
+    public void setPrazoConsulta(Duration prazoConsulta) {
+        this.prazoConsulta = prazoConsulta;
+    }
+}
@@ -8,6 +8,8 @@ import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Enumeration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Gerencia o certificado digital A1 (PFX/P12) para assinatura de NF-e.
@@ -24,10 +26,13 @@ import java.util.Enumeration;
 @Component
 public class CertificadoDigital {
 
+    private static final Pattern CNPJ_NO_CN = Pattern.compile("CN=[^,]*:(\\d{14})");
+
     private KeyStore keyStore;
     private PrivateKey privateKey;
     private X509Certificate certificate;
     private String alias;
+    private String cnpj;
 
     /**
      * Carrega o certificado digital do arquivo PFX/P12.
@@ -64,6 +69,8 @@ public class CertificadoDigital {
 
         // Verifica validade do certificado
         certificate.checkValidity();
+
+        cnpj = extrairCnpj(certificate);
         
         log.info("Certificado carregado com sucesso. Titular: {}", certificate.getSubjectX500Principal().getName());
         log.info("Válido até: {}", certificate.getNotAfter());
@@ -94,7 +101,23 @@ public class CertificadoDigital {
         return alias;
     }
 
+    /**
+     * CNPJ do titular do certificado e-CNPJ (ou null se não identificado).
+     */
+    public String getCnpj() {
+        return cnpj;
+    }
+
     public boolean isCarregado() {
         return certificate != null && privateKey != null;
     }
+
+    /**
+     * Extrai o CNPJ do titular. Certificados ICP-Brasil e-CNPJ usam CN no formato "RAZAO SOCIAL:CNPJ".
+     */
+    static String extrairCnpj(X509Certificate certificado) {
+        String subject = certificado.getSubjectX500Principal().getName();
+        Matcher m = CNPJ_NO_CN.matcher(subject);
+        return m.find() ? m.group(1) : null;
+    }
 }
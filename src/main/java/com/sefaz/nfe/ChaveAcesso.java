@@ -0,0 +1,153 @@
+package com.sefaz.nfe;
+
+/**
+ * Chave de acesso de 44 dígitos de um documento fiscal eletrônico (NF-e, NFC-e, DC-e).
+ *
+ * Formato: UF (2) + AAMM (4) + CNPJ (14) + Mod (2) + Série (3) + Número (9) + TpEmis (1) + Código (8) + DV (1)
+ *
+ * Os campos são decodificados uma única vez na construção, de forma que
+ * consultas posteriores não fazem novo parsing da String.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class ChaveAcesso {
+
+    private final String chave;
+    private final int codigoUf;
+    private final int modelo;
+    private final int serie;
+    private final int numero;
+    private final int tipoEmissao;
+
+    private ChaveAcesso(String chave) {
+        this.chave = chave;
+        this.codigoUf = parseInt(chave, 0, 2);
+        this.modelo = parseInt(chave, 20, 22);
+        this.serie = parseInt(chave, 22, 25);
+        this.numero = parseInt(chave, 25, 34);
+        this.tipoEmissao = parseInt(chave, 34, 35);
+    }
+
+    /**
+     * Cria a chave a partir da String de 44 dígitos.
+     *
+     * Aceita também o valor do atributo Id (ex: "NFe3525..." ou "DCe3525..."),
+     * descartando o prefixo alfabético.
+     *
+     * @param chave Chave de acesso ou Id do documento
+     * @return Chave de acesso validada
+     * @throws IllegalArgumentException Se a chave não tiver 44 dígitos ou o DV for inválido
+     */
+    public static ChaveAcesso of(String chave) {
+        if (chave == null) {
+            throw new IllegalArgumentException("Chave de acesso não informada");
+        }
+
+        String digitos = chave.length() == 47 && Character.isLetter(chave.charAt(0))
+                ? chave.substring(3)
+                : chave;
+
+        if (digitos.length() != 44) {
+            throw new IllegalArgumentException("Chave de acesso deve ter 44 dígitos: " + chave);
+        }
+        for (int i = 0; i < 44; i++) {
+            char c = digitos.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Chave de acesso deve conter apenas números: " + chave);
+            }
+        }
+
+        int dv = digitos.charAt(43) - '0';
+        if (dv != calcularDigitoVerificador(digitos, 43)) {
+            throw new IllegalArgumentException("Dígito verificador inválido na chave de acesso: " + chave);
+        }
+
+        return new ChaveAcesso(digitos);
+    }
+
+    /**
+     * Calcula o dígito verificador (Módulo 11) dos primeiros {@code tamanho} dígitos.
+     *
+     * @param chave Chave (com ou sem DV)
+     * @param tamanho Quantidade de dígitos considerados (normalmente 43)
+     * @return Dígito verificador
+     */
+    public static int calcularDigitoVerificador(CharSequence chave, int tamanho) {
+        int soma = 0;
+        int peso = 2;
+        for (int i = tamanho - 1; i >= 0; i--) {
+            soma += (chave.charAt(i) - '0') * peso;
+            peso = (peso == 9) ? 2 : peso + 1;
+        }
+        int mod = soma % 11;
+        return (mod == 0 || mod == 1) ? 0 : 11 - mod;
+    }
+
+    private static int parseInt(String s, int inicio, int fim) {
+        int valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            valor = valor * 10 + (s.charAt(i) - '0');
+        }
+        return valor;
+    }
+
+    public String getChave() {
+        return chave;
+    }
+
+    public int getCodigoUf() {
+        return codigoUf;
+    }
+
+    public Uf getUf() {
+        return Uf.porCodigo(codigoUf);
+    }
+
+    public String getAnoMes() {
+        return chave.substring(2, 6);
+    }
+
+    public String getCnpj() {
+        return chave.substring(6, 20);
+    }
+
+    public int getModelo() {
+        return modelo;
+    }
+
+    public int getSerie() {
+        return serie;
+    }
+
+    public int getNumero() {
+        return numero;
+    }
+
+    public int getTipoEmissao() {
+        return tipoEmissao;
+    }
+
+    public String getCodigoNumerico() {
+        return chave.substring(35, 43);
+    }
+
+    public int getDigitoVerificador() {
+        return chave.charAt(43) - '0';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ChaveAcesso && chave.equals(((ChaveAcesso) o).chave);
+    }
+
+    @Override
+    public int hashCode() {
+        return chave.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return chave;
+    }
+}
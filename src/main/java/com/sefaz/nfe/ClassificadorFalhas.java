@@ -0,0 +1,135 @@
+package com.sefaz.nfe;
+
+import com.sefaz.nfe.FalhaSefazException.Classificacao;
+import com.sefaz.nfe.FalhaSefazException.Origem;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Classifica falhas de transporte, status HTTP e cStat da SEFAZ em retentáveis ou definitivas.
+ *
+ * Regras:
+ * - Falhas antes do envio (conexão recusada, DNS): retentáveis em qualquer serviço
+ * - Falhas após o envio (timeout de leitura, conexão encerrada): retentáveis apenas em consultas
+ * - HTTP 429/503: retentável; 408/500/502/504: apenas em consultas; demais: definitiva
+ * - cStat 108/109 (serviço paralisado): retentável; demais cStat não são falhas de transporte
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class ClassificadorFalhas {
+
+    /** cStat de serviço paralisado momentaneamente (108) ou sem previsão (109). */
+    private static final Set<String> CSTAT_SERVICO_PARALISADO = Set.of("108", "109");
+
+    private ClassificadorFalhas() {
+    }
+
+    /**
+     * Indica se repetir a requisição do serviço não produz efeitos colaterais na SEFAZ.
+     */
+    public static boolean isIdempotente(ServicoSefaz servico) {
+        return servico == ServicoSefaz.RET_AUTORIZACAO
+                || servico == ServicoSefaz.CONSULTA_PROTOCOLO
+                || servico == ServicoSefaz.STATUS_SERVICO;
+    }
+
+    /**
+     * Classifica uma exceção de E/S ocorrida durante a requisição.
+     */
+    public static FalhaSefazException transporte(IOException e) {
+        Classificacao classificacao;
+        if (e instanceof ConnectException
+                || e instanceof ConnectTimeoutException
+                || e instanceof UnknownHostException) {
+            // A requisição não chegou a ser enviada
+            classificacao = Classificacao.RETENTAVEL;
+        } else if (e instanceof SSLHandshakeException) {
+            // Certificado recusado/expirado: repetir não resolve
+            classificacao = Classificacao.DEFINITIVA;
+        } else {
+            // Timeout de leitura, conexão encerrada: a SEFAZ pode ter processado
+            classificacao = Classificacao.RETENTAVEL_SE_IDEMPOTENTE;
+        }
+        return new FalhaSefazException("Falha de comunicação com a SEFAZ: " + e.getMessage(),
+                Origem.TRANSPORTE, classificacao, 0, null, e);
+    }
+
+    /**
+     * Classifica uma resposta HTTP diferente de 200.
+     */
+    public static FalhaSefazException http(int statusCode) {
+        Classificacao classificacao = switch (statusCode) {
+            case 429, 503 -> Classificacao.RETENTAVEL;
+            case 408, 500, 502, 504 -> Classificacao.RETENTAVEL_SE_IDEMPOTENTE;
+            default -> Classificacao.DEFINITIVA;
+        };
+        return new FalhaSefazException("Erro HTTP " + statusCode + " ao comunicar com SEFAZ",
+                Origem.HTTP, classificacao, statusCode, null, null);
+    }
+
+    /**
+     * Verifica o cStat principal da resposta e retorna a falha correspondente,
+     * ou null se a resposta deve ser entregue ao chamador.
+     */
+    public static FalhaSefazException sefaz(String responseBody) {
+        return paralisado(primeiroCodigoStatus(responseBody));
+    }
+
+    /**
+     * Versão de {@link #sefaz(String)} para a resposta ainda em bytes UTF-8.
+     */
+    public static FalhaSefazException sefaz(byte[] responseBody) {
+        return paralisado(primeiroCodigoStatus(responseBody));
+    }
+
+    private static FalhaSefazException paralisado(String cStat) {
+        if (cStat != null && CSTAT_SERVICO_PARALISADO.contains(cStat)) {
+            return new FalhaSefazException("Serviço da SEFAZ paralisado (cStat " + cStat + ")",
+                    Origem.SEFAZ, Classificacao.RETENTAVEL, 200, cStat, null);
+        }
+        return null;
+    }
+
+    /**
+     * Extrai o primeiro cStat da resposta em bytes UTF-8 sem decodificá-la.
+     */
+    static String primeiroCodigoStatus(byte[] xml) {
+        byte[] marcador = {'c', 'S', 't', 'a', 't', '>'};
+        procura:
+        for (int i = 0; i <= xml.length - marcador.length; i++) {
+            for (int j = 0; j < marcador.length; j++) {
+                if (xml[i + j] != marcador[j]) {
+                    continue procura;
+                }
+            }
+            int inicio = i + marcador.length;
+            for (int fim = inicio; fim < xml.length; fim++) {
+                if (xml[fim] == '<') {
+                    return new String(xml, inicio, fim - inicio, StandardCharsets.US_ASCII).trim();
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Extrai o primeiro cStat da resposta sem fazer parsing do XML.
+     */
+    static String primeiroCodigoStatus(String xml) {
+        int inicio = xml.indexOf("cStat>");
+        if (inicio < 0) {
+            return null;
+        }
+        inicio += 6;
+        int fim = xml.indexOf('<', inicio);
+        return fim < 0 ? null : xml.substring(inicio, fim).trim();
+    }
+}
@@ -0,0 +1,179 @@
+package com.sefaz.nfe;
+
+import java.util.Objects;
+
+/**
+ * Contexto de emissão de um emitente: ambiente, UF, modelo, série e tipo de emissão.
+ *
+ * Criado uma vez por emitente (ex: na carga da configuração do tenant) e reutilizado
+ * em todas as emissões. Os campos do grupo ide e as URLs dos webservices são resolvidos
+ * na construção, de forma que o caminho de emissão não consulta a configuração nem
+ * converte Strings. Imutável: um mesmo nó pode atender várias UFs e ambientes em paralelo.
+ *
+ * Apenas o modelo 65 (NFC-e) é aceito: o {@link SefazEndpoints} cadastra somente os
+ * webservices e o QR Code da NFC-e, e uma NF-e (modelo 55) seria enviada a eles.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class ContextoEmissao {
+
+    private final Ambiente ambiente;
+    private final Uf uf;
+    private final int modelo;
+    private final int serie;
+    private final int tipoEmissao;
+
+    private final String codigoUfTexto;
+    private final String serieChave;
+    private final String urlAutorizacao;
+    private final String urlRetAutorizacao;
+    private final String urlConsultaProtocolo;
+    private final String urlStatusServico;
+    private final String urlRecepcaoEvento;
+    private final String urlQrCode;
+
+    private ContextoEmissao(Ambiente ambiente, Uf uf, int modelo, int serie, int tipoEmissao, String urlQrCode) {
+        this.ambiente = Objects.requireNonNull(ambiente, "Ambiente não informado");
+        this.uf = Objects.requireNonNull(uf, "UF não informada");
+        if (modelo != 65) {
+            throw new IllegalArgumentException("Modelo " + modelo
+                    + " não suportado: apenas os webservices da NFC-e (65) estão cadastrados");
+        }
+        if (serie < 0 || serie > 999) {
+            throw new IllegalArgumentException("Série inválida: " + serie);
+        }
+        if (tipoEmissao < 1 || tipoEmissao > 9) {
+            throw new IllegalArgumentException("tpEmis inválido: " + tipoEmissao);
+        }
+        this.modelo = modelo;
+        this.serie = serie;
+        this.tipoEmissao = tipoEmissao;
+
+        boolean homologacao = ambiente.isHomologacao();
+        this.codigoUfTexto = String.valueOf(uf.getCodigo());
+        this.serieChave = String.format("%03d", serie);
+        this.urlAutorizacao = SefazEndpoints.getUrlAutorizacao(uf.name(), homologacao);
+        this.urlRetAutorizacao = SefazEndpoints.getUrlConsultaProtocolo(uf.name(), homologacao);
+        this.urlConsultaProtocolo = SefazEndpoints.getUrlConsultaSituacao(uf.name(), homologacao);
+        this.urlStatusServico = SefazEndpoints.getUrlStatusServico(uf.name(), homologacao);
+        this.urlRecepcaoEvento = SefazEndpoints.getUrlRecepcaoEvento(uf.name(), homologacao);
+        this.urlQrCode = urlQrCode;
+    }
+
+    /**
+     * Contexto com emissão normal (tpEmis=1).
+     *
+     * @param ambiente Produção ou homologação
+     * @param uf UF do emitente
+     * @param modelo 65 (NFC-e)
+     * @param serie Série (0 a 999)
+     * @throws IllegalArgumentException Se a série for inválida ou o modelo não for 65
+     */
+    public static ContextoEmissao of(Ambiente ambiente, Uf uf, int modelo, int serie) {
+        return new ContextoEmissao(ambiente, uf, modelo, serie, 1,
+                SefazEndpoints.getUrlQrCode(uf.name(), ambiente.isHomologacao()));
+    }
+
+    /**
+     * Mesmo contexto com outro tipo de emissão (ex: 9 para a contingência offline da NFC-e).
+     */
+    public ContextoEmissao comTipoEmissao(int tipoEmissao) {
+        return tipoEmissao == this.tipoEmissao
+                ? this
+                : new ContextoEmissao(ambiente, uf, modelo, serie, tipoEmissao, urlQrCode);
+    }
+
+    /**
+     * Mesmo contexto com a URL de consulta do QR Code (UFs sem URL cadastrada no {@link SefazEndpoints}).
+     */
+    public ContextoEmissao comUrlQrCode(String urlQrCode) {
+        return new ContextoEmissao(ambiente, uf, modelo, serie, tipoEmissao, urlQrCode);
+    }
+
+    public Ambiente getAmbiente() {
+        return ambiente;
+    }
+
+    public boolean isHomologacao() {
+        return ambiente.isHomologacao();
+    }
+
+    /** Valor do campo tpAmb. */
+    public int getTpAmb() {
+        return ambiente.getCodigo();
+    }
+
+    public Uf getUf() {
+        return uf;
+    }
+
+    /** Código IBGE da UF (cUF) como texto, já pronto para o XML e a chave de acesso. */
+    public String getCodigoUf() {
+        return codigoUfTexto;
+    }
+
+    public int getModelo() {
+        return modelo;
+    }
+
+    public int getSerie() {
+        return serie;
+    }
+
+    /** Série com 3 dígitos, como na chave de acesso. */
+    public String getSerieChave() {
+        return serieChave;
+    }
+
+    /** Valor do campo tpEmis. */
+    public int getTipoEmissao() {
+        return tipoEmissao;
+    }
+
+    /** URL do NFeAutorizacao4. */
+    public String getUrlAutorizacao() {
+        return urlAutorizacao;
+    }
+
+    /** URL do NFeRetAutorizacao4 (consulta de recibo). */
+    public String getUrlRetAutorizacao() {
+        return urlRetAutorizacao;
+    }
+
+    /** URL do NFeConsultaProtocolo4 (consulta pela chave). */
+    public String getUrlConsultaProtocolo() {
+        return urlConsultaProtocolo;
+    }
+
+    /** URL do NFeStatusServico4. */
+    public String getUrlStatusServico() {
+        return urlStatusServico;
+    }
+
+    /** URL do NFeRecepcaoEvento4. */
+    public String getUrlRecepcaoEvento() {
+        return urlRecepcaoEvento;
+    }
+
+    /** URL de consulta do QR Code da NFC-e, ou null se não cadastrada para a UF. */
+    public String getUrlQrCode() {
+        return urlQrCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ContextoEmissao c && ambiente == c.ambiente && uf == c.uf && modelo == c.modelo
+                && serie == c.serie && tipoEmissao == c.tipoEmissao && Objects.equals(urlQrCode, c.urlQrCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ambiente, uf, modelo, serie, tipoEmissao, urlQrCode);
+    }
+
+    @Override
+    public String toString() {
+        return uf + "/" + ambiente + "/mod " + modelo + "/série " + serie + "/tpEmis " + tipoEmissao;
+    }
+}
@@ -0,0 +1,279 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * API reativa (Project Reactor) para emissão de NF-e/NFC-e em aplicações WebFlux.
+ *
+ * Nenhuma etapa bloqueia a thread do event loop:
+ * - Construção e assinatura no agendador de assinatura (padrão {@code Schedulers.parallel()},
+ *   por serem etapas de CPU)
+ * - Envio e consulta de recibo pelo cliente HTTP assíncrono do {@link TransporteHttpsSefaz}
+ * - A espera do {@link LimitadorTaxa}, as novas tentativas (política do
+ *   {@link ExecutorRetentativa}) e o intervalo entre consultas de recibo são agendados
+ *
+ * Em {@link #autorizar(Publisher, ContextoEmissao)} a demanda é propagada até a origem:
+ * no máximo {@code paralelismoAssinatura} notas em assinatura e {@code lotesSimultaneos}
+ * lotes em andamento, então um Flux com milhares de notas é consumido no ritmo em que
+ * a SEFAZ (e o limitador de taxa) aceita os lotes.
+ *
+ * Exemplo (endpoint WebFlux):
+ * <pre>
+ * return emissaoReativa.assinar(NfeXmlBuilder.buildNFe(resumo, cfg))
+ *         .flatMap(xml -&gt; emissaoReativa.autorizar(xml, contexto));
+ * </pre>
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@ConditionalOnClass(name = "reactor.core.publisher.Mono")
+public class EmissaoReativa {
+
+    private final SefazSoapClient sefazClient;
+    private final AssinaturaDigital assinatura;
+    private final ExecutorRetentativa executorRetentativa;
+    private final MetricasSefaz metricas;
+    private final AtomicLong idLote = new AtomicLong(System.currentTimeMillis());
+
+    private Scheduler agendadorAssinatura = Schedulers.parallel();
+    private int paralelismoAssinatura = Runtime.getRuntime().availableProcessors();
+    private int tamanhoLote = SefazSoapClient.MAXIMO_NOTAS_LOTE;
+    private Duration esperaLote = Duration.ofMillis(200);
+    private int lotesSimultaneos = 4;
+    private Duration intervaloConsulta = Duration.ofSeconds(1);
+    private Duration prazoConsulta = Duration.ofSeconds(60);
+
+    public EmissaoReativa(SefazSoapClient sefazClient, AssinaturaDigital assinatura) {
+        this(sefazClient, assinatura, new ExecutorRetentativa());
+    }
+
+    public EmissaoReativa(SefazSoapClient sefazClient, AssinaturaDigital assinatura,
+                          ExecutorRetentativa executorRetentativa) {
+        this(sefazClient, assinatura, executorRetentativa, MetricasSefaz.DESABILITADO);
+    }
+
+    @Autowired
+    public EmissaoReativa(SefazSoapClient sefazClient, AssinaturaDigital assinatura,
+                          ExecutorRetentativa executorRetentativa, MetricasSefaz metricas) {
+        this.sefazClient = sefazClient;
+        this.assinatura = assinatura;
+        this.executorRetentativa = executorRetentativa;
+        this.metricas = metricas;
+    }
+
+    /**
+     * Assina o infNFe no agendador de assinatura.
+     */
+    public Mono<String> assinar(String xml) {
+        return Mono.fromCallable(() -> assinatura.assinar(xml)).subscribeOn(agendadorAssinatura);
+    }
+
+    /**
+     * Envia uma nota no modo síncrono com o ambiente e as URLs do contexto.
+     */
+    public Mono<ResultadoAutorizacao> autorizar(String xmlAssinado, ContextoEmissao contexto) {
+        return autorizar(xmlAssinado, contexto.getAmbiente(), contexto.getUrlAutorizacao(),
+                contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Envia uma nota no modo síncrono (indSinc=1); se a SEFAZ responder 103, consulta o recibo.
+     *
+     * @param xmlAssinado XML da nota assinado
+     * @param ambiente Ambiente da nota (tpAmb da consulta de recibo)
+     * @param urlAutorizacao URL do webservice NFeAutorizacao4
+     * @param urlRetAutorizacao URL do webservice NFeRetAutorizacao4
+     * @return Resultado com o protocolo; rejeições do lote (ex: 225) retornam sem protocolo
+     */
+    public Mono<ResultadoAutorizacao> autorizar(String xmlAssinado, Ambiente ambiente, String urlAutorizacao,
+                                                String urlRetAutorizacao) {
+        return enviar(List.of(xmlAssinado), true, ambiente, urlAutorizacao, urlRetAutorizacao);
+    }
+
+    /**
+     * Envia um lote assíncrono (indSinc=0) de até 50 notas e aguarda o processamento.
+     */
+    public Mono<ResultadoAutorizacao> autorizarLote(List<String> xmlsAssinados, Ambiente ambiente,
+                                                    String urlAutorizacao, String urlRetAutorizacao) {
+        return enviar(xmlsAssinados, false, ambiente, urlAutorizacao, urlRetAutorizacao);
+    }
+
+    /**
+     * Autoriza em lotes com o ambiente e as URLs do contexto.
+     *
+     * @see #autorizar(Publisher, Ambiente, String, String)
+     */
+    public Flux<ResultadoAutorizacao.Protocolo> autorizar(Publisher<String> xmlsAssinados, ContextoEmissao contexto) {
+        return autorizar(xmlsAssinados, contexto.getAmbiente(), contexto.getUrlAutorizacao(),
+                contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Agrupa as notas assinadas em lotes (até {@code tamanhoLote} notas ou {@code esperaLote}
+     * de espera) e emite o protocolo de cada nota, na ordem em que os lotes são processados.
+     *
+     * Se o lote inteiro for rejeitado (sem protNFe), cada nota recebe um protocolo com o
+     * cStat e o xMotivo do lote e sem nProt. Falhas de comunicação após as novas tentativas
+     * encerram o Flux com {@link FalhaSefazException}.
+     */
+    public Flux<ResultadoAutorizacao.Protocolo> autorizar(Publisher<String> xmlsAssinados, Ambiente ambiente,
+                                                          String urlAutorizacao, String urlRetAutorizacao) {
+        return Flux.from(xmlsAssinados)
+                .bufferTimeout(tamanhoLote, esperaLote, true)
+                .flatMap(lote -> autorizarLote(lote, ambiente, urlAutorizacao, urlRetAutorizacao)
+                        .flatMapIterable(resultado -> protocolos(resultado, lote)), lotesSimultaneos);
+    }
+
+    /**
+     * Constrói e assina cada registro em paralelo (mantendo a ordem) e autoriza em lotes,
+     * como {@link #autorizar(Publisher, ContextoEmissao)}.
+     *
+     * @param construtor Converte o registro no XML não assinado (ex: NfeXmlBuilder::buildNFe)
+     */
+    public <T> Flux<ResultadoAutorizacao.Protocolo> emitir(Publisher<T> registros,
+                                                           ProcessadorLote.Construtor<? super T> construtor,
+                                                           ContextoEmissao contexto) {
+        return emitir(registros, construtor, contexto.getAmbiente(), contexto.getUrlAutorizacao(),
+                contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Como {@link #emitir(Publisher, ProcessadorLote.Construtor, ContextoEmissao)}, com ambiente e URLs explícitos.
+     */
+    public <T> Flux<ResultadoAutorizacao.Protocolo> emitir(Publisher<T> registros,
+                                                           ProcessadorLote.Construtor<? super T> construtor,
+                                                           Ambiente ambiente, String urlAutorizacao,
+                                                           String urlRetAutorizacao) {
+        Flux<String> assinadas = Flux.from(registros)
+                .flatMapSequential(registro -> Mono.fromCallable(() -> assinatura.assinar(
+                                metricas.observar(MetricasSefaz.Etapa.CONSTRUCAO, null, () -> construtor.construir(registro))))
+                        .subscribeOn(agendadorAssinatura), paralelismoAssinatura);
+        return autorizar(assinadas, ambiente, urlAutorizacao, urlRetAutorizacao);
+    }
+
+    private Mono<ResultadoAutorizacao> enviar(List<String> xmlsAssinados, boolean sincrono, Ambiente ambiente,
+                                              String urlAutorizacao, String urlRetAutorizacao) {
+        long id = idLote.incrementAndGet();
+        return Mono.defer(() -> Mono.fromFuture(
+                        sefazClient.enviarLoteNFeAssincrono(xmlsAssinados, id, sincrono, urlAutorizacao)))
+                .retryWhen(retentativa(ServicoSefaz.AUTORIZACAO))
+                .flatMap(EmissaoReativa::ler)
+                .flatMap(resultado -> ResultadoAutorizacao.CSTAT_LOTE_RECEBIDO.equals(resultado.codigoStatus())
+                        ? aguardarProcessamento(resultado.recibo(), ambiente, urlRetAutorizacao)
+                        : Mono.just(resultado));
+    }
+
+    /**
+     * Consulta o recibo a cada {@code intervaloConsulta} até o lote deixar de estar em processamento (105).
+     */
+    Mono<ResultadoAutorizacao> aguardarProcessamento(String recibo, Ambiente ambiente, String urlRetAutorizacao) {
+        if (recibo == null) {
+            return Mono.error(new IllegalStateException("Resposta 103 sem número de recibo"));
+        }
+        log.debug("Lote recebido para processamento assíncrono (cStat 103). Consultando recibo {}", recibo);
+
+        Mono<ResultadoAutorizacao> consulta = Mono.defer(() -> Mono.fromFuture(
+                        sefazClient.consultarReciboAssincrono(recibo, ambiente, urlRetAutorizacao)))
+                .retryWhen(retentativa(ServicoSefaz.RET_AUTORIZACAO))
+                .flatMap(EmissaoReativa::ler);
+
+        return consulta.delaySubscription(intervaloConsulta)
+                .repeat()
+                .filter(resultado -> !resultado.isPendente())
+                .next()
+                .timeout(prazoConsulta, Mono.error(() -> new FalhaSefazException(
+                        "Lote do recibo " + recibo + " ainda em processamento após " + prazoConsulta.toSeconds() + " s",
+                        FalhaSefazException.Origem.PRAZO, FalhaSefazException.Classificacao.RETENTAVEL,
+                        0, ResultadoAutorizacao.CSTAT_LOTE_EM_PROCESSAMENTO, null)));
+    }
+
+    /**
+     * Novas tentativas com a política do serviço no {@link ExecutorRetentativa}: apenas
+     * falhas retentáveis para o serviço, backoff exponencial com jitter.
+     */
+    private Retry retentativa(ServicoSefaz servico) {
+        ExecutorRetentativa.Politica politica = executorRetentativa.getPolitica(servico);
+        return Retry.backoff(politica.maxTentativas() - 1, politica.esperaBase())
+                .maxBackoff(politica.esperaMaxima())
+                .filter(e -> e instanceof FalhaSefazException falha && falha.isRetentavel(servico))
+                .onRetryExhaustedThrow((spec, sinal) -> sinal.failure());
+    }
+
+    private static Mono<ResultadoAutorizacao> ler(String resposta) {
+        return Mono.fromCallable(() -> ResultadoAutorizacao.ler(resposta));
+    }
+
+    private static List<ResultadoAutorizacao.Protocolo> protocolos(ResultadoAutorizacao resultado, List<String> lote) {
+        if (!resultado.protocolos().isEmpty()) {
+            return resultado.protocolos();
+        }
+        List<ResultadoAutorizacao.Protocolo> rejeitadas = new ArrayList<>(lote.size());
+        for (String xml : lote) {
+            rejeitadas.add(new ResultadoAutorizacao.Protocolo(MetricasSefaz.extrairChave(xml),
+                    resultado.codigoStatus(), resultado.mensagem(), null, null, null, null));
+        }
+        return rejeitadas;
+    }
+
+    /**
+     * Agendador da construção e assinatura (padrão: {@code Schedulers.parallel()}).
+     */
+    public void setAgendadorAssinatura(Scheduler agendadorAssinatura) {
+        this.agendadorAssinatura = agendadorAssinatura;
+    }
+
+    /**
+     * Notas construídas e assinadas ao mesmo tempo em {@link #emitir} (padrão: processadores disponíveis).
+     */
+    public void setParalelismoAssinatura(int paralelismoAssinatura) {
+        this.paralelismoAssinatura = paralelismoAssinatura;
+    }
+
+    /**
+     * Tamanho máximo do lote e espera máxima para completá-lo (padrão: 50 notas, 200 ms).
+     */
+    public void setLote(int tamanhoLote, Duration esperaLote) {
+        if (tamanhoLote < 1 || tamanhoLote > SefazSoapClient.MAXIMO_NOTAS_LOTE) {
+            throw new IllegalArgumentException("Tamanho do lote deve ser de 1 a " + SefazSoapClient.MAXIMO_NOTAS_LOTE);
+        }
+        this.tamanhoLote = tamanhoLote;
+        this.esperaLote = esperaLote;
+    }
+
+    /**
+     * Lotes enviados ou aguardando processamento ao mesmo tempo (padrão: 4).
+     */
+    public void setLotesSimultaneos(int lotesSimultaneos) {
+        this.lotesSimultaneos = lotesSimultaneos;
+    }
+
+    /**
+     * Intervalo entre as consultas de recibo após um cStat 103.
+     */
+    public void setIntervaloConsulta(Duration intervaloConsulta) {
+        this.intervaloConsulta = intervaloConsulta;
+    }
+
+    /**
+     * Tempo máximo aguardando o processamento assíncrono.
+     */
+    public void setPrazoConsulta(Duration prazoConsulta) {
+        this.prazoConsulta = prazoConsulta;
+    }
+}
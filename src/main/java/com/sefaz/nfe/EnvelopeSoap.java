@@ -0,0 +1,281 @@
+package com.sefaz.nfe;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Envelopes SOAP 1.2 dos webservices da SEFAZ com o início e o fim pré-codificados em UTF-8.
+ *
+ * Cada requisição é apenas {@code prefixo + dados + sufixo}: a {@link Mensagem} guarda as três
+ * partes sem concatená-las, e o {@link TransporteHttpsSefaz} as escreve direto no socket
+ * (ou no compactador gzip), codificando o XML em Base64 à medida que escreve. Os arrays do
+ * prefixo e do sufixo são criados uma única vez e nunca são expostos, então as constantes
+ * são imutáveis e compartilhadas entre threads.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class EnvelopeSoap {
+
+    private static final String INICIO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"";
+
+    public static final EnvelopeSoap AUTORIZACAO = nfe("NFeAutorizacao4", "nfeAutorizacaoLote");
+    public static final EnvelopeSoap RET_AUTORIZACAO = nfe("NFeRetAutorizacao4", "nfeRetAutorizacaoLote");
+    public static final EnvelopeSoap CONSULTA_PROTOCOLO = nfe("NFeConsultaProtocolo4", "nfeConsultaNF");
+    public static final EnvelopeSoap STATUS_SERVICO = nfe("NFeStatusServico4", "nfeStatusServicoNF");
+    public static final EnvelopeSoap EVENTO = nfe("NFeRecepcaoEvento4", "nfeRecepcaoEvento");
+    public static final EnvelopeSoap DCE_RECEPCAO = dce("DCeRecepcao");
+    public static final EnvelopeSoap DCE_RET_RECEPCAO = dce("DCeRetRecepcao");
+
+    private final byte[] prefixo;
+    private final byte[] sufixo;
+    /** Os webservices da NF-e recebem o XML em Base64; os da DC-e, o XML diretamente. */
+    private final boolean base64;
+
+    private EnvelopeSoap(String prefixo, String sufixo, boolean base64) {
+        this.prefixo = prefixo.getBytes(StandardCharsets.UTF_8);
+        this.sufixo = sufixo.getBytes(StandardCharsets.UTF_8);
+        this.base64 = base64;
+    }
+
+    /**
+     * Webservice da NF-e: nfeDadosMsg dentro da operação, com o XML em Base64.
+     */
+    private static EnvelopeSoap nfe(String webservice, String operacao) {
+        return new EnvelopeSoap(INICIO +
+                " xmlns:nfe=\"http://www.portalfiscal.inf.br/nfe/wsdl/" + webservice + "\">" +
+                "<soap:Header/>" +
+                "<soap:Body>" +
+                "<nfe:" + operacao + ">" +
+                "<nfe:nfeDadosMsg>",
+                "</nfe:nfeDadosMsg>" +
+                "</nfe:" + operacao + ">" +
+                "</soap:Body>" +
+                "</soap:Envelope>",
+                true);
+    }
+
+    /**
+     * Webservice da DC-e: dceDadosMsg diretamente no Body, com o XML sem codificação.
+     */
+    private static EnvelopeSoap dce(String webservice) {
+        return new EnvelopeSoap(INICIO + ">" +
+                "<soap:Header/>" +
+                "<soap:Body>" +
+                "<dceDadosMsg xmlns=\"http://www.portalfiscal.inf.br/dce/wsdl/" + webservice + "\">",
+                "</dceDadosMsg>" +
+                "</soap:Body>" +
+                "</soap:Envelope>",
+                false);
+    }
+
+    /**
+     * Envelope com o XML da mensagem (codificado em Base64 nos webservices da NF-e).
+     *
+     * @param xml XML da mensagem, sem declaração
+     */
+    public Mensagem montar(String xml) {
+        return new Mensagem(prefixo, xml.getBytes(StandardCharsets.UTF_8), sufixo, base64);
+    }
+
+    /**
+     * Corpo de uma requisição em partes, sem cópia: escrito em sequência por
+     * {@link #escrever(OutputStream)}. Nos webservices da NF-e o XML é guardado como está e
+     * codificado em Base64 durante a escrita; o tamanho final é calculado sem codificá-lo.
+     */
+    public static final class Mensagem {
+
+        private static final byte[] VAZIO = new byte[0];
+
+        /** Bytes do XML lidos por bloco do Base64 (múltiplo de 3, gera exatamente 8 KiB). */
+        private static final int BLOCO_BASE64 = 6144;
+
+        private final byte[] prefixo;
+        private final byte[] dados;
+        private final byte[] sufixo;
+        private final boolean base64;
+        private final long tamanho;
+
+        private Mensagem(byte[] prefixo, byte[] dados, byte[] sufixo, boolean base64) {
+            this.prefixo = prefixo;
+            this.dados = dados;
+            this.sufixo = sufixo;
+            this.base64 = base64;
+            long tamanhoDados = base64 ? 4L * ((dados.length + 2) / 3) : dados.length;
+            this.tamanho = prefixo.length + tamanhoDados + sufixo.length;
+        }
+
+        /**
+         * Mensagem já pronta (ex: envelope montado pelo chamador ou corpo compactado).
+         */
+        public static Mensagem de(byte[] corpo) {
+            return new Mensagem(corpo, VAZIO, VAZIO, false);
+        }
+
+        public static Mensagem de(String envelope) {
+            return de(envelope.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** Tamanho em bytes, já com a codificação Base64. */
+        public long tamanho() {
+            return tamanho;
+        }
+
+        public void escrever(OutputStream saida) throws IOException {
+            saida.write(prefixo);
+            if (base64 && dados.length <= BLOCO_BASE64) {
+                // O codificador em stream aloca um buffer de 8 KiB; para um bloco, codifica de uma vez
+                saida.write(Base64.getEncoder().encode(dados));
+            } else if (base64) {
+                // close() completa o último grupo do Base64 sem fechar a saída
+                try (OutputStream codificador = Base64.getEncoder().wrap(new SemFechamento(saida))) {
+                    codificador.write(dados);
+                }
+            } else {
+                saida.write(dados);
+            }
+            saida.write(sufixo);
+        }
+
+        /**
+         * Conteúdo como InputStream (cópia do Base64; o envio usa {@link #escrever}).
+         */
+        public InputStream abrir() {
+            if (dados.length == 0 && sufixo.length == 0) {
+                return new ByteArrayInputStream(prefixo);
+            }
+            return new SequenceInputStream(Collections.enumeration(List.of(
+                    new ByteArrayInputStream(prefixo),
+                    new ByteArrayInputStream(base64 ? Base64.getEncoder().encode(dados) : dados),
+                    new ByteArrayInputStream(sufixo))));
+        }
+
+        /**
+         * Leitor em blocos para escrita não bloqueante.
+         */
+        Leitor leitor() {
+            return new Leitor();
+        }
+
+        /**
+         * Envelope completo como texto (cópia; para logs e testes).
+         */
+        @Override
+        public String toString() {
+            ByteArrayOutputStream saida = new ByteArrayOutputStream((int) tamanho);
+            try {
+                escrever(saida);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return saida.toString(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Entrega a mensagem em buffers: o prefixo, o sufixo e o XML sem codificação são
+         * visões somente leitura dos arrays; o Base64 é gerado em um bloco reaproveitado.
+         * Cada buffer deve ser consumido antes de pedir o próximo.
+         */
+        final class Leitor {
+
+            private int etapa;
+            private int posicao;
+            private byte[] bloco;
+            private int preenchido;
+            private OutputStream codificador;
+
+            /**
+             * @return Próximo trecho da mensagem, ou null no fim
+             */
+            ByteBuffer proximo() throws IOException {
+                while (true) {
+                    switch (etapa) {
+                        case 0 -> {
+                            etapa = 1;
+                            if (prefixo.length > 0) {
+                                return ByteBuffer.wrap(prefixo).asReadOnlyBuffer();
+                            }
+                        }
+                        case 1 -> {
+                            if (!base64) {
+                                etapa = 2;
+                                if (dados.length > 0) {
+                                    return ByteBuffer.wrap(dados).asReadOnlyBuffer();
+                                }
+                            } else if (dados.length <= BLOCO_BASE64) {
+                                etapa = 2;
+                                return ByteBuffer.wrap(Base64.getEncoder().encode(dados)).asReadOnlyBuffer();
+                            } else if (posicao < dados.length) {
+                                return codificarBloco();
+                            } else {
+                                etapa = 2;
+                            }
+                        }
+                        case 2 -> {
+                            etapa = 3;
+                            if (sufixo.length > 0) {
+                                return ByteBuffer.wrap(sufixo).asReadOnlyBuffer();
+                            }
+                        }
+                        default -> {
+                            return null;
+                        }
+                    }
+                }
+            }
+
+            private ByteBuffer codificarBloco() throws IOException {
+                if (codificador == null) {
+                    bloco = new byte[BLOCO_BASE64 / 3 * 4];
+                    codificador = Base64.getEncoder().wrap(new OutputStream() {
+                        @Override
+                        public void write(int b) {
+                            bloco[preenchido++] = (byte) b;
+                        }
+
+                        @Override
+                        public void write(byte[] b, int off, int len) {
+                            System.arraycopy(b, off, bloco, preenchido, len);
+                            preenchido += len;
+                        }
+                    });
+                }
+                preenchido = 0;
+                int quantidade = Math.min(BLOCO_BASE64, dados.length - posicao);
+                codificador.write(dados, posicao, quantidade);
+                posicao += quantidade;
+                if (posicao == dados.length) {
+                    codificador.close();
+                }
+                return ByteBuffer.wrap(bloco, 0, preenchido).asReadOnlyBuffer();
+            }
+        }
+
+        private static final class SemFechamento extends FilterOutputStream {
+
+            SemFechamento(OutputStream saida) {
+                super(saida);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Camada de idempotência para o envio de NF-e à SEFAZ.
+ *
+ * Utiliza o atributo Id do infNFe (extraído do XML assinado) como chave para:
+ * - Deduplicar envios concorrentes da mesma nota (apenas um chega à SEFAZ), inclusive
+ *   em lotes diferentes: os Ids de cada nota do lote são registrados antes do envio
+ * - Responder retentativas com a resposta já obtida (cache LRU limitado)
+ * - Resolver automaticamente a rejeição 204 (duplicidade), consultando o
+ *   recibo original informado pela SEFAZ no xMotivo ([nRec:...]), tanto no retorno
+ *   do envio quanto nos protNFe da consulta de recibo ({@link #consultarRecibo})
+ *
+ * Só ficam em cache os resultados definitivos: lote recebido (103) ou notas autorizadas
+ * (100, 150) ou denegadas (110, 301, 302). Rejeições (ex: 225, 539), serviço paralisado
+ * e falhas de comunicação não são armazenados, permitindo o reenvio da nota corrigida.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class EnvioIdempotente {
+
+    /** Capacidade padrão do cache de respostas. */
+    public static final int CAPACIDADE_PADRAO = 10_000;
+
+    /** cStat de duplicidade de NF-e. */
+    static final String CSTAT_DUPLICIDADE = "204";
+
+    /** Situações definitivas da nota: autorizada (100, 150) ou denegada (110, 301, 302). */
+    private static final Set<String> CSTAT_DEFINITIVOS = Set.of("100", "150", "110", "301", "302");
+
+    private static final Pattern PADRAO_NREC = Pattern.compile("nRec:\\s*(\\d+)");
+
+    private final SefazSoapClient sefazClient;
+    /** Envio em andamento por Id de nota (um lote aparece uma vez para cada nota). */
+    private final Map<String, Envio> emAndamento = new ConcurrentHashMap<>();
+    private final Map<String, String> respostas;
+
+    @Autowired
+    public EnvioIdempotente(SefazSoapClient sefazClient) {
+        this(sefazClient, CAPACIDADE_PADRAO);
+    }
+
+    public EnvioIdempotente(SefazSoapClient sefazClient, int capacidade) {
+        this.sefazClient = sefazClient;
+        this.respostas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacidade;
+            }
+        };
+    }
+
+    /**
+     * Envia a NF-e com o ambiente e as URLs do contexto.
+     *
+     * @see #enviarNFe(String, Ambiente, String, String)
+     */
+    public String enviarNFe(String xmlAssinado, ContextoEmissao contexto) throws Exception {
+        return enviarNFe(xmlAssinado, contexto.getAmbiente(), contexto.getUrlAutorizacao(),
+                contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Envia a NF-e garantindo no máximo um envio efetivo por Id.
+     *
+     * @param xmlAssinado XML da NF-e (ou lote) assinado
+     * @param ambiente Ambiente da nota (tpAmb da consulta do recibo original)
+     * @param url URL do webservice de autorização
+     * @param urlConsultaRecibo URL do webservice de consulta de recibo (usada para resolver cStat 204)
+     * @return XML de resposta da SEFAZ
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String enviarNFe(String xmlAssinado, Ambiente ambiente, String url, String urlConsultaRecibo)
+            throws Exception {
+        String id = extrairId(xmlAssinado);
+
+        String emCache = obterDoCache(id);
+        if (emCache != null) {
+            log.debug("Resposta da NF-e {} obtida do cache de idempotência", id);
+            return emCache;
+        }
+
+        // Ids em ordem: dois lotes com notas em comum nunca esperam um pelo outro
+        Set<String> notas = new TreeSet<>(Arrays.asList(id.split(",")));
+        Envio envio = new Envio(id, new CompletableFuture<>());
+        Envio existente;
+        while ((existente = registrar(notas, envio)) != null) {
+            if (existente.id().equals(id)) {
+                log.info("Envio da NF-e {} já em andamento, aguardando resposta", id);
+                return aguardar(existente.resposta());
+            }
+            log.info("Envio de {} aguardando o envio em andamento de {}", id, existente.id());
+            existente.resposta().handle((r, e) -> r).join();
+            emCache = obterDoCache(id);
+            if (emCache != null) {
+                return emCache;
+            }
+        }
+        CompletableFuture<String> nova = envio.resposta();
+
+        try {
+            // Revalida o cache: outro envio pode ter concluído entre a consulta e o registro
+            String resposta = obterDoCache(id);
+            if (resposta == null) {
+                resposta = resolverDuplicidade(id, sefazClient.enviarNFe(xmlAssinado, url), ambiente,
+                        urlConsultaRecibo);
+                armazenar(id, resposta);
+            }
+            nova.complete(resposta);
+            return resposta;
+        } catch (Exception e) {
+            nova.completeExceptionally(e);
+            throw e;
+        } finally {
+            notas.forEach(nota -> emAndamento.remove(nota, envio));
+        }
+    }
+
+    /**
+     * Registra o envio para todas as notas ou para nenhuma.
+     *
+     * @return O envio em andamento que já contém uma das notas, ou null se registrado
+     */
+    private Envio registrar(Set<String> notas, Envio envio) {
+        List<String> registradas = new ArrayList<>(notas.size());
+        for (String nota : notas) {
+            Envio existente = emAndamento.putIfAbsent(nota, envio);
+            if (existente != null) {
+                registradas.forEach(r -> emAndamento.remove(r, envio));
+                return existente;
+            }
+            registradas.add(nota);
+        }
+        return null;
+    }
+
+    /**
+     * Envio em andamento: chave de idempotência (Ids do lote) e resposta.
+     */
+    private record Envio(String id, CompletableFuture<String> resposta) {
+    }
+
+    /**
+     * Consulta o recibo resolvendo as duplicidades do processamento assíncrono: cada protNFe
+     * com cStat 204 é substituído pelo protNFe da mesma chave no recibo original ([nRec:...]).
+     *
+     * @param numeroRecibo Número do recibo retornado no envio (cStat 103)
+     * @param ambiente Ambiente do lote (tpAmb)
+     * @param url URL do webservice NFeRetAutorizacao4
+     * @return XML de resposta da SEFAZ (retConsReciNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarRecibo(String numeroRecibo, Ambiente ambiente, String url) throws Exception {
+        String resposta = sefazClient.consultarRecibo(numeroRecibo, ambiente, url);
+        if (!resposta.contains(CSTAT_DUPLICIDADE)) {
+            return resposta;
+        }
+
+        Document doc = parse(resposta);
+        Map<String, Document> originais = new HashMap<>();
+        boolean alterado = false;
+        NodeList protocolos = doc.getElementsByTagNameNS("*", "protNFe");
+        for (int i = 0; i < protocolos.getLength(); i++) {
+            Element protNFe = (Element) protocolos.item(i);
+            Element infProt = ResultadoAutorizacao.filho(protNFe, "infProt");
+            String nRec = infProt == null ? null : reciboDuplicidade(infProt);
+            if (nRec == null) {
+                continue;
+            }
+            String chave = ResultadoAutorizacao.texto(infProt, "chNFe");
+            log.info("NF-e {} do recibo {} já enviada anteriormente (cStat 204). Consultando recibo {}",
+                    chave, numeroRecibo, nRec);
+            if (!originais.containsKey(nRec)) {
+                originais.put(nRec, parse(sefazClient.consultarRecibo(nRec, ambiente, url)));
+            }
+            Element original = protocoloDaChave(originais.get(nRec), chave);
+            if (original == null) {
+                log.warn("NF-e {} sem protocolo no recibo original {}", chave, nRec);
+                continue;
+            }
+            protNFe.getParentNode().replaceChild(doc.importNode(original, true), protNFe);
+            alterado = true;
+        }
+        return alterado ? ResultadoAutorizacao.serializar(doc.getDocumentElement()) : resposta;
+    }
+
+    private static Element protocoloDaChave(Document recibo, String chave) {
+        NodeList protocolos = recibo.getElementsByTagNameNS("*", "protNFe");
+        for (int i = 0; i < protocolos.getLength(); i++) {
+            Element infProt = ResultadoAutorizacao.filho((Element) protocolos.item(i), "infProt");
+            if (infProt != null && chave != null && chave.equals(ResultadoAutorizacao.texto(infProt, "chNFe"))) {
+                return (Element) protocolos.item(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove do cache a resposta associada ao Id (ex: após cancelamento).
+     */
+    public void invalidar(String id) {
+        synchronized (respostas) {
+            respostas.remove(id);
+        }
+    }
+
+    /**
+     * Quantidade de respostas atualmente em cache.
+     */
+    public int getTamanhoCache() {
+        synchronized (respostas) {
+            return respostas.size();
+        }
+    }
+
+    private String resolverDuplicidade(String id, String resposta, Ambiente ambiente, String urlConsultaRecibo)
+            throws Exception {
+        String nRec = extrairReciboDuplicidade(resposta);
+        if (nRec == null) {
+            return resposta;
+        }
+
+        log.info("NF-e {} já enviada anteriormente (cStat 204). Consultando recibo {}", id, nRec);
+        return sefazClient.consultarRecibo(nRec, ambiente, urlConsultaRecibo);
+    }
+
+    private String obterDoCache(String id) {
+        synchronized (respostas) {
+            return respostas.get(id);
+        }
+    }
+
+    private void armazenar(String id, String resposta) {
+        if (!isDefinitiva(resposta)) {
+            log.debug("Resposta sem resultado definitivo não armazenada para {}", id);
+            return;
+        }
+        synchronized (respostas) {
+            respostas.put(id, resposta);
+        }
+    }
+
+    /**
+     * Lote recebido (103), ou lote processado em que todas as notas têm situação definitiva.
+     */
+    static boolean isDefinitiva(String resposta) {
+        ResultadoAutorizacao resultado;
+        try {
+            resultado = ResultadoAutorizacao.ler(resposta);
+        } catch (Exception e) {
+            return false;
+        }
+        if (ResultadoAutorizacao.CSTAT_LOTE_RECEBIDO.equals(resultado.codigoStatus())) {
+            return true;
+        }
+        return resultado.isProcessado() && !resultado.protocolos().isEmpty()
+                && resultado.protocolos().stream().allMatch(p -> CSTAT_DEFINITIVOS.contains(p.codigoStatus()));
+    }
+
+    private static String aguardar(CompletableFuture<String> futuro) throws Exception {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Extrai o número do recibo original de uma rejeição 204.
+     *
+     * A SEFAZ informa o recibo no xMotivo: "Duplicidade de NF-e [nRec:351000012345678]".
+     *
+     * @return Número do recibo ou null se a resposta não for uma duplicidade
+     */
+    String extrairReciboDuplicidade(String xmlResposta) throws Exception {
+        if (!xmlResposta.contains(CSTAT_DUPLICIDADE)) {
+            return null;
+        }
+
+        NodeList cStatList = parse(xmlResposta).getElementsByTagNameNS("*", "cStat");
+        for (int i = 0; i < cStatList.getLength(); i++) {
+            String nRec = reciboDuplicidade((Element) cStatList.item(i).getParentNode());
+            if (nRec != null) {
+                return nRec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recibo informado no xMotivo do elemento (infProt ou retorno do lote) se o cStat dele for 204.
+     */
+    private static String reciboDuplicidade(Element pai) {
+        if (!CSTAT_DUPLICIDADE.equals(ResultadoAutorizacao.texto(pai, "cStat"))) {
+            return null;
+        }
+        String xMotivo = ResultadoAutorizacao.texto(pai, "xMotivo");
+        if (xMotivo != null) {
+            Matcher m = PADRAO_NREC.matcher(xMotivo);
+            if (m.find()) {
+                return m.group(1);
+            }
+        }
+        log.warn("Rejeição 204 sem número de recibo no xMotivo");
+        return null;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Extrai os Ids dos elementos infNFe do XML assinado sem fazer parsing completo.
+     *
+     * Para lotes com várias notas, a chave de idempotência é a concatenação dos Ids.
+     */
+    static String extrairId(String xml) {
+        StringBuilder ids = new StringBuilder();
+        int pos = 0;
+        while ((pos = xml.indexOf("<infNFe", pos)) >= 0) {
+            int fimTag = xml.indexOf('>', pos);
+            char proximo = xml.charAt(pos + 7);
+            if (proximo != ' ' && proximo != '\t' && proximo != '\n' && proximo != '\r' && proximo != '>') {
+                pos = fimTag; // infNFeSupl
+                continue;
+            }
+            int atributo = xml.indexOf("Id=\"", pos);
+            if (atributo < 0 || atributo > fimTag) {
+                throw new IllegalArgumentException("Atributo Id não encontrado em infNFe");
+            }
+            int inicio = atributo + 4;
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(xml, inicio, xml.indexOf('"', inicio));
+            pos = fimTag;
+        }
+        if (ids.length() == 0) {
+            throw new IllegalArgumentException("Elemento infNFe não encontrado no XML");
+        }
+        return ids.toString();
+    }
+}
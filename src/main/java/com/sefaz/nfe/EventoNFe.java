@@ -0,0 +1,146 @@
+package com.sefaz.nfe;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Evento da NF-e/NFC-e (leiaute de evento 1.00) para o webservice NFeRecepcaoEvento4.
+ *
+ * Tipos suportados:
+ * - Cancelamento (110111): protocolo de autorização e justificativa
+ * - Carta de Correção (110110): texto da correção (apenas NF-e modelo 55)
+ *
+ * O Id do infEvento segue o leiaute: "ID" + tpEvento + chave + nSeqEvento (2 dígitos).
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class EventoNFe {
+
+    public static final String TIPO_CANCELAMENTO = "110111";
+    public static final String TIPO_CARTA_CORRECAO = "110110";
+
+    /** Condição de uso da CC-e, texto fixo exigido pelo leiaute. */
+    static final String CONDICAO_USO_CCE = "A Carta de Correcao e disciplinada pelo paragrafo 1o-A do art. 7o " +
+            "do Convenio S/N, de 15 de dezembro de 1970 e pode ser utilizada para regularizacao de erro ocorrido " +
+            "na emissao de documento fiscal, desde que o erro nao esteja relacionado com: I - as variaveis que " +
+            "determinam o valor do imposto tais como: base de calculo, aliquota, diferenca de preco, quantidade, " +
+            "valor da operacao ou da prestacao; II - a correcao de dados cadastrais que implique mudanca do " +
+            "remetente ou do destinatario; III - a data de emissao ou de saida.";
+
+    private static final DateTimeFormatter DATA_HORA = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+    private final ChaveAcesso chave;
+    private final String tipo;
+    private final int sequencia;
+    private final OffsetDateTime dataHora;
+    private final Ambiente ambiente;
+    private final String detalhe;
+
+    private EventoNFe(ChaveAcesso chave, String tipo, int sequencia, OffsetDateTime dataHora,
+                      Ambiente ambiente, String detalhe) {
+        if (sequencia < 1 || sequencia > 20) {
+            throw new IllegalArgumentException("nSeqEvento deve estar entre 1 e 20: " + sequencia);
+        }
+        this.chave = chave;
+        this.tipo = tipo;
+        this.sequencia = sequencia;
+        this.dataHora = dataHora.truncatedTo(ChronoUnit.SECONDS);
+        this.ambiente = ambiente;
+        this.detalhe = detalhe;
+    }
+
+    /**
+     * Evento de cancelamento (sempre nSeqEvento 1).
+     *
+     * @param chave Chave de acesso da nota autorizada
+     * @param protocolo nProt da autorização
+     * @param justificativa Motivo do cancelamento (15 a 255 caracteres)
+     * @param dataHora Data/hora do evento
+     * @param ambiente Ambiente da nota (tpAmb)
+     */
+    public static EventoNFe cancelamento(String chave, String protocolo, String justificativa,
+                                         OffsetDateTime dataHora, Ambiente ambiente) {
+        validarTexto("Justificativa", justificativa, 255);
+        if (protocolo == null || !protocolo.matches("\\d{15}")) {
+            throw new IllegalArgumentException("Protocolo de autorização inválido: " + protocolo);
+        }
+        return new EventoNFe(ChaveAcesso.of(chave), TIPO_CANCELAMENTO, 1, dataHora, ambiente,
+                "<descEvento>Cancelamento</descEvento>" +
+                        "<nProt>" + protocolo + "</nProt>" +
+                        "<xJust>" + escapar(justificativa.trim()) + "</xJust>");
+    }
+
+    /**
+     * Carta de correção. Cada nova CC-e da mesma nota substitui a anterior e usa a sequência seguinte.
+     *
+     * @param chave Chave de acesso da NF-e
+     * @param sequencia nSeqEvento (1 a 20)
+     * @param correcao Texto da correção (15 a 1000 caracteres)
+     * @param dataHora Data/hora do evento
+     * @param ambiente Ambiente da nota (tpAmb)
+     */
+    public static EventoNFe cartaCorrecao(String chave, int sequencia, String correcao,
+                                          OffsetDateTime dataHora, Ambiente ambiente) {
+        validarTexto("Correção", correcao, 1000);
+        return new EventoNFe(ChaveAcesso.of(chave), TIPO_CARTA_CORRECAO, sequencia, dataHora, ambiente,
+                "<descEvento>Carta de Correcao</descEvento>" +
+                        "<xCorrecao>" + escapar(correcao.trim()) + "</xCorrecao>" +
+                        "<xCondUso>" + CONDICAO_USO_CCE + "</xCondUso>");
+    }
+
+    /**
+     * Id do infEvento.
+     */
+    public String getId() {
+        return "ID" + tipo + chave.getChave() + String.format("%02d", sequencia);
+    }
+
+    public String getChave() {
+        return chave.getChave();
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public int getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Elemento evento sem assinatura. O CNPJ do autor é o do emitente da chave.
+     */
+    public String toXml() {
+        return "<evento xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"1.00\">" +
+                "<infEvento Id=\"" + getId() + "\">" +
+                "<cOrgao>" + String.format("%02d", chave.getCodigoUf()) + "</cOrgao>" +
+                "<tpAmb>" + ambiente.getCodigo() + "</tpAmb>" +
+                "<CNPJ>" + chave.getCnpj() + "</CNPJ>" +
+                "<chNFe>" + chave.getChave() + "</chNFe>" +
+                "<dhEvento>" + DATA_HORA.format(dataHora) + "</dhEvento>" +
+                "<tpEvento>" + tipo + "</tpEvento>" +
+                "<nSeqEvento>" + sequencia + "</nSeqEvento>" +
+                "<verEvento>1.00</verEvento>" +
+                "<detEvento versao=\"1.00\">" + detalhe + "</detEvento>" +
+                "</infEvento>" +
+                "</evento>";
+    }
+
+    private static void validarTexto(String campo, String texto, int maximo) {
+        int tamanho = texto == null ? 0 : texto.trim().length();
+        if (tamanho < 15 || tamanho > maximo) {
+            throw new IllegalArgumentException(campo + " deve ter de 15 a " + maximo + " caracteres");
+        }
+    }
+
+    private static String escapar(String texto) {
+        return texto.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+}
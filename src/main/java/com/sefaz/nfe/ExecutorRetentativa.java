@@ -0,0 +1,406 @@
+package com.sefaz.nfe;
+
+import com.sefaz.nfe.FalhaSefazException.Classificacao;
+import com.sefaz.nfe.FalhaSefazException.Origem;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executa chamadas à SEFAZ com novas tentativas, prazo total e requisições "hedged".
+ *
+ * Comportamento por {@link ServicoSefaz}:
+ * - Apenas falhas classificadas como retentáveis são repetidas ({@link FalhaSefazException#isRetentavel})
+ * - Espera entre tentativas com backoff exponencial e jitter decorrelacionado:
+ *   espera = min(máximo, aleatório(base, espera anterior * 3))
+ * - Cada chamada tem um prazo total; o timeout de cada tentativa é limitado ao prazo restante
+ * - Em serviços de consulta habilitados (por padrão, consulta de recibo), se a resposta
+ *   demorar mais que o p95 observado, uma segunda requisição idêntica é disparada e
+ *   vale a primeira resposta; a requisição HTTP perdedora é abortada
+ *   ({@link #registrarRequisicao}), liberando a conexão do pool
+ *
+ * As tentativas com hedge rodam em um pool limitado ({@link #setMaximoThreadsHedge}); com o
+ * pool ocupado, a tentativa é executada na thread chamadora, sem hedge. O pool é encerrado
+ * em {@link #close()}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class ExecutorRetentativa implements Closeable {
+
+    /** Quantidade mínima de amostras de latência antes de disparar requisições hedged. */
+    static final int AMOSTRAS_MINIMAS_HEDGE = 20;
+
+    /** Threads simultâneas padrão para tentativas com hedge (primária e secundária). */
+    public static final int MAXIMO_THREADS_HEDGE = 64;
+
+    /** Cancelamento da tentativa com hedge em execução na thread atual. */
+    private static final ThreadLocal<Cancelamento> CANCELAMENTO = new ThreadLocal<>();
+
+    private final Map<ServicoSefaz, Politica> politicas = new EnumMap<>(ServicoSefaz.class);
+    private final Map<ServicoSefaz, HistogramaLatencia> latencias = new EnumMap<>(ServicoSefaz.class);
+    private final Set<ServicoSefaz> hedge = EnumSet.of(ServicoSefaz.RET_AUTORIZACAO);
+    private final LongAdder hedgesDisparados = new LongAdder();
+
+    private final ThreadPoolExecutor executorHedge = new ThreadPoolExecutor(0, MAXIMO_THREADS_HEDGE,
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                Thread t = new Thread(r, "sefaz-hedge");
+                t.setDaemon(true);
+                return t;
+            });
+
+    public ExecutorRetentativa() {
+        for (ServicoSefaz servico : ServicoSefaz.values()) {
+            politicas.put(servico, Politica.PADRAO);
+            latencias.put(servico, new HistogramaLatencia());
+        }
+    }
+
+    /**
+     * Uma tentativa da chamada.
+     *
+     * @param <T> Tipo do retorno
+     */
+    @FunctionalInterface
+    public interface Tentativa<T> {
+
+        /**
+         * @param prazoNanos Instante limite ({@link System#nanoTime()}) para concluir a tentativa
+         */
+        T executar(long prazoNanos) throws Exception;
+    }
+
+    /**
+     * Executa a chamada aplicando a política do serviço.
+     *
+     * @param servico Serviço da SEFAZ (define política, idempotência e hedge)
+     * @param tentativa Chamada a executar
+     * @return Resultado da primeira tentativa bem-sucedida
+     * @throws FalhaSefazException Se a falha for definitiva, as tentativas ou o prazo se esgotarem
+     * @throws Exception Exceções não classificadas lançadas pela tentativa são propagadas sem nova tentativa
+     */
+    public <T> T executar(ServicoSefaz servico, Tentativa<T> tentativa) throws Exception {
+        Politica politica = politicas.get(servico);
+        long prazo = System.nanoTime() + politica.prazoTotal().toNanos();
+        long base = politica.esperaBase().toNanos();
+        long espera = base;
+
+        for (int numero = 1; ; numero++) {
+            if (prazo - System.nanoTime() <= 0) {
+                throw prazoEsgotado(servico, null);
+            }
+
+            try {
+                return tentar(servico, tentativa, prazo);
+            } catch (FalhaSefazException e) {
+                if (!e.isRetentavel(servico) || numero >= politica.maxTentativas()) {
+                    throw e;
+                }
+
+                espera = Math.min(politica.esperaMaxima().toNanos(),
+                        ThreadLocalRandom.current().nextLong(base, Math.max(base + 1, espera * 3)));
+                if (System.nanoTime() + espera - prazo >= 0) {
+                    throw prazoEsgotado(servico, e);
+                }
+
+                log.warn("{}: tentativa {} de {} falhou ({}). Nova tentativa em {} ms",
+                        servico, numero, politica.maxTentativas(), e.getMessage(), TimeUnit.NANOSECONDS.toMillis(espera));
+                TimeUnit.NANOSECONDS.sleep(espera);
+            }
+        }
+    }
+
+    private <T> T tentar(ServicoSefaz servico, Tentativa<T> tentativa, long prazo) throws Exception {
+        HistogramaLatencia histograma = latencias.get(servico);
+        long p95 = hedge.contains(servico) ? histograma.percentil95() : -1;
+        if (p95 > 0 && prazo - System.nanoTime() > p95) {
+            Execucao<T> primaria = submeter(servico, tentativa, prazo);
+            if (primaria != null) {
+                return tentarComHedge(servico, tentativa, prazo, p95, primaria);
+            }
+            log.debug("{}: pool de hedge ocupado, tentativa sem hedge", servico);
+        }
+
+        long inicio = System.nanoTime();
+        T resultado = tentativa.executar(prazo);
+        histograma.registrar(System.nanoTime() - inicio);
+        return resultado;
+    }
+
+    /**
+     * Dispara a tentativa e, se não houver resposta dentro do p95, uma segunda em paralelo.
+     */
+    private <T> T tentarComHedge(ServicoSefaz servico, Tentativa<T> tentativa, long prazo, long atraso,
+                                 Execucao<T> primaria) throws Exception {
+        Execucao<T> secundaria = null;
+        try {
+            try {
+                return primaria.futuro().get(atraso, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Resposta mais lenta que o p95: dispara a requisição hedged
+            }
+
+            secundaria = submeter(servico, tentativa, prazo);
+            if (secundaria == null) {
+                log.debug("{}: pool de hedge ocupado, aguardando a requisição original", servico);
+                return primaria.futuro().get();
+            }
+            hedgesDisparados.increment();
+            log.debug("{}: sem resposta em {} ms, disparando requisição hedged",
+                    servico, TimeUnit.NANOSECONDS.toMillis(atraso));
+
+            CompletableFuture<T> primeira = new CompletableFuture<>();
+            AtomicInteger pendentes = new AtomicInteger(2);
+            for (Execucao<T> execucao : Arrays.asList(primaria, secundaria)) {
+                execucao.futuro().whenComplete((resultado, erro) -> {
+                    if (erro == null) {
+                        primeira.complete(resultado);
+                    } else if (pendentes.decrementAndGet() == 0) {
+                        primeira.completeExceptionally(erro);
+                    }
+                });
+            }
+            return primeira.get();
+        } catch (ExecutionException e) {
+            throw desembrulhar(e);
+        } finally {
+            primaria.cancelar();
+            if (secundaria != null) {
+                secundaria.cancelar();
+            }
+        }
+    }
+
+    /**
+     * Executa a tentativa no pool de hedge.
+     *
+     * @return A execução, ou null se o pool estiver ocupado ou encerrado
+     */
+    private <T> Execucao<T> submeter(ServicoSefaz servico, Tentativa<T> tentativa, long prazo) {
+        Execucao<T> execucao = new Execucao<>(new CompletableFuture<>(), new Cancelamento());
+        try {
+            executorHedge.execute(() -> {
+                CANCELAMENTO.set(execucao.cancelamento());
+                long inicio = System.nanoTime();
+                try {
+                    T resultado = tentativa.executar(prazo);
+                    latencias.get(servico).registrar(System.nanoTime() - inicio);
+                    execucao.futuro().complete(resultado);
+                } catch (Throwable t) {
+                    execucao.futuro().completeExceptionally(t);
+                } finally {
+                    CANCELAMENTO.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return execucao;
+    }
+
+    /**
+     * Associa a requisição em andamento na thread atual à tentativa com hedge que a executa,
+     * para que seja abortada se a outra tentativa responder antes (ex: o HttpPost do
+     * {@link TransporteHttpsSefaz}). Sem efeito fora de uma tentativa com hedge.
+     */
+    static void registrarRequisicao(Cancellable requisicao) {
+        Cancelamento cancelamento = CANCELAMENTO.get();
+        if (cancelamento != null) {
+            cancelamento.registrar(requisicao);
+        }
+    }
+
+    private static Exception desembrulhar(ExecutionException e) {
+        Throwable causa = e.getCause();
+        if (causa instanceof Error error) {
+            throw error;
+        }
+        return causa instanceof Exception ex ? ex : e;
+    }
+
+    private static FalhaSefazException prazoEsgotado(ServicoSefaz servico, FalhaSefazException ultima) {
+        return new FalhaSefazException("Prazo esgotado para " + servico +
+                (ultima == null ? "" : ": " + ultima.getMessage()),
+                Origem.PRAZO, Classificacao.DEFINITIVA,
+                ultima == null ? 0 : ultima.getStatusHttp(),
+                ultima == null ? null : ultima.getCodigoStatus(),
+                ultima);
+    }
+
+    /**
+     * Define a política de novas tentativas de um serviço.
+     */
+    public synchronized void configurar(ServicoSefaz servico, Politica politica) {
+        politicas.put(servico, politica);
+    }
+
+    /**
+     * Habilita ou desabilita requisições hedged para um serviço de consulta.
+     *
+     * @throws IllegalArgumentException Se o serviço não for idempotente
+     */
+    public synchronized void setHedge(ServicoSefaz servico, boolean habilitado) {
+        if (habilitado && !ClassificadorFalhas.isIdempotente(servico)) {
+            throw new IllegalArgumentException("Hedge só é permitido em serviços idempotentes: " + servico);
+        }
+        if (habilitado) {
+            hedge.add(servico);
+        } else {
+            hedge.remove(servico);
+        }
+    }
+
+    public Politica getPolitica(ServicoSefaz servico) {
+        return politicas.get(servico);
+    }
+
+    /**
+     * p95 da latência das tentativas bem-sucedidas do serviço (ou null sem amostras suficientes).
+     */
+    public Duration getLatenciaP95(ServicoSefaz servico) {
+        long p95 = latencias.get(servico).percentil95();
+        return p95 < 0 ? null : Duration.ofNanos(p95);
+    }
+
+    /** Quantidade de requisições hedged disparadas. */
+    public long getHedgesDisparados() {
+        return hedgesDisparados.sum();
+    }
+
+    /**
+     * Threads simultâneas para tentativas com hedge (padrão: {@value #MAXIMO_THREADS_HEDGE}).
+     */
+    public void setMaximoThreadsHedge(int maximo) {
+        if (maximo < 2) {
+            throw new IllegalArgumentException("O hedge exige ao menos 2 threads");
+        }
+        executorHedge.setMaximumPoolSize(maximo);
+    }
+
+    /**
+     * Encerra o pool de hedge; tentativas seguintes são executadas sem hedge.
+     */
+    @Override
+    public void close() {
+        executorHedge.shutdown();
+    }
+
+    private record Execucao<T>(CompletableFuture<T> futuro, Cancelamento cancelamento) {
+
+        /**
+         * Aborta a requisição se a tentativa ainda estiver em andamento.
+         */
+        void cancelar() {
+            if (!futuro.isDone()) {
+                cancelamento.cancelar();
+                futuro.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Requisição registrada por uma tentativa com hedge; o cancelamento pode chegar antes do registro.
+     */
+    private static final class Cancelamento {
+
+        private Cancellable requisicao;
+        private boolean cancelado;
+
+        synchronized void registrar(Cancellable requisicao) {
+            if (cancelado) {
+                requisicao.cancel();
+            } else {
+                this.requisicao = requisicao;
+            }
+        }
+
+        synchronized void cancelar() {
+            cancelado = true;
+            if (requisicao != null) {
+                requisicao.cancel();
+            }
+        }
+    }
+
+    /**
+     * Política de novas tentativas.
+     *
+     * @param maxTentativas Quantidade máxima de tentativas (incluindo a primeira)
+     * @param esperaBase Espera mínima entre tentativas
+     * @param esperaMaxima Espera máxima entre tentativas
+     * @param prazoTotal Prazo total da chamada, incluindo esperas
+     */
+    public record Politica(int maxTentativas, Duration esperaBase, Duration esperaMaxima, Duration prazoTotal) {
+
+        public static final Politica PADRAO =
+                new Politica(4, Duration.ofMillis(200), Duration.ofSeconds(5), Duration.ofSeconds(60));
+
+        public Politica {
+            if (maxTentativas < 1) {
+                throw new IllegalArgumentException("Quantidade de tentativas deve ser positiva");
+            }
+            if (esperaBase.isNegative() || esperaBase.isZero() || esperaMaxima.compareTo(esperaBase) < 0) {
+                throw new IllegalArgumentException("Esperas inválidas");
+            }
+            if (prazoTotal.isNegative() || prazoTotal.isZero()) {
+                throw new IllegalArgumentException("Prazo total deve ser positivo");
+            }
+        }
+    }
+
+    /**
+     * Janela circular com as últimas latências observadas.
+     */
+    private static final class HistogramaLatencia {
+
+        private static final int TAMANHO = 256;
+
+        private final long[] amostras = new long[TAMANHO];
+        private int quantidade;
+        private int proxima;
+        private long p95 = -1;
+        private boolean desatualizado;
+
+        synchronized void registrar(long nanos) {
+            amostras[proxima] = nanos;
+            proxima = (proxima + 1) % TAMANHO;
+            if (quantidade < TAMANHO) {
+                quantidade++;
+            }
+            desatualizado = true;
+        }
+
+        synchronized long percentil95() {
+            if (quantidade < AMOSTRAS_MINIMAS_HEDGE) {
+                return -1;
+            }
+            if (desatualizado) {
+                long[] ordenadas = Arrays.copyOf(amostras, quantidade);
+                Arrays.sort(ordenadas);
+                p95 = ordenadas[(int) Math.ceil(quantidade * 0.95) - 1];
+                desatualizado = false;
+            }
+            return p95;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sefaz.nfe;
+
+/**
+ * Falha na comunicação com a SEFAZ, classificada quanto à possibilidade de nova tentativa.
+ *
+ * Permite ao chamador distinguir, por exemplo, um timeout (que pode ser repetido)
+ * de uma rejeição de schema (definitiva) sem interpretar mensagens de texto.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public class FalhaSefazException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Origem da falha.
+     */
+    public enum Origem {
+        /** Erro de rede/TLS (conexão recusada, timeout, conexão encerrada). */
+        TRANSPORTE,
+        /** Resposta HTTP diferente de 200. */
+        HTTP,
+        /** Resposta SOAP com cStat que indica indisponibilidade do serviço. */
+        SEFAZ,
+        /** Prazo total da chamada esgotado. */
+        PRAZO
+    }
+
+    /**
+     * Classificação da falha para fins de nova tentativa.
+     */
+    public enum Classificacao {
+        /** A requisição certamente não foi processada: pode ser repetida em qualquer serviço. */
+        RETENTAVEL,
+        /** A requisição pode ter sido processada: repetir apenas em serviços de consulta. */
+        RETENTAVEL_SE_IDEMPOTENTE,
+        /** Repetir não altera o resultado. */
+        DEFINITIVA
+    }
+
+    private final Origem origem;
+    private final Classificacao classificacao;
+    private final int statusHttp;
+    private final String codigoStatus;
+
+    public FalhaSefazException(String mensagem, Origem origem, Classificacao classificacao,
+                               int statusHttp, String codigoStatus, Throwable causa) {
+        super(mensagem, causa);
+        this.origem = origem;
+        this.classificacao = classificacao;
+        this.statusHttp = statusHttp;
+        this.codigoStatus = codigoStatus;
+    }
+
+    public Origem getOrigem() {
+        return origem;
+    }
+
+    public Classificacao getClassificacao() {
+        return classificacao;
+    }
+
+    /**
+     * Status HTTP da resposta (0 se a falha ocorreu antes da resposta).
+     */
+    public int getStatusHttp() {
+        return statusHttp;
+    }
+
+    /**
+     * cStat retornado pela SEFAZ, quando a falha for de origem SEFAZ.
+     */
+    public String getCodigoStatus() {
+        return codigoStatus;
+    }
+
+    /**
+     * Indica se a operação pode ser repetida para o serviço informado.
+     */
+    public boolean isRetentavel(ServicoSefaz servico) {
+        return classificacao == Classificacao.RETENTAVEL
+                || (classificacao == Classificacao.RETENTAVEL_SE_IDEMPOTENTE && ClassificadorFalhas.isIdempotente(servico));
+    }
+}
@@ -0,0 +1,243 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fila persistente das NFC-e emitidas em contingência offline (tpEmis=9).
+ *
+ * Cada nota fica em um arquivo {@code <chave>.xml} no diretório da fila, gravado de
+ * forma atômica antes de a nota ser entregue ao consumidor. Após reiniciar a
+ * aplicação, as notas pendentes são recarregadas do diretório.
+ *
+ * A ordem de transmissão é a data de emissão (mais antigas primeiro), já que a
+ * SEFAZ exige a transmissão em até 24 horas da emissão.
+ *
+ * Ao final do processamento cada nota é movida para:
+ * - {@code autorizadas/<chave>-procNFe.xml}: NF-e com o protocolo (nfeProc)
+ * - {@code rejeitadas/<chave>.xml}: nota rejeitada, para correção e nova emissão
+ *
+ * Arquivos da fila que não puderem ser lidos na abertura (sem chave, sem dhEmi, conteúdo
+ * corrompido) são movidos para {@code invalidas/}, e as demais notas são carregadas.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+public class FilaContingencia {
+
+    private static final Pattern CHAVE = Pattern.compile("Id=\"NFe(\\d{44})\"");
+    private static final Pattern DH_EMI = Pattern.compile("<dhEmi>([^<]+)</dhEmi>");
+    private static final String EXTENSAO = ".xml";
+
+    private final Path diretorio;
+    private final Path autorizadas;
+    private final Path rejeitadas;
+    private final Path invalidas;
+
+    private final TreeSet<Pendente> pendentes = new TreeSet<>(
+            Comparator.comparing(Pendente::dataEmissao).thenComparing(Pendente::chave));
+    private final Map<String, Pendente> porChave = new HashMap<>();
+
+    /**
+     * Abre a fila, recarregando as notas pendentes do diretório.
+     *
+     * @param diretorio Diretório da fila (criado se não existir)
+     */
+    public FilaContingencia(Path diretorio) throws IOException {
+        this.diretorio = Files.createDirectories(diretorio);
+        this.autorizadas = Files.createDirectories(diretorio.resolve("autorizadas"));
+        this.rejeitadas = Files.createDirectories(diretorio.resolve("rejeitadas"));
+        this.invalidas = Files.createDirectories(diretorio.resolve("invalidas"));
+
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "*" + EXTENSAO)) {
+            for (Path arquivo : arquivos) {
+                Pendente p;
+                try {
+                    p = pendente(Files.readString(arquivo, StandardCharsets.UTF_8), arquivo);
+                } catch (IllegalArgumentException | DateTimeException | CharacterCodingException e) {
+                    log.error("Arquivo inválido na fila de contingência, movido para {}: {} ({})",
+                            invalidas, arquivo.getFileName(), e.getMessage());
+                    Files.move(arquivo, invalidas.resolve(arquivo.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                    continue;
+                }
+                pendentes.add(p);
+                porChave.put(p.chave(), p);
+            }
+        }
+        if (!pendentes.isEmpty()) {
+            log.info("{} NFC-e em contingência pendentes de transmissão em {}", pendentes.size(), diretorio);
+        }
+    }
+
+    /**
+     * Grava a nota assinada na fila. Retorna apenas após a gravação em disco (fsync do
+     * arquivo e do diretório): o DANFE pode ser impresso em seguida.
+     *
+     * @param xmlAssinado NFC-e assinada, emitida com tpEmis=9
+     * @return Chave de acesso da nota
+     * @throws IllegalArgumentException Se o XML não contiver a chave ou a data de emissão
+     */
+    public String adicionar(String xmlAssinado) throws IOException {
+        Path arquivo = diretorio.resolve(extrairChave(xmlAssinado) + EXTENSAO);
+        Pendente p = pendente(xmlAssinado, arquivo);
+
+        gravar(diretorio.resolve(p.chave() + ".tmp"), arquivo, xmlAssinado);
+
+        synchronized (this) {
+            Pendente anterior = porChave.put(p.chave(), p);
+            if (anterior != null) {
+                pendentes.remove(anterior);
+            }
+            pendentes.add(p);
+        }
+        log.debug("NFC-e {} adicionada à fila de contingência", p.chave());
+        return p.chave();
+    }
+
+    /**
+     * Notas pendentes mais antigas, sem removê-las da fila.
+     *
+     * @param quantidade Quantidade máxima
+     */
+    public synchronized List<Pendente> proximas(int quantidade) {
+        List<Pendente> lista = new ArrayList<>(Math.min(quantidade, pendentes.size()));
+        for (Pendente p : pendentes) {
+            if (lista.size() == quantidade) {
+                break;
+            }
+            lista.add(p);
+        }
+        return lista;
+    }
+
+    /**
+     * Lê o XML assinado de uma nota pendente.
+     */
+    public String lerXml(Pendente pendente) throws IOException {
+        return Files.readString(pendente.arquivo(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Remove a nota autorizada da fila, gravando o nfeProc (NF-e + protNFe).
+     */
+    public void concluir(String chave, String xmlProtocolo) throws IOException {
+        Pendente p = remover(chave);
+        if (p == null) {
+            return;
+        }
+        String nfe = SefazSoapClient.removerDeclaracaoXml(Files.readString(p.arquivo(), StandardCharsets.UTF_8));
+        String nfeProc = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<nfeProc xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" + nfe + xmlProtocolo + "</nfeProc>";
+
+        gravar(autorizadas.resolve(chave + ".tmp"), autorizadas.resolve(chave + "-procNFe" + EXTENSAO), nfeProc);
+        Files.delete(p.arquivo());
+    }
+
+    /**
+     * Remove a nota rejeitada da fila, movendo o XML para o diretório de rejeitadas.
+     */
+    public void rejeitar(String chave) throws IOException {
+        Pendente p = remover(chave);
+        if (p != null) {
+            Files.move(p.arquivo(), rejeitadas.resolve(p.arquivo().getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized int tamanho() {
+        return pendentes.size();
+    }
+
+    /**
+     * Data de emissão da nota pendente mais antiga (ou null se a fila estiver vazia).
+     */
+    public synchronized Instant getEmissaoMaisAntiga() {
+        return pendentes.isEmpty() ? null : pendentes.first().dataEmissao();
+    }
+
+    public Path getDiretorioAutorizadas() {
+        return autorizadas;
+    }
+
+    public Path getDiretorioRejeitadas() {
+        return rejeitadas;
+    }
+
+    public Path getDiretorioInvalidas() {
+        return invalidas;
+    }
+
+    /**
+     * Grava no arquivo temporário com fsync, move para o destino de forma atômica e faz o
+     * fsync do diretório, para que a entrada do arquivo também sobreviva a uma queda de energia.
+     */
+    private static void gravar(Path temp, Path destino, String conteudo) throws IOException {
+        try (FileChannel ch = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(conteudo.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                ch.write(bytes);
+            }
+            ch.force(true);
+        }
+        Files.move(temp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try (FileChannel dir = FileChannel.open(destino.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Sistemas que não permitem abrir diretórios (Windows): o move já é durável no NTFS
+            log.debug("fsync do diretório {} não suportado: {}", destino.getParent(), e.getMessage());
+        }
+    }
+
+    private synchronized Pendente remover(String chave) {
+        Pendente p = porChave.remove(chave);
+        if (p != null) {
+            pendentes.remove(p);
+        }
+        return p;
+    }
+
+    private static Pendente pendente(String xml, Path arquivo) {
+        Matcher dhEmi = DH_EMI.matcher(xml);
+        if (!dhEmi.find()) {
+            throw new IllegalArgumentException("dhEmi não encontrado no XML: " + arquivo.getFileName());
+        }
+        return new Pendente(extrairChave(xml), OffsetDateTime.parse(dhEmi.group(1).trim()).toInstant(), arquivo);
+    }
+
+    private static String extrairChave(String xml) {
+        Matcher m = CHAVE.matcher(xml);
+        if (!m.find()) {
+            throw new IllegalArgumentException("Chave de acesso (Id do infNFe) não encontrada no XML");
+        }
+        return m.group(1);
+    }
+
+    /**
+     * Nota aguardando transmissão.
+     */
+    public record Pendente(String chave, Instant dataEmissao, Path arquivo) {
+    }
+}
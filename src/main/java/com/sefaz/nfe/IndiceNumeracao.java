@@ -0,0 +1,359 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Índice dos números (nNF/nDC) já emitidos por CNPJ, modelo e série.
+ *
+ * Permite:
+ * - Detectar duplicidade de numeração antes do envio (evita cStat 539/204)
+ * - Enumerar lacunas de numeração para o serviço de inutilização
+ * - Persistir e recarregar o índice rapidamente no startup
+ *
+ * Cada série é representada por um mapa de bits paginado (páginas de 65.536
+ * números alocadas sob demanda), de forma que a consulta "já utilizado?" é
+ * O(1) e o consumo de memória é de ~8 KB por página efetivamente usada.
+ * O registro é lock-free (CAS sobre a palavra de 64 bits).
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IndiceNumeracao {
+
+    /** Maior número de documento permitido pelo leiaute (9 dígitos). */
+    public static final int NUMERO_MAXIMO = 999_999_999;
+
+    private static final int MAGIC = 0x4E554D31; // "NUM1"
+
+    private final Map<Long, MapaBits> series = new ConcurrentHashMap<>();
+
+    /**
+     * Registra um número como emitido.
+     *
+     * @param cnpj CNPJ do emitente (14 dígitos)
+     * @param modelo Modelo do documento (55, 65, 59...)
+     * @param serie Série do documento
+     * @param numero Número do documento
+     * @return true se o número ainda não havia sido utilizado, false se for duplicado
+     */
+    public boolean registrar(String cnpj, int modelo, int serie, int numero) {
+        validarNumero(numero);
+        return series.computeIfAbsent(chaveSerie(cnpj, modelo, serie), k -> new MapaBits())
+                .marcar(numero);
+    }
+
+    /**
+     * Registra o número contido em uma chave de acesso (NF-e, NFC-e ou DC-e).
+     *
+     * @param chave Chave de acesso de 44 dígitos ou Id do documento
+     * @return true se o número ainda não havia sido utilizado, false se for duplicado
+     */
+    public boolean registrar(String chave) {
+        ChaveAcesso ca = ChaveAcesso.of(chave);
+        return registrar(ca.getCnpj(), ca.getModelo(), ca.getSerie(), ca.getNumero());
+    }
+
+    /**
+     * Verifica se o número já foi utilizado.
+     */
+    public boolean isUtilizado(String cnpj, int modelo, int serie, int numero) {
+        validarNumero(numero);
+        MapaBits mapa = series.get(chaveSerie(cnpj, modelo, serie));
+        return mapa != null && mapa.contem(numero);
+    }
+
+    /**
+     * Retorna o maior número já registrado para a série (0 se nenhum).
+     */
+    public int getUltimoNumero(String cnpj, int modelo, int serie) {
+        MapaBits mapa = series.get(chaveSerie(cnpj, modelo, serie));
+        return mapa == null ? 0 : mapa.maior.get();
+    }
+
+    /**
+     * Lista as faixas de números não utilizados entre 1 e o maior número emitido da série.
+     *
+     * Cada faixa corresponde a um pedido de inutilização (nNFIni/nNFFin).
+     *
+     * @return Faixas em ordem crescente (vazia se não houver lacunas)
+     */
+    public List<Faixa> listarLacunas(String cnpj, int modelo, int serie) {
+        MapaBits mapa = series.get(chaveSerie(cnpj, modelo, serie));
+        if (mapa == null) {
+            return List.of();
+        }
+        return mapa.lacunas(mapa.maior.get());
+    }
+
+    /**
+     * Grava o índice em arquivo (escrita atômica via arquivo temporário).
+     *
+     * Pode ser chamado durante a emissão: as séries e páginas são capturadas antes de
+     * escrever cada contagem, de forma que o arquivo é sempre consistente (números
+     * registrados durante a gravação podem ficar para a próxima).
+     *
+     * @param arquivo Caminho do arquivo de índice
+     * @throws IOException Se houver erro de escrita
+     */
+    public void salvar(Path arquivo) throws IOException {
+        Path temp = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        ByteBuffer pagina = ByteBuffer.allocate(MapaBits.PALAVRAS_POR_PAGINA * Long.BYTES);
+
+        List<Map.Entry<Long, MapaBits>> seriesGravadas = new ArrayList<>(series.entrySet());
+        try (FileChannel ch = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer cabecalho = ByteBuffer.allocate(8);
+            cabecalho.putInt(MAGIC).putInt(seriesGravadas.size()).flip();
+            escrever(ch, cabecalho);
+
+            for (Map.Entry<Long, MapaBits> e : seriesGravadas) {
+                MapaBits mapa = e.getValue();
+                List<MapaBits.Pagina> paginasUsadas = mapa.paginasUsadas();
+
+                ByteBuffer serie = ByteBuffer.allocate(16);
+                serie.putLong(e.getKey()).putInt(mapa.maior.get()).putInt(paginasUsadas.size()).flip();
+                escrever(ch, serie);
+
+                for (MapaBits.Pagina usada : paginasUsadas) {
+                    ByteBuffer indice = ByteBuffer.allocate(4);
+                    indice.putInt(usada.indice()).flip();
+                    escrever(ch, indice);
+
+                    pagina.clear();
+                    for (int w = 0; w < MapaBits.PALAVRAS_POR_PAGINA; w++) {
+                        pagina.putLong(usada.palavras().get(w));
+                    }
+                    pagina.flip();
+                    escrever(ch, pagina);
+                }
+            }
+            ch.force(true);
+        }
+
+        Files.move(temp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Índice de numeração gravado em {} ({} séries)", arquivo, seriesGravadas.size());
+    }
+
+    /**
+     * Carrega o índice de um arquivo gravado por {@link #salvar(Path)}, substituindo o conteúdo atual.
+     *
+     * @param arquivo Caminho do arquivo de índice
+     * @throws IOException Se houver erro de leitura ou o arquivo for inválido
+     */
+    public void carregar(Path arquivo) throws IOException {
+        Map<Long, MapaBits> lidas = new ConcurrentHashMap<>();
+
+        try (FileChannel ch = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(ch.size(), Integer.MAX_VALUE));
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // lê o arquivo inteiro
+            }
+            buf.flip();
+
+            if (buf.remaining() < 8 || buf.getInt() != MAGIC) {
+                throw new IOException("Arquivo de índice de numeração inválido: " + arquivo);
+            }
+
+            int quantidadeSeries = buf.getInt();
+            for (int s = 0; s < quantidadeSeries; s++) {
+                long chave = buf.getLong();
+                MapaBits mapa = new MapaBits();
+                mapa.maior.set(buf.getInt());
+
+                int paginasUsadas = buf.getInt();
+                for (int i = 0; i < paginasUsadas; i++) {
+                    int p = buf.getInt();
+                    if (p < 0 || p >= MapaBits.TOTAL_PAGINAS) {
+                        throw new IOException("Página " + p + " fora da faixa no índice de numeração: " + arquivo);
+                    }
+                    long[] palavras = new long[MapaBits.PALAVRAS_POR_PAGINA];
+                    buf.asLongBuffer().get(palavras);
+                    buf.position(buf.position() + palavras.length * Long.BYTES);
+                    mapa.paginas.set(p, new AtomicLongArray(palavras));
+                }
+                lidas.put(chave, mapa);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Arquivo de índice de numeração truncado: " + arquivo, e);
+        }
+
+        series.clear();
+        series.putAll(lidas);
+        log.info("Índice de numeração carregado de {} ({} séries)", arquivo, lidas.size());
+    }
+
+    private static void escrever(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    private static void validarNumero(int numero) {
+        if (numero < 1 || numero > NUMERO_MAXIMO) {
+            throw new IllegalArgumentException("Número do documento fora da faixa 1-999999999: " + numero);
+        }
+    }
+
+    /**
+     * Empacota CNPJ (47 bits), modelo (7 bits) e série (10 bits) em um único long.
+     */
+    static long chaveSerie(String cnpj, int modelo, int serie) {
+        if (cnpj == null || cnpj.length() != 14) {
+            throw new IllegalArgumentException("CNPJ deve ter 14 dígitos: " + cnpj);
+        }
+        if (modelo < 0 || modelo > 99 || serie < 0 || serie > 999) {
+            throw new IllegalArgumentException("Modelo/série inválidos: " + modelo + "/" + serie);
+        }
+        long valorCnpj = 0;
+        for (int i = 0; i < 14; i++) {
+            char c = cnpj.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("CNPJ deve conter apenas números: " + cnpj);
+            }
+            valorCnpj = valorCnpj * 10 + (c - '0');
+        }
+        return (valorCnpj << 17) | ((long) modelo << 10) | serie;
+    }
+
+    /**
+     * Faixa contínua de números [inicio, fim].
+     */
+    public record Faixa(int inicio, int fim) {
+
+        public int quantidade() {
+            return fim - inicio + 1;
+        }
+    }
+
+    /**
+     * Mapa de bits paginado para os números de uma série.
+     */
+    static final class MapaBits {
+
+        static final int BITS_POR_PAGINA = 1 << 16;
+        static final int PALAVRAS_POR_PAGINA = BITS_POR_PAGINA / 64;
+        static final int TOTAL_PAGINAS = NUMERO_MAXIMO / BITS_POR_PAGINA + 1;
+
+        final AtomicReferenceArray<AtomicLongArray> paginas = new AtomicReferenceArray<>(TOTAL_PAGINAS);
+        final AtomicInteger maior = new AtomicInteger();
+
+        boolean marcar(int numero) {
+            AtomicLongArray pagina = paginaParaEscrita(numero >>> 16);
+            int palavra = (numero & (BITS_POR_PAGINA - 1)) >>> 6;
+            long bit = 1L << (numero & 63);
+
+            long atual;
+            do {
+                atual = pagina.get(palavra);
+                if ((atual & bit) != 0) {
+                    return false;
+                }
+            } while (!pagina.compareAndSet(palavra, atual, atual | bit));
+
+            maior.accumulateAndGet(numero, Math::max);
+            return true;
+        }
+
+        boolean contem(int numero) {
+            AtomicLongArray pagina = paginas.get(numero >>> 16);
+            if (pagina == null) {
+                return false;
+            }
+            int palavra = (numero & (BITS_POR_PAGINA - 1)) >>> 6;
+            return (pagina.get(palavra) & (1L << (numero & 63))) != 0;
+        }
+
+        /**
+         * Páginas alocadas no momento da chamada, em ordem de índice.
+         */
+        List<Pagina> paginasUsadas() {
+            List<Pagina> usadas = new ArrayList<>();
+            for (int p = 0; p < TOTAL_PAGINAS; p++) {
+                AtomicLongArray palavras = paginas.get(p);
+                if (palavras != null) {
+                    usadas.add(new Pagina(p, palavras));
+                }
+            }
+            return usadas;
+        }
+
+        record Pagina(int indice, AtomicLongArray palavras) {
+        }
+
+        List<Faixa> lacunas(int limite) {
+            List<Faixa> faixas = new ArrayList<>();
+            int n = 1;
+            while (n <= limite) {
+                int inicio = proximo(n, limite, false);
+                if (inicio > limite) {
+                    break;
+                }
+                int fim = Math.min(proximo(inicio, limite, true) - 1, limite);
+                faixas.add(new Faixa(inicio, fim));
+                n = fim + 1;
+            }
+            return faixas;
+        }
+
+        /**
+         * Retorna o primeiro número >= inicio cujo bit é igual a {@code usado}, ou limite + 1.
+         */
+        private int proximo(int inicio, int limite, boolean usado) {
+            int n = inicio;
+            while (n <= limite) {
+                AtomicLongArray pagina = paginas.get(n >>> 16);
+                if (pagina == null) {
+                    if (!usado) {
+                        return n;
+                    }
+                    n = ((n >>> 16) + 1) << 16;
+                    continue;
+                }
+
+                int palavra = (n & (BITS_POR_PAGINA - 1)) >>> 6;
+                long bits = pagina.get(palavra);
+                if (!usado) {
+                    bits = ~bits;
+                }
+                bits &= -1L << (n & 63);
+
+                if (bits != 0) {
+                    return (n & ~63) + Long.numberOfTrailingZeros(bits);
+                }
+                n = (n & ~63) + 64;
+            }
+            return limite + 1;
+        }
+
+        private AtomicLongArray paginaParaEscrita(int indice) {
+            AtomicLongArray pagina = paginas.get(indice);
+            if (pagina == null) {
+                AtomicLongArray nova = new AtomicLongArray(PALAVRAS_POR_PAGINA);
+                pagina = paginas.compareAndExchange(indice, null, nova);
+                if (pagina == null) {
+                    pagina = nova;
+                }
+            }
+            return pagina;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.sefaz.nfe;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Leitura incremental de arquivos CSV (RFC 4180) como registros {@code coluna -> valor}.
+ *
+ * A primeira linha é o cabeçalho. Campos entre aspas podem conter o separador,
+ * quebras de linha e aspas duplicadas (""). Apenas um registro fica em memória
+ * por vez, independente do tamanho do arquivo.
+ *
+ * Exportações de pedidos costumam ter uma linha por item; {@link #agrupar} junta as
+ * linhas consecutivas do mesmo pedido em um registro com a lista "itens", no mesmo
+ * formato lido pelo {@link LeitorJsonLinhas}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public class LeitorCsv implements Iterator<Map<String, Object>>, Closeable {
+
+    /** Chave da lista de itens nos registros agrupados. */
+    public static final String ITENS = "itens";
+
+    private final BufferedReader leitor;
+    private final char separador;
+    private final String[] cabecalho;
+    private final StringBuilder campo = new StringBuilder();
+    private long linha;
+    private List<String> proximo;
+    private boolean fim;
+
+    public LeitorCsv(Reader leitor) throws IOException {
+        this(leitor, ',');
+    }
+
+    public LeitorCsv(Reader leitor, char separador) throws IOException {
+        this.leitor = leitor instanceof BufferedReader b ? b : new BufferedReader(leitor, 64 * 1024);
+        this.separador = separador;
+        List<String> colunas = lerLinha();
+        if (colunas == null) {
+            throw new IllegalArgumentException("Arquivo CSV sem cabeçalho");
+        }
+        if (!colunas.isEmpty() && colunas.get(0).startsWith("\uFEFF")) {
+            colunas.set(0, colunas.get(0).substring(1));
+        }
+        this.cabecalho = colunas.toArray(new String[0]);
+    }
+
+    /**
+     * Lê o próximo registro, se ainda não lido.
+     *
+     * @throws IllegalArgumentException se o registro estiver mal formado (aspas não fechadas)
+     */
+    @Override
+    public boolean hasNext() {
+        if (proximo == null && !fim) {
+            try {
+                proximo = lerLinha();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            fim = proximo == null;
+        }
+        return proximo != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException se a quantidade de campos diferir do cabeçalho;
+     *         a leitura pode continuar no registro seguinte
+     */
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> valores = proximo;
+        long numero = linha;
+        proximo = null;
+
+        if (valores.size() != cabecalho.length) {
+            throw new IllegalArgumentException("Linha " + numero + ": " + valores.size() +
+                    " campos, cabeçalho com " + cabecalho.length);
+        }
+        Map<String, Object> registro = new LinkedHashMap<>(cabecalho.length * 2);
+        for (int i = 0; i < cabecalho.length; i++) {
+            registro.put(cabecalho[i], valores.get(i));
+        }
+        return registro;
+    }
+
+    /**
+     * Lê um registro (que pode ocupar várias linhas físicas). Linhas em branco são ignoradas.
+     */
+    private List<String> lerLinha() throws IOException {
+        List<String> valores = new ArrayList<>(cabecalho == null ? 16 : cabecalho.length);
+        campo.setLength(0);
+        boolean aspas = false;
+        boolean vazio = true;
+
+        int c;
+        while ((c = leitor.read()) != -1) {
+            vazio = false;
+            if (aspas) {
+                if (c == '"') {
+                    leitor.mark(1);
+                    if (leitor.read() == '"') {
+                        campo.append('"');
+                    } else {
+                        leitor.reset();
+                        aspas = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        linha++;
+                    }
+                    campo.append((char) c);
+                }
+            } else if (c == '"' && campo.length() == 0) {
+                aspas = true;
+            } else if (c == separador) {
+                valores.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    leitor.mark(1);
+                    if (leitor.read() != '\n') {
+                        leitor.reset();
+                    }
+                }
+                linha++;
+                if (valores.isEmpty() && campo.length() == 0) {
+                    vazio = true;
+                    continue;
+                }
+                valores.add(campo.toString());
+                return valores;
+            } else {
+                campo.append((char) c);
+            }
+        }
+
+        if (aspas) {
+            throw new IllegalArgumentException("Linha " + linha + ": aspas não fechadas");
+        }
+        if (vazio && valores.isEmpty() && campo.length() == 0) {
+            return null;
+        }
+        linha++;
+        valores.add(campo.toString());
+        return valores;
+    }
+
+    /**
+     * Agrupa linhas consecutivas com o mesmo valor na coluna informada (ex: número do pedido).
+     *
+     * O registro agrupado tem os campos da primeira linha e a lista {@value #ITENS}
+     * com todas as linhas do grupo. O arquivo deve estar ordenado pela coluna.
+     *
+     * Uma linha mal formada encerra o grupo em construção, que é entregue normalmente; a
+     * {@link IllegalArgumentException} da linha é lançada pelo {@code next()} seguinte e a
+     * leitura continua na linha posterior, como no iterador sem agrupamento.
+     */
+    public static Iterator<Map<String, Object>> agrupar(Iterator<Map<String, Object>> linhas, String coluna) {
+        return new Iterator<>() {
+            private Map<String, Object> pendente;
+            private IllegalArgumentException erro;
+
+            @Override
+            public boolean hasNext() {
+                if (pendente == null && erro == null) {
+                    pendente = ler();
+                }
+                return pendente != null || erro != null;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (erro != null) {
+                    IllegalArgumentException e = erro;
+                    erro = null;
+                    throw e;
+                }
+                Object chave = pendente.get(coluna);
+                if (chave == null) {
+                    pendente = null;
+                    throw new IllegalArgumentException("Coluna " + coluna + " não encontrada");
+                }
+                Map<String, Object> grupo = new LinkedHashMap<>(pendente);
+                List<Map<String, Object>> itens = new ArrayList<>();
+                itens.add(pendente);
+                pendente = null;
+                Map<String, Object> linha;
+                while ((linha = ler()) != null) {
+                    if (!chave.equals(linha.get(coluna))) {
+                        pendente = linha;
+                        break;
+                    }
+                    itens.add(linha);
+                }
+                grupo.put(ITENS, itens);
+                return grupo;
+            }
+
+            /**
+             * Próxima linha, ou null no fim do arquivo ou se a linha for mal formada
+             * (o erro fica guardado para o próximo {@code next()}).
+             */
+            private Map<String, Object> ler() {
+                try {
+                    return linhas.hasNext() ? linhas.next() : null;
+                } catch (IllegalArgumentException e) {
+                    erro = e;
+                    return null;
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        leitor.close();
+    }
+}
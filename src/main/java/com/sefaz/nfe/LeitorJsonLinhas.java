@@ -0,0 +1,261 @@
+package com.sefaz.nfe;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Leitura incremental de arquivos JSON Lines (um objeto JSON por linha).
+ *
+ * Cada linha vira um {@code Map<String, Object>}: objetos aninhados são Map, arrays
+ * são List, textos e números são String (números sem conversão, para não perder
+ * precisão em valores monetários), booleanos são Boolean e null é null.
+ * Apenas uma linha fica em memória por vez.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public class LeitorJsonLinhas implements Iterator<Map<String, Object>>, Closeable {
+
+    private final BufferedReader leitor;
+    private long numeroLinha;
+    private String proxima;
+    private boolean fim;
+
+    public LeitorJsonLinhas(Reader leitor) {
+        this.leitor = leitor instanceof BufferedReader b ? b : new BufferedReader(leitor, 64 * 1024);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (proxima == null && !fim) {
+            try {
+                proxima = lerLinha();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            fim = proxima == null;
+        }
+        return proxima != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException se a linha não for um objeto JSON válido;
+     *         a leitura pode continuar na linha seguinte
+     */
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String texto = proxima;
+        long numero = numeroLinha;
+        proxima = null;
+
+        Analisador analisador = new Analisador(texto, numero);
+        Object valor = analisador.valor();
+        analisador.fim();
+        if (!(valor instanceof Map)) {
+            throw new IllegalArgumentException("Linha " + numero + ": esperado um objeto JSON");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> objeto = (Map<String, Object>) valor;
+        return objeto;
+    }
+
+    private String lerLinha() throws IOException {
+        String linha;
+        while ((linha = leitor.readLine()) != null) {
+            numeroLinha++;
+            if (!linha.isBlank()) {
+                return linha;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        leitor.close();
+    }
+
+    /**
+     * Analisador recursivo de um valor JSON (RFC 8259).
+     */
+    private static final class Analisador {
+
+        private final String texto;
+        private final long linha;
+        private int pos;
+
+        Analisador(String texto, long linha) {
+            this.texto = texto;
+            this.linha = linha;
+        }
+
+        Object valor() {
+            espacos();
+            if (pos >= texto.length()) {
+                throw erro("fim inesperado");
+            }
+            char c = texto.charAt(pos);
+            switch (c) {
+                case '{':
+                    return objeto();
+                case '[':
+                    return lista();
+                case '"':
+                    return texto();
+                case 't':
+                    literal("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    literal("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    literal("null");
+                    return null;
+                default:
+                    return numero();
+            }
+        }
+
+        private Map<String, Object> objeto() {
+            Map<String, Object> objeto = new LinkedHashMap<>();
+            pos++;
+            espacos();
+            if (consumir('}')) {
+                return objeto;
+            }
+            do {
+                espacos();
+                if (pos >= texto.length() || texto.charAt(pos) != '"') {
+                    throw erro("esperado nome de campo");
+                }
+                String nome = texto();
+                espacos();
+                if (!consumir(':')) {
+                    throw erro("esperado ':'");
+                }
+                objeto.put(nome, valor());
+                espacos();
+            } while (consumir(','));
+            if (!consumir('}')) {
+                throw erro("esperado '}'");
+            }
+            return objeto;
+        }
+
+        private List<Object> lista() {
+            List<Object> lista = new ArrayList<>();
+            pos++;
+            espacos();
+            if (consumir(']')) {
+                return lista;
+            }
+            do {
+                lista.add(valor());
+                espacos();
+            } while (consumir(','));
+            if (!consumir(']')) {
+                throw erro("esperado ']'");
+            }
+            return lista;
+        }
+
+        private String texto() {
+            pos++;
+            StringBuilder sb = null;
+            int inicio = pos;
+            while (pos < texto.length()) {
+                char c = texto.charAt(pos);
+                if (c == '"') {
+                    String valor = sb == null ? texto.substring(inicio, pos) : sb.append(texto, inicio, pos).toString();
+                    pos++;
+                    return valor;
+                }
+                if (c == '\\') {
+                    if (sb == null) {
+                        sb = new StringBuilder();
+                    }
+                    sb.append(texto, inicio, pos);
+                    if (++pos >= texto.length()) {
+                        break;
+                    }
+                    char e = texto.charAt(pos++);
+                    switch (e) {
+                        case '"', '\\', '/' -> sb.append(e);
+                        case 'b' -> sb.append('\b');
+                        case 'f' -> sb.append('\f');
+                        case 'n' -> sb.append('\n');
+                        case 'r' -> sb.append('\r');
+                        case 't' -> sb.append('\t');
+                        case 'u' -> {
+                            if (pos + 4 > texto.length()) {
+                                throw erro("escape \\u incompleto");
+                            }
+                            sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                            pos += 4;
+                        }
+                        default -> throw erro("escape inválido \\" + e);
+                    }
+                    inicio = pos;
+                } else {
+                    pos++;
+                }
+            }
+            throw erro("texto não terminado");
+        }
+
+        private String numero() {
+            int inicio = pos;
+            while (pos < texto.length() && "+-0123456789.eE".indexOf(texto.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (inicio == pos) {
+                throw erro("caractere inesperado '" + texto.charAt(pos) + "'");
+            }
+            return texto.substring(inicio, pos);
+        }
+
+        private void literal(String esperado) {
+            if (!texto.startsWith(esperado, pos)) {
+                throw erro("esperado " + esperado);
+            }
+            pos += esperado.length();
+        }
+
+        private boolean consumir(char c) {
+            if (pos < texto.length() && texto.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void espacos() {
+            while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        void fim() {
+            espacos();
+            if (pos < texto.length()) {
+                throw erro("conteúdo após o objeto");
+            }
+        }
+
+        private IllegalArgumentException erro(String motivo) {
+            return new IllegalArgumentException("Linha " + linha + ", coluna " + (pos + 1) + ": " + motivo);
+        }
+    }
+}
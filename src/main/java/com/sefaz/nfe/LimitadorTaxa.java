@@ -0,0 +1,240 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limitador de taxa (token bucket) por endpoint da UF, CNPJ e serviço.
+ *
+ * Evita o bloqueio de uma hora aplicado pela SEFAZ por consumo indevido (cStat 656):
+ * - Cada combinação (host do endpoint, CNPJ, serviço) possui um balde próprio
+ * - A taxa e a rajada são configuráveis por {@link ServicoSefaz}
+ * - O caminho rápido é lock-free: uma única operação CAS reserva a vez da requisição
+ * - Após um cStat 656 a combinação fica bloqueada pelo período informado
+ *
+ * O tempo de espera imposto pelo limitador é acumulado por serviço, permitindo
+ * ajustar a vazão até o limite aceito pela SEFAZ.
+ *
+ * Implementado como GCRA (Generic Cell Rate Algorithm), equivalente a um token
+ * bucket mas com estado de um único long por balde.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class LimitadorTaxa {
+
+    /** Período de bloqueio aplicado pela SEFAZ após consumo indevido. */
+    public static final Duration BLOQUEIO_CONSUMO_INDEVIDO = Duration.ofHours(1);
+
+    private final Map<ServicoSefaz, Configuracao> configuracoes = new EnumMap<>(ServicoSefaz.class);
+    private final Map<ServicoSefaz, Estatisticas> estatisticas = new EnumMap<>(ServicoSefaz.class);
+    private final Map<Chave, Balde> baldes = new ConcurrentHashMap<>();
+
+    public LimitadorTaxa() {
+        for (ServicoSefaz servico : ServicoSefaz.values()) {
+            configuracoes.put(servico, new Configuracao(servico.getTaxaPadrao(), servico.getRajadaPadrao()));
+            estatisticas.put(servico, new Estatisticas());
+        }
+    }
+
+    /**
+     * Define a taxa de um serviço. Vale para novos baldes e para os já existentes.
+     *
+     * @param servico Serviço da SEFAZ
+     * @param requisicoesPorSegundo Taxa sustentada permitida
+     * @param rajada Quantidade de requisições permitidas em rajada
+     */
+    public synchronized void configurar(ServicoSefaz servico, double requisicoesPorSegundo, int rajada) {
+        if (requisicoesPorSegundo <= 0 || rajada < 1) {
+            throw new IllegalArgumentException("Taxa e rajada devem ser positivas");
+        }
+        Configuracao nova = new Configuracao(requisicoesPorSegundo, rajada);
+        configuracoes.put(servico, nova);
+        baldes.forEach((chave, balde) -> {
+            if (chave.servico() == servico) {
+                balde.configuracao = nova;
+            }
+        });
+        log.info("Limite de {} configurado: {}/s, rajada {}", servico, requisicoesPorSegundo, rajada);
+    }
+
+    /**
+     * Aguarda até que a requisição possa ser feita sem exceder a taxa configurada.
+     *
+     * @param url URL do webservice (apenas o host é considerado)
+     * @param cnpj CNPJ do emitente (certificado)
+     * @param servico Serviço da SEFAZ
+     * @throws InterruptedException Se a thread for interrompida durante a espera
+     * @throws IllegalStateException Se a combinação estiver bloqueada por consumo indevido
+     */
+    public void adquirir(String url, String cnpj, ServicoSefaz servico) throws InterruptedException {
+        long espera = reservar(url, cnpj, servico);
+        if (espera <= 0) {
+            return;
+        }
+
+        long limite = System.nanoTime() + espera;
+        while ((espera = limite - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, espera);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Reserva a vez da requisição sem bloquear, para clientes não bloqueantes que
+     * agendam o envio (ex: {@code Mono.delay}).
+     *
+     * @return Tempo que a requisição deve aguardar antes de ser enviada (nanos, 0 se nenhum)
+     * @throws IllegalStateException Se a combinação estiver bloqueada por consumo indevido
+     */
+    public long reservar(String url, String cnpj, ServicoSefaz servico) {
+        Balde balde = balde(url, cnpj, servico);
+        long agora = System.nanoTime();
+
+        long bloqueio = balde.bloqueadoAte;
+        if (bloqueio != 0 && bloqueio - agora > 0) {
+            throw new IllegalStateException("Consumo indevido (cStat 656): " + servico + " bloqueado para " +
+                    hostDe(url) + " por mais " + TimeUnit.NANOSECONDS.toMinutes(bloqueio - agora) + " min");
+        }
+
+        long espera = balde.reservar(agora);
+        Estatisticas est = estatisticas.get(servico);
+        est.requisicoes.increment();
+        if (espera <= 0) {
+            return 0;
+        }
+
+        est.limitadas.increment();
+        est.esperaNanos.add(espera);
+        log.debug("Limitando {} para {}: aguardando {} ms", servico, hostDe(url), TimeUnit.NANOSECONDS.toMillis(espera));
+        return espera;
+    }
+
+    /**
+     * Registra que a SEFAZ retornou cStat 656, bloqueando a combinação pelo período padrão.
+     */
+    public void registrarConsumoIndevido(String url, String cnpj, ServicoSefaz servico) {
+        Balde balde = balde(url, cnpj, servico);
+        balde.bloqueadoAte = System.nanoTime() + BLOQUEIO_CONSUMO_INDEVIDO.toNanos();
+        estatisticas.get(servico).bloqueios.increment();
+        log.error("SEFAZ retornou consumo indevido (cStat 656) para {} em {}. Bloqueado por {}",
+                servico, hostDe(url), BLOQUEIO_CONSUMO_INDEVIDO);
+    }
+
+    /**
+     * Estatísticas acumuladas do serviço.
+     */
+    public Estatisticas getEstatisticas(ServicoSefaz servico) {
+        return estatisticas.get(servico);
+    }
+
+    private Balde balde(String url, String cnpj, ServicoSefaz servico) {
+        Chave chave = new Chave(hostDe(url), cnpj == null ? "" : cnpj, servico);
+        Balde balde = baldes.get(chave);
+        if (balde == null) {
+            balde = baldes.computeIfAbsent(chave, c -> new Balde(configuracoes.get(servico)));
+        }
+        return balde;
+    }
+
+    private static String hostDe(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private record Chave(String host, String cnpj, ServicoSefaz servico) {
+    }
+
+    private record Configuracao(double requisicoesPorSegundo, int rajada) {
+
+        long intervaloNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / requisicoesPorSegundo);
+        }
+
+        long toleranciaNanos() {
+            return intervaloNanos() * (rajada - 1);
+        }
+    }
+
+    /**
+     * Estado de um balde: instante teórico de chegada (TAT) da próxima requisição.
+     */
+    private static final class Balde {
+
+        final AtomicLong tat;
+        volatile Configuracao configuracao;
+        volatile long bloqueadoAte;
+
+        Balde(Configuracao configuracao) {
+            this.configuracao = configuracao;
+            this.tat = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * Reserva a vez da requisição e retorna quanto tempo ela deve aguardar (nanos).
+         */
+        long reservar(long agora) {
+            Configuracao cfg = configuracao;
+            long intervalo = cfg.intervaloNanos();
+            long tolerancia = cfg.toleranciaNanos();
+
+            while (true) {
+                long atual = tat.get();
+                long base = atual - agora > 0 ? atual : agora;
+                long novo = base + intervalo;
+                if (tat.compareAndSet(atual, novo)) {
+                    return base - tolerancia - agora;
+                }
+            }
+        }
+    }
+
+    /**
+     * Contadores de uso do limitador por serviço.
+     */
+    public static final class Estatisticas {
+
+        private final LongAdder requisicoes = new LongAdder();
+        private final LongAdder limitadas = new LongAdder();
+        private final LongAdder esperaNanos = new LongAdder();
+        private final LongAdder bloqueios = new LongAdder();
+
+        /** Total de requisições que passaram pelo limitador. */
+        public long getRequisicoes() {
+            return requisicoes.sum();
+        }
+
+        /** Requisições que precisaram aguardar. */
+        public long getLimitadas() {
+            return limitadas.sum();
+        }
+
+        /** Tempo total de espera imposto pelo limitador. */
+        public Duration getEsperaTotal() {
+            return Duration.ofNanos(esperaNanos.sum());
+        }
+
+        /** Quantidade de bloqueios por consumo indevido (cStat 656). */
+        public long getBloqueios() {
+            return bloqueios.sum();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.sefaz.nfe;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Gauges e contadores dos recursos compartilhados do cliente SEFAZ.
+ *
+ * Registrado automaticamente pelo Spring Boot Actuator (MeterBinder):
+ * - {@code sefaz.http.pool.conexoes}: conexões por estado (ativas, disponiveis, pendentes, max)
+ * - {@code sefaz.http.bytes} e {@code sefaz.http.bytes.conteudo}: bytes do corpo HTTP na rede e
+ *   descompactados, por direção (enviados, recebidos)
+ * - {@code sefaz.limitador.*}: requisições, limitadas, espera e bloqueios (cStat 656) por serviço
+ * - {@code sefaz.hedge.disparados} e {@code sefaz.latencia.p95} por serviço
+ *
+ * Os valores são lidos apenas na coleta, sem custo no caminho das requisições.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Component
+public class MetricasRecursosSefaz implements MeterBinder {
+
+    private final TransporteHttpsSefaz transporte;
+    private final LimitadorTaxa limitadorTaxa;
+    private final ExecutorRetentativa executorRetentativa;
+
+    public MetricasRecursosSefaz(TransporteHttpsSefaz transporte, LimitadorTaxa limitadorTaxa,
+                                 ExecutorRetentativa executorRetentativa) {
+        this.transporte = transporte;
+        this.limitadorTaxa = limitadorTaxa;
+        this.executorRetentativa = executorRetentativa;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gaugePool(registry, "ativas", PoolStats::getLeased);
+        gaugePool(registry, "disponiveis", PoolStats::getAvailable);
+        gaugePool(registry, "pendentes", PoolStats::getPending);
+        gaugePool(registry, "max", PoolStats::getMax);
+
+        contadorBytes(registry, "sefaz.http.bytes", "enviados", TransporteHttpsSefaz::getBytesEnviados);
+        contadorBytes(registry, "sefaz.http.bytes", "recebidos", TransporteHttpsSefaz::getBytesRecebidos);
+        contadorBytes(registry, "sefaz.http.bytes.conteudo", "enviados", TransporteHttpsSefaz::getBytesConteudoEnviado);
+        contadorBytes(registry, "sefaz.http.bytes.conteudo", "recebidos", TransporteHttpsSefaz::getBytesConteudoRecebido);
+
+        for (ServicoSefaz servico : ServicoSefaz.values()) {
+            LimitadorTaxa.Estatisticas est = limitadorTaxa.getEstatisticas(servico);
+            String tag = servico.name();
+
+            FunctionCounter.builder("sefaz.limitador.requisicoes", est, LimitadorTaxa.Estatisticas::getRequisicoes)
+                    .tag("servico", tag)
+                    .register(registry);
+            FunctionCounter.builder("sefaz.limitador.limitadas", est, LimitadorTaxa.Estatisticas::getLimitadas)
+                    .tag("servico", tag)
+                    .register(registry);
+            FunctionCounter.builder("sefaz.limitador.espera", est,
+                            e -> e.getEsperaTotal().toNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+                    .tag("servico", tag)
+                    .baseUnit("seconds")
+                    .register(registry);
+            FunctionCounter.builder("sefaz.limitador.bloqueios", est, LimitadorTaxa.Estatisticas::getBloqueios)
+                    .tag("servico", tag)
+                    .register(registry);
+
+            Gauge.builder("sefaz.latencia.p95", executorRetentativa, e -> segundos(e.getLatenciaP95(servico)))
+                    .tag("servico", tag)
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+
+        FunctionCounter.builder("sefaz.hedge.disparados", executorRetentativa, ExecutorRetentativa::getHedgesDisparados)
+                .description("Requisições hedged disparadas")
+                .register(registry);
+    }
+
+    private void gaugePool(MeterRegistry registry, String estado, ToIntFunction<PoolStats> valor) {
+        Gauge.builder("sefaz.http.pool.conexoes", transporte, t -> {
+                    PoolStats stats = t.getEstatisticasPool();
+                    return stats == null ? 0 : valor.applyAsInt(stats);
+                })
+                .tag("estado", estado)
+                .register(registry);
+    }
+
+    private void contadorBytes(MeterRegistry registry, String nome, String direcao,
+                               ToLongFunction<TransporteHttpsSefaz> valor) {
+        FunctionCounter.builder(nome, transporte, valor::applyAsLong)
+                .tag("direcao", direcao)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static double segundos(Duration duracao) {
+        return duracao == null ? Double.NaN : duracao.toNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
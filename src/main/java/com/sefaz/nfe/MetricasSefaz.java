@@ -0,0 +1,239 @@
+package com.sefaz.nfe;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Métricas e rastreamento (Micrometer Observation) das etapas de emissão.
+ *
+ * Cada etapa gera uma observação que o Spring Boot Actuator converte em:
+ * - Timer/histograma {@code sefaz.nfe.etapa} por etapa (construção, assinatura, validação, envio)
+ * - Timer {@code sefaz.requisicao} por serviço, endpoint da UF e cStat
+ * - Span (OpenTelemetry, via micrometer-tracing) com a chave de acesso como atributo
+ *
+ * Além disso registra os contadores {@code sefaz.respostas} (por serviço, endpoint e cStat)
+ * e {@code sefaz.falhas} (por serviço, endpoint e origem da falha).
+ *
+ * Sem MeterRegistry/ObservationRegistry no contexto, a instância fica desabilitada
+ * e apenas delega a chamada, sem alocações adicionais.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Component
+public class MetricasSefaz {
+
+    /** Instância sem métricas, usada quando nenhum registro é configurado. */
+    public static final MetricasSefaz DESABILITADO = new MetricasSefaz(null, ObservationRegistry.NOOP);
+
+    static final String OBSERVACAO_ETAPA = "sefaz.nfe.etapa";
+    static final String OBSERVACAO_REQUISICAO = "sefaz.requisicao";
+    static final String CONTADOR_RESPOSTAS = "sefaz.respostas";
+    static final String CONTADOR_FALHAS = "sefaz.falhas";
+
+    private static final String SEM_CSTAT = "none";
+
+    /**
+     * Etapas instrumentadas da emissão.
+     */
+    public enum Etapa {
+        CONSTRUCAO("construcao"),
+        ASSINATURA("assinatura"),
+        VALIDACAO("validacao"),
+        ENVIO("envio");
+
+        private final String tag;
+
+        Etapa(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final boolean habilitado;
+
+    @Autowired
+    public MetricasSefaz(ObjectProvider<MeterRegistry> meterRegistry,
+                         ObjectProvider<ObservationRegistry> observationRegistry) {
+        this(meterRegistry.getIfAvailable(), observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+    }
+
+    /**
+     * Métricas apenas com MeterRegistry (sem rastreamento): os timers são
+     * registrados diretamente no registro informado.
+     */
+    public MetricasSefaz(MeterRegistry meterRegistry) {
+        this(meterRegistry, registroComTimers(meterRegistry));
+    }
+
+    public MetricasSefaz(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry == null || observationRegistry.isNoop()
+                ? registroComTimers(meterRegistry)
+                : observationRegistry;
+        this.habilitado = meterRegistry != null || !this.observationRegistry.isNoop();
+    }
+
+    private static ObservationRegistry registroComTimers(MeterRegistry meterRegistry) {
+        if (meterRegistry == null) {
+            return ObservationRegistry.NOOP;
+        }
+        ObservationRegistry registro = ObservationRegistry.create();
+        registro.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        return registro;
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Executa uma etapa da emissão sob observação.
+     *
+     * @param etapa Etapa executada
+     * @param chave Chave de acesso do documento (atributo do span) ou null
+     * @param execucao Código da etapa
+     * @return Retorno da etapa
+     */
+    public <T> T observar(Etapa etapa, String chave, Callable<T> execucao) throws Exception {
+        if (!habilitado) {
+            return execucao.call();
+        }
+
+        Observation observacao = Observation.createNotStarted(OBSERVACAO_ETAPA, observationRegistry)
+                .contextualName("nfe " + etapa.getTag())
+                .lowCardinalityKeyValue("etapa", etapa.getTag());
+        if (chave != null) {
+            observacao.highCardinalityKeyValue("chave", chave);
+        }
+        return observacao.observeChecked(execucao::call);
+    }
+
+    /**
+     * Executa uma requisição à SEFAZ sob observação, registrando o cStat retornado.
+     *
+     * @param servico Serviço chamado
+     * @param url URL do webservice (o host identifica o endpoint da UF)
+     * @param chave Chave de acesso relacionada (atributo do span) ou null
+     * @param requisicao Chamada que retorna o XML de resposta
+     * @return XML de resposta
+     */
+    public String observarRequisicao(ServicoSefaz servico, String url, String chave,
+                                     Callable<String> requisicao) throws Exception {
+        return observar(servico, url, chave, requisicao, ClassificadorFalhas::primeiroCodigoStatus);
+    }
+
+    /**
+     * Versão de {@link #observarRequisicao} para a resposta ainda em bytes UTF-8.
+     */
+    public byte[] observarRequisicaoBytes(ServicoSefaz servico, String url, String chave,
+                                         Callable<byte[]> requisicao) throws Exception {
+        return observar(servico, url, chave, requisicao, ClassificadorFalhas::primeiroCodigoStatus);
+    }
+
+    private <T> T observar(ServicoSefaz servico, String url, String chave, Callable<T> requisicao,
+                           Function<T, String> codigoStatus) throws Exception {
+        if (!habilitado) {
+            return requisicao.call();
+        }
+
+        String endpoint = hostDe(url);
+        Observation observacao = Observation.createNotStarted(OBSERVACAO_REQUISICAO, observationRegistry)
+                .contextualName("sefaz " + servico.name())
+                .lowCardinalityKeyValue("servico", servico.name())
+                .lowCardinalityKeyValue("endpoint", endpoint);
+        if (chave != null) {
+            observacao.highCardinalityKeyValue("chave", chave);
+        }
+
+        observacao.start();
+        Observation.Scope escopo = observacao.openScope();
+        try {
+            T resposta = requisicao.call();
+            String cStat = codigoStatus.apply(resposta);
+            observacao.lowCardinalityKeyValue("cstat", cStat == null ? SEM_CSTAT : cStat);
+            contarResposta(servico, endpoint, cStat);
+            return resposta;
+        } catch (Exception e) {
+            String cStat = e instanceof FalhaSefazException f && f.getCodigoStatus() != null
+                    ? f.getCodigoStatus()
+                    : SEM_CSTAT;
+            observacao.lowCardinalityKeyValue("cstat", cStat);
+            observacao.error(e);
+            contarFalha(servico, endpoint, e);
+            throw e;
+        } finally {
+            escopo.close();
+            observacao.stop();
+        }
+    }
+
+    private void contarResposta(ServicoSefaz servico, String endpoint, String cStat) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.builder(CONTADOR_RESPOSTAS)
+                .description("Respostas da SEFAZ por cStat")
+                .tag("servico", servico.name())
+                .tag("endpoint", endpoint)
+                .tag("cstat", cStat == null ? SEM_CSTAT : cStat)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void contarFalha(ServicoSefaz servico, String endpoint, Exception e) {
+        if (meterRegistry == null) {
+            return;
+        }
+        String origem = e instanceof FalhaSefazException f ? f.getOrigem().name() : e.getClass().getSimpleName();
+        Counter.builder(CONTADOR_FALHAS)
+                .description("Falhas de comunicação com a SEFAZ")
+                .tag("servico", servico.name())
+                .tag("endpoint", endpoint)
+                .tag("origem", origem)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Extrai a chave de acesso do primeiro atributo Id do documento (NFe/DCe), sem parsing.
+     */
+    public static String extrairChave(String xml) {
+        int pos = xml.indexOf("Id=\"");
+        if (pos < 0 || pos + 4 + 47 > xml.length()) {
+            return null;
+        }
+        int inicio = pos + 4 + 3;
+        for (int i = inicio; i < inicio + 44; i++) {
+            char c = xml.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        return xml.substring(inicio, inicio + 44);
+    }
+
+    private static String hostDe(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Geração e assinatura de documentos em massa a partir de registros lidos incrementalmente
+ * ({@link LeitorCsv}, {@link LeitorJsonLinhas} ou qualquer Iterator).
+ *
+ * - Os registros são lidos na thread chamadora e cada um é construído (XML não assinado)
+ *   e assinado em um pool de threads
+ * - No máximo {@code janela} documentos ficam em processamento ou aguardando gravação,
+ *   então a memória usada não depende do tamanho da entrada
+ * - Em modo ordenado os documentos são gravados na ordem da entrada; em modo não ordenado,
+ *   na ordem em que ficam prontos (evita que um documento lento segure os demais)
+ * - A gravação no {@link Destino} é feita sempre na thread chamadora
+ * - Registros mal formados e falhas de construção/assinatura são informados ao ouvinte
+ *   de falhas e não interrompem o processamento; falhas de gravação interrompem
+ *
+ * Exemplo (DC-e a partir de CSV com uma linha por item):
+ * <pre>
+ * try (LeitorCsv csv = new LeitorCsv(Files.newBufferedReader(entrada));
+ *      ProcessadorLote.Destino destino = ProcessadorLote.Destino.zip(Files.newOutputStream(saida))) {
+ *     ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+ *     processador.processar(LeitorCsv.agrupar(csv, "numero"),
+ *             r -&gt; DceXmlWriter.construirDCe(MapeadorDCe.mapear(r)), destino);
+ * }
+ * </pre>
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+public class ProcessadorLote {
+
+    /**
+     * Constrói o XML não assinado de um registro.
+     */
+    @FunctionalInterface
+    public interface Construtor<T> {
+        String construir(T registro) throws Exception;
+    }
+
+    /**
+     * Destino dos documentos assinados. Chamado apenas pela thread que executa
+     * {@link #processar}, não precisa ser thread-safe.
+     */
+    @FunctionalInterface
+    public interface Destino extends Closeable {
+
+        /**
+         * @param indice Posição do registro na entrada (a partir de 0)
+         * @param xml Documento assinado
+         */
+        void escrever(long indice, String xml) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+
+        /**
+         * Um arquivo por documento no diretório, com o nome do Id do elemento assinado
+         * (ex: {@code DCe3524...xml}).
+         */
+        static Destino diretorio(Path diretorio) throws IOException {
+            Files.createDirectories(diretorio);
+            return (indice, xml) -> Files.writeString(diretorio.resolve(nomeArquivo(indice, xml)), xml,
+                    StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Um arquivo ZIP com uma entrada por documento. Fechar o destino fecha a saída.
+         */
+        static Destino zip(OutputStream saida) {
+            ZipOutputStream zip = new ZipOutputStream(saida, StandardCharsets.UTF_8);
+            return new Destino() {
+                @Override
+                public void escrever(long indice, String xml) throws IOException {
+                    zip.putNextEntry(new ZipEntry(nomeArquivo(indice, xml)));
+                    zip.write(xml.getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    zip.close();
+                }
+            };
+        }
+    }
+
+    /**
+     * Registro que não gerou documento.
+     */
+    public record Falha(long indice, Exception erro) {
+    }
+
+    /**
+     * Totais de uma execução de {@link #processar}.
+     */
+    public record Resumo(long processados, long falhas, Duration duracao) {
+    }
+
+    private record Documento(long indice, String xml, Exception erro) {
+    }
+
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private final AssinaturaDigital assinatura;
+    private final String elemento;
+
+    private int paralelismo = Runtime.getRuntime().availableProcessors();
+    private int janela;
+    private boolean ordenado = true;
+    private Consumer<Falha> ouvinteFalhas = f -> log.warn("Registro {} ignorado: {}", f.indice(), f.erro().toString());
+    private MetricasSefaz metricas = MetricasSefaz.DESABILITADO;
+
+    /**
+     * @param assinatura Assinatura com o certificado do emitente
+     * @param elemento Elemento assinado em cada documento (infNFe, infDCe)
+     */
+    public ProcessadorLote(AssinaturaDigital assinatura, String elemento) {
+        this.assinatura = assinatura;
+        this.elemento = elemento;
+    }
+
+    /**
+     * Processa todos os registros. Retorna quando o último documento foi gravado.
+     *
+     * @param registros Registros da entrada, lidos sob demanda
+     * @param construtor Converte um registro no XML não assinado (executado no pool)
+     * @param destino Destino dos documentos assinados (não é fechado ao final)
+     * @throws IOException se a gravação no destino falhar
+     */
+    public <T> Resumo processar(Iterator<? extends T> registros, Construtor<? super T> construtor,
+                                Destino destino) throws IOException {
+        long inicio = System.nanoTime();
+        int limite = janela > 0 ? janela : paralelismo * 4;
+        int pool = POOLS.incrementAndGet();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(paralelismo, r -> {
+            Thread t = new Thread(r, "sefaz-lote-" + pool + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Documento> concluidos = new ExecutorCompletionService<>(executor);
+        ArrayDeque<Future<Documento>> emOrdem = new ArrayDeque<>();
+        long[] totais = new long[2];
+
+        try {
+            long indice = 0;
+            int pendentes = 0;
+            while (true) {
+                T registro;
+                try {
+                    if (!registros.hasNext()) {
+                        break;
+                    }
+                    registro = registros.next();
+                } catch (IllegalArgumentException e) {
+                    falhar(new Falha(indice++, e), totais);
+                    continue;
+                }
+
+                long i = indice++;
+                Callable<Documento> tarefa = () -> construirEAssinar(i, registro, construtor);
+                if (ordenado) {
+                    emOrdem.add(executor.submit(tarefa));
+                } else {
+                    concluidos.submit(tarefa);
+                }
+                if (++pendentes >= limite) {
+                    entregar(proximo(emOrdem, concluidos), destino, totais);
+                    pendentes--;
+                }
+            }
+            for (; pendentes > 0; pendentes--) {
+                entregar(proximo(emOrdem, concluidos), destino, totais);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Resumo resumo = new Resumo(totais[0], totais[1], Duration.ofNanos(System.nanoTime() - inicio));
+        log.info("Lote processado: {} documentos, {} falhas em {} ms",
+                resumo.processados(), resumo.falhas(), resumo.duracao().toMillis());
+        return resumo;
+    }
+
+    private <T> Documento construirEAssinar(long indice, T registro, Construtor<? super T> construtor) {
+        try {
+            String xml = metricas.observar(MetricasSefaz.Etapa.CONSTRUCAO, null, () -> construtor.construir(registro));
+            return new Documento(indice, assinatura.assinar(xml, elemento), null);
+        } catch (Exception e) {
+            return new Documento(indice, null, e);
+        }
+    }
+
+    private Documento proximo(ArrayDeque<Future<Documento>> emOrdem, CompletionService<Documento> concluidos)
+            throws IOException {
+        try {
+            return ordenado ? emOrdem.poll().get() : concluidos.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Processamento do lote interrompido");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha inesperada no processamento do lote", e.getCause());
+        }
+    }
+
+    private void entregar(Documento documento, Destino destino, long[] totais) throws IOException {
+        if (documento.erro() != null) {
+            falhar(new Falha(documento.indice(), documento.erro()), totais);
+            return;
+        }
+        destino.escrever(documento.indice(), documento.xml());
+        totais[0]++;
+    }
+
+    private void falhar(Falha falha, long[] totais) {
+        totais[1]++;
+        ouvinteFalhas.accept(falha);
+    }
+
+    /**
+     * Nome do arquivo do documento: valor do primeiro atributo Id (o do elemento assinado),
+     * ou a posição na entrada se não houver.
+     */
+    static String nomeArquivo(long indice, String xml) {
+        int i = xml.indexOf(" Id=\"");
+        if (i >= 0) {
+            int fim = xml.indexOf('"', i + 5);
+            if (fim > i + 5) {
+                return xml.substring(i + 5, fim) + ".xml";
+            }
+        }
+        return "documento-" + indice + ".xml";
+    }
+
+    /**
+     * Threads que constroem e assinam (padrão: processadores disponíveis).
+     */
+    public void setParalelismo(int paralelismo) {
+        if (paralelismo < 1) {
+            throw new IllegalArgumentException("Paralelismo deve ser pelo menos 1");
+        }
+        this.paralelismo = paralelismo;
+    }
+
+    /**
+     * Máximo de documentos em processamento ou aguardando gravação (padrão: 4 por thread).
+     */
+    public void setJanela(int janela) {
+        if (janela < 1) {
+            throw new IllegalArgumentException("Janela deve ser pelo menos 1");
+        }
+        this.janela = janela;
+    }
+
+    /**
+     * Grava na ordem da entrada (padrão) ou na ordem de conclusão.
+     */
+    public void setOrdenado(boolean ordenado) {
+        this.ordenado = ordenado;
+    }
+
+    /**
+     * Recebe os registros que não geraram documento (padrão: log de aviso).
+     */
+    public void setOuvinteFalhas(Consumer<Falha> ouvinteFalhas) {
+        this.ouvinteFalhas = ouvinteFalhas;
+    }
+
+    /**
+     * Métricas da etapa de construção (padrão: desabilitadas); a assinatura usa as métricas
+     * da {@link AssinaturaDigital}.
+     */
+    public void setMetricas(MetricasSefaz metricas) {
+        this.metricas = metricas;
+    }
+}
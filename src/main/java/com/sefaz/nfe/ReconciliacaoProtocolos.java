@@ -0,0 +1,213 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Reconciliação em massa de NF-e pela chave de acesso (NFeConsultaProtocolo4).
+ *
+ * Utilizada após indisponibilidades para descobrir a situação real de milhares
+ * de notas. As chaves são consumidas de forma incremental e:
+ * - Agrupadas pelo endpoint da UF de origem (cUF da chave); UFs atendidas pelo mesmo
+ *   host (ex: SVRS) compartilham o limite
+ * - Consultadas com paralelismo limitado por endpoint
+ * - Limitadas pelo {@link LimitadorTaxa} do cliente (serviço CONSULTA_PROTOCOLO), evitando cStat 656
+ * - Reportadas uma a uma, à medida que as respostas chegam
+ *
+ * Cada endpoint tem sua própria fila de chaves, consumida pelas suas threads: a leitura da
+ * entrada nunca espera por um endpoint específico, então um endpoint lento ou saturado não
+ * atrasa os demais. O total de chaves aguardando consulta é limitado a
+ * {@value #PENDENTES_MAXIMO}, de forma que o consumo de memória independe do tamanho da entrada.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+public class ReconciliacaoProtocolos {
+
+    /** Chaves aguardando consulta, somadas as filas de todos os endpoints. */
+    public static final int PENDENTES_MAXIMO = 10_000;
+
+    private final SefazSoapClient sefazClient;
+    private final Ambiente ambiente;
+    private final int paralelismoPorEndpoint;
+    private final Object saidaLock = new Object();
+
+    /**
+     * @param sefazClient Cliente SOAP da SEFAZ
+     * @param ambiente Ambiente em que as notas foram emitidas (tpAmb da consulta)
+     * @param paralelismoPorEndpoint Consultas simultâneas por endpoint de UF
+     */
+    public ReconciliacaoProtocolos(SefazSoapClient sefazClient, Ambiente ambiente, int paralelismoPorEndpoint) {
+        if (paralelismoPorEndpoint < 1) {
+            throw new IllegalArgumentException("Paralelismo por endpoint deve ser positivo");
+        }
+        this.sefazClient = sefazClient;
+        this.ambiente = ambiente;
+        this.paralelismoPorEndpoint = paralelismoPorEndpoint;
+    }
+
+    /**
+     * Consulta todas as chaves, entregando cada resultado ao consumidor assim que disponível.
+     *
+     * O consumidor é chamado de forma serializada (não precisa ser thread-safe),
+     * mas não necessariamente na ordem de entrada. Se ele lançar uma exceção, nenhuma
+     * nova consulta é iniciada e a primeira exceção é relançada após as pendentes terminarem.
+     *
+     * @param chaves Chaves de acesso a consultar
+     * @param saida Consumidor dos resultados
+     * @return Quantidade de chaves processadas
+     * @throws InterruptedException Se a thread for interrompida durante a reconciliação
+     */
+    public long reconciliar(Iterator<String> chaves, Consumer<Resultado> saida) throws InterruptedException {
+        AtomicReference<RuntimeException> falha = new AtomicReference<>();
+        Consumer<Resultado> saidaSerializada = r -> {
+            synchronized (saidaLock) {
+                if (falha.get() == null) {
+                    saida.accept(r);
+                }
+            }
+        };
+
+        Map<String, ExecutorService> endpoints = new HashMap<>();
+        Semaphore pendentes = new Semaphore(PENDENTES_MAXIMO);
+        long total = 0;
+        try {
+            while (falha.get() == null && chaves.hasNext()) {
+                String chave = chaves.next().trim();
+                total++;
+
+                ChaveAcesso chaveAcesso;
+                try {
+                    chaveAcesso = ChaveAcesso.of(chave);
+                } catch (IllegalArgumentException e) {
+                    saidaSerializada.accept(Resultado.erro(chave, e.getMessage()));
+                    continue;
+                }
+
+                String url = SefazEndpoints.getUrlConsultaSituacao(chaveAcesso.getUf().name(),
+                        ambiente.isHomologacao());
+                ExecutorService endpoint = endpoints.computeIfAbsent(URI.create(url).getHost(),
+                        h -> Executors.newFixedThreadPool(paralelismoPorEndpoint));
+
+                pendentes.acquire();
+                endpoint.execute(() -> {
+                    try {
+                        if (falha.get() == null) {
+                            saidaSerializada.accept(consultar(url, chave));
+                        }
+                    } catch (RuntimeException e) {
+                        falha.compareAndSet(null, e);
+                    } finally {
+                        pendentes.release();
+                    }
+                });
+            }
+
+            // Aguarda a conclusão das consultas pendentes
+            pendentes.acquire(PENDENTES_MAXIMO);
+            pendentes.release(PENDENTES_MAXIMO);
+        } finally {
+            endpoints.values().forEach(ExecutorService::shutdown);
+        }
+
+        if (falha.get() != null) {
+            throw falha.get();
+        }
+
+        log.info("Reconciliação concluída: {} chaves processadas", total);
+        return total;
+    }
+
+    /**
+     * Consulta todas as chaves gravando um relatório CSV (chave;cStat;xMotivo;nProt;erro).
+     *
+     * @param chaves Chaves de acesso a consultar
+     * @param relatorio Destino do relatório
+     * @return Quantidade de chaves processadas
+     * @throws IOException Se houver erro ao gravar o relatório
+     * @throws InterruptedException Se a thread for interrompida durante a reconciliação
+     */
+    public long reconciliar(Iterator<String> chaves, Writer relatorio) throws IOException, InterruptedException {
+        relatorio.write("chave;cStat;xMotivo;nProt;erro\n");
+        try {
+            long total = reconciliar(chaves, r -> {
+                try {
+                    relatorio.write(r.toCsv());
+                    relatorio.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            relatorio.flush();
+            return total;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Resultado consultar(String url, String chave) {
+        try {
+            String resposta = sefazClient.consultarProtocolo(chave, ambiente, url);
+            // cStat/xMotivo do retConsSitNFe (ex: 101 cancelada) e nProt da autorização
+            Element retorno = ResultadoAutorizacao.retornoSituacao(resposta);
+            Element prot = ResultadoAutorizacao.filho(retorno, "protNFe");
+            Element infProt = prot == null ? null : ResultadoAutorizacao.filho(prot, "infProt");
+            return new Resultado(
+                    chave,
+                    ResultadoAutorizacao.texto(retorno, "cStat"),
+                    ResultadoAutorizacao.texto(retorno, "xMotivo"),
+                    infProt == null ? null : ResultadoAutorizacao.texto(infProt, "nProt"),
+                    null
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Resultado.erro(chave, "Consulta interrompida");
+        } catch (Exception e) {
+            log.warn("Erro ao consultar chave {}: {}", chave, e.getMessage());
+            return Resultado.erro(chave, e.getMessage());
+        }
+    }
+
+    /**
+     * Resultado da consulta de uma chave.
+     *
+     * @param chave Chave de acesso consultada
+     * @param codigoStatus cStat retornado (ex: 100 autorizada, 101 cancelada, 217 inexistente)
+     * @param mensagem xMotivo retornado
+     * @param protocolo nProt, quando houver
+     * @param erro Mensagem de erro local (chave inválida, falha de comunicação) ou null
+     */
+    public record Resultado(String chave, String codigoStatus, String mensagem, String protocolo, String erro) {
+
+        static Resultado erro(String chave, String erro) {
+            return new Resultado(chave, null, null, null, erro);
+        }
+
+        public boolean isSucesso() {
+            return erro == null;
+        }
+
+        public String toCsv() {
+            return chave + ';' + valor(codigoStatus) + ';' + valor(mensagem) + ';' +
+                    valor(protocolo) + ';' + valor(erro);
+        }
+
+        private static String valor(String s) {
+            return s == null ? "" : s.replace(';', ',').replace('\n', ' ');
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.sefaz.nfe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Resposta da autorização (retEnviNFe) ou da consulta de recibo (retConsReciNFe), lida sob demanda.
+ *
+ * Guarda apenas os bytes recebidos até o primeiro acesso; a leitura é feita uma única vez
+ * (segura entre threads) e gera o {@link ResultadoAutorizacao} com o status do lote e um
+ * {@link ResultadoAutorizacao.Protocolo} por documento (nProt, digVal, dhRecbto). Depois da
+ * leitura os bytes são descartados, a menos que a resposta tenha sido criada mantendo o
+ * conteúdo bruto: chamadores de alto volume não retêm o XML inteiro de cada resposta.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class RespostaSefaz {
+
+    private final boolean manterBruto;
+    private final int tamanho;
+    private volatile byte[] corpo;
+    private volatile ResultadoAutorizacao resultado;
+
+    private RespostaSefaz(byte[] corpo, boolean manterBruto) {
+        this.corpo = corpo;
+        this.manterBruto = manterBruto;
+        this.tamanho = corpo.length;
+    }
+
+    /**
+     * @param corpo Corpo da resposta em UTF-8 (não é copiado)
+     * @param manterBruto true para manter os bytes após a leitura ({@link #getCorpo()})
+     */
+    public static RespostaSefaz de(byte[] corpo, boolean manterBruto) {
+        return new RespostaSefaz(corpo, manterBruto);
+    }
+
+    /**
+     * Resultado lido da resposta (na primeira chamada).
+     *
+     * @throws IllegalArgumentException Se a resposta não for um retorno de autorização válido
+     */
+    public ResultadoAutorizacao getResultado() {
+        ResultadoAutorizacao lido = resultado;
+        if (lido == null) {
+            synchronized (this) {
+                lido = resultado;
+                if (lido == null) {
+                    try {
+                        lido = ResultadoAutorizacao.ler(corpo);
+                    } catch (IllegalArgumentException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalArgumentException("Resposta da SEFAZ inválida: " + e.getMessage(), e);
+                    }
+                    resultado = lido;
+                    if (!manterBruto) {
+                        corpo = null;
+                    }
+                }
+            }
+        }
+        return lido;
+    }
+
+    /** cStat do lote. */
+    public String getCodigoStatus() {
+        return getResultado().codigoStatus();
+    }
+
+    /** xMotivo do lote. */
+    public String getMensagem() {
+        return getResultado().mensagem();
+    }
+
+    /** nRec, quando o lote foi recebido para processamento assíncrono. */
+    public String getRecibo() {
+        return getResultado().recibo();
+    }
+
+    public List<ResultadoAutorizacao.Protocolo> getProtocolos() {
+        return getResultado().protocolos();
+    }
+
+    public boolean isProcessado() {
+        return getResultado().isProcessado();
+    }
+
+    public boolean isPendente() {
+        return getResultado().isPendente();
+    }
+
+    /** Tamanho da resposta recebida, em bytes. */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    public boolean isCorpoDisponivel() {
+        return corpo != null;
+    }
+
+    /**
+     * Cópia do corpo da resposta como recebido.
+     *
+     * @throws IllegalStateException Se os bytes já foram descartados após a leitura
+     */
+    public byte[] getCorpo() {
+        return corpo().clone();
+    }
+
+    /**
+     * Corpo da resposta como texto.
+     *
+     * @throws IllegalStateException Se os bytes já foram descartados após a leitura
+     */
+    public String getXml() {
+        return new String(corpo(), StandardCharsets.UTF_8);
+    }
+
+    private byte[] corpo() {
+        byte[] bytes = corpo;
+        if (bytes == null) {
+            throw new IllegalStateException("Corpo da resposta descartado após a leitura (manterBruto=false)");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,213 @@
+package com.sefaz.nfe;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resultado de uma autorização de NF-e/NFC-e, lido do retEnviNFe (modo síncrono)
+ * ou do retConsReciNFe (consulta de recibo). As respostas da DC-e (retEnviDCe,
+ * retConsReciDCe com protDCe) têm a mesma estrutura e são lidas da mesma forma.
+ *
+ * @param codigoStatus cStat do lote (104 = processado, 103 = recebido, ou rejeição do lote)
+ * @param mensagem xMotivo do lote
+ * @param recibo nRec (apenas quando o lote foi recebido para processamento assíncrono)
+ * @param protocolos Um protNFe por nota do lote (vazio enquanto não processado)
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public record ResultadoAutorizacao(String codigoStatus, String mensagem, String recibo, List<Protocolo> protocolos) {
+
+    /** Lote processado: os protocolos estão na resposta. */
+    public static final String CSTAT_LOTE_PROCESSADO = "104";
+
+    /** Lote recebido para processamento assíncrono: consultar o recibo. */
+    public static final String CSTAT_LOTE_RECEBIDO = "103";
+
+    /** Lote ainda em processamento na consulta de recibo. */
+    public static final String CSTAT_LOTE_EM_PROCESSAMENTO = "105";
+
+    public ResultadoAutorizacao {
+        protocolos = List.copyOf(protocolos);
+    }
+
+    public boolean isProcessado() {
+        return CSTAT_LOTE_PROCESSADO.equals(codigoStatus);
+    }
+
+    public boolean isPendente() {
+        return CSTAT_LOTE_RECEBIDO.equals(codigoStatus) || CSTAT_LOTE_EM_PROCESSAMENTO.equals(codigoStatus);
+    }
+
+    /**
+     * Protocolo da única nota do lote (ou null se o lote não foi processado).
+     */
+    public Protocolo getProtocolo() {
+        return protocolos.isEmpty() ? null : protocolos.get(0);
+    }
+
+    /**
+     * Lê a resposta SOAP da SEFAZ (retEnviNFe, retConsReciNFe, retEnviDCe ou retConsReciDCe).
+     *
+     * @throws IllegalArgumentException Se a resposta não contiver o cStat do lote
+     */
+    public static ResultadoAutorizacao ler(String xmlResposta) throws Exception {
+        return ler(xmlResposta.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lê a resposta SOAP ainda em bytes UTF-8, como recebida do transporte.
+     *
+     * @throws IllegalArgumentException Se a resposta não contiver o cStat do lote
+     */
+    public static ResultadoAutorizacao ler(byte[] xmlResposta) throws Exception {
+        Document doc = parse(xmlResposta);
+
+        String documento = "NFe";
+        Element retorno = primeiro(doc, "retEnviNFe");
+        if (retorno == null) {
+            retorno = primeiro(doc, "retConsReciNFe");
+        }
+        if (retorno == null) {
+            documento = "DCe";
+            retorno = primeiro(doc, "retEnviDCe");
+        }
+        if (retorno == null) {
+            retorno = primeiro(doc, "retConsReciDCe");
+        }
+        if (retorno == null) {
+            throw new IllegalArgumentException("Resposta sem retEnviNFe, retConsReciNFe, retEnviDCe ou retConsReciDCe");
+        }
+
+        List<Protocolo> protocolos = new ArrayList<>();
+        NodeList prot = retorno.getElementsByTagNameNS("*", "prot" + documento);
+        for (int i = 0; i < prot.getLength(); i++) {
+            protocolos.add(Protocolo.ler((Element) prot.item(i), "ch" + documento));
+        }
+
+        Element infRec = filho(retorno, "infRec");
+        String recibo = infRec != null ? texto(infRec, "nRec") : texto(retorno, "nRec");
+
+        return new ResultadoAutorizacao(texto(retorno, "cStat"), texto(retorno, "xMotivo"), recibo, protocolos);
+    }
+
+    /**
+     * Lê a resposta da consulta de situação pela chave (retConsSitNFe).
+     *
+     * @return O protNFe da nota ou, se a consulta não trouxer protocolo (ex: 217 - NF-e não
+     *         consta na base), um protocolo sem nProt com o cStat e o xMotivo da consulta
+     * @throws IllegalArgumentException Se a resposta não contiver retConsSitNFe
+     */
+    public static Protocolo lerSituacao(String xmlResposta) throws Exception {
+        Element retorno = retornoSituacao(xmlResposta);
+        Element prot = filho(retorno, "protNFe");
+        if (prot != null) {
+            return Protocolo.ler(prot, "chNFe");
+        }
+        return new Protocolo(texto(retorno, "chNFe"), texto(retorno, "cStat"), texto(retorno, "xMotivo"),
+                null, texto(retorno, "dhRecbto"), null, null);
+    }
+
+    /**
+     * Elemento retConsSitNFe da resposta da consulta pela chave.
+     *
+     * @throws IllegalArgumentException Se a resposta não contiver retConsSitNFe
+     */
+    static Element retornoSituacao(String xmlResposta) throws Exception {
+        Element retorno = primeiro(parse(xmlResposta.getBytes(StandardCharsets.UTF_8)), "retConsSitNFe");
+        if (retorno == null) {
+            throw new IllegalArgumentException("Resposta sem retConsSitNFe");
+        }
+        return retorno;
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(new ByteArrayInputStream(xml));
+    }
+
+    /**
+     * Protocolo (protNFe ou protDCe) de um documento do lote.
+     *
+     * @param chave Chave de acesso (chNFe ou chDCe)
+     * @param codigoStatus cStat da nota (100 = autorizada)
+     * @param mensagem xMotivo da nota
+     * @param protocolo nProt (ausente em rejeições)
+     * @param dataRecebimento dhRecbto
+     * @param digestValue digVal (deve coincidir com o DigestValue da assinatura enviada)
+     * @param xml Elemento protNFe/protDCe serializado, para montar o nfeProc/dceProc
+     */
+    public record Protocolo(String chave, String codigoStatus, String mensagem, String protocolo,
+                            String dataRecebimento, String digestValue, String xml) {
+
+        /** Autorizado o uso (100) ou autorizado fora de prazo (150). */
+        private static final Set<String> AUTORIZADA = Set.of("100", "150");
+
+        public boolean isAutorizada() {
+            return AUTORIZADA.contains(codigoStatus);
+        }
+
+        static Protocolo ler(Element prot, String elementoChave) throws Exception {
+            Element infProt = filho(prot, "infProt");
+            if (infProt == null) {
+                throw new IllegalArgumentException(prot.getLocalName() + " sem infProt");
+            }
+            return new Protocolo(
+                    texto(infProt, elementoChave),
+                    texto(infProt, "cStat"),
+                    texto(infProt, "xMotivo"),
+                    texto(infProt, "nProt"),
+                    texto(infProt, "dhRecbto"),
+                    texto(infProt, "digVal"),
+                    serializar(prot));
+        }
+    }
+
+    private static Element primeiro(Document doc, String nome) {
+        NodeList lista = doc.getElementsByTagNameNS("*", nome);
+        return lista.getLength() > 0 ? (Element) lista.item(0) : null;
+    }
+
+    /**
+     * Filho direto com o nome local informado (o cStat do lote não é o cStat do protNFe).
+     */
+    static Element filho(Element pai, String nome) {
+        for (Node n = pai.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE && nome.equals(n.getLocalName())) {
+                return (Element) n;
+            }
+        }
+        return null;
+    }
+
+    static String texto(Element pai, String nome) {
+        Element e = filho(pai, nome);
+        return e == null ? null : e.getTextContent().trim();
+    }
+
+    static String serializar(Element elemento) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter saida = new StringWriter();
+        transformer.transform(new DOMSource(elemento), new StreamResult(saida));
+        return saida.toString();
+    }
+}
@@ -1,5 +1,10 @@
 package com.sefaz.nfe;
 
+import java.net.URI;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * URLs dos webservices da SEFAZ por UF e ambiente (Homologação/Produção).
  * 
@@ -12,13 +17,64 @@ package com.sefaz.nfe;
  * Webservices disponíveis:
  * - NFeAutorizacao4: Autorização de NF-e
  * - NFeRetAutorizacao4: Consulta de recibo/protocolo
+ * - NFeConsultaProtocolo4: Consulta de situação pela chave de acesso
  * - NFeStatusServico4: Consulta status do serviço
+ * - NFeRecepcaoEvento4: Eventos (cancelamento, carta de correção)
+ * 
+ * Também registra os servidores que aceitam requisições compactadas com gzip
+ * (Content-Encoding), consultado pelo {@link TransporteHttpsSefaz}.
  * 
  * @author Comunidade Open Source
  * @version 1.0
  */
 public class SefazEndpoints {
 
+    private static final Set<String> HOSTS_COMPRESSAO = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Habilita ou desabilita o envio de requisições compactadas (gzip) para todos os
+     * webservices da UF, nos dois ambientes.
+     *
+     * Os servidores são compartilhados: habilitar uma UF atendida pela SVRS habilita
+     * todas as UFs da SVRS.
+     *
+     * @param uf UF (ex: SP, MG, RJ)
+     * @param habilitada true para compactar as requisições
+     */
+    public static void setCompressaoRequisicao(String uf, boolean habilitada) {
+        for (boolean homologacao : new boolean[]{true, false}) {
+            for (String url : new String[]{
+                    getUrlAutorizacao(uf, homologacao), getUrlConsultaProtocolo(uf, homologacao),
+                    getUrlStatusServico(uf, homologacao), getUrlConsultaSituacao(uf, homologacao),
+                    getUrlRecepcaoEvento(uf, homologacao)}) {
+                setCompressaoRequisicaoHost(host(url), habilitada);
+            }
+        }
+    }
+
+    /**
+     * Habilita ou desabilita a compactação para um servidor específico (ex: webservices da DC-e).
+     */
+    public static void setCompressaoRequisicaoHost(String host, boolean habilitada) {
+        if (habilitada) {
+            HOSTS_COMPRESSAO.add(host.toLowerCase(Locale.ROOT));
+        } else {
+            HOSTS_COMPRESSAO.remove(host.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Indica se o servidor da URL aceita requisições compactadas (padrão: nenhum).
+     */
+    public static boolean isCompressaoRequisicao(String url) {
+        return !HOSTS_COMPRESSAO.isEmpty() && HOSTS_COMPRESSAO.contains(host(url));
+    }
+
+    private static String host(String url) {
+        String host = URI.create(url).getHost();
+        return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Retorna a URL do serviço de autorização de NF-e para a UF e ambiente especificados.
      *
@@ -115,4 +171,83 @@ public class SefazEndpoints {
                 ? "https://nfce-homologacao.svrs.rs.gov.br/ws/NfeStatusServico/NFeStatusServico4.asmx"
                 : "https://nfce.svrs.rs.gov.br/ws/NfeStatusServico/NFeStatusServico4.asmx";
     }
+
+    /**
+     * Retorna a URL do serviço de consulta de protocolo pela chave de acesso (NFeConsultaProtocolo4).
+     *
+     * @param uf UF (ex: SP, MG, RJ)
+     * @param homologacao true para homologação, false para produção
+     * @return URL do webservice
+     */
+    public static String getUrlConsultaSituacao(String uf, boolean homologacao) {
+        if ("SP".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://homologacao.nfce.fazenda.sp.gov.br/ws/NFeConsultaProtocolo4.asmx"
+                    : "https://nfce.fazenda.sp.gov.br/ws/NFeConsultaProtocolo4.asmx";
+        }
+
+        if ("MG".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://hnfce.fazenda.mg.gov.br/nfce/services/NFeConsultaProtocolo4"
+                    : "https://nfce.fazenda.mg.gov.br/nfce/services/NFeConsultaProtocolo4";
+        }
+
+        if ("RJ".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://homologacao.nfce.fazenda.rj.gov.br/NFeConsultaProtocolo4/NFeConsultaProtocolo4.asmx"
+                    : "https://nfce.fazenda.rj.gov.br/NFeConsultaProtocolo4/NFeConsultaProtocolo4.asmx";
+        }
+
+        return homologacao
+                ? "https://nfce-homologacao.svrs.rs.gov.br/ws/NfeConsulta/NfeConsulta4.asmx"
+                : "https://nfce.svrs.rs.gov.br/ws/NfeConsulta/NfeConsulta4.asmx";
+    }
+
+    /**
+     * Retorna a URL do serviço de recepção de eventos (NFeRecepcaoEvento4).
+     *
+     * @param uf UF (ex: SP, MG, RJ)
+     * @param homologacao true para homologação, false para produção
+     * @return URL do webservice
+     */
+    public static String getUrlRecepcaoEvento(String uf, boolean homologacao) {
+        if ("SP".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://homologacao.nfce.fazenda.sp.gov.br/ws/NFeRecepcaoEvento4.asmx"
+                    : "https://nfce.fazenda.sp.gov.br/ws/NFeRecepcaoEvento4.asmx";
+        }
+
+        if ("MG".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://hnfce.fazenda.mg.gov.br/nfce/services/NFeRecepcaoEvento4"
+                    : "https://nfce.fazenda.mg.gov.br/nfce/services/NFeRecepcaoEvento4";
+        }
+
+        if ("RJ".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://homologacao.nfce.fazenda.rj.gov.br/NFeRecepcaoEvento4/NFeRecepcaoEvento4.asmx"
+                    : "https://nfce.fazenda.rj.gov.br/NFeRecepcaoEvento4/NFeRecepcaoEvento4.asmx";
+        }
+
+        return homologacao
+                ? "https://nfce-homologacao.svrs.rs.gov.br/ws/recepcaoevento/recepcaoevento4.asmx"
+                : "https://nfce.svrs.rs.gov.br/ws/recepcaoevento/recepcaoevento4.asmx";
+    }
+
+    /**
+     * Retorna a URL de consulta do QR Code da NFC-e.
+     *
+     * @param uf UF (ex: SP)
+     * @param homologacao true para homologação, false para produção
+     * @return URL da consulta pública, ou null se a UF não estiver cadastrada
+     */
+    public static String getUrlQrCode(String uf, boolean homologacao) {
+        if ("SP".equalsIgnoreCase(uf)) {
+            return homologacao
+                    ? "https://www.homologacao.nfce.fazenda.sp.gov.br/NFCeConsultaPublica/Paginas/ConsultaQRCode.aspx"
+                    : "https://www.nfce.fazenda.sp.gov.br/NFCeConsultaPublica/Paginas/ConsultaQRCode.aspx";
+        }
+
+        return null;
+    }
 }
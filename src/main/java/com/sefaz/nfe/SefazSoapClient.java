@@ -1,43 +1,72 @@
 package com.sefaz.nfe;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
-import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
-import org.apache.hc.core5.http.io.entity.StringEntity;
-import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
-import javax.net.ssl.SSLContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Cliente SOAP para comunicação com os webservices da SEFAZ.
  * 
- * Realiza comunicação HTTPS com certificado digital A1 para:
- * - Envio de NF-e para autorização
+ * Realiza comunicação HTTPS com certificado digital A1 (pool compartilhado,
+ * novas tentativas classificadas e prazo por chamada) para:
+ * - Envio de NF-e para autorização (assíncrono ou síncrono, indSinc=1)
  * - Consulta de recibo de autorização
+ * - Consulta de protocolo pela chave de acesso
+ * - Recepção de eventos (cancelamento, carta de correção)
+ * - Recepção de lotes de DC-e e consulta de recibo da DC-e
  * - Consulta de status do serviço
+ * - Envio de lote e consulta de recibo não bloqueantes (CompletableFuture)
  * 
  * @author Comunidade Open Source
  * @version 1.0
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SefazSoapClient {
 
+    /** Quantidade máxima de NF-e por lote enviNFe. */
+    public static final int MAXIMO_NOTAS_LOTE = 50;
+
+    private static final String CSTAT_CONSUMO_INDEVIDO = "656";
+
     private final CertificadoDigital certificadoDigital;
+    private final LimitadorTaxa limitadorTaxa;
+    private final TransporteHttpsSefaz transporte;
+    private final ExecutorRetentativa executorRetentativa;
+    private final MetricasSefaz metricas;
+
+    private volatile boolean manterRespostaBruta;
+
+    public SefazSoapClient(CertificadoDigital certificadoDigital) {
+        this(certificadoDigital, new LimitadorTaxa());
+    }
+
+    public SefazSoapClient(CertificadoDigital certificadoDigital, LimitadorTaxa limitadorTaxa) {
+        this(certificadoDigital, limitadorTaxa, new TransporteHttpsSefaz(certificadoDigital),
+                new ExecutorRetentativa(), MetricasSefaz.DESABILITADO);
+    }
+
+    @Autowired
+    public SefazSoapClient(CertificadoDigital certificadoDigital, LimitadorTaxa limitadorTaxa,
+                           TransporteHttpsSefaz transporte, ExecutorRetentativa executorRetentativa,
+                           MetricasSefaz metricas) {
+        this.certificadoDigital = certificadoDigital;
+        this.limitadorTaxa = limitadorTaxa;
+        this.transporte = transporte;
+        this.executorRetentativa = executorRetentativa;
+        this.metricas = metricas;
+    }
 
     /**
      * Envia uma NF-e para autorização na SEFAZ.
@@ -50,14 +79,12 @@ public class SefazSoapClient {
     public String enviarNFe(String xmlAssinado, String url) throws Exception {
         log.info("Enviando NF-e para SEFAZ: {}", url);
 
-        // Codifica o XML em Base64
-        String xmlBase64 = Base64.getEncoder().encodeToString(xmlAssinado.getBytes(StandardCharsets.UTF_8));
-
-        // Monta o envelope SOAP
-        String soapEnvelope = buildSoapEnvelope(xmlBase64);
+        // Monta o envelope SOAP (XML em Base64)
+        EnvelopeSoap.Mensagem soapEnvelope = EnvelopeSoap.AUTORIZACAO.montar(xmlAssinado);
 
         // Envia via HTTPS com certificado digital
-        String resposta = enviarSoap(url, soapEnvelope);
+        String chave = metricas.isHabilitado() ? MetricasSefaz.extrairChave(xmlAssinado) : null;
+        String resposta = enviarSoap(ServicoSefaz.AUTORIZACAO, url, soapEnvelope, chave);
 
         log.debug("Resposta SEFAZ recebida");
 
@@ -65,110 +92,414 @@ public class SefazSoapClient {
     }
 
     /**
-     * Consulta o recibo de uma NF-e enviada.
+     * Envia a NF-e em um lote enviNFe, indicando o modo de processamento.
+     *
+     * No modo síncrono (indSinc=1) a SEFAZ devolve o protNFe na própria resposta
+     * (cStat 104), sem a consulta de recibo. A SEFAZ pode ainda responder 103 e
+     * processar o lote de forma assíncrona.
+     *
+     * @param xmlAssinado XML da NF-e assinado
+     * @param idLote Identificador do lote (até 15 dígitos)
+     * @param sincrono true para indSinc=1
+     * @param url URL do webservice NFeAutorizacao4
+     * @return XML de resposta da SEFAZ (retEnviNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String enviarLoteNFe(String xmlAssinado, long idLote, boolean sincrono, String url) throws Exception {
+        return enviarLoteNFe(List.of(xmlAssinado), idLote, sincrono, url);
+    }
+
+    /**
+     * Envia até 50 NF-e em um único lote enviNFe.
+     *
+     * O modo síncrono só é aceito pela SEFAZ para lotes com uma única nota.
+     *
+     * @param xmlsAssinados XMLs das NF-e assinados
+     * @param idLote Identificador do lote (até 15 dígitos)
+     * @param sincrono true para indSinc=1
+     * @param url URL do webservice NFeAutorizacao4
+     * @return XML de resposta da SEFAZ (retEnviNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String enviarLoteNFe(List<String> xmlsAssinados, long idLote, boolean sincrono, String url) throws Exception {
+        EnvelopeSoap.Mensagem soapEnvelope = envelopeLoteNFe(xmlsAssinados, idLote, sincrono, url);
+        String chave = metricas.isHabilitado() ? MetricasSefaz.extrairChave(xmlsAssinados.get(0)) : null;
+        return enviarSoap(ServicoSefaz.AUTORIZACAO, url, soapEnvelope, chave);
+    }
+
+    /**
+     * Envia o lote ao NFeAutorizacao4 da UF e do ambiente do contexto.
+     *
+     * @see #enviarLoteNFe(List, long, boolean, String)
+     */
+    public String enviarLoteNFe(List<String> xmlsAssinados, long idLote, boolean sincrono,
+                                ContextoEmissao contexto) throws Exception {
+        return enviarLoteNFe(xmlsAssinados, idLote, sincrono, contexto.getUrlAutorizacao());
+    }
+
+    /**
+     * Envia o lote ao NFeAutorizacao4 do contexto e retorna a resposta tipada, lida sob demanda.
+     *
+     * @return retEnviNFe como {@link RespostaSefaz}
+     * @throws Exception Se houver erro na comunicação
+     */
+    public RespostaSefaz autorizarLote(List<String> xmlsAssinados, long idLote, boolean sincrono,
+                                       ContextoEmissao contexto) throws Exception {
+        String url = contexto.getUrlAutorizacao();
+        EnvelopeSoap.Mensagem soapEnvelope = envelopeLoteNFe(xmlsAssinados, idLote, sincrono, url);
+        String chave = metricas.isHabilitado() ? MetricasSefaz.extrairChave(xmlsAssinados.get(0)) : null;
+        return RespostaSefaz.de(enviarSoapBytes(ServicoSefaz.AUTORIZACAO, url, soapEnvelope, chave), manterRespostaBruta);
+    }
+
+    /**
+     * Versão não bloqueante de {@link #enviarLoteNFe(List, long, boolean, String)}.
+     *
+     * A espera do limitador de taxa é agendada (sem ocupar a thread) e o envio usa o cliente
+     * HTTP assíncrono do {@link TransporteHttpsSefaz}. Não há novas tentativas: falhas
+     * completam o futuro com {@link FalhaSefazException}, para o chamador aplicar a
+     * política do {@link ExecutorRetentativa} (ex: {@code retryWhen} no Reactor).
+     *
+     * @return Futuro com o XML de resposta da SEFAZ (retEnviNFe)
+     */
+    public CompletableFuture<String> enviarLoteNFeAssincrono(List<String> xmlsAssinados, long idLote, boolean sincrono,
+                                                             String url) {
+        try {
+            return enviarSoapAssincrono(ServicoSefaz.AUTORIZACAO, url,
+                    envelopeLoteNFe(xmlsAssinados, idLote, sincrono, url));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private EnvelopeSoap.Mensagem envelopeLoteNFe(List<String> xmlsAssinados, long idLote, boolean sincrono, String url) {
+        if (xmlsAssinados.isEmpty() || xmlsAssinados.size() > MAXIMO_NOTAS_LOTE) {
+            throw new IllegalArgumentException("O lote deve conter de 1 a " + MAXIMO_NOTAS_LOTE + " NF-e");
+        }
+        if (sincrono && xmlsAssinados.size() > 1) {
+            throw new IllegalArgumentException("Envio síncrono (indSinc=1) aceita apenas uma NF-e por lote");
+        }
+
+        log.info("Enviando lote {} com {} NF-e (indSinc={}) para SEFAZ: {}",
+                idLote, xmlsAssinados.size(), sincrono ? 1 : 0, url);
+
+        StringBuilder enviNFe = new StringBuilder("<enviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">")
+                .append("<idLote>").append(idLote).append("</idLote>")
+                .append("<indSinc>").append(sincrono ? 1 : 0).append("</indSinc>");
+        for (String xml : xmlsAssinados) {
+            enviNFe.append(removerDeclaracaoXml(xml));
+        }
+        enviNFe.append("</enviNFe>");
+
+        return EnvelopeSoap.AUTORIZACAO.montar(enviNFe.toString());
+    }
+
+    /**
+     * Consulta o recibo de uma NF-e enviada em homologação (tpAmb=2).
      *
      * @param numeroRecibo Número do recibo retornado pela SEFAZ
      * @param url URL do webservice de consulta
      * @return XML de resposta da SEFAZ
      * @throws Exception Se houver erro na comunicação
+     * @deprecated Envia sempre tpAmb=2, rejeitado em produção (cStat 252); use
+     *             {@link #consultarRecibo(String, Ambiente, String)} ou {@link #consultarRecibo(String, ContextoEmissao)}
      */
+    @Deprecated
     public String consultarRecibo(String numeroRecibo, String url) throws Exception {
+        return consultarRecibo(numeroRecibo, Ambiente.HOMOLOGACAO, url);
+    }
+
+    /**
+     * Consulta o recibo no NFeRetAutorizacao4 da UF e do ambiente do contexto.
+     *
+     * @param numeroRecibo Número do recibo retornado pela SEFAZ
+     * @param contexto Contexto de emissão do lote
+     * @return XML de resposta da SEFAZ (retConsReciNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarRecibo(String numeroRecibo, ContextoEmissao contexto) throws Exception {
+        return consultarRecibo(numeroRecibo, contexto.getAmbiente(), contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Consulta o recibo no ambiente informado.
+     *
+     * @param numeroRecibo Número do recibo retornado pela SEFAZ
+     * @param ambiente Ambiente do lote (tpAmb)
+     * @param url URL do webservice NFeRetAutorizacao4
+     * @return XML de resposta da SEFAZ (retConsReciNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarRecibo(String numeroRecibo, Ambiente ambiente, String url) throws Exception {
         log.info("Consultando recibo {} na SEFAZ: {}", numeroRecibo, url);
 
-        String soapBody = String.format(
+        String resposta = enviarSoap(ServicoSefaz.RET_AUTORIZACAO, url,
+                envelopeConsultaRecibo(numeroRecibo, ambiente), null);
+
+        log.debug("Resposta de consulta recebida");
+
+        return resposta;
+    }
+
+    /**
+     * Consulta o recibo no NFeRetAutorizacao4 do contexto e retorna a resposta tipada, lida sob demanda.
+     *
+     * @return retConsReciNFe como {@link RespostaSefaz}
+     * @throws Exception Se houver erro na comunicação
+     */
+    public RespostaSefaz consultarLote(String numeroRecibo, ContextoEmissao contexto) throws Exception {
+        log.info("Consultando recibo {} na SEFAZ: {}", numeroRecibo, contexto.getUrlRetAutorizacao());
+        byte[] resposta = enviarSoapBytes(ServicoSefaz.RET_AUTORIZACAO, contexto.getUrlRetAutorizacao(),
+                envelopeConsultaRecibo(numeroRecibo, contexto.getAmbiente()), null);
+        return RespostaSefaz.de(resposta, manterRespostaBruta);
+    }
+
+    /**
+     * Versão não bloqueante de {@link #consultarRecibo(String, ContextoEmissao)}.
+     */
+    public CompletableFuture<String> consultarReciboAssincrono(String numeroRecibo, ContextoEmissao contexto) {
+        return consultarReciboAssincrono(numeroRecibo, contexto.getAmbiente(), contexto.getUrlRetAutorizacao());
+    }
+
+    /**
+     * Versão não bloqueante de {@link #consultarRecibo(String, Ambiente, String)}, nas mesmas
+     * condições de {@link #enviarLoteNFeAssincrono}.
+     *
+     * @return Futuro com o XML de resposta da SEFAZ (retConsReciNFe)
+     */
+    public CompletableFuture<String> consultarReciboAssincrono(String numeroRecibo, Ambiente ambiente, String url) {
+        log.debug("Consultando recibo {} na SEFAZ: {}", numeroRecibo, url);
+        return enviarSoapAssincrono(ServicoSefaz.RET_AUTORIZACAO, url, envelopeConsultaRecibo(numeroRecibo, ambiente));
+    }
+
+    private EnvelopeSoap.Mensagem envelopeConsultaRecibo(String numeroRecibo, Ambiente ambiente) {
+        return EnvelopeSoap.RET_AUTORIZACAO.montar(
                 "<consReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
-                        "<tpAmb>2</tpAmb>" +
-                        "<nRec>%s</nRec>" +
-                        "</consReciNFe>",
-                numeroRecibo
-        );
+                        "<tpAmb>" + ambiente.getCodigo() + "</tpAmb>" +
+                        "<nRec>" + numeroRecibo + "</nRec>" +
+                        "</consReciNFe>");
+    }
+
+    /**
+     * Consulta a situação da NF-e no NFeConsultaProtocolo4 da UF e do ambiente do contexto.
+     *
+     * @param chave Chave de acesso de 44 dígitos
+     * @param contexto Contexto de emissão da nota
+     * @return XML de resposta da SEFAZ (retConsSitNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarProtocolo(String chave, ContextoEmissao contexto) throws Exception {
+        return consultarProtocolo(chave, contexto.getAmbiente(), contexto.getUrlConsultaProtocolo());
+    }
 
-        String xmlBase64 = Base64.getEncoder().encodeToString(soapBody.getBytes(StandardCharsets.UTF_8));
-        String soapEnvelope = buildConsultaSoapEnvelope(xmlBase64);
+    /**
+     * Consulta a situação/protocolo de uma NF-e pela chave de acesso (NFeConsultaProtocolo4).
+     *
+     * @param chave Chave de acesso de 44 dígitos
+     * @param ambiente Ambiente em que a nota foi emitida (tpAmb)
+     * @param url URL do webservice de consulta de protocolo
+     * @return XML de resposta da SEFAZ (retConsSitNFe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarProtocolo(String chave, Ambiente ambiente, String url) throws Exception {
+        log.info("Consultando protocolo da chave {} na SEFAZ: {}", chave, url);
 
-        String resposta = enviarSoap(url, soapEnvelope);
+        EnvelopeSoap.Mensagem soapEnvelope = EnvelopeSoap.CONSULTA_PROTOCOLO.montar(
+                "<consSitNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+                        "<tpAmb>" + ambiente.getCodigo() + "</tpAmb>" +
+                        "<xServ>CONSULTAR</xServ>" +
+                        "<chNFe>" + chave + "</chNFe>" +
+                        "</consSitNFe>");
 
-        log.debug("Resposta de consulta recebida");
+        String resposta = enviarSoap(ServicoSefaz.CONSULTA_PROTOCOLO, url, soapEnvelope, chave);
+
+        log.debug("Resposta de consulta de protocolo recebida");
+
+        return resposta;
+    }
+
+    /**
+     * Consulta o status do serviço de autorização da UF (NFeStatusServico4).
+     *
+     * @param uf UF autorizadora
+     * @param ambiente Ambiente consultado (tpAmb)
+     * @param url URL do webservice de status do serviço
+     * @return XML de resposta da SEFAZ (retConsStatServ)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarStatusServico(Uf uf, Ambiente ambiente, String url) throws Exception {
+        log.info("Consultando status do serviço da UF {} na SEFAZ: {}", uf, url);
+
+        EnvelopeSoap.Mensagem soapEnvelope = EnvelopeSoap.STATUS_SERVICO.montar(
+                "<consStatServ xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+                        "<tpAmb>" + ambiente.getCodigo() + "</tpAmb>" +
+                        "<cUF>" + uf.getCodigo() + "</cUF>" +
+                        "<xServ>STATUS</xServ>" +
+                        "</consStatServ>");
+
+        return enviarSoap(ServicoSefaz.STATUS_SERVICO, url, soapEnvelope, null);
+    }
+
+    /**
+     * Consulta o status do serviço da UF e do ambiente do contexto.
+     */
+    public String consultarStatusServico(ContextoEmissao contexto) throws Exception {
+        return consultarStatusServico(contexto.getUf(), contexto.getAmbiente(), contexto.getUrlStatusServico());
+    }
+
+    /**
+     * Envia um lote de eventos (envEvento) para o webservice NFeRecepcaoEvento4.
+     *
+     * @param xmlEnvEvento Elemento envEvento com até 20 eventos assinados
+     * @param url URL do webservice de recepção de eventos
+     * @return XML de resposta da SEFAZ (retEnvEvento)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String enviarEvento(String xmlEnvEvento, String url) throws Exception {
+        log.info("Enviando lote de eventos para SEFAZ: {}", url);
+
+        EnvelopeSoap.Mensagem soapEnvelope = EnvelopeSoap.EVENTO.montar(xmlEnvEvento);
+
+        String resposta = enviarSoap(ServicoSefaz.EVENTO, url, soapEnvelope, null);
+
+        log.debug("Resposta de eventos recebida");
 
         return resposta;
     }
 
+    /**
+     * Envia o lote de eventos ao NFeRecepcaoEvento4 da UF do contexto.
+     */
+    public String enviarEvento(String xmlEnvEvento, ContextoEmissao contexto) throws Exception {
+        return enviarEvento(xmlEnvEvento, contexto.getUrlRecepcaoEvento());
+    }
+
+    /**
+     * Envia um lote de DC-e (enviDCe) para o webservice DCeRecepcao.
+     *
+     * A DC-e usa o mesmo pool HTTPS, limitador de taxa e política de novas tentativas
+     * da autorização de NF-e; o XML segue no dceDadosMsg sem codificação Base64.
+     *
+     * @param xmlEnviDCe Elemento enviDCe com as DC-e assinadas
+     * @param url URL do webservice DCeRecepcao
+     * @return XML de resposta da SEFAZ (retEnviDCe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String enviarLoteDCe(String xmlEnviDCe, String url) throws Exception {
+        log.info("Enviando lote de DC-e para SEFAZ: {}", url);
+
+        EnvelopeSoap.Mensagem soapEnvelope = EnvelopeSoap.DCE_RECEPCAO.montar(removerDeclaracaoXml(xmlEnviDCe));
+
+        String chave = metricas.isHabilitado() ? MetricasSefaz.extrairChave(xmlEnviDCe) : null;
+        return enviarSoap(ServicoSefaz.AUTORIZACAO, url, soapEnvelope, chave);
+    }
+
+    /**
+     * Consulta o recibo de um lote de DC-e (DCeRetRecepcao).
+     *
+     * @param numeroRecibo Número do recibo retornado pela SEFAZ
+     * @param ambiente Ambiente do lote (tpAmb)
+     * @param url URL do webservice DCeRetRecepcao
+     * @return XML de resposta da SEFAZ (retConsReciDCe)
+     * @throws Exception Se houver erro na comunicação
+     */
+    public String consultarReciboDCe(String numeroRecibo, Ambiente ambiente, String url) throws Exception {
+        log.info("Consultando recibo de DC-e {} na SEFAZ: {}", numeroRecibo, url);
+
+        String consulta = "<consReciDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\">" +
+                "<tpAmb>" + ambiente.getCodigo() + "</tpAmb>" +
+                "<nRec>" + numeroRecibo + "</nRec>" +
+                "</consReciDCe>";
+
+        return enviarSoap(ServicoSefaz.RET_AUTORIZACAO, url, EnvelopeSoap.DCE_RET_RECEPCAO.montar(consulta), null);
+    }
+
     /**
      * Envia requisição SOAP via HTTPS com certificado digital.
+     *
+     * Cada tentativa passa pelo limitador de taxa; falhas retentáveis são repetidas
+     * conforme a política do serviço no {@link ExecutorRetentativa}.
+     * A chamada completa (incluindo novas tentativas) é observada pelo {@link MetricasSefaz}.
      */
-    private String enviarSoap(String url, String soapEnvelope) throws Exception {
+    private String enviarSoap(ServicoSefaz servico, String url, EnvelopeSoap.Mensagem soapEnvelope, String chave) throws Exception {
+        return new String(enviarSoapBytes(servico, url, soapEnvelope, chave), StandardCharsets.UTF_8);
+    }
+
+    private byte[] enviarSoapBytes(ServicoSefaz servico, String url, EnvelopeSoap.Mensagem soapEnvelope,
+                                   String chave) throws Exception {
         if (!certificadoDigital.isCarregado()) {
             throw new IllegalStateException("Certificado digital não foi carregado.");
         }
 
-        // Configura SSL com o certificado digital
-        SSLContext sslContext = SSLContextBuilder.create()
-                .loadKeyMaterial(
-                        certificadoDigital.getKeyStore(),
-                        "".toCharArray() // senha já foi usada no carregamento
-                )
-                .build();
+        String cnpj = certificadoDigital.getCnpj();
+
+        return metricas.observarRequisicaoBytes(servico, url, chave, () -> executorRetentativa.executar(servico, prazo -> {
+            limitadorTaxa.adquirir(url, cnpj, servico);
 
-        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext);
+            byte[] responseBody = transporte.enviarBytes(url, soapEnvelope, Duration.ofNanos(prazo - System.nanoTime()));
 
-        try (CloseableHttpClient httpClient = HttpClients.custom()
-                .setConnectionManager(
-                        PoolingHttpClientConnectionManagerBuilder.create()
-                                .setSSLSocketFactory(sslSocketFactory)
-                                .build()
-                )
-                .build()) {
+            if (CSTAT_CONSUMO_INDEVIDO.equals(ClassificadorFalhas.primeiroCodigoStatus(responseBody))) {
+                limitadorTaxa.registrarConsumoIndevido(url, cnpj, servico);
+            }
 
-            HttpPost httpPost = new HttpPost(url);
-            httpPost.setHeader("Content-Type", "application/soap+xml; charset=utf-8");
-            httpPost.setEntity(new StringEntity(soapEnvelope, StandardCharsets.UTF_8));
+            FalhaSefazException paralisado = ClassificadorFalhas.sefaz(responseBody);
+            if (paralisado != null) {
+                throw paralisado;
+            }
+
+            return responseBody;
+        }));
+    }
+
+    /**
+     * Uma tentativa não bloqueante: limitador de taxa (espera agendada), transporte assíncrono
+     * e as mesmas verificações de consumo indevido e serviço paralisado de {@link #enviarSoap}.
+     */
+    private CompletableFuture<String> enviarSoapAssincrono(ServicoSefaz servico, String url,
+                                                           EnvelopeSoap.Mensagem soapEnvelope) {
+        if (!certificadoDigital.isCarregado()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Certificado digital não foi carregado."));
+        }
 
-            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-                int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes(), StandardCharsets.UTF_8);
+        String cnpj = certificadoDigital.getCnpj();
+        long espera;
+        try {
+            espera = limitadorTaxa.reservar(url, cnpj, servico);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-                log.debug("Status HTTP: {}", statusCode);
+        Duration prazo = executorRetentativa.getPolitica(servico).prazoTotal();
+        CompletableFuture<String> envio = espera > 0
+                ? CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(espera, TimeUnit.NANOSECONDS))
+                        .thenCompose(v -> transporte.enviarAssincrono(url, soapEnvelope, prazo))
+                : transporte.enviarAssincrono(url, soapEnvelope, prazo);
 
-                if (statusCode != 200) {
-                    log.error("Erro HTTP {} ao comunicar com SEFAZ: {}", statusCode, responseBody);
-                    throw new RuntimeException("Erro HTTP " + statusCode + " ao comunicar com SEFAZ");
-                }
+        return envio.thenApply(responseBody -> {
+            if (CSTAT_CONSUMO_INDEVIDO.equals(ClassificadorFalhas.primeiroCodigoStatus(responseBody))) {
+                limitadorTaxa.registrarConsumoIndevido(url, cnpj, servico);
+            }
 
-                return responseBody;
+            FalhaSefazException paralisado = ClassificadorFalhas.sefaz(responseBody);
+            if (paralisado != null) {
+                throw paralisado;
             }
-        }
+
+            return responseBody;
+        });
     }
 
     /**
-     * Constrói o envelope SOAP para autorização de NF-e.
+     * Mantém o corpo das respostas tipadas ({@link RespostaSefaz}) após a leitura (padrão: descartar).
      */
-    private String buildSoapEnvelope(String xmlBase64) {
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
-                "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" " +
-                "xmlns:nfe=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeAutorizacao4\">" +
-                "<soap:Header/>" +
-                "<soap:Body>" +
-                "<nfe:nfeAutorizacaoLote>" +
-                "<nfe:nfeDadosMsg>" + xmlBase64 + "</nfe:nfeDadosMsg>" +
-                "</nfe:nfeAutorizacaoLote>" +
-                "</soap:Body>" +
-                "</soap:Envelope>";
+    public void setManterRespostaBruta(boolean manterRespostaBruta) {
+        this.manterRespostaBruta = manterRespostaBruta;
     }
 
-    /**
-     * Constrói o envelope SOAP para consulta de recibo.
-     */
-    private String buildConsultaSoapEnvelope(String xmlBase64) {
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
-                "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" " +
-                "xmlns:nfe=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeRetAutorizacao4\">" +
-                "<soap:Header/>" +
-                "<soap:Body>" +
-                "<nfe:nfeRetAutorizacaoLote>" +
-                "<nfe:nfeDadosMsg>" + xmlBase64 + "</nfe:nfeDadosMsg>" +
-                "</nfe:nfeRetAutorizacaoLote>" +
-                "</soap:Body>" +
-                "</soap:Envelope>";
+    static String removerDeclaracaoXml(String xml) {
+        if (!xml.startsWith("<?xml")) {
+            return xml;
+        }
+        return xml.substring(xml.indexOf("?>") + 2).trim();
     }
 
     /**
@@ -222,4 +553,21 @@ public class SefazSoapClient {
 
         return null;
     }
+
+    /**
+     * Extrai o número do protocolo de autorização (nProt) da resposta.
+     */
+    public String extrairProtocolo(String xmlResposta) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document doc = builder.parse(new ByteArrayInputStream(xmlResposta.getBytes(StandardCharsets.UTF_8)));
+
+        NodeList nProtList = doc.getElementsByTagName("nProt");
+        if (nProtList.getLength() > 0) {
+            return nProtList.item(0).getTextContent();
+        }
+
+        return null;
+    }
 }
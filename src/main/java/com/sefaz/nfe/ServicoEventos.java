@@ -0,0 +1,188 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envio de eventos da NF-e/NFC-e (cancelamento, carta de correção) pelo NFeRecepcaoEvento4.
+ *
+ * Os eventos são assinados (infEvento, em uma única passada por lote) e agrupados em lotes envEvento de até 20
+ * eventos, de forma que um cancelamento em massa é feito em poucas requisições.
+ * A resposta é lida por evento: cada {@link EventoNFe} recebe o seu {@link Resultado},
+ * na mesma ordem da lista enviada.
+ *
+ * Todos os eventos de um lote são enviados ao mesmo endpoint; agrupe os eventos
+ * por UF (cOrgao) antes de chamar {@link #enviar}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class ServicoEventos {
+
+    /** Quantidade máxima de eventos por envEvento. */
+    public static final int MAXIMO_EVENTOS_LOTE = 20;
+
+    /** Lote de eventos processado. */
+    static final String CSTAT_LOTE_PROCESSADO = "128";
+
+    private final SefazSoapClient sefazClient;
+    private final AssinaturaDigital assinaturaDigital;
+    private final AtomicLong idLote = new AtomicLong(System.currentTimeMillis());
+
+    @Autowired
+    public ServicoEventos(SefazSoapClient sefazClient, AssinaturaDigital assinaturaDigital) {
+        this.sefazClient = sefazClient;
+        this.assinaturaDigital = assinaturaDigital;
+    }
+
+    /**
+     * Assina e envia os eventos em lotes de até 20.
+     *
+     * @param eventos Eventos a enviar (mesma UF)
+     * @param url URL do webservice NFeRecepcaoEvento4
+     * @return Um resultado por evento, na ordem recebida
+     * @throws Exception Se houver erro na assinatura ou na comunicação; os lotes
+     *                   anteriores à falha já foram processados pela SEFAZ
+     */
+    public List<Resultado> enviar(List<EventoNFe> eventos, String url) throws Exception {
+        List<Resultado> resultados = new ArrayList<>(eventos.size());
+        for (int inicio = 0; inicio < eventos.size(); inicio += MAXIMO_EVENTOS_LOTE) {
+            List<EventoNFe> lote = eventos.subList(inicio, Math.min(inicio + MAXIMO_EVENTOS_LOTE, eventos.size()));
+            resultados.addAll(enviarLote(lote, url));
+        }
+        return resultados;
+    }
+
+    private List<Resultado> enviarLote(List<EventoNFe> lote, String url) throws Exception {
+        long id = idLote.incrementAndGet();
+        StringBuilder envEvento = new StringBuilder("<envEvento xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"1.00\">")
+                .append("<idLote>").append(id).append("</idLote>");
+        for (EventoNFe evento : lote) {
+            envEvento.append(evento.toXml());
+        }
+        envEvento.append("</envEvento>");
+
+        // Todos os infEvento do lote são assinados sobre o mesmo documento
+        Document doc = ler(envEvento.toString());
+        assinaturaDigital.assinarTodos(doc, "infEvento");
+
+        List<String> assinados = new ArrayList<>(lote.size());
+        NodeList eventos = doc.getElementsByTagNameNS("*", "evento");
+        for (int i = 0; i < eventos.getLength(); i++) {
+            assinados.add(ResultadoAutorizacao.serializar((Element) eventos.item(i)));
+        }
+
+        log.info("Enviando lote {} com {} eventos", id, lote.size());
+        String resposta = sefazClient.enviarEvento(ResultadoAutorizacao.serializar(doc.getDocumentElement()), url);
+        return lerRetorno(resposta, lote, assinados);
+    }
+
+    /**
+     * Associa cada retEvento ao evento enviado (chave, tipo e sequência).
+     */
+    static List<Resultado> lerRetorno(String xmlResposta, List<EventoNFe> lote, List<String> assinados) throws Exception {
+        Document doc = ler(xmlResposta);
+
+        NodeList retornos = doc.getElementsByTagNameNS("*", "retEnvEvento");
+        if (retornos.getLength() == 0) {
+            throw new IllegalArgumentException("Resposta sem retEnvEvento");
+        }
+        Element retEnvEvento = (Element) retornos.item(0);
+        String cStatLote = ResultadoAutorizacao.texto(retEnvEvento, "cStat");
+        String xMotivoLote = ResultadoAutorizacao.texto(retEnvEvento, "xMotivo");
+
+        Map<String, Element> porEvento = new HashMap<>();
+        NodeList retEventos = retEnvEvento.getElementsByTagNameNS("*", "retEvento");
+        for (int i = 0; i < retEventos.getLength(); i++) {
+            Element retEvento = (Element) retEventos.item(i);
+            Element inf = ResultadoAutorizacao.filho(retEvento, "infEvento");
+            if (inf != null) {
+                porEvento.put(ResultadoAutorizacao.texto(inf, "chNFe") + ResultadoAutorizacao.texto(inf, "tpEvento")
+                        + ResultadoAutorizacao.texto(inf, "nSeqEvento"), retEvento);
+            }
+        }
+
+        if (!CSTAT_LOTE_PROCESSADO.equals(cStatLote)) {
+            log.warn("Lote de eventos rejeitado: cStat {} - {}", cStatLote, xMotivoLote);
+        }
+
+        List<Resultado> resultados = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            EventoNFe evento = lote.get(i);
+            Element retEvento = porEvento.get(evento.getChave() + evento.getTipo() + evento.getSequencia());
+            if (retEvento == null) {
+                resultados.add(new Resultado(evento.getChave(), evento.getTipo(), evento.getSequencia(),
+                        cStatLote, xMotivoLote, null, null, assinados.get(i), null));
+                continue;
+            }
+            Element inf = ResultadoAutorizacao.filho(retEvento, "infEvento");
+            resultados.add(new Resultado(evento.getChave(), evento.getTipo(), evento.getSequencia(),
+                    ResultadoAutorizacao.texto(inf, "cStat"),
+                    ResultadoAutorizacao.texto(inf, "xMotivo"),
+                    ResultadoAutorizacao.texto(inf, "nProt"),
+                    ResultadoAutorizacao.texto(inf, "dhRegEvento"),
+                    assinados.get(i),
+                    ResultadoAutorizacao.serializar(retEvento)));
+        }
+        return resultados;
+    }
+
+    private static Document ler(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Resultado de um evento.
+     *
+     * @param chave Chave de acesso da nota
+     * @param tipo tpEvento
+     * @param sequencia nSeqEvento
+     * @param codigoStatus cStat do evento (ou do lote, se o lote foi rejeitado)
+     * @param mensagem xMotivo
+     * @param protocolo nProt do registro do evento
+     * @param dataRegistro dhRegEvento
+     * @param xmlEvento Evento assinado enviado
+     * @param xmlRetorno retEvento serializado (null se o lote foi rejeitado)
+     */
+    public record Resultado(String chave, String tipo, int sequencia, String codigoStatus, String mensagem,
+                            String protocolo, String dataRegistro, String xmlEvento, String xmlRetorno) {
+
+        /** Evento registrado (135), registrado sem vinculação (136) ou cancelamento fora de prazo (155). */
+        private static final Set<String> REGISTRADO = Set.of("135", "136", "155");
+
+        public boolean isRegistrado() {
+            return REGISTRADO.contains(codigoStatus);
+        }
+
+        /**
+         * procEventoNFe (evento + retEvento) para arquivamento, ou null se o evento não foi registrado.
+         */
+        public String toProcEvento() {
+            if (!isRegistrado() || xmlRetorno == null) {
+                return null;
+            }
+            return "<procEventoNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"1.00\">" +
+                    xmlEvento + xmlRetorno + "</procEventoNFe>";
+        }
+    }
+}
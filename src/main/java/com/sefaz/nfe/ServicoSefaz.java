@@ -0,0 +1,42 @@
+package com.sefaz.nfe;
+
+/**
+ * Webservices da SEFAZ utilizados pela biblioteca.
+ *
+ * Cada serviço possui uma taxa padrão de requisições por segundo usada pelo
+ * {@link LimitadorTaxa}, conservadora o suficiente para não disparar o
+ * bloqueio por consumo indevido (cStat 656).
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public enum ServicoSefaz {
+    AUTORIZACAO(10, 20),
+    RET_AUTORIZACAO(5, 10),
+    CONSULTA_PROTOCOLO(5, 10),
+    STATUS_SERVICO(1, 2),
+    EVENTO(5, 10),
+    INUTILIZACAO(1, 2);
+
+    private final double taxaPadrao;
+    private final int rajadaPadrao;
+
+    ServicoSefaz(double taxaPadrao, int rajadaPadrao) {
+        this.taxaPadrao = taxaPadrao;
+        this.rajadaPadrao = rajadaPadrao;
+    }
+
+    /**
+     * Requisições por segundo permitidas por padrão.
+     */
+    public double getTaxaPadrao() {
+        return taxaPadrao;
+    }
+
+    /**
+     * Quantidade de requisições que podem ser feitas em rajada antes de aplicar a taxa.
+     */
+    public int getRajadaPadrao() {
+        return rajadaPadrao;
+    }
+}
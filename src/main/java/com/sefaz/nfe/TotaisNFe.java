@@ -0,0 +1,245 @@
+package com.sefaz.nfe;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Cálculo dos impostos por item e dos totais do grupo ICMSTot da NF-e/NFC-e em uma única passada.
+ *
+ * Valores são mantidos em centavos e alíquotas em décimos de milésimo de ponto percentual
+ * (pICMS com 4 casas: 18% = 180000), em {@code long}: a soma dos itens é exata e nenhum
+ * BigDecimal é criado por item além da conversão da entrada ({@link #escalar(BigDecimal, int)}).
+ * Cada imposto do item é arredondado (HALF_UP) antes de ser somado, de forma que o total é
+ * sempre o somatório dos valores escritos nos itens, como a SEFAZ confere (cStat 531, 532, 610).
+ *
+ * Uso: {@link #adicionarItem} para cada det (os getters {@code item*} devolvem os valores do
+ * último item para escrever o grupo imposto) e {@link #escreverICMSTot(StringBuilder)} ao final.
+ * Não é thread-safe; pode ser reaproveitado com {@link #limpar()}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class TotaisNFe {
+
+    /** Casas decimais dos valores (centavos). */
+    public static final int CASAS_VALOR = 2;
+    /** Casas decimais das alíquotas (pICMS, pPIS, pCOFINS). */
+    public static final int CASAS_ALIQUOTA = 4;
+
+    /** Valor (centavos) x alíquota (4 casas, em %) = imposto em centavos x 10^6. */
+    private static final long DIVISOR_IMPOSTO = 100L * 10_000L;
+    private static final long[] POTENCIAS = {1L, 10L, 100L, 1_000L, 10_000L};
+
+    /** Percentual aproximado dos tributos (Lei 12.741/12, 4 casas), ou -1 para somar os destacados. */
+    private final long aliquotaTributosAproximados;
+
+    private int itens;
+    private long vBC;
+    private long vICMS;
+    private long vProd;
+    private long vPIS;
+    private long vCOFINS;
+    private long vTotTrib;
+
+    private long itemVBC;
+    private long itemVICMS;
+    private long itemVBCPIS;
+    private long itemVPIS;
+    private long itemVBCCOFINS;
+    private long itemVCOFINS;
+    private long itemVTotTrib;
+
+    /**
+     * Totais com o vTotTrib de cada item igual à soma de ICMS, PIS e COFINS destacados.
+     */
+    public TotaisNFe() {
+        this.aliquotaTributosAproximados = -1;
+    }
+
+    /**
+     * Totais com o vTotTrib de cada item calculado pelo percentual aproximado (ex: tabela IBPT).
+     *
+     * @param aliquotaTributosAproximados Percentual com 4 casas (31,45% = 314500)
+     */
+    public TotaisNFe(long aliquotaTributosAproximados) {
+        if (aliquotaTributosAproximados < 0) {
+            throw new IllegalArgumentException("Percentual de tributos aproximados negativo: " + aliquotaTributosAproximados);
+        }
+        this.aliquotaTributosAproximados = aliquotaTributosAproximados;
+    }
+
+    /**
+     * Calcula os impostos do item e os acumula nos totais.
+     *
+     * @param valorProduto vProd do item em centavos
+     * @param tributadoIcms true para ICMS00 (base = vProd), false para Simples Nacional sem destaque
+     * @param aliquotaIcms pICMS com 4 casas
+     * @param aliquotaPis pPIS com 4 casas (0 = sem base, como no CST 49 com alíquota zero)
+     * @param aliquotaCofins pCOFINS com 4 casas
+     */
+    public void adicionarItem(long valorProduto, boolean tributadoIcms,
+                              long aliquotaIcms, long aliquotaPis, long aliquotaCofins) {
+        if (valorProduto < 0 || aliquotaIcms < 0 || aliquotaPis < 0 || aliquotaCofins < 0) {
+            throw new IllegalArgumentException("Item " + (itens + 1) + " com valor ou alíquota negativa");
+        }
+        itemVBC = tributadoIcms ? valorProduto : 0;
+        itemVICMS = tributadoIcms ? imposto(valorProduto, aliquotaIcms) : 0;
+        itemVBCPIS = aliquotaPis > 0 ? valorProduto : 0;
+        itemVPIS = imposto(itemVBCPIS, aliquotaPis);
+        itemVBCCOFINS = aliquotaCofins > 0 ? valorProduto : 0;
+        itemVCOFINS = imposto(itemVBCCOFINS, aliquotaCofins);
+        itemVTotTrib = aliquotaTributosAproximados < 0
+                ? itemVICMS + itemVPIS + itemVCOFINS
+                : imposto(valorProduto, aliquotaTributosAproximados);
+
+        itens++;
+        vBC = Math.addExact(vBC, itemVBC);
+        vICMS = Math.addExact(vICMS, itemVICMS);
+        vProd = Math.addExact(vProd, valorProduto);
+        vPIS = Math.addExact(vPIS, itemVPIS);
+        vCOFINS = Math.addExact(vCOFINS, itemVCOFINS);
+        vTotTrib = Math.addExact(vTotTrib, itemVTotTrib);
+    }
+
+    /**
+     * Valor x alíquota percentual, arredondado para centavos (HALF_UP).
+     */
+    static long imposto(long valor, long aliquota) {
+        return (Math.multiplyExact(valor, aliquota) + DIVISOR_IMPOSTO / 2) / DIVISOR_IMPOSTO;
+    }
+
+    /**
+     * Escreve o grupo ICMSTot na ordem do schema 4.00. Os grupos ainda não calculados
+     * (desoneração, ST, FCP, frete, seguro, desconto, II, IPI e outros) são zero, então
+     * vNF = vProd.
+     */
+    public void escreverICMSTot(StringBuilder xml) {
+        xml.append("<ICMSTot>");
+        campo(xml, "vBC", vBC);
+        campo(xml, "vICMS", vICMS);
+        xml.append("<vICMSDeson>0.00</vICMSDeson><vFCP>0.00</vFCP><vBCST>0.00</vBCST><vST>0.00</vST>")
+                .append("<vFCPST>0.00</vFCPST><vFCPSTRet>0.00</vFCPSTRet>");
+        campo(xml, "vProd", vProd);
+        xml.append("<vFrete>0.00</vFrete><vSeg>0.00</vSeg><vDesc>0.00</vDesc><vII>0.00</vII>")
+                .append("<vIPI>0.00</vIPI><vIPIDevol>0.00</vIPIDevol>");
+        campo(xml, "vPIS", vPIS);
+        campo(xml, "vCOFINS", vCOFINS);
+        xml.append("<vOutro>0.00</vOutro>");
+        campo(xml, "vNF", getValorNota());
+        campo(xml, "vTotTrib", vTotTrib);
+        xml.append("</ICMSTot>");
+    }
+
+    private static void campo(StringBuilder xml, String tag, long centavos) {
+        xml.append('<').append(tag).append('>');
+        escreverDecimal(xml, centavos, CASAS_VALOR);
+        xml.append("</").append(tag).append('>');
+    }
+
+    /**
+     * Escreve um valor escalado (centavos com 2 casas, alíquota com 4) com ponto decimal,
+     * sem criar Strings intermediárias.
+     */
+    public static void escreverDecimal(StringBuilder xml, long valor, int casasDecimais) {
+        if (valor < 0) {
+            xml.append('-');
+            valor = -valor;
+        }
+        long escala = POTENCIAS[casasDecimais];
+        xml.append(valor / escala).append('.');
+        long resto = valor % escala;
+        for (int i = casasDecimais - 1; i > 0 && resto < POTENCIAS[i]; i--) {
+            xml.append('0');
+        }
+        xml.append(resto);
+    }
+
+    /**
+     * Valor decimal escalado (HALF_UP), ou 0 quando nulo.
+     *
+     * @throws ArithmeticException Se o valor não couber em um long
+     */
+    public static long escalar(BigDecimal valor, int casasDecimais) {
+        if (valor == null) {
+            return 0;
+        }
+        return valor.setScale(casasDecimais, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Valor decimal do XML (ex: "12.5") escalado sem criar BigDecimal; casas além das
+     * pedidas são arredondadas HALF_UP.
+     *
+     * @throws NumberFormatException Se o texto não for um decimal
+     */
+    public static long lerDecimal(CharSequence valor, int casasDecimais) {
+        int i = 0;
+        int fim = valor.length();
+        boolean negativo = fim > 0 && valor.charAt(0) == '-';
+        if (negativo) {
+            i++;
+        }
+        long resultado = 0;
+        int digitos = 0;
+        int casas = -1;
+        boolean arredondar = false;
+        for (; i < fim; i++) {
+            char c = valor.charAt(i);
+            if (c == '.' && casas < 0) {
+                casas = 0;
+            } else if (c >= '0' && c <= '9') {
+                digitos++;
+                if (casas < casasDecimais) {
+                    resultado = Math.addExact(Math.multiplyExact(resultado, 10), c - '0');
+                    if (casas >= 0) {
+                        casas++;
+                    }
+                } else if (casas == casasDecimais) {
+                    arredondar = c >= '5';
+                    casas++;
+                }
+            } else {
+                throw new NumberFormatException("Valor decimal inválido: " + valor);
+            }
+        }
+        if (digitos == 0) {
+            throw new NumberFormatException("Valor decimal inválido: " + valor);
+        }
+        for (int c = Math.max(casas, 0); c < casasDecimais; c++) {
+            resultado = Math.multiplyExact(resultado, 10);
+        }
+        if (arredondar) {
+            resultado++;
+        }
+        return negativo ? -resultado : resultado;
+    }
+
+    /**
+     * Zera os totais para a próxima nota.
+     */
+    public void limpar() {
+        itens = 0;
+        vBC = vICMS = vProd = vPIS = vCOFINS = vTotTrib = 0;
+        itemVBC = itemVICMS = itemVBCPIS = itemVPIS = itemVBCCOFINS = itemVCOFINS = itemVTotTrib = 0;
+    }
+
+    public int getItens() { return itens; }
+
+    public long getValorBaseIcms() { return vBC; }
+    public long getValorIcms() { return vICMS; }
+    public long getValorProdutos() { return vProd; }
+    public long getValorPis() { return vPIS; }
+    public long getValorCofins() { return vCOFINS; }
+    public long getValorTributosAproximados() { return vTotTrib; }
+
+    /** vNF = vProd - vDesc + vST + vFCPST + vFrete + vSeg + vOutro + vII + vIPI + vIPIDevol (só vProd diferente de zero). */
+    public long getValorNota() { return vProd; }
+
+    public long getItemValorBaseIcms() { return itemVBC; }
+    public long getItemValorIcms() { return itemVICMS; }
+    public long getItemValorBasePis() { return itemVBCPIS; }
+    public long getItemValorPis() { return itemVPIS; }
+    public long getItemValorBaseCofins() { return itemVBCCOFINS; }
+    public long getItemValorCofins() { return itemVCOFINS; }
+    public long getItemValorTributosAproximados() { return itemVTotTrib; }
+}
@@ -0,0 +1,310 @@
+package com.sefaz.nfe;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Transmissão em segundo plano das NFC-e emitidas em contingência offline (tpEmis=9).
+ *
+ * A cada ciclo esvazia a {@link FilaContingencia}, das notas mais antigas para as mais novas:
+ * - Lotes assíncronos de até 50 notas, com consulta de recibo ({@link AutorizacaoSincrona#autorizarLote})
+ * - A taxa de envio é controlada pelo {@link LimitadorTaxa} do {@link SefazSoapClient}
+ * - Falhas de comunicação e consumo indevido (656) interrompem o ciclo; as notas
+ *   permanecem na fila para o próximo
+ * - Se o lote inteiro for rejeitado, as notas são reenviadas individualmente
+ *   para isolar a nota com problema
+ * - Duplicidade (204) ou duplicidade com diferença na chave (539), comuns no reenvio de um
+ *   lote cuja consulta de recibo expirou, são resolvidas pela consulta da chave
+ *   (NFeConsultaProtocolo4): a nota já autorizada é concluída com o protNFe retornado
+ * - Registra erro quando a nota mais antiga se aproxima do prazo legal de 24 horas
+ *
+ * Métricas (MeterBinder): {@code sefaz.contingencia.fila}, {@code sefaz.contingencia.atraso}
+ * (idade da nota pendente mais antiga), {@code sefaz.contingencia.autorizadas} e
+ * {@code sefaz.contingencia.rejeitadas}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+public class TransmissorContingencia implements MeterBinder, Closeable {
+
+    /** Prazo legal para transmissão da NFC-e emitida em contingência offline. */
+    public static final Duration PRAZO_TRANSMISSAO = Duration.ofHours(24);
+
+    private static final String CSTAT_CONSUMO_INDEVIDO = "656";
+
+    /** Duplicidade de NF-e (204) e duplicidade com diferença na chave de acesso (539). */
+    private static final Set<String> CSTAT_DUPLICIDADE = Set.of("204", "539");
+
+    private final FilaContingencia fila;
+    private final AutorizacaoSincrona autorizacao;
+    private final Ambiente ambiente;
+    private final String urlAutorizacao;
+    private final String urlRetAutorizacao;
+    private final String urlConsultaProtocolo;
+    private final LongAdder autorizadas = new LongAdder();
+    private final LongAdder rejeitadas = new LongAdder();
+
+    private int tamanhoLote = SefazSoapClient.MAXIMO_NOTAS_LOTE;
+    private Duration intervalo = Duration.ofSeconds(30);
+    private Duration prazoAlerta = Duration.ofHours(20);
+    private Consumer<ResultadoAutorizacao.Protocolo> ouvinte = p -> { };
+    private ScheduledExecutorService agendador;
+
+    /**
+     * Transmissor com o ambiente e as URLs do contexto de emissão.
+     */
+    public TransmissorContingencia(FilaContingencia fila, AutorizacaoSincrona autorizacao, ContextoEmissao contexto) {
+        this(fila, autorizacao, contexto.getAmbiente(), contexto.getUrlAutorizacao(), contexto.getUrlRetAutorizacao(),
+                contexto.getUrlConsultaProtocolo());
+    }
+
+    /**
+     * @param urlConsultaProtocolo URL do NFeConsultaProtocolo4, usada para resolver as duplicidades (204/539)
+     */
+    public TransmissorContingencia(FilaContingencia fila, AutorizacaoSincrona autorizacao, Ambiente ambiente,
+                                   String urlAutorizacao, String urlRetAutorizacao, String urlConsultaProtocolo) {
+        this.fila = fila;
+        this.autorizacao = autorizacao;
+        this.ambiente = ambiente;
+        this.urlAutorizacao = urlAutorizacao;
+        this.urlRetAutorizacao = urlRetAutorizacao;
+        this.urlConsultaProtocolo = urlConsultaProtocolo;
+    }
+
+    /**
+     * Inicia a transmissão periódica em uma thread daemon.
+     */
+    public synchronized void iniciar() {
+        if (agendador != null) {
+            return;
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sefaz-contingencia");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(this::cicloAgendado, 0, intervalo.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Transmissão da contingência offline iniciada (intervalo {})", intervalo);
+    }
+
+    /**
+     * Executa um ciclo de transmissão.
+     *
+     * @return Quantidade de notas retiradas da fila (autorizadas ou rejeitadas)
+     */
+    public synchronized int transmitir() {
+        verificarPrazo();
+
+        int processadas = 0;
+        while (true) {
+            List<FilaContingencia.Pendente> lote = fila.proximas(tamanhoLote);
+            if (lote.isEmpty()) {
+                return processadas;
+            }
+            try {
+                int resultado = transmitirLote(lote);
+                if (resultado == 0) {
+                    return processadas;
+                }
+                processadas += resultado;
+            } catch (Exception e) {
+                log.warn("Transmissão da contingência interrompida ({} pendentes): {}", fila.tamanho(), e.toString());
+                return processadas;
+            }
+        }
+    }
+
+    private int transmitirLote(List<FilaContingencia.Pendente> lote) throws Exception {
+        List<String> xmls = new ArrayList<>(lote.size());
+        for (FilaContingencia.Pendente p : lote) {
+            xmls.add(fila.lerXml(p));
+        }
+
+        ResultadoAutorizacao resultado = autorizacao.autorizarLote(xmls, ambiente, urlAutorizacao, urlRetAutorizacao);
+
+        if (!resultado.isProcessado()) {
+            if (CSTAT_CONSUMO_INDEVIDO.equals(resultado.codigoStatus())) {
+                log.error("Consumo indevido (cStat 656) na transmissão da contingência");
+                return 0;
+            }
+            if (lote.size() > 1) {
+                log.warn("Lote da contingência rejeitado (cStat {}: {}). Reenviando notas individualmente",
+                        resultado.codigoStatus(), resultado.mensagem());
+                int processadas = 0;
+                for (FilaContingencia.Pendente p : lote) {
+                    processadas += transmitirLote(List.of(p));
+                }
+                return processadas;
+            }
+            String chave = lote.get(0).chave();
+            registrar(new ResultadoAutorizacao.Protocolo(chave, resultado.codigoStatus(), resultado.mensagem(),
+                    null, null, null, null));
+            return 1;
+        }
+
+        Map<String, ResultadoAutorizacao.Protocolo> porChave = new HashMap<>();
+        for (ResultadoAutorizacao.Protocolo p : resultado.protocolos()) {
+            porChave.put(p.chave(), p);
+        }
+
+        int processadas = 0;
+        for (FilaContingencia.Pendente p : lote) {
+            ResultadoAutorizacao.Protocolo protocolo = porChave.get(p.chave());
+            if (protocolo == null) {
+                log.warn("NFC-e {} sem protocolo no retorno do lote; permanece na fila", p.chave());
+                continue;
+            }
+            registrar(protocolo);
+            processadas++;
+        }
+        return processadas;
+    }
+
+    private void registrar(ResultadoAutorizacao.Protocolo protocolo) throws Exception {
+        protocolo = resolverDuplicidade(protocolo);
+        if (protocolo.isAutorizada()) {
+            fila.concluir(protocolo.chave(), protocolo.xml());
+            autorizadas.increment();
+        } else {
+            log.error("NFC-e em contingência {} rejeitada: cStat {} - {}",
+                    protocolo.chave(), protocolo.codigoStatus(), protocolo.mensagem());
+            fila.rejeitar(protocolo.chave());
+            rejeitadas.increment();
+        }
+
+        try {
+            ouvinte.accept(protocolo);
+        } catch (RuntimeException e) {
+            log.error("Erro no ouvinte da contingência para {}: {}", protocolo.chave(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Em 204/539 a nota pode já ter sido autorizada por um envio anterior (ex: o lote foi
+     * reenviado após a consulta de recibo expirar): consulta a chave e usa o protNFe retornado.
+     * Se a consulta não trouxer protocolo (ex: 217 na 539, outra nota com o mesmo número),
+     * a rejeição original é mantida. Falhas na consulta interrompem o ciclo com a nota na fila.
+     */
+    private ResultadoAutorizacao.Protocolo resolverDuplicidade(ResultadoAutorizacao.Protocolo protocolo)
+            throws Exception {
+        if (!CSTAT_DUPLICIDADE.contains(protocolo.codigoStatus())) {
+            return protocolo;
+        }
+        ResultadoAutorizacao.Protocolo situacao =
+                autorizacao.consultarProtocolo(protocolo.chave(), ambiente, urlConsultaProtocolo);
+        if (situacao.protocolo() == null) {
+            return protocolo;
+        }
+        log.info("NFC-e em contingência {} já processada (cStat {}); situação consultada: cStat {}",
+                protocolo.chave(), protocolo.codigoStatus(), situacao.codigoStatus());
+        return situacao;
+    }
+
+    private void verificarPrazo() {
+        Duration atraso = getAtraso();
+        if (atraso.compareTo(prazoAlerta) > 0) {
+            log.error("NFC-e em contingência pendente há {} h ({} na fila). Prazo de transmissão: {} h",
+                    atraso.toHours(), fila.tamanho(), PRAZO_TRANSMISSAO.toHours());
+        }
+    }
+
+    private void cicloAgendado() {
+        try {
+            transmitir();
+        } catch (RuntimeException e) {
+            log.error("Erro inesperado na transmissão da contingência: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Idade da nota pendente mais antiga (zero se a fila estiver vazia).
+     */
+    public Duration getAtraso() {
+        Instant maisAntiga = fila.getEmissaoMaisAntiga();
+        if (maisAntiga == null) {
+            return Duration.ZERO;
+        }
+        Duration atraso = Duration.between(maisAntiga, Instant.now());
+        return atraso.isNegative() ? Duration.ZERO : atraso;
+    }
+
+    public long getAutorizadas() {
+        return autorizadas.sum();
+    }
+
+    public long getRejeitadas() {
+        return rejeitadas.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("sefaz.contingencia.fila", fila, FilaContingencia::tamanho)
+                .description("NFC-e em contingência aguardando transmissão")
+                .register(registry);
+        Gauge.builder("sefaz.contingencia.atraso", this, t -> t.getAtraso().toMillis() / 1000.0)
+                .description("Idade da NFC-e pendente mais antiga")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("sefaz.contingencia.autorizadas", this, TransmissorContingencia::getAutorizadas)
+                .register(registry);
+        FunctionCounter.builder("sefaz.contingencia.rejeitadas", this, TransmissorContingencia::getRejeitadas)
+                .register(registry);
+    }
+
+    /**
+     * Quantidade de notas por lote (1 a 50).
+     */
+    public void setTamanhoLote(int tamanhoLote) {
+        if (tamanhoLote < 1 || tamanhoLote > SefazSoapClient.MAXIMO_NOTAS_LOTE) {
+            throw new IllegalArgumentException("Tamanho de lote inválido: " + tamanhoLote);
+        }
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    /**
+     * Intervalo entre ciclos de transmissão. Deve ser definido antes de {@link #iniciar()}.
+     */
+    public void setIntervalo(Duration intervalo) {
+        this.intervalo = intervalo;
+    }
+
+    /**
+     * Idade da nota mais antiga a partir da qual cada ciclo registra erro.
+     */
+    public void setPrazoAlerta(Duration prazoAlerta) {
+        this.prazoAlerta = prazoAlerta;
+    }
+
+    /**
+     * Notificado a cada nota autorizada ou rejeitada (ex: para atualizar o status da venda).
+     */
+    public void setOuvinte(Consumer<ResultadoAutorizacao.Protocolo> ouvinte) {
+        this.ouvinte = ouvinte;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+    }
+}
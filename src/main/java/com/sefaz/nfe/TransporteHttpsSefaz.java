@@ -0,0 +1,677 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+import org.apache.hc.core5.http.nio.StreamChannel;
+import org.apache.hc.core5.http.nio.entity.AbstractBinAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Transporte HTTPS com autenticação mútua (certificado A1) para os webservices da SEFAZ.
+ *
+ * Mantém um único pool de conexões compartilhado entre as requisições, evitando
+ * um novo handshake TLS a cada chamada:
+ * - Timeout de conexão e de leitura configuráveis
+ * - O timeout de leitura de cada requisição é limitado ao prazo restante da chamada
+ * - Trust store opcional (cadeia ICP-Brasil); sem ela usa a trust store da JVM
+ * - O pool é recriado automaticamente se o certificado for trocado
+ * - Requisições compactadas com gzip para os servidores habilitados em
+ *   {@link SefazEndpoints#setCompressaoRequisicao}; respostas gzip (Accept-Encoding)
+ *   descompactadas durante a leitura
+ * - Contadores de bytes do corpo HTTP na rede e descompactados, por direção
+ * - Envio não bloqueante ({@link #enviarAssincrono}) em um segundo pool, com cliente HTTP assíncrono
+ * - Corpo escrito a partir das partes da {@link EnvelopeSoap.Mensagem}, sem montar o envelope
+ *   inteiro em memória antes do envio
+ *
+ * Falhas são lançadas como {@link FalhaSefazException}, já classificadas pelo
+ * {@link ClassificadorFalhas}.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class TransporteHttpsSefaz implements Closeable {
+
+    /** Senha da cópia em memória do keystore usada apenas para montar o SSLContext. */
+    private static final char[] SENHA_INTERNA = "sefaz".toCharArray();
+
+    private static final ContentType SOAP_XML = ContentType.create("application/soap+xml", StandardCharsets.UTF_8);
+
+    /** Envelopes menores que isto não compensam a compactação. */
+    private static final int LIMIAR_COMPRESSAO = 1024;
+
+    private final CertificadoDigital certificadoDigital;
+
+    private Duration timeoutConexao = Duration.ofSeconds(10);
+    private Duration timeoutLeitura = Duration.ofSeconds(30);
+    private int maxConexoesPorRota = 20;
+    private int maxConexoesTotal = 200;
+    private KeyStore trustStore;
+    private boolean compressaoResposta = true;
+
+    private final LongAdder bytesEnviados = new LongAdder();
+    private final LongAdder bytesConteudoEnviado = new LongAdder();
+    private final LongAdder bytesRecebidos = new LongAdder();
+    private final LongAdder bytesConteudoRecebido = new LongAdder();
+
+    private volatile CloseableHttpClient httpClient;
+    private volatile X509Certificate certificadoDoPool;
+    private volatile PoolingHttpClientConnectionManager gerenciadorConexoes;
+    private volatile CloseableHttpAsyncClient httpClientAssincrono;
+    private volatile X509Certificate certificadoDoPoolAssincrono;
+
+    public TransporteHttpsSefaz(CertificadoDigital certificadoDigital) {
+        this.certificadoDigital = certificadoDigital;
+    }
+
+    /**
+     * Envia o envelope SOAP e retorna o corpo da resposta.
+     *
+     * @param url URL do webservice
+     * @param soapEnvelope Envelope SOAP 1.2
+     * @param prazo Tempo máximo disponível para esta requisição
+     * @return Corpo da resposta HTTP 200
+     * @throws FalhaSefazException Em falhas de transporte ou status HTTP diferente de 200
+     */
+    public String enviar(String url, String soapEnvelope, Duration prazo) {
+        return enviar(url, EnvelopeSoap.Mensagem.de(soapEnvelope), prazo);
+    }
+
+    /**
+     * Envia o envelope SOAP já em bytes (ver {@link EnvelopeSoap}) e retorna o corpo da resposta.
+     *
+     * @throws FalhaSefazException Em falhas de transporte ou status HTTP diferente de 200
+     */
+    public String enviar(String url, EnvelopeSoap.Mensagem mensagem, Duration prazo) {
+        return new String(enviarBytes(url, mensagem, prazo), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Envia o envelope SOAP e retorna o corpo da resposta em bytes UTF-8, sem decodificá-lo
+     * (ver {@link RespostaSefaz}).
+     *
+     * @throws FalhaSefazException Em falhas de transporte ou status HTTP diferente de 200
+     */
+    public byte[] enviarBytes(String url, EnvelopeSoap.Mensagem mensagem, Duration prazo) {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setHeader("Content-Type", "application/soap+xml; charset=utf-8");
+        if (compressaoResposta) {
+            httpPost.setHeader("Accept-Encoding", "gzip");
+        }
+        Corpo corpo = corpo(url, mensagem);
+        httpPost.setEntity(new EntidadeMensagem(corpo.mensagem(), corpo.codificacao()));
+        httpPost.setConfig(configuracao(prazo));
+        ExecutorRetentativa.registrarRequisicao(httpPost);
+
+        Resposta resposta;
+        try {
+            resposta = cliente().execute(httpPost, response -> new Resposta(response.getCode(),
+                    response.getEntity() == null
+                            ? new byte[0]
+                            : lerCorpo(response.getEntity().getContent(), response.getEntity().getContentEncoding())));
+        } catch (IOException e) {
+            if (httpPost.isCancelled()) {
+                log.debug("Requisição a {} abortada (hedge respondido pela outra tentativa)", url);
+            } else {
+                log.warn("Falha de comunicação com {}: {}", url, e.toString());
+            }
+            throw ClassificadorFalhas.transporte(e);
+        }
+
+        return verificar(resposta);
+    }
+
+    /**
+     * Envia o envelope SOAP sem bloquear a thread chamadora (cliente HTTP assíncrono,
+     * com o mesmo certificado, trust store, timeouts e compactação de {@link #enviar}).
+     *
+     * @return Corpo da resposta HTTP 200; completa com {@link FalhaSefazException} em falhas
+     *         de transporte ou status HTTP diferente de 200
+     */
+    public CompletableFuture<String> enviarAssincrono(String url, String soapEnvelope, Duration prazo) {
+        return enviarAssincrono(url, EnvelopeSoap.Mensagem.de(soapEnvelope), prazo);
+    }
+
+    /**
+     * Versão não bloqueante de {@link #enviar(String, EnvelopeSoap.Mensagem, Duration)}.
+     */
+    public CompletableFuture<String> enviarAssincrono(String url, EnvelopeSoap.Mensagem mensagem, Duration prazo) {
+        CompletableFuture<String> futuro = new CompletableFuture<>();
+        try {
+            Corpo corpo = corpo(url, mensagem);
+            AsyncRequestBuilder builder = AsyncRequestBuilder.post(url)
+                    .setEntity(new ProdutorMensagem(corpo.mensagem(), corpo.codificacao()));
+            if (corpo.codificacao() != null) {
+                builder.setHeader("Content-Encoding", corpo.codificacao());
+            }
+            if (compressaoResposta) {
+                builder.setHeader("Accept-Encoding", "gzip");
+            }
+            HttpClientContext contexto = HttpClientContext.create();
+            contexto.setRequestConfig(configuracao(prazo));
+            clienteAssincrono().execute(builder.build(), SimpleResponseConsumer.create(), contexto, new FutureCallback<>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    try {
+                        Header codificacao = response.getFirstHeader("Content-Encoding");
+                        byte[] bytes = response.getBodyBytes();
+                        byte[] corpoResposta = bytes == null ? new byte[0] : lerCorpo(new ByteArrayInputStream(bytes),
+                                codificacao == null ? null : codificacao.getValue());
+                        futuro.complete(new String(verificar(new Resposta(response.getCode(), corpoResposta)),
+                                StandardCharsets.UTF_8));
+                    } catch (Exception e) {
+                        futuro.completeExceptionally(e instanceof IOException io ? ClassificadorFalhas.transporte(io) : e);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    log.warn("Falha de comunicação com {}: {}", url, e.toString());
+                    futuro.completeExceptionally(e instanceof IOException io ? ClassificadorFalhas.transporte(io) : e);
+                }
+
+                @Override
+                public void cancelled() {
+                    futuro.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            futuro.completeExceptionally(e);
+        }
+        return futuro;
+    }
+
+    private byte[] verificar(Resposta resposta) {
+        log.debug("Status HTTP: {}", resposta.status());
+
+        if (resposta.status() != 200) {
+            log.error("Erro HTTP {} ao comunicar com SEFAZ: {}", resposta.status(),
+                    new String(resposta.corpo(), StandardCharsets.UTF_8));
+            throw ClassificadorFalhas.http(resposta.status());
+        }
+
+        return resposta.corpo();
+    }
+
+    /**
+     * Timeout de leitura limitado ao prazo restante da chamada.
+     */
+    private RequestConfig configuracao(Duration prazo) {
+        Duration leitura = prazo.compareTo(timeoutLeitura) < 0 ? prazo : timeoutLeitura;
+        return RequestConfig.custom()
+                .setResponseTimeout(Timeout.of(Math.max(1, leitura.toMillis()), TimeUnit.MILLISECONDS))
+                .setConnectionRequestTimeout(Timeout.of(timeoutConexao))
+                .build();
+    }
+
+    /**
+     * Corpo da requisição, compactado com gzip se o servidor aceitar e o envelope for grande o suficiente.
+     */
+    private Corpo corpo(String url, EnvelopeSoap.Mensagem mensagem) {
+        long tamanho = mensagem.tamanho();
+        bytesConteudoEnviado.add(tamanho);
+
+        if (tamanho < LIMIAR_COMPRESSAO || !SefazEndpoints.isCompressaoRequisicao(url)) {
+            bytesEnviados.add(tamanho);
+            return new Corpo(mensagem, null);
+        }
+
+        byte[] compactado = compactar(mensagem);
+        bytesEnviados.add(compactado.length);
+        log.debug("Requisição compactada: {} -> {} bytes", tamanho, compactado.length);
+        return new Corpo(EnvelopeSoap.Mensagem.de(compactado), "gzip");
+    }
+
+    static byte[] compactar(byte[] conteudo) {
+        return compactar(EnvelopeSoap.Mensagem.de(conteudo));
+    }
+
+    /**
+     * Compacta as partes da mensagem direto no gzip, sem juntá-las antes.
+     */
+    static byte[] compactar(EnvelopeSoap.Mensagem mensagem) {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream((int) (mensagem.tamanho() / 4) + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(saida, 8192)) {
+            mensagem.escrever(gzip);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return saida.toByteArray();
+    }
+
+    /**
+     * Lê o corpo da resposta, descompactando gzip à medida que os bytes chegam.
+     */
+    private byte[] lerCorpo(InputStream entrada, String codificacao) throws IOException {
+        ContadorBytes rede = new ContadorBytes(entrada);
+        InputStream conteudo = "gzip".equalsIgnoreCase(codificacao) || "x-gzip".equalsIgnoreCase(codificacao)
+                ? new GZIPInputStream(rede, 8192)
+                : rede;
+
+        byte[] corpo = conteudo.readAllBytes();
+        bytesRecebidos.add(rede.lidos);
+        bytesConteudoRecebido.add(corpo.length);
+        if (conteudo != rede) {
+            log.debug("Resposta compactada: {} -> {} bytes", rede.lidos, corpo.length);
+        }
+        return corpo;
+    }
+
+    private CloseableHttpClient cliente() {
+        X509Certificate certificado = certificadoDigital.getCertificate();
+        CloseableHttpClient atual = httpClient;
+        if (atual != null && certificado.equals(certificadoDoPool)) {
+            return atual;
+        }
+        synchronized (this) {
+            if (httpClient == null || !certificado.equals(certificadoDoPool)) {
+                CloseableHttpClient anterior = httpClient;
+                httpClient = criarCliente();
+                certificadoDoPool = certificado;
+                fecharSilenciosamente(anterior);
+                log.info("Pool HTTPS da SEFAZ criado para {}", certificado.getSubjectX500Principal().getName());
+            }
+            return httpClient;
+        }
+    }
+
+    private CloseableHttpAsyncClient clienteAssincrono() {
+        X509Certificate certificado = certificadoDigital.getCertificate();
+        CloseableHttpAsyncClient atual = httpClientAssincrono;
+        if (atual != null && certificado.equals(certificadoDoPoolAssincrono)) {
+            return atual;
+        }
+        synchronized (this) {
+            if (httpClientAssincrono == null || !certificado.equals(certificadoDoPoolAssincrono)) {
+                CloseableHttpAsyncClient anterior = httpClientAssincrono;
+                httpClientAssincrono = criarClienteAssincrono();
+                httpClientAssincrono.start();
+                certificadoDoPoolAssincrono = certificado;
+                fecharSilenciosamente(anterior);
+                log.info("Pool HTTPS assíncrono da SEFAZ criado para {}", certificado.getSubjectX500Principal().getName());
+            }
+            return httpClientAssincrono;
+        }
+    }
+
+    private CloseableHttpAsyncClient criarClienteAssincrono() {
+        try {
+            PoolingAsyncClientConnectionManager gerenciador = PoolingAsyncClientConnectionManagerBuilder.create()
+                    .setTlsStrategy(ClientTlsStrategyBuilder.create().setSslContext(contextoSsl()).build())
+                    .setDefaultTlsConfig(TlsConfig.custom().setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_1).build())
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(timeoutConexao))
+                            .setSocketTimeout(Timeout.of(timeoutLeitura))
+                            .build())
+                    .setMaxConnPerRoute(maxConexoesPorRota)
+                    .setMaxConnTotal(maxConexoesTotal)
+                    .build();
+
+            return HttpAsyncClients.custom()
+                    .setConnectionManager(gerenciador)
+                    .disableConnectionState()
+                    .disableAutomaticRetries()
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException("Erro ao configurar SSL com o certificado digital: " + e.getMessage(), e);
+        }
+    }
+
+    private SSLContext contextoSsl() throws Exception {
+        SSLContextBuilder sslBuilder = SSLContextBuilder.create()
+                .loadKeyMaterial(chaveCliente(), SENHA_INTERNA);
+        if (trustStore != null) {
+            sslBuilder.loadTrustMaterial(trustStore, null);
+        }
+        return sslBuilder.build();
+    }
+
+    private CloseableHttpClient criarCliente() {
+        try {
+            SSLContext sslContext = contextoSsl();
+
+            PoolingHttpClientConnectionManager gerenciador = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext))
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(timeoutConexao))
+                            .setSocketTimeout(Timeout.of(timeoutLeitura))
+                            .build())
+                    .setMaxConnPerRoute(maxConexoesPorRota)
+                    .setMaxConnTotal(maxConexoesTotal)
+                    .build();
+            gerenciadorConexoes = gerenciador;
+
+            return HttpClients.custom()
+                    .setConnectionManager(gerenciador)
+                    // Com mTLS o HttpClient associa a conexão ao certificado do cliente (estado)
+                    // e não a reutiliza em requisições sem esse estado; o pool já é por certificado
+                    .disableConnectionState()
+                    .disableAutomaticRetries()
+                    // Compactação tratada em enviar(), para contar os bytes na rede
+                    .disableContentCompression()
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException("Erro ao configurar SSL com o certificado digital: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copia chave privada e cadeia para um keystore em memória com senha conhecida.
+     *
+     * A chave do PFX original é protegida pela senha informada no carregamento,
+     * que não é mantida pelo {@link CertificadoDigital}.
+     */
+    private KeyStore chaveCliente() throws Exception {
+        Certificate[] cadeia = null;
+        String alias = certificadoDigital.getAlias();
+        if (alias != null) {
+            cadeia = certificadoDigital.getKeyStore().getCertificateChain(alias);
+        }
+        if (cadeia == null || cadeia.length == 0) {
+            cadeia = new Certificate[]{certificadoDigital.getCertificate()};
+        }
+
+        KeyStore ks = KeyStore.getInstance("PKCS12");
+        ks.load(null, null);
+        ks.setKeyEntry("cliente", certificadoDigital.getPrivateKey(), SENHA_INTERNA, cadeia);
+        return ks;
+    }
+
+    /**
+     * Define a trust store usada para validar o certificado dos servidores da SEFAZ.
+     * Deve ser chamado antes da primeira requisição (ou o pool é recriado).
+     */
+    public synchronized void setTrustStore(KeyStore trustStore) {
+        this.trustStore = trustStore;
+        reiniciar();
+    }
+
+    public synchronized void setTimeoutConexao(Duration timeoutConexao) {
+        this.timeoutConexao = timeoutConexao;
+        reiniciar();
+    }
+
+    public synchronized void setTimeoutLeitura(Duration timeoutLeitura) {
+        this.timeoutLeitura = timeoutLeitura;
+        reiniciar();
+    }
+
+    public synchronized void setMaxConexoes(int porRota, int total) {
+        if (porRota < 1 || total < porRota) {
+            throw new IllegalArgumentException("Limites de conexão inválidos");
+        }
+        this.maxConexoesPorRota = porRota;
+        this.maxConexoesTotal = total;
+        reiniciar();
+    }
+
+    /**
+     * Envia Accept-Encoding: gzip e descompacta as respostas (padrão: habilitado).
+     */
+    public void setCompressaoResposta(boolean compressaoResposta) {
+        this.compressaoResposta = compressaoResposta;
+    }
+
+    /**
+     * Bytes do corpo das requisições enviados na rede (após a compactação).
+     */
+    public long getBytesEnviados() {
+        return bytesEnviados.sum();
+    }
+
+    /**
+     * Bytes do corpo das requisições antes da compactação.
+     */
+    public long getBytesConteudoEnviado() {
+        return bytesConteudoEnviado.sum();
+    }
+
+    /**
+     * Bytes do corpo das respostas recebidos na rede (antes da descompactação).
+     */
+    public long getBytesRecebidos() {
+        return bytesRecebidos.sum();
+    }
+
+    /**
+     * Bytes do corpo das respostas após a descompactação.
+     */
+    public long getBytesConteudoRecebido() {
+        return bytesConteudoRecebido.sum();
+    }
+
+    /**
+     * Estatísticas do pool de conexões (ou null se nenhuma requisição foi feita).
+     */
+    public PoolStats getEstatisticasPool() {
+        PoolingHttpClientConnectionManager gerenciador = gerenciadorConexoes;
+        return gerenciador == null ? null : gerenciador.getTotalStats();
+    }
+
+    public Duration getTimeoutConexao() {
+        return timeoutConexao;
+    }
+
+    public Duration getTimeoutLeitura() {
+        return timeoutLeitura;
+    }
+
+    private void reiniciar() {
+        CloseableHttpClient anterior = httpClient;
+        httpClient = null;
+        certificadoDoPool = null;
+        gerenciadorConexoes = null;
+        fecharSilenciosamente(anterior);
+
+        CloseableHttpAsyncClient anteriorAssincrono = httpClientAssincrono;
+        httpClientAssincrono = null;
+        certificadoDoPoolAssincrono = null;
+        fecharSilenciosamente(anteriorAssincrono);
+    }
+
+    @Override
+    public synchronized void close() {
+        reiniciar();
+    }
+
+    private static void fecharSilenciosamente(Closeable cliente) {
+        if (cliente == null) {
+            return;
+        }
+        try {
+            cliente.close();
+        } catch (IOException e) {
+            log.debug("Erro ao fechar pool HTTPS: {}", e.getMessage());
+        }
+    }
+
+    private record Resposta(int status, byte[] corpo) {
+    }
+
+    private record Corpo(EnvelopeSoap.Mensagem mensagem, String codificacao) {
+    }
+
+    /**
+     * Entidade HTTP que escreve as partes da mensagem direto no socket, com Content-Length conhecido.
+     */
+    private static final class EntidadeMensagem extends AbstractHttpEntity {
+
+        private final EnvelopeSoap.Mensagem mensagem;
+
+        EntidadeMensagem(EnvelopeSoap.Mensagem mensagem, String codificacao) {
+            super(SOAP_XML, codificacao);
+            this.mensagem = mensagem;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return mensagem.abrir();
+        }
+
+        @Override
+        public void writeTo(OutputStream saida) throws IOException {
+            mensagem.escrever(saida);
+        }
+
+        @Override
+        public long getContentLength() {
+            return mensagem.tamanho();
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Equivalente não bloqueante de {@link EntidadeMensagem}: entrega ao canal os trechos do
+     * {@link EnvelopeSoap.Mensagem.Leitor}, sem montar o corpo inteiro em um array.
+     */
+    private static final class ProdutorMensagem extends AbstractBinAsyncEntityProducer {
+
+        private final EnvelopeSoap.Mensagem mensagem;
+        private final String codificacao;
+        private EnvelopeSoap.Mensagem.Leitor leitor;
+        private ByteBuffer atual;
+        private long restante;
+
+        ProdutorMensagem(EnvelopeSoap.Mensagem mensagem, String codificacao) {
+            super(0, SOAP_XML);
+            this.mensagem = mensagem;
+            this.codificacao = codificacao;
+            releaseResources();
+        }
+
+        @Override
+        protected int availableData() {
+            return (int) Math.min(Integer.MAX_VALUE, restante);
+        }
+
+        @Override
+        protected void produceData(StreamChannel<ByteBuffer> canal) throws IOException {
+            while (true) {
+                if (atual == null || !atual.hasRemaining()) {
+                    atual = leitor.proximo();
+                    if (atual == null) {
+                        canal.endStream();
+                        return;
+                    }
+                }
+                restante -= canal.write(atual);
+                if (atual.hasRemaining()) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return mensagem.tamanho();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return codificacao;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public void failed(Exception cause) {
+        }
+
+        @Override
+        public void releaseResources() {
+            leitor = mensagem.leitor();
+            atual = null;
+            restante = mensagem.tamanho();
+            super.releaseResources();
+        }
+    }
+
+    private static final class ContadorBytes extends FilterInputStream {
+
+        private long lidos;
+
+        ContadorBytes(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                lidos++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                lidos += n;
+            }
+            return n;
+        }
+    }
+}
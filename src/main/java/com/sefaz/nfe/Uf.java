@@ -0,0 +1,50 @@
+package com.sefaz.nfe;
+
+/**
+ * Unidades federativas com o respectivo código IBGE (cUF).
+ *
+ * O código é o mesmo utilizado nas duas primeiras posições da chave de acesso.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public enum Uf {
+    RO(11), AC(12), AM(13), RR(14), PA(15), AP(16), TO(17),
+    MA(21), PI(22), CE(23), RN(24), PB(25), PE(26), AL(27), SE(28), BA(29),
+    MG(31), ES(32), RJ(33), SP(35),
+    PR(41), SC(42), RS(43),
+    MS(50), MT(51), GO(52), DF(53);
+
+    private static final Uf[] POR_CODIGO = new Uf[54];
+
+    static {
+        for (Uf uf : values()) {
+            POR_CODIGO[uf.codigo] = uf;
+        }
+    }
+
+    private final int codigo;
+
+    Uf(int codigo) {
+        this.codigo = codigo;
+    }
+
+    public int getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * Retorna a UF correspondente ao código IBGE.
+     *
+     * @param codigo Código IBGE da UF (ex: 35)
+     * @return UF correspondente
+     * @throws IllegalArgumentException Se o código não corresponder a nenhuma UF
+     */
+    public static Uf porCodigo(int codigo) {
+        Uf uf = codigo >= 0 && codigo < POR_CODIGO.length ? POR_CODIGO[codigo] : null;
+        if (uf == null) {
+            throw new IllegalArgumentException("Código de UF inválido: " + codigo);
+        }
+        return uf;
+    }
+}
@@ -0,0 +1,477 @@
+package com.sefaz.nfe;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regras de validação da SEFAZ (MOC/NT da NF-e 4.00) conferidas localmente, antes do envio.
+ *
+ * Complementa a validação pelo XSD: as rejeições mais comuns por regra de negócio (nItem
+ * fora da faixa ou duplicado, CFOP incompatível com tpNF/idDest, CST/CSOSN incompatível com o CRT, NCM inválido,
+ * vProd diferente de qCom x vUnCom e totais do ICMSTot diferentes do somatório dos itens) são
+ * detectadas em uma única leitura StAX da NF-e assinada ou não, sem DOM. Valores são somados
+ * em centavos, como no {@link TotaisNFe}, e comparados sem tolerância (exceto a regra 629).
+ *
+ * O cStat previsto é o da primeira regra violada na ordem da {@link Regra tabela}; cada regra
+ * é reportada uma única vez, no primeiro item em que ocorre. Instâncias são imutáveis e podem
+ * ser compartilhadas entre threads.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+public final class ValidadorRegrasNFe {
+
+    /** Maior nItem aceito pelo leiaute da NF-e 4.00. */
+    public static final int NITEM_MAXIMO = 990;
+
+    /**
+     * Tabela de regras, na ordem de avaliação, com o cStat que a SEFAZ devolveria.
+     */
+    public enum Regra {
+        NITEM_INVALIDO("225", "Falha no Schema XML: nItem fora da faixa de 1 a " + ValidadorRegrasNFe.NITEM_MAXIMO),
+        NITEM_DUPLICADO("225", "Falha no Schema XML: nItem duplicado"),
+        CFOP_ENTRADA_EM_SAIDA("521", "CFOP de entrada para NF-e de saída"),
+        CFOP_SAIDA_EM_ENTRADA("522", "CFOP de saída para NF-e de entrada"),
+        CFOP_NAO_ESTADUAL("523", "CFOP não é de operação estadual e UF do emitente igual à do destinatário (idDest=1)"),
+        CFOP_ESTADUAL("524", "CFOP de operação estadual e UF do emitente difere da do destinatário (idDest=2)"),
+        TOTAL_BC_ICMS("531", "Total da BC ICMS difere do somatório dos itens"),
+        TOTAL_ICMS("532", "Total do ICMS difere do somatório dos itens"),
+        TOTAL_PRODUTOS("564", "Total do Produto/Serviço difere do somatório dos itens"),
+        CST_NO_SIMPLES("590", "Informado CST para emissor do Simples Nacional (CRT=1 ou 4)"),
+        CSOSN_FORA_DO_SIMPLES("591", "Informado CSOSN para emissor que não é do Simples Nacional (CRT=2 ou 3)"),
+        TOTAL_PIS("602", "Total do PIS difere do somatório dos itens"),
+        TOTAL_COFINS("603", "Total do COFINS difere do somatório dos itens"),
+        TOTAL_NOTA("610", "Total da NF difere do somatório dos valores que compõem o valor total da NF"),
+        VALOR_PRODUTO("629", "Valor do Produto difere do produto Valor Unitário de Comercialização x Quantidade Comercial"),
+        TOTAL_TRIBUTOS("685", "Total do Valor Aproximado dos Tributos difere do somatório dos itens"),
+        NCM_INEXISTENTE("778", "Informado NCM inexistente");
+
+        private final String codigoStatus;
+        private final String descricao;
+
+        Regra(String codigoStatus, String descricao) {
+            this.codigoStatus = codigoStatus;
+            this.descricao = descricao;
+        }
+
+        public String getCodigoStatus() {
+            return codigoStatus;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+
+    /**
+     * @param regra Regra violada
+     * @param item nItem em que a regra foi violada (0 nas regras de totais)
+     * @param detalhe Valores encontrados
+     */
+    public record Rejeicao(Regra regra, int item, String detalhe) {
+
+        public String codigoStatus() {
+            return regra.getCodigoStatus();
+        }
+
+        @Override
+        public String toString() {
+            return regra.getCodigoStatus() + " - " + regra.getDescricao() + " (" + detalhe + ")";
+        }
+    }
+
+    /**
+     * @param rejeicoes Regras violadas, na ordem da tabela (vazio se nenhuma)
+     */
+    public record Resultado(List<Rejeicao> rejeicoes) {
+
+        public Resultado {
+            rejeicoes = List.copyOf(rejeicoes);
+        }
+
+        public boolean isValida() {
+            return rejeicoes.isEmpty();
+        }
+
+        /**
+         * cStat previsto (o da primeira regra violada), ou null se nenhuma regra foi violada.
+         */
+        public String getCodigoStatus() {
+            return rejeicoes.isEmpty() ? null : rejeicoes.get(0).codigoStatus();
+        }
+    }
+
+    private static final XMLInputFactory FABRICA = criarFabrica();
+    private static final Regra[] REGRAS = Regra.values();
+
+    /** Campos do ICMSTot conferidos com os itens e usados no cálculo do vNF. */
+    private static final String[] CAMPOS_TOTAL = {"vBC", "vICMS", "vICMSDeson", "vST", "vFCPST", "vProd", "vFrete",
+            "vSeg", "vDesc", "vII", "vIPI", "vIPIDevol", "vPIS", "vCOFINS", "vOutro", "vNF", "vTotTrib"};
+
+    private final Set<Regra> regras;
+
+    /**
+     * Validador com todas as regras da tabela.
+     */
+    public ValidadorRegrasNFe() {
+        this(EnumSet.allOf(Regra.class));
+    }
+
+    /**
+     * Validador apenas com as regras informadas (ex: sem a 778 quando o NCM já é validado
+     * contra a tabela oficial).
+     */
+    public ValidadorRegrasNFe(Set<Regra> regras) {
+        this.regras = regras.isEmpty() ? EnumSet.noneOf(Regra.class) : EnumSet.copyOf(regras);
+    }
+
+    private static XMLInputFactory criarFabrica() {
+        XMLInputFactory fabrica = XMLInputFactory.newInstance();
+        fabrica.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        fabrica.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        fabrica.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return fabrica;
+    }
+
+    /**
+     * Confere as regras em uma NF-e (elemento NFe, com ou sem assinatura).
+     *
+     * @throws IllegalArgumentException Se o XML estiver mal formado ou algum valor não for numérico
+     */
+    public Resultado validar(String xmlNFe) {
+        Leitura leitura = new Leitura();
+        try {
+            XMLStreamReader leitor = FABRICA.createXMLStreamReader(new StringReader(xmlNFe));
+            try {
+                leitura.ler(leitor);
+            } finally {
+                leitor.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("XML da NF-e mal formado: " + e.getMessage(), e);
+        }
+        return leitura.resultado();
+    }
+
+    /** Grupo do imposto do item em leitura. */
+    private enum Grupo { ICMS, PIS, COFINS, OUTRO }
+
+    /**
+     * Estado de uma validação: os fatos necessários às regras são conferidos à medida que
+     * aparecem (ide e emit vêm antes dos det) e os totais no fechamento do ICMSTot.
+     */
+    private final class Leitura {
+
+        private final Rejeicao[] rejeicoes = new Rejeicao[REGRAS.length];
+        private final BitSet itens = new BitSet();
+        private final long[] total = new long[CAMPOS_TOTAL.length];
+
+        private int tpNF = -1;
+        private int idDest = -1;
+        private int crt = -1;
+
+        private int item;
+        private boolean emProd;
+        private int profundidade;
+        private int profundidadeImposto = -1;
+        private Grupo grupo;
+        private boolean emTotal;
+        private boolean totalLido;
+
+        private String qCom;
+        private String vUnCom;
+        private long vProdItem;
+        private boolean indTot;
+
+        private long somaBC;
+        private long somaICMS;
+        private long somaProd;
+        private long somaPIS;
+        private long somaCOFINS;
+        private long somaTotTrib;
+
+        void ler(XMLStreamReader leitor) throws XMLStreamException {
+            while (leitor.hasNext()) {
+                int evento = leitor.next();
+                if (evento == XMLStreamConstants.END_ELEMENT) {
+                    fim(leitor.getLocalName());
+                    profundidade--;
+                } else if (evento == XMLStreamConstants.START_ELEMENT) {
+                    profundidade++;
+                    inicio(leitor);
+                }
+            }
+        }
+
+        private void inicio(XMLStreamReader leitor) throws XMLStreamException {
+            String nome = leitor.getLocalName();
+            if (emProd) {
+                prod(nome, leitor);
+            } else if (grupo != null) {
+                imposto(nome, leitor);
+            } else if (profundidadeImposto >= 0 && profundidade == profundidadeImposto + 1) {
+                switch (nome) {
+                    case "vTotTrib" -> somaTotTrib += valor(texto(leitor));
+                    case "ICMS" -> grupo = Grupo.ICMS;
+                    case "PIS" -> grupo = Grupo.PIS;
+                    case "COFINS" -> grupo = Grupo.COFINS;
+                    default -> grupo = Grupo.OUTRO;
+                }
+            } else if (emTotal) {
+                for (int i = 0; i < CAMPOS_TOTAL.length; i++) {
+                    if (CAMPOS_TOTAL[i].equals(nome)) {
+                        total[i] = valor(texto(leitor));
+                        break;
+                    }
+                }
+            } else {
+                switch (nome) {
+                    case "tpNF" -> tpNF = inteiro(texto(leitor));
+                    case "idDest" -> idDest = inteiro(texto(leitor));
+                    case "CRT" -> crt = inteiro(texto(leitor));
+                    case "det" -> det(leitor.getAttributeValue(null, "nItem"));
+                    case "prod" -> emProd = true;
+                    case "imposto" -> profundidadeImposto = profundidade;
+                    case "ICMSTot" -> emTotal = true;
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        private void fim(String nome) {
+            if (emProd && nome.equals("prod")) {
+                emProd = false;
+                fimProd();
+            } else if (grupo != null && profundidade == profundidadeImposto + 1) {
+                grupo = null;
+            } else if (profundidade == profundidadeImposto) {
+                profundidadeImposto = -1;
+            } else if (emTotal && nome.equals("ICMSTot")) {
+                emTotal = false;
+                totalLido = true;
+            }
+        }
+
+        private void det(String nItem) {
+            item = nItem == null ? 0 : inteiro(nItem);
+            qCom = null;
+            vUnCom = null;
+            vProdItem = 0;
+            indTot = false;
+            if (item < 1 || item > NITEM_MAXIMO) {
+                rejeitar(Regra.NITEM_INVALIDO, "nItem " + item);
+            } else if (itens.get(item)) {
+                rejeitar(Regra.NITEM_DUPLICADO, "nItem " + item);
+            } else {
+                itens.set(item);
+            }
+        }
+
+        private void prod(String nome, XMLStreamReader leitor) throws XMLStreamException {
+            switch (nome) {
+                case "NCM" -> ncm(texto(leitor));
+                case "CFOP" -> cfop(texto(leitor));
+                case "qCom" -> qCom = texto(leitor);
+                case "vUnCom" -> vUnCom = texto(leitor);
+                case "vProd" -> vProdItem = valor(texto(leitor));
+                case "indTot" -> indTot = "1".equals(texto(leitor));
+                default -> {
+                }
+            }
+        }
+
+        private void fimProd() {
+            if (indTot) {
+                somaProd += vProdItem;
+            }
+            if (qCom != null && vUnCom != null && ativa(Regra.VALOR_PRODUTO)) {
+                long calculado = produtoEmCentavos(qCom, vUnCom);
+                if (Math.abs(calculado - vProdItem) > 1) {
+                    rejeitar(Regra.VALOR_PRODUTO, "vProd " + decimal(vProdItem) + ", qCom x vUnCom "
+                            + decimal(calculado));
+                }
+            }
+        }
+
+        private void imposto(String nome, XMLStreamReader leitor) throws XMLStreamException {
+            switch (grupo) {
+                case ICMS -> {
+                    switch (nome) {
+                        case "CST" -> {
+                            if (crt == 1 || crt == 4) {
+                                rejeitar(Regra.CST_NO_SIMPLES, "CRT " + crt + ", CST " + texto(leitor));
+                            }
+                        }
+                        case "CSOSN" -> {
+                            if (crt == 2 || crt == 3) {
+                                rejeitar(Regra.CSOSN_FORA_DO_SIMPLES, "CRT " + crt + ", CSOSN " + texto(leitor));
+                            }
+                        }
+                        case "vBC" -> somaBC += valor(texto(leitor));
+                        case "vICMS" -> somaICMS += valor(texto(leitor));
+                        default -> {
+                        }
+                    }
+                }
+                case PIS -> {
+                    if (nome.equals("vPIS")) {
+                        somaPIS += valor(texto(leitor));
+                    }
+                }
+                case COFINS -> {
+                    if (nome.equals("vCOFINS")) {
+                        somaCOFINS += valor(texto(leitor));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * NCM com 8 dígitos e capítulo da TIPI (01 a 97), ou "00" para serviços.
+         */
+        private void ncm(String ncm) {
+            if (ncm.equals("00")) {
+                return;
+            }
+            boolean valido = ncm.length() == 8;
+            for (int i = 0; valido && i < 8; i++) {
+                char c = ncm.charAt(i);
+                valido = c >= '0' && c <= '9';
+            }
+            if (valido) {
+                int capitulo = (ncm.charAt(0) - '0') * 10 + ncm.charAt(1) - '0';
+                valido = capitulo >= 1 && capitulo <= 97 && capitulo != 77;
+            }
+            if (!valido) {
+                rejeitar(Regra.NCM_INEXISTENTE, "NCM " + ncm);
+            }
+        }
+
+        /**
+         * Primeiro dígito do CFOP: 1/2/3 entradas (estadual, interestadual, exterior),
+         * 5/6/7 saídas.
+         */
+        private void cfop(String cfop) {
+            char tipo = cfop.isEmpty() ? ' ' : cfop.charAt(0);
+            boolean entrada = tipo == '1' || tipo == '2' || tipo == '3';
+            boolean saida = tipo == '5' || tipo == '6' || tipo == '7';
+            boolean estadual = tipo == '1' || tipo == '5';
+            if (tpNF == 1 && entrada) {
+                rejeitar(Regra.CFOP_ENTRADA_EM_SAIDA, "CFOP " + cfop);
+            } else if (tpNF == 0 && saida) {
+                rejeitar(Regra.CFOP_SAIDA_EM_ENTRADA, "CFOP " + cfop);
+            }
+            if (idDest == 1 && !estadual) {
+                rejeitar(Regra.CFOP_NAO_ESTADUAL, "CFOP " + cfop);
+            } else if (idDest == 2 && estadual) {
+                rejeitar(Regra.CFOP_ESTADUAL, "CFOP " + cfop);
+            }
+        }
+
+        Resultado resultado() {
+            item = 0;
+            if (totalLido) {
+                comparar(Regra.TOTAL_BC_ICMS, "vBC", somaBC);
+                comparar(Regra.TOTAL_ICMS, "vICMS", somaICMS);
+                comparar(Regra.TOTAL_PRODUTOS, "vProd", somaProd);
+                comparar(Regra.TOTAL_PIS, "vPIS", somaPIS);
+                comparar(Regra.TOTAL_COFINS, "vCOFINS", somaCOFINS);
+                comparar(Regra.TOTAL_TRIBUTOS, "vTotTrib", somaTotTrib);
+                // vNF = vProd - vDesc - vICMSDeson + vST + vFCPST + vFrete + vSeg + vOutro + vII + vIPI + vIPIDevol
+                long vNF = total("vProd") - total("vDesc") - total("vICMSDeson") + total("vST") + total("vFCPST")
+                        + total("vFrete") + total("vSeg") + total("vOutro") + total("vII") + total("vIPI")
+                        + total("vIPIDevol");
+                if (vNF != total("vNF")) {
+                    rejeitar(Regra.TOTAL_NOTA, "vNF " + decimal(total("vNF")) + ", calculado " + decimal(vNF));
+                }
+            }
+            List<Rejeicao> lista = new ArrayList<>();
+            for (Rejeicao rejeicao : rejeicoes) {
+                if (rejeicao != null) {
+                    lista.add(rejeicao);
+                }
+            }
+            return new Resultado(lista);
+        }
+
+        private void comparar(Regra regra, String campo, long somaItens) {
+            long declarado = total(campo);
+            if (declarado != somaItens) {
+                rejeitar(regra, campo + " " + decimal(declarado) + ", somatório dos itens " + decimal(somaItens));
+            }
+        }
+
+        private long total(String campo) {
+            for (int i = 0; i < CAMPOS_TOTAL.length; i++) {
+                if (CAMPOS_TOTAL[i].equals(campo)) {
+                    return total[i];
+                }
+            }
+            throw new IllegalArgumentException(campo);
+        }
+
+        /**
+         * Texto de um elemento simples; o fim do elemento é consumido aqui, não em {@link #fim}.
+         */
+        private String texto(XMLStreamReader leitor) throws XMLStreamException {
+            profundidade--;
+            return leitor.getElementText().trim();
+        }
+
+        private void rejeitar(Regra regra, String detalhe) {
+            if (rejeicoes[regra.ordinal()] == null && ativa(regra)) {
+                rejeicoes[regra.ordinal()] = new Rejeicao(regra, item,
+                        item > 0 ? "item " + item + ": " + detalhe : detalhe);
+            }
+        }
+    }
+
+    private boolean ativa(Regra regra) {
+        return regras.contains(regra);
+    }
+
+    /**
+     * qCom (até 4 casas) x vUnCom (até 10 casas) arredondado para centavos.
+     */
+    static long produtoEmCentavos(String qCom, String vUnCom) {
+        try {
+            long produto = Math.multiplyExact(TotaisNFe.lerDecimal(qCom, 4), TotaisNFe.lerDecimal(vUnCom, 10));
+            long divisor = 1_000_000_000_000L; // 10^(4 + 10 - 2)
+            return (produto + divisor / 2) / divisor;
+        } catch (ArithmeticException e) {
+            return new BigDecimal(qCom).multiply(new BigDecimal(vUnCom))
+                    .setScale(TotaisNFe.CASAS_VALOR, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+    }
+
+    private static long valor(String texto) {
+        return TotaisNFe.lerDecimal(texto, TotaisNFe.CASAS_VALOR);
+    }
+
+    private static int inteiro(String texto) {
+        try {
+            return Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inteiro inválido: " + texto, e);
+        }
+    }
+
+    private static String decimal(long centavos) {
+        StringBuilder sb = new StringBuilder();
+        TotaisNFe.escreverDecimal(sb, centavos, TotaisNFe.CASAS_VALOR);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,637 @@
+package com.sefaz.nfe;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertPathBuilderException;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateNotYetValidException;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Verifica a assinatura de NF-e recebidas de fornecedores (XML da NF-e ou nfeProc).
+ *
+ * Para cada documento:
+ * - A assinatura do infNFe deve seguir o padrão do leiaute (C14N inclusiva, RSA-SHA1,
+ *   enveloped, uma Reference para o Id do infNFe) e ser válida (JSR-105)
+ * - O CNPJ base do certificado deve ser o do emitente (posições 7 a 14 da chave)
+ * - O certificado deve estar válido na data de emissão (dhEmi) e encadear até uma das
+ *   âncoras ICP-Brasil configuradas ({@link #carregarAncoras(Path)})
+ *
+ * Certificados lidos do KeyInfo e cadeias já verificadas ficam em cache, então milhares de
+ * notas do mesmo fornecedor custam uma única construção de cadeia. A verificação em lote
+ * ({@link #verificar(Iterator, Consumer)}) lê os documentos sob demanda (ZIP, docZip da
+ * distribuição DF-e) e verifica em paralelo, entregando os resultados na ordem da entrada.
+ *
+ * A revogação (LCR/OCSP) não é consultada.
+ *
+ * @author Comunidade Open Source
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class VerificadorAssinatura {
+
+    private static final String NAMESPACE_NFE = "http://www.portalfiscal.inf.br/nfe";
+    private static final Set<String> TRANSFORMACOES = Set.of(Transform.ENVELOPED, AssinaturaIncremental.C14N);
+    private static final Pattern DOC_ZIP = Pattern.compile("<docZip\\b([^>]*)>([^<]*)</docZip>");
+    private static final int LIMITE_CACHE = 10_000;
+    /** Mesmo mínimo do jdk.xml.dsig.secureValidationPolicy (minKeySize RSA). */
+    private static final int TAMANHO_MINIMO_RSA = 1024;
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    /**
+     * Resultado da verificação, da primeira regra violada.
+     */
+    public enum Situacao {
+        VALIDA,
+        /** XML mal formado ou sem infNFe. */
+        XML_INVALIDO,
+        SEM_ASSINATURA,
+        /** Algoritmos ou Reference diferentes do padrão do leiaute. */
+        FORA_DO_PADRAO,
+        /** Documento alterado após a assinatura ou SignatureValue inválido. */
+        ASSINATURA_INVALIDA,
+        /** Certificado de outro CNPJ base que não o do emitente, ou sem CNPJ. */
+        CNPJ_DIVERGENTE,
+        /** Fora da validade na emissão ou sem cadeia até uma âncora confiável. */
+        CERTIFICADO_NAO_CONFIAVEL
+    }
+
+    /**
+     * @param indice Posição do documento na entrada (0 em verificações avulsas)
+     * @param chave Chave de acesso (null se o XML não pôde ser lido)
+     * @param certificado Certificado do KeyInfo, quando presente
+     */
+    public record Resultado(long indice, String chave, Situacao situacao, String motivo,
+                            X509Certificate certificado) {
+
+        public boolean isValida() {
+            return situacao == Situacao.VALIDA;
+        }
+    }
+
+    /**
+     * Totais de uma execução de {@link #verificar(Iterator, Consumer)}.
+     */
+    public record Resumo(long verificados, long invalidos, Duration duracao) {
+    }
+
+    /** Cadeia construída para o certificado: null se válida, senão o motivo. */
+    private record Cadeia(String erro) {
+    }
+
+    private final Map<String, X509Certificate> certificados = lru(LIMITE_CACHE);
+    private final Map<X509Certificate, Cadeia> cadeias = lru(LIMITE_CACHE);
+    private final ThreadLocal<DocumentBuilder> parsers = ThreadLocal.withInitial(VerificadorAssinatura::novoParser);
+
+    private volatile Set<TrustAnchor> ancoras = Set.of();
+    private volatile List<X509Certificate> intermediarias = List.of();
+    private boolean verificarCadeia = true;
+    private int paralelismo = Runtime.getRuntime().availableProcessors();
+    private int janela;
+
+    /**
+     * Carrega as âncoras e certificados intermediários de um diretório (.cer, .crt, .pem ou
+     * .der, DER ou PEM, um ou mais certificados por arquivo), como o pacote de ACs
+     * publicado pelo ITI para a ICP-Brasil.
+     *
+     * @return Quantidade de certificados carregados
+     */
+    public int carregarAncoras(Path diretorio) throws IOException, CertificateException {
+        CertificateFactory fabrica = CertificateFactory.getInstance("X.509");
+        List<Certificate> lidos = new ArrayList<>();
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            for (Path arquivo : arquivos.filter(Files::isRegularFile).sorted().toList()) {
+                String nome = arquivo.getFileName().toString().toLowerCase();
+                if (nome.endsWith(".cer") || nome.endsWith(".crt") || nome.endsWith(".pem") || nome.endsWith(".der")) {
+                    try (InputStream entrada = Files.newInputStream(arquivo)) {
+                        lidos.addAll(fabrica.generateCertificates(entrada));
+                    }
+                }
+            }
+        }
+        adicionarAncoras(lidos);
+        return lidos.size();
+    }
+
+    /**
+     * Adiciona certificados de AC: os autoassinados viram âncoras, os demais são usados como
+     * intermediários na construção das cadeias. Limpa o cache de cadeias.
+     */
+    public synchronized void adicionarAncoras(Collection<? extends Certificate> certificadosAc) {
+        Set<TrustAnchor> novasAncoras = new HashSet<>(ancoras);
+        List<X509Certificate> novasIntermediarias = new ArrayList<>(intermediarias);
+        for (Certificate c : certificadosAc) {
+            X509Certificate x509 = (X509Certificate) c;
+            if (autoassinado(x509)) {
+                novasAncoras.add(new TrustAnchor(x509, null));
+            } else {
+                novasIntermediarias.add(x509);
+            }
+        }
+        ancoras = Set.copyOf(novasAncoras);
+        intermediarias = List.copyOf(novasIntermediarias);
+        synchronized (cadeias) {
+            cadeias.clear();
+        }
+        log.info("Âncoras para verificação de assinaturas: {} raízes, {} intermediárias",
+                ancoras.size(), intermediarias.size());
+    }
+
+    /**
+     * Verifica um documento (NFe ou nfeProc).
+     */
+    public Resultado verificar(String xml) {
+        return verificar(0, xml);
+    }
+
+    /**
+     * Verifica todos os documentos em paralelo. Os documentos são lidos na thread chamadora,
+     * no máximo {@code janela} ficam em verificação e os resultados são entregues ao ouvinte
+     * na thread chamadora, na ordem da entrada.
+     *
+     * @param documentos XMLs lidos sob demanda (ex: {@link #zip(InputStream)}, {@link #distribuicao(String)})
+     * @param ouvinte Recebe o resultado de cada documento
+     */
+    public Resumo verificar(Iterator<String> documentos, Consumer<Resultado> ouvinte) {
+        long inicio = System.nanoTime();
+        int limite = janela > 0 ? janela : paralelismo * 4;
+        int pool = POOLS.incrementAndGet();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(paralelismo, r -> {
+            Thread t = new Thread(r, "sefaz-verificacao-" + pool + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<Resultado>> emOrdem = new ArrayDeque<>();
+        long[] totais = new long[2];
+
+        try {
+            long indice = 0;
+            while (documentos.hasNext()) {
+                String xml = documentos.next();
+                long i = indice++;
+                emOrdem.add(executor.submit(() -> verificar(i, xml)));
+                if (emOrdem.size() >= limite) {
+                    entregar(emOrdem.poll(), ouvinte, totais);
+                }
+            }
+            while (!emOrdem.isEmpty()) {
+                entregar(emOrdem.poll(), ouvinte, totais);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Resumo(totais[0], totais[1], Duration.ofNanos(System.nanoTime() - inicio));
+    }
+
+    private static void entregar(Future<Resultado> futuro, Consumer<Resultado> ouvinte, long[] totais) {
+        Resultado resultado;
+        try {
+            resultado = futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verificação interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha inesperada na verificação", e.getCause());
+        }
+        totais[0]++;
+        if (!resultado.isValida()) {
+            totais[1]++;
+        }
+        ouvinte.accept(resultado);
+    }
+
+    private Resultado verificar(long indice, String xml) {
+        Document doc;
+        try {
+            doc = parsers.get().parse(new InputSource(new StringReader(xml)));
+        } catch (Exception e) {
+            return new Resultado(indice, null, Situacao.XML_INVALIDO, e.getMessage(), null);
+        }
+
+        Element inf = primeiro(doc.getDocumentElement(), NAMESPACE_NFE, "infNFe");
+        if (inf == null || inf.getAttribute("Id").isEmpty()) {
+            return new Resultado(indice, null, Situacao.XML_INVALIDO, "infNFe com Id não encontrado", null);
+        }
+        String id = inf.getAttribute("Id");
+        String chave = id.startsWith("NFe") ? id.substring(3) : id;
+        inf.setIdAttribute("Id", true);
+
+        Element assinatura = filho(inf.getParentNode(), XMLSignature.XMLNS, "Signature");
+        if (assinatura == null) {
+            return new Resultado(indice, chave, Situacao.SEM_ASSINATURA, "Signature não encontrado no NFe", null);
+        }
+
+        Element x509 = primeiro(assinatura, XMLSignature.XMLNS, "X509Certificate");
+        X509Certificate certificado;
+        try {
+            certificado = x509 == null ? null : certificado(x509.getTextContent());
+        } catch (CertificateException | IllegalArgumentException e) {
+            return new Resultado(indice, chave, Situacao.FORA_DO_PADRAO, "X509Certificate inválido: " + e.getMessage(), null);
+        }
+        if (certificado == null) {
+            return new Resultado(indice, chave, Situacao.FORA_DO_PADRAO, "KeyInfo sem X509Certificate", null);
+        }
+
+        String limite = limitesValidacao(doc, assinatura, id, certificado);
+        if (limite != null) {
+            return new Resultado(indice, chave, Situacao.FORA_DO_PADRAO, limite, certificado);
+        }
+
+        try {
+            DOMValidateContext contexto = new DOMValidateContext(certificado.getPublicKey(), assinatura);
+            // O secureValidation do JDK recusa RSA-SHA1 e SHA-1, exigidos pelo leiaute, e a política
+            // (jdk.xml.dsig.secureValidationPolicy) só pode ser alterada para toda a JVM. As demais
+            // proteções são aplicadas aqui: limites antes do unmarshal (limitesValidacao) e, antes do
+            // validate, apenas a Reference local ao infNFe e as transformações do leiaute (foraDoPadrao).
+            // A chave vem do certificado, então o KeyInfo (RetrievalMethod) nunca é resolvido.
+            contexto.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE);
+            XMLSignature signature = XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(contexto);
+
+            String foraDoPadrao = foraDoPadrao(signature.getSignedInfo(), id);
+            if (foraDoPadrao != null) {
+                return new Resultado(indice, chave, Situacao.FORA_DO_PADRAO, foraDoPadrao, certificado);
+            }
+            if (!signature.validate(contexto)) {
+                Reference referencia = signature.getSignedInfo().getReferences().get(0);
+                String motivo = referencia.validate(contexto)
+                        ? "SignatureValue não confere com o certificado"
+                        : "DigestValue não confere: documento alterado após a assinatura";
+                return new Resultado(indice, chave, Situacao.ASSINATURA_INVALIDA, motivo, certificado);
+            }
+        } catch (Exception e) {
+            return new Resultado(indice, chave, Situacao.ASSINATURA_INVALIDA, e.toString(), certificado);
+        }
+
+        String cnpj = CertificadoDigital.extrairCnpj(certificado);
+        if (cnpj == null) {
+            return new Resultado(indice, chave, Situacao.CNPJ_DIVERGENTE,
+                    "CNPJ não encontrado no certificado " + certificado.getSubjectX500Principal().getName(),
+                    certificado);
+        }
+        if (chave.length() == 44 && !chave.startsWith(cnpj.substring(0, 8), 6)) {
+            return new Resultado(indice, chave, Situacao.CNPJ_DIVERGENTE,
+                    "CNPJ base do certificado " + cnpj.substring(0, 8) + " difere do emitente "
+                            + chave.substring(6, 14), certificado);
+        }
+
+        if (verificarCadeia) {
+            String erro = verificarCertificado(certificado, dataEmissao(inf));
+            if (erro != null) {
+                return new Resultado(indice, chave, Situacao.CERTIFICADO_NAO_CONFIAVEL, erro, certificado);
+            }
+        }
+        return new Resultado(indice, chave, Situacao.VALIDA, null, certificado);
+    }
+
+    /**
+     * Limites do secureValidation que continuam valendo com ele desligado: quantidade de
+     * Reference e Transform (verificada antes do unmarshal), Id único e tamanho mínimo da chave RSA.
+     */
+    private static String limitesValidacao(Document doc, Element assinatura, String id, X509Certificate certificado) {
+        int referencias = assinatura.getElementsByTagNameNS(XMLSignature.XMLNS, "Reference").getLength();
+        if (referencias != 1) {
+            return "SignedInfo com " + referencias + " Reference";
+        }
+        int transformacoes = assinatura.getElementsByTagNameNS(XMLSignature.XMLNS, "Transform").getLength();
+        if (transformacoes > TRANSFORMACOES.size()) {
+            return "Reference com " + transformacoes + " Transform";
+        }
+        int comId = 0;
+        NodeList elementos = doc.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < elementos.getLength(); i++) {
+            if (id.equals(((Element) elementos.item(i)).getAttribute("Id")) && ++comId > 1) {
+                return "Id " + id + " duplicado no documento";
+            }
+        }
+        if (certificado.getPublicKey() instanceof RSAPublicKey rsa && rsa.getModulus().bitLength() < TAMANHO_MINIMO_RSA) {
+            return "Chave RSA de " + rsa.getModulus().bitLength() + " bits";
+        }
+        return null;
+    }
+
+    /**
+     * Algoritmos e Reference exigidos pelo leiaute; impede também que a assinatura de outro
+     * elemento seja apresentada como a do infNFe.
+     */
+    private static String foraDoPadrao(SignedInfo signedInfo, String id) {
+        if (!AssinaturaIncremental.C14N.equals(signedInfo.getCanonicalizationMethod().getAlgorithm())) {
+            return "CanonicalizationMethod " + signedInfo.getCanonicalizationMethod().getAlgorithm();
+        }
+        if (!AssinaturaIncremental.RSA_SHA1.equals(signedInfo.getSignatureMethod().getAlgorithm())) {
+            return "SignatureMethod " + signedInfo.getSignatureMethod().getAlgorithm();
+        }
+        if (signedInfo.getReferences().size() != 1) {
+            return "SignedInfo com " + signedInfo.getReferences().size() + " Reference";
+        }
+        Reference referencia = signedInfo.getReferences().get(0);
+        if (!("#" + id).equals(referencia.getURI())) {
+            return "Reference " + referencia.getURI() + " não aponta para o infNFe " + id;
+        }
+        if (!AssinaturaIncremental.SHA1.equals(referencia.getDigestMethod().getAlgorithm())) {
+            return "DigestMethod " + referencia.getDigestMethod().getAlgorithm();
+        }
+        for (Transform t : referencia.getTransforms()) {
+            String algoritmo = t.getAlgorithm();
+            if (!TRANSFORMACOES.contains(algoritmo)) {
+                return "Transform " + algoritmo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Validade na data de emissão e cadeia até uma âncora (em cache por certificado).
+     */
+    private String verificarCertificado(X509Certificate certificado, Date emissao) {
+        try {
+            certificado.checkValidity(emissao);
+        } catch (CertificateExpiredException | CertificateNotYetValidException e) {
+            return "Certificado fora da validade em " + emissao.toInstant() + ": " + e.getMessage();
+        }
+        if (ancoras.isEmpty()) {
+            return "Nenhuma âncora ICP-Brasil configurada";
+        }
+        Cadeia cadeia;
+        synchronized (cadeias) {
+            cadeia = cadeias.get(certificado);
+        }
+        if (cadeia == null) {
+            // Construída fora do lock: a mesma cadeia pode ser construída em paralelo na
+            // primeira vez, mas um certificado lento não bloqueia a verificação dos demais
+            cadeia = construirCadeia(certificado);
+            synchronized (cadeias) {
+                cadeias.put(certificado, cadeia);
+            }
+        }
+        return cadeia.erro();
+    }
+
+    private Cadeia construirCadeia(X509Certificate certificado) {
+        try {
+            X509CertSelector alvo = new X509CertSelector();
+            alvo.setCertificate(certificado);
+            PKIXBuilderParameters parametros = new PKIXBuilderParameters(ancoras, alvo);
+            parametros.setRevocationEnabled(false);
+            parametros.addCertStore(CertStore.getInstance("Collection",
+                    new CollectionCertStoreParameters(intermediarias)));
+            // A cadeia é verificada em uma data em que o certificado do emitente é válido;
+            // a validade na emissão é verificada para cada documento
+            Instant agora = Instant.now();
+            Instant fim = certificado.getNotAfter().toInstant();
+            parametros.setDate(Date.from(agora.isAfter(fim) ? fim : agora));
+            CertPathBuilder.getInstance("PKIX").build(parametros);
+            return new Cadeia(null);
+        } catch (CertPathBuilderException e) {
+            return new Cadeia("Cadeia não confiável: " + e.getMessage());
+        } catch (Exception e) {
+            return new Cadeia("Falha ao verificar a cadeia: " + e);
+        }
+    }
+
+    private X509Certificate certificado(String base64) throws CertificateException {
+        String limpo = base64.replaceAll("\\s+", "");
+        X509Certificate certificado;
+        synchronized (certificados) {
+            certificado = certificados.get(limpo);
+        }
+        if (certificado == null) {
+            certificado = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(Base64.getDecoder().decode(limpo)));
+            synchronized (certificados) {
+                certificados.put(limpo, certificado);
+            }
+        }
+        return certificado;
+    }
+
+    /**
+     * Cache LRU (ordem de acesso) limitado a {@code capacidade} entradas; acessos sincronizados
+     * no próprio mapa.
+     */
+    private static <K, V> Map<K, V> lru(int capacidade) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacidade;
+            }
+        };
+    }
+
+    private static Date dataEmissao(Element inf) {
+        Element dhEmi = primeiro(inf, NAMESPACE_NFE, "dhEmi");
+        if (dhEmi != null) {
+            try {
+                return Date.from(OffsetDateTime.parse(dhEmi.getTextContent().trim()).toInstant());
+            } catch (DateTimeParseException e) {
+                log.debug("dhEmi inválido: {}", dhEmi.getTextContent());
+            }
+        }
+        return new Date();
+    }
+
+    private static boolean autoassinado(X509Certificate certificado) {
+        if (!certificado.getSubjectX500Principal().equals(certificado.getIssuerX500Principal())) {
+            return false;
+        }
+        try {
+            certificado.verify(certificado.getPublicKey());
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Element primeiro(Element raiz, String namespace, String nome) {
+        NodeList nos = raiz.getElementsByTagNameNS(namespace, nome);
+        return nos.getLength() > 0 ? (Element) nos.item(0) : null;
+    }
+
+    private static Element filho(Node pai, String namespace, String nome) {
+        for (Node n = pai.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && nome.equals(e.getLocalName()) && namespace.equals(e.getNamespaceURI())) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private static DocumentBuilder novoParser() {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            // XMLs de terceiros: sem DTD nem entidades externas
+            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            dbf.setExpandEntityReferences(false);
+            return dbf.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Entradas em lote
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Entradas .xml de um ZIP, lidas uma a uma. Fechar a entrada é responsabilidade do chamador.
+     */
+    public static Iterator<String> zip(InputStream entrada) {
+        ZipInputStream zip = new ZipInputStream(entrada, StandardCharsets.UTF_8);
+        return new Iterator<>() {
+            private String proximo;
+
+            @Override
+            public boolean hasNext() {
+                if (proximo == null) {
+                    try {
+                        for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                            if (!e.isDirectory() && e.getName().toLowerCase().endsWith(".xml")) {
+                                proximo = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                                break;
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return proximo != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String xml = proximo;
+                proximo = null;
+                return xml;
+            }
+        };
+    }
+
+    /**
+     * nfeProc de uma resposta da distribuição DF-e (retDistDFeInt): cada docZip com schema
+     * procNFe é decodificado (Base64 + GZIP) apenas quando lido. Resumos e eventos são ignorados.
+     */
+    public static Iterator<String> distribuicao(String retDistDFeInt) {
+        Matcher m = DOC_ZIP.matcher(retDistDFeInt);
+        return new Iterator<>() {
+            private String proximo;
+
+            @Override
+            public boolean hasNext() {
+                while (proximo == null && m.find()) {
+                    if (m.group(1).contains("schema=\"procNFe")) {
+                        proximo = descompactar(m.group(2));
+                    }
+                }
+                return proximo != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String xml = proximo;
+                proximo = null;
+                return xml;
+            }
+        };
+    }
+
+    private static String descompactar(String docZip) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(
+                Base64.getMimeDecoder().decode(docZip)))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("docZip inválido", e);
+        }
+    }
+
+    /**
+     * Desliga a verificação de validade e cadeia do certificado (padrão: ligada).
+     */
+    public void setVerificarCadeia(boolean verificarCadeia) {
+        this.verificarCadeia = verificarCadeia;
+    }
+
+    /**
+     * Threads de verificação em lote (padrão: processadores disponíveis).
+     */
+    public void setParalelismo(int paralelismo) {
+        this.paralelismo = paralelismo;
+    }
+
+    /**
+     * Documentos em verificação ao mesmo tempo no lote (padrão: 4 por thread).
+     */
+    public void setJanela(int janela) {
+        this.janela = janela;
+    }
+}
@@ -1,15 +1,32 @@
 package com.sefaz.nfe;
 
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -87,4 +104,91 @@ class AssinaturaDigitalTest {
             }
         });
     }
+
+    @Test
+    void deveAssinarTodasAsNotasDoLoteEmUmaPassada() throws Exception {
+        usarCertificadoDeTeste();
+        String lote = "<enviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\"><idLote>1</idLote>" +
+                nfe("NFe35250112345678000190650010000000011000000019") +
+                nfe("NFe35250112345678000190650010000000021000000024") +
+                nfe("NFe35250112345678000190650010000000031000000020") +
+                "</enviNFe>";
+
+        Document doc = ler(assinaturaDigital.assinarTodos(lote, "infNFe"));
+
+        NodeList assinaturas = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+        assertEquals(3, assinaturas.getLength());
+        for (int i = 0; i < assinaturas.getLength(); i++) {
+            Element assinatura = (Element) assinaturas.item(i);
+            assertEquals("NFe", assinatura.getParentNode().getLocalName());
+            assertTrue(validar(doc, assinatura), "assinatura " + i);
+        }
+    }
+
+    @Test
+    void deveAssinarInfDCeNoNamespaceDaDCe() throws Exception {
+        usarCertificadoDeTeste();
+        String xml = "<enviDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\">" +
+                "<DCe><infDCe versao=\"1.00\" Id=\"DCe35250112345678000190990010000000011000000015\">" +
+                "<ide><cUF>35</cUF></ide></infDCe></DCe></enviDCe>";
+
+        Document doc = ler(assinaturaDigital.assinar(xml, "infDCe"));
+
+        NodeList assinaturas = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+        assertEquals(1, assinaturas.getLength());
+        assertEquals("DCe", assinaturas.item(0).getParentNode().getLocalName());
+        assertTrue(validar(doc, (Element) assinaturas.item(0)));
+    }
+
+    @Test
+    void deveAssinarApenasOPrimeiroElementoComAssinar() throws Exception {
+        usarCertificadoDeTeste();
+        String lote = "<enviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+                nfe("NFe35250112345678000190650010000000011000000019") +
+                nfe("NFe35250112345678000190650010000000021000000024") +
+                "</enviNFe>";
+
+        Document doc = ler(assinaturaDigital.assinar(lote));
+
+        assertEquals(1, doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature").getLength());
+    }
+
+    private void usarCertificadoDeTeste() throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(2048);
+        KeyPair par = gerador.generateKeyPair();
+        Instant agora = Instant.now();
+        X509Certificate certificado = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(new X500Name("CN=EMPRESA TESTE:12345678000190"), BigInteger.ONE,
+                        Date.from(agora), Date.from(agora.plusSeconds(3600)),
+                        new X500Name("CN=EMPRESA TESTE:12345678000190"), par.getPublic())
+                        .build(new JcaContentSignerBuilder("SHA256withRSA").build(par.getPrivate())));
+
+        when(certificadoDigital.isCarregado()).thenReturn(true);
+        when(certificadoDigital.getCertificate()).thenReturn(certificado);
+        when(certificadoDigital.getPrivateKey()).thenReturn(par.getPrivate());
+    }
+
+    private static String nfe(String id) {
+        return "<NFe><infNFe versao=\"4.00\" Id=\"" + id + "\"><ide><cUF>35</cUF></ide></infNFe></NFe>";
+    }
+
+    private static Document ler(String xml) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        return dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private boolean validar(Document doc, Element assinatura) throws Exception {
+        NodeList inf = doc.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < inf.getLength(); i++) {
+            Element e = (Element) inf.item(i);
+            if (e.hasAttribute("Id")) {
+                e.setIdAttribute("Id", true);
+            }
+        }
+        DOMValidateContext contexto = new DOMValidateContext(certificadoDigital.getCertificate().getPublicKey(), assinatura);
+        contexto.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE); // RSA-SHA1 exigido pelo leiaute
+        return XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(contexto).validate(contexto);
+    }
 }
@@ -0,0 +1,165 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class AssinaturaIncrementalTest {
+
+    static final String ID_1 = "NFe35250112345678000190650010000000011000000019";
+    static final String ID_2 = "NFe35250112345678000190650010000000021000000024";
+
+    CertificadoDigital certificado;
+    AssinaturaDigital incremental;
+    AssinaturaDigital jsr105;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        certificado = TransporteHttpsSefazTest.certificadoDeTeste();
+        when(certificado.isCarregado()).thenReturn(true);
+        incremental = new AssinaturaDigital(certificado);
+        jsr105 = new AssinaturaDigital(certificado);
+        jsr105.setAssinaturaIncremental(false);
+    }
+
+    /**
+     * NFC-e no formato do NfeXmlBuilder: acentos, entidades, elemento vazio e CDATA no infNFeSupl.
+     */
+    static String nfe(String id) {
+        return "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+                "<infNFe Id=\"" + id + "\" versao=\"4.00\">" +
+                "<ide><cUF>35</cUF><natOp>VENDA</natOp></ide>" +
+                "<emit><xNome>PADARIA &amp; CONFEITARIA SÃO JOÃO</xNome></emit>" +
+                "<det nItem=\"1\"><prod><xProd>PÃO &lt;FRANCÊS&gt; 50g</xProd><cEAN>SEM GTIN</cEAN>" +
+                "<vProd>12.50</vProd></prod><imposto><vTotTrib>1.20</vTotTrib></imposto></det>" +
+                "<total><ICMSTot><vNF>12.50</vNF></ICMSTot></total>" +
+                "<infAdic><infCpl>Pedido \"12\" - mesa 'A' ☕</infCpl><obsCont xCampo=\"a&amp;b\"/></infAdic>" +
+                "</infNFe>" +
+                "<infNFeSupl><qrCode><![CDATA[https://www.homologacao.nfce.fazenda.sp.gov.br/qrcode?p=1|2]]></qrCode>" +
+                "</infNFeSupl></NFe>";
+    }
+
+    static String semDeclaracao(String xml) {
+        return SefazSoapClient.removerDeclaracaoXml(xml);
+    }
+
+    static List<String> assinaturas(String xml) {
+        List<String> assinaturas = new ArrayList<>();
+        for (int i = xml.indexOf("<Signature "); i >= 0; i = xml.indexOf("<Signature ", i + 1)) {
+            assinaturas.add(xml.substring(i, xml.indexOf("</Signature>", i) + "</Signature>".length()));
+        }
+        return assinaturas;
+    }
+
+    @Test
+    void deveGerarOMesmoXmlQueOJsr105ParaOXmlDoBuilder() throws Exception {
+        String xml = nfe(ID_1);
+
+        String assinado = incremental.assinar(xml);
+
+        assertEquals(semDeclaracao(jsr105.assinar(xml)), assinado);
+        assertTrue(assinado.startsWith(xml.substring(0, xml.indexOf("<infNFeSupl>"))));
+        assertTrue(valido(assinado, 1));
+    }
+
+    @Test
+    void deveGerarOMesmoSignatureComNamespacesHerdadosEFormatacaoLivre() throws Exception {
+        // Namespace com prefixo herdado pelo SignedInfo, declaração redundante, atributos fora
+        // de ordem, aspas simples, CR LF, referências numéricas e comentários
+        String lote = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" +
+                "<enviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" " +
+                "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" versao=\"4.00\">\r\n" +
+                "  <idLote>1</idLote>\r\n" +
+                "  <NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">\r\n" +
+                "    <infNFe versao='4.00'   Id=\"" + ID_1 + "\" >\r\n" +
+                "      <!-- gerado pelo PDV -->\r\n" +
+                "      <ide xsi:type=\"TIde\" b=\"2\" a=\"&#x31;\"><cUF>35</cUF></ide>\r\n" +
+                "      <emit><xNome>A&#38;B &#169; &#x1F600;</xNome><x:ext xmlns:x=\"urn:x\" x:v=\"1\"/></emit>\r\n" +
+                "    </infNFe>\r\n" +
+                "  </NFe>\r\n" +
+                "  <NFe><infNFe Id=\"" + ID_2 + "\" versao=\"4.00\"><ide/></infNFe></NFe>\r\n" +
+                "</enviNFe>";
+
+        String assinado = incremental.assinarTodos(lote, "infNFe");
+
+        assertEquals(assinaturas(jsr105.assinarTodos(lote, "infNFe")), assinaturas(assinado));
+        assertEquals(2, assinaturas(assinado).size());
+        assertTrue(assinaturas(assinado).get(0).contains("&#13;\n"), "quebras de linha do JSR-105");
+        assertTrue(valido(assinado, 2));
+    }
+
+    @Test
+    void deveAssinarInfDCeSemDom() throws Exception {
+        String xml = "<enviDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\"><idLote>1</idLote>" +
+                "<DCe><infDCe Id=\"DCe35250112345678000190990010000000011000000015\" versao=\"1.00\">" +
+                "<ide><cUF>35</cUF></ide></infDCe></DCe></enviDCe>";
+
+        String assinado = incremental.assinar(xml, "infDCe");
+
+        assertEquals(semDeclaracao(jsr105.assinar(xml, "infDCe")), assinado);
+        assertTrue(assinado.endsWith("</Signature></DCe></enviDCe>"));
+    }
+
+    @Test
+    void deveUsarJsr105QuandoOXmlTiverDoctype() throws Exception {
+        String xml = "<!DOCTYPE NFe>" + nfe(ID_1);
+
+        String assinado = incremental.assinar(xml);
+
+        assertTrue(assinado.startsWith("<?xml"));
+        assertTrue(valido(assinado, 1));
+    }
+
+    @Test
+    void deveManterAsMensagensDeErro() {
+        IllegalArgumentException semElemento = assertThrows(IllegalArgumentException.class,
+                () -> incremental.assinar("<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><outro/></NFe>"));
+        assertEquals("Elemento infNFe não encontrado no XML", semElemento.getMessage());
+
+        IllegalArgumentException semId = assertThrows(IllegalArgumentException.class,
+                () -> incremental.assinar("<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe/></NFe>"));
+        assertEquals("Atributo Id não encontrado em infNFe", semId.getMessage());
+
+        // XML malformado continua sendo reportado pelo parser
+        assertThrows(Exception.class, () -> incremental.assinar(
+                "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe Id=\"" + ID_1 + "\"></NFe>"));
+    }
+
+    private boolean valido(String xml, int esperadas) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        NodeList todos = doc.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < todos.getLength(); i++) {
+            Element e = (Element) todos.item(i);
+            if (e.hasAttribute("Id")) {
+                e.setIdAttribute("Id", true);
+            }
+        }
+        NodeList assinaturas = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+        assertEquals(esperadas, assinaturas.getLength());
+        for (int i = 0; i < assinaturas.getLength(); i++) {
+            DOMValidateContext contexto = new DOMValidateContext(
+                    certificado.getCertificate().getPublicKey(), assinaturas.item(i));
+            contexto.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE); // RSA-SHA1 exigido pelo leiaute
+            if (!XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(contexto).validate(contexto)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
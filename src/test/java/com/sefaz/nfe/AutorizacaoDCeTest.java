@@ -0,0 +1,172 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AutorizacaoDCeTest {
+
+    private static final String URL_RECEPCAO = "https://dce/DCeRecepcao";
+    private static final String URL_RET_RECEPCAO = "https://dce/DCeRetRecepcao";
+    private static final Pattern ID = Pattern.compile("Id=\"DCe(\\d{44})\"");
+
+    @Mock
+    private SefazSoapClient sefazClient;
+
+    @Mock
+    private AssinaturaDigital assinaturaDigital;
+
+    private AutorizacaoDCe autorizacao;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        autorizacao = new AutorizacaoDCe(sefazClient, assinaturaDigital);
+        autorizacao.setIntervaloConsulta(Duration.ofMillis(1));
+        autorizacao.setPrazoConsulta(Duration.ofMillis(200));
+        lenient().when(assinaturaDigital.assinarTodos(anyString(), eq("infDCe"))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void deveEnviarTodosOsLotesAntesDeConsultarOsRecibos() throws Exception {
+        List<String> dces = new ArrayList<>();
+        for (int i = 1; i <= 120; i++) {
+            dces.add(dce(i));
+        }
+        List<String> enviados = new ArrayList<>();
+        when(sefazClient.enviarLoteDCe(anyString(), eq(URL_RECEPCAO))).thenAnswer(inv -> {
+            enviados.add(inv.getArgument(0));
+            return retorno("retEnviDCe", "103", "<infRec><nRec>" + enviados.size() + "</nRec></infRec>");
+        });
+        when(sefazClient.consultarReciboDCe(anyString(), eq(Ambiente.HOMOLOGACAO), eq(URL_RET_RECEPCAO))).thenAnswer(inv -> {
+            String lote = enviados.get(Integer.parseInt(inv.getArgument(0)) - 1);
+            return retorno("retConsReciDCe", "104", "<nRec>" + inv.getArgument(0) + "</nRec>" + protocolos(lote));
+        });
+
+        List<ResultadoAutorizacao> resultados = autorizacao.autorizar(dces, Ambiente.HOMOLOGACAO, URL_RECEPCAO, URL_RET_RECEPCAO);
+
+        assertEquals(3, enviados.size());
+        assertEquals(50, contar(enviados.get(0)));
+        assertEquals(50, contar(enviados.get(1)));
+        assertEquals(20, contar(enviados.get(2)));
+        assertTrue(enviados.get(0).startsWith("<enviDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\"><idLote>"));
+
+        InOrder ordem = inOrder(sefazClient);
+        ordem.verify(sefazClient, times(3)).enviarLoteDCe(anyString(), eq(URL_RECEPCAO));
+        ordem.verify(sefazClient, times(3)).consultarReciboDCe(anyString(), eq(Ambiente.HOMOLOGACAO), eq(URL_RET_RECEPCAO));
+        verify(assinaturaDigital, times(3)).assinarTodos(anyString(), eq("infDCe"));
+
+        assertEquals(3, resultados.size());
+        assertTrue(resultados.stream().allMatch(ResultadoAutorizacao::isProcessado));
+        assertEquals(chave(51), resultados.get(1).protocolos().get(0).chave());
+        assertTrue(resultados.get(2).protocolos().get(19).isAutorizada());
+    }
+
+    @Test
+    void deveRetornarRejeicaoDoLoteSemConsultarRecibo() throws Exception {
+        when(sefazClient.enviarLoteDCe(anyString(), eq(URL_RECEPCAO)))
+                .thenReturn(retorno("retEnviDCe", "225", ""));
+
+        List<ResultadoAutorizacao> resultados = autorizacao.autorizar(List.of(dce(1)), Ambiente.HOMOLOGACAO, URL_RECEPCAO, URL_RET_RECEPCAO);
+
+        assertEquals("225", resultados.get(0).codigoStatus());
+        assertTrue(resultados.get(0).protocolos().isEmpty());
+        verify(sefazClient, never()).consultarReciboDCe(anyString(), any(Ambiente.class), anyString());
+    }
+
+    @Test
+    void deveFalharQuandoLoteContinuaEmProcessamento() throws Exception {
+        when(sefazClient.enviarLoteDCe(anyString(), eq(URL_RECEPCAO)))
+                .thenReturn(retorno("retEnviDCe", "103", "<infRec><nRec>7</nRec></infRec>"));
+        when(sefazClient.consultarReciboDCe(eq("7"), eq(Ambiente.HOMOLOGACAO), eq(URL_RET_RECEPCAO)))
+                .thenReturn(retorno("retConsReciDCe", "105", "<nRec>7</nRec>"));
+
+        FalhaSefazException falha = assertThrows(FalhaSefazException.class,
+                () -> autorizacao.autorizar(List.of(dce(1)), Ambiente.HOMOLOGACAO, URL_RECEPCAO, URL_RET_RECEPCAO));
+
+        assertEquals(FalhaSefazException.Origem.PRAZO, falha.getOrigem());
+    }
+
+    @Test
+    void deveConsultarLotesRecebidosQuandoEnvioSeguinteFalhar() throws Exception {
+        List<String> dces = new ArrayList<>();
+        for (int i = 1; i <= 120; i++) {
+            dces.add(dce(i));
+        }
+        List<String> enviados = new ArrayList<>();
+        when(sefazClient.enviarLoteDCe(anyString(), eq(URL_RECEPCAO))).thenAnswer(inv -> {
+            if (enviados.size() == 2) {
+                throw new FalhaSefazException("Connection reset", FalhaSefazException.Origem.TRANSPORTE,
+                        FalhaSefazException.Classificacao.RETENTAVEL_SE_IDEMPOTENTE, 0, null, null);
+            }
+            enviados.add(inv.getArgument(0));
+            return retorno("retEnviDCe", "103", "<infRec><nRec>" + enviados.size() + "</nRec></infRec>");
+        });
+        when(sefazClient.consultarReciboDCe(anyString(), eq(Ambiente.HOMOLOGACAO), eq(URL_RET_RECEPCAO))).thenAnswer(inv -> {
+            String lote = enviados.get(Integer.parseInt(inv.getArgument(0)) - 1);
+            return retorno("retConsReciDCe", "104", "<nRec>" + inv.getArgument(0) + "</nRec>" + protocolos(lote));
+        });
+
+        AutorizacaoDCe.FalhaEnvioLote falha = assertThrows(AutorizacaoDCe.FalhaEnvioLote.class,
+                () -> autorizacao.autorizar(dces, Ambiente.HOMOLOGACAO, URL_RECEPCAO, URL_RET_RECEPCAO));
+
+        assertEquals(100, falha.getEnviadas());
+        assertInstanceOf(FalhaSefazException.class, falha.getCause());
+        assertEquals(2, falha.getResultados().size());
+        assertTrue(falha.getResultados().stream().allMatch(ResultadoAutorizacao::isProcessado));
+        assertEquals(chave(100), falha.getResultados().get(1).protocolos().get(49).chave());
+    }
+
+    @Test
+    void deveValidarTamanhoDoLote() {
+        assertThrows(IllegalArgumentException.class, () -> autorizacao.setTamanhoLote(51));
+        assertThrows(IllegalArgumentException.class, () -> autorizacao.setTamanhoLote(0));
+    }
+
+    private static String chave(int numero) {
+        String base = "3325011234567800019059001" + String.format("%09d", numero) + "1" + "00000001";
+        return base + ChaveAcesso.calcularDigitoVerificador(base, 43);
+    }
+
+    private static String dce(int numero) {
+        return "<DCe xmlns=\"http://www.portalfiscal.inf.br/dce\"><infDCe versao=\"1.00\" Id=\"DCe" + chave(numero) + "\">" +
+                "<ide><cUF>33</cUF></ide></infDCe></DCe>";
+    }
+
+    private static String protocolos(String lote) {
+        StringBuilder sb = new StringBuilder();
+        Matcher m = ID.matcher(lote);
+        while (m.find()) {
+            sb.append("<protDCe versao=\"1.00\"><infProt><chDCe>").append(m.group(1)).append("</chDCe>")
+                    .append("<nProt>333250000000001</nProt><cStat>100</cStat><xMotivo>Autorizado o uso da DC-e</xMotivo>")
+                    .append("</infProt></protDCe>");
+        }
+        return sb.toString();
+    }
+
+    private static String retorno(String elemento, String cStat, String conteudo) {
+        return "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+                "<dceResultMsg xmlns=\"http://www.portalfiscal.inf.br/dce/wsdl/DCeRecepcao\">" +
+                "<" + elemento + " xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\"><tpAmb>2</tpAmb>" +
+                "<cStat>" + cStat + "</cStat><xMotivo>Lote</xMotivo>" + conteudo + "</" + elemento + ">" +
+                "</dceResultMsg></soap:Body></soap:Envelope>";
+    }
+
+    private static int contar(String lote) {
+        return lote.split("<DCe ", -1).length - 1;
+    }
+}
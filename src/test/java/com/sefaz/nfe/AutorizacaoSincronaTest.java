@@ -0,0 +1,148 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AutorizacaoSincronaTest {
+
+    private static final String URL = "https://autorizacao";
+    private static final String URL_RECIBO = "https://recibo";
+    private static final String CHAVE = "35250112345678000190650010000000011000000014";
+
+    private static final String PROT_NFE = "<protNFe versao=\"4.00\"><infProt>" +
+            "<tpAmb>2</tpAmb><chNFe>" + CHAVE + "</chNFe><dhRecbto>2025-01-15T12:30:01-03:00</dhRecbto>" +
+            "<nProt>135250000000001</nProt><digVal>q1w2e3r4t5y6u7i8o9p0a1s2d3f=</digVal>" +
+            "<cStat>100</cStat><xMotivo>Autorizado o uso da NF-e</xMotivo></infProt></protNFe>";
+
+    private static final String RESPOSTA_SINCRONA = soap("<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+            "<cStat>104</cStat><xMotivo>Lote processado</xMotivo>" + PROT_NFE + "</retEnviNFe>");
+
+    private static final String RESPOSTA_103 = soap("<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+            "<cStat>103</cStat><xMotivo>Lote recebido com sucesso</xMotivo>" +
+            "<infRec><nRec>351000000000001</nRec><tMed>1</tMed></infRec></retEnviNFe>");
+
+    private static final String RECIBO_105 = soap("<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+            "<nRec>351000000000001</nRec><cStat>105</cStat><xMotivo>Lote em processamento</xMotivo></retConsReciNFe>");
+
+    private static final String RECIBO_104 = soap("<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+            "<nRec>351000000000001</nRec><cStat>104</cStat><xMotivo>Lote processado</xMotivo>" + PROT_NFE +
+            "</retConsReciNFe>");
+
+    @Mock
+    private SefazSoapClient sefazClient;
+
+    private AutorizacaoSincrona autorizacao;
+
+    @BeforeEach
+    void setUp() {
+        autorizacao = new AutorizacaoSincrona(sefazClient);
+        autorizacao.setIntervaloConsulta(Duration.ofMillis(1));
+    }
+
+    @Test
+    void deveLerProtocoloDaRespostaSincrona() throws Exception {
+        when(sefazClient.enviarLoteNFe(anyString(), anyLong(), eq(true), eq(URL))).thenReturn(RESPOSTA_SINCRONA);
+
+        ResultadoAutorizacao resultado = autorizacao.autorizar("<NFe/>", Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        assertTrue(resultado.isProcessado());
+        assertNull(resultado.recibo());
+        ResultadoAutorizacao.Protocolo protocolo = resultado.getProtocolo();
+        assertTrue(protocolo.isAutorizada());
+        assertEquals(CHAVE, protocolo.chave());
+        assertEquals("135250000000001", protocolo.protocolo());
+        assertEquals("2025-01-15T12:30:01-03:00", protocolo.dataRecebimento());
+        assertEquals("q1w2e3r4t5y6u7i8o9p0a1s2d3f=", protocolo.digestValue());
+        assertTrue(protocolo.xml().startsWith("<protNFe"));
+        verify(sefazClient, never()).consultarRecibo(anyString(), any(Ambiente.class), anyString());
+    }
+
+    @Test
+    void deveConsultarReciboQuandoSefazProcessarDeFormaAssincrona() throws Exception {
+        when(sefazClient.enviarLoteNFe(anyString(), anyLong(), eq(true), eq(URL))).thenReturn(RESPOSTA_103);
+        when(sefazClient.consultarRecibo("351000000000001", Ambiente.HOMOLOGACAO, URL_RECIBO)).thenReturn(RECIBO_105, RECIBO_104);
+
+        ResultadoAutorizacao resultado = autorizacao.autorizar("<NFe/>", Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        assertTrue(resultado.isProcessado());
+        assertEquals("135250000000001", resultado.getProtocolo().protocolo());
+        verify(sefazClient, times(2)).consultarRecibo("351000000000001", Ambiente.HOMOLOGACAO, URL_RECIBO);
+    }
+
+    @Test
+    void deveRetornarRejeicaoDoLoteSemConsultarRecibo() throws Exception {
+        String rejeicao = soap("<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+                "<cStat>225</cStat><xMotivo>Rejeicao: Falha no Schema XML</xMotivo></retEnviNFe>");
+        when(sefazClient.enviarLoteNFe(anyString(), anyLong(), eq(true), eq(URL))).thenReturn(rejeicao);
+
+        ResultadoAutorizacao resultado = autorizacao.autorizar("<NFe/>", Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        assertEquals("225", resultado.codigoStatus());
+        assertTrue(resultado.protocolos().isEmpty());
+        assertNull(resultado.getProtocolo());
+        verify(sefazClient, never()).consultarRecibo(anyString(), any(Ambiente.class), anyString());
+    }
+
+    @Test
+    void deveFalharQuandoLoteContinuarEmProcessamentoAposPrazo() throws Exception {
+        autorizacao.setPrazoConsulta(Duration.ofMillis(20));
+        when(sefazClient.enviarLoteNFe(anyString(), anyLong(), eq(true), eq(URL))).thenReturn(RESPOSTA_103);
+        when(sefazClient.consultarRecibo("351000000000001", Ambiente.HOMOLOGACAO, URL_RECIBO)).thenReturn(RECIBO_105);
+
+        FalhaSefazException falha = assertThrows(FalhaSefazException.class,
+                () -> autorizacao.autorizar("<NFe/>", Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+
+        assertEquals(FalhaSefazException.Origem.PRAZO, falha.getOrigem());
+        assertEquals("105", falha.getCodigoStatus());
+    }
+
+    @Test
+    void deveLerProtocoloDaConsultaPelaChave() throws Exception {
+        when(sefazClient.consultarProtocolo(CHAVE, Ambiente.PRODUCAO, URL)).thenReturn(
+                soap("<retConsSitNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><tpAmb>1</tpAmb>" +
+                        "<cStat>100</cStat><xMotivo>Autorizado o uso da NF-e</xMotivo><cUF>35</cUF>" +
+                        "<chNFe>" + CHAVE + "</chNFe>" + PROT_NFE + "</retConsSitNFe>"),
+                soap("<retConsSitNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><tpAmb>1</tpAmb>" +
+                        "<cStat>217</cStat><xMotivo>Rejeicao: NF-e nao consta na base de dados da SEFAZ</xMotivo>" +
+                        "<cUF>35</cUF><chNFe>" + CHAVE + "</chNFe></retConsSitNFe>"));
+
+        ResultadoAutorizacao.Protocolo autorizada = autorizacao.consultarProtocolo(CHAVE, Ambiente.PRODUCAO, URL);
+        ResultadoAutorizacao.Protocolo inexistente = autorizacao.consultarProtocolo(CHAVE, Ambiente.PRODUCAO, URL);
+
+        assertTrue(autorizada.isAutorizada());
+        assertEquals("135250000000001", autorizada.protocolo());
+        assertTrue(autorizada.xml().startsWith("<protNFe"));
+        assertEquals("217", inexistente.codigoStatus());
+        assertEquals(CHAVE, inexistente.chave());
+        assertNull(inexistente.protocolo());
+    }
+
+    @Test
+    void deveUsarIdsDeLoteDistintos() throws Exception {
+        when(sefazClient.enviarLoteNFe(anyString(), anyLong(), eq(true), eq(URL))).thenReturn(RESPOSTA_SINCRONA);
+
+        autorizacao.autorizar("<NFe/>", Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+        autorizacao.autorizar("<NFe/>", Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        verify(sefazClient, times(2)).enviarLoteNFe(anyString(), longThat(id -> id > 0 && id < 1_000_000_000_000_000L),
+                eq(true), eq(URL));
+        verifyNoMoreInteractions(sefazClient);
+    }
+
+    private static String soap(String corpo) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+                "<nfeResultMsg xmlns=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeAutorizacao4\">" + corpo +
+                "</nfeResultMsg></soap:Body></soap:Envelope>";
+    }
+}
@@ -0,0 +1,43 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChaveAcessoTest {
+
+    private static final String CHAVE = "35250112345678000190650010000000011000000014";
+
+    @Test
+    void deveDecodificarCamposDaChave() {
+        ChaveAcesso chave = ChaveAcesso.of(CHAVE);
+
+        assertEquals(35, chave.getCodigoUf());
+        assertEquals("2501", chave.getAnoMes());
+        assertEquals("12345678000190", chave.getCnpj());
+        assertEquals(65, chave.getModelo());
+        assertEquals(1, chave.getSerie());
+        assertEquals(1, chave.getNumero());
+        assertEquals(1, chave.getTipoEmissao());
+        assertEquals("00000001", chave.getCodigoNumerico());
+        assertEquals(4, chave.getDigitoVerificador());
+    }
+
+    @Test
+    void deveAceitarIdComPrefixo() {
+        assertEquals(ChaveAcesso.of(CHAVE), ChaveAcesso.of("NFe" + CHAVE));
+    }
+
+    @Test
+    void deveRejeitarDigitoVerificadorInvalido() {
+        String invalida = CHAVE.substring(0, 43) + "0";
+
+        assertThrows(IllegalArgumentException.class, () -> ChaveAcesso.of(invalida));
+    }
+
+    @Test
+    void deveRejeitarChaveComTamanhoInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> ChaveAcesso.of("123"));
+        assertThrows(IllegalArgumentException.class, () -> ChaveAcesso.of(null));
+    }
+}
@@ -0,0 +1,96 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ContextoEmissaoTest {
+
+    @Test
+    void deveResolverCamposEUrlsNaCriacao() {
+        ContextoEmissao contexto = ContextoEmissao.of(Ambiente.PRODUCAO, Uf.MG, 65, 12);
+
+        assertEquals(1, contexto.getTpAmb());
+        assertEquals("31", contexto.getCodigoUf());
+        assertEquals("012", contexto.getSerieChave());
+        assertEquals(1, contexto.getTipoEmissao());
+        assertEquals(SefazEndpoints.getUrlAutorizacao("MG", false), contexto.getUrlAutorizacao());
+        assertEquals(SefazEndpoints.getUrlConsultaProtocolo("MG", false), contexto.getUrlRetAutorizacao());
+        assertEquals(SefazEndpoints.getUrlConsultaSituacao("MG", false), contexto.getUrlConsultaProtocolo());
+        assertEquals(SefazEndpoints.getUrlRecepcaoEvento("MG", false), contexto.getUrlRecepcaoEvento());
+        assertNull(contexto.getUrlQrCode());
+
+        ContextoEmissao sp = ContextoEmissao.of(Ambiente.HOMOLOGACAO, Uf.SP, 65, 1);
+        assertTrue(sp.getUrlQrCode().contains("homologacao"));
+    }
+
+    @Test
+    void deveRejeitarModelo55SemWebservicesDaNFe() {
+        IllegalArgumentException erro = assertThrows(IllegalArgumentException.class,
+                () -> ContextoEmissao.of(Ambiente.PRODUCAO, Uf.SP, 55, 1));
+
+        assertTrue(erro.getMessage().contains("55"), erro.getMessage());
+    }
+
+    @Test
+    void deveTrocarTipoEmissaoMantendoOsDemaisCampos() {
+        ContextoEmissao normal = ContextoEmissao.of(Ambiente.HOMOLOGACAO, Uf.SP, 65, 1);
+
+        ContextoEmissao offline = normal.comTipoEmissao(9);
+
+        assertSame(normal, normal.comTipoEmissao(1));
+        assertEquals(9, offline.getTipoEmissao());
+        assertEquals(normal.getUrlAutorizacao(), offline.getUrlAutorizacao());
+        assertEquals(normal.getUrlQrCode(), offline.getUrlQrCode());
+        assertEquals(normal, offline.comTipoEmissao(1));
+    }
+
+    @Test
+    void deveRejeitarValoresForaDoLeiaute() {
+        assertThrows(IllegalArgumentException.class, () -> ContextoEmissao.of(Ambiente.PRODUCAO, Uf.SP, 59, 1));
+        assertThrows(IllegalArgumentException.class, () -> ContextoEmissao.of(Ambiente.PRODUCAO, Uf.SP, 65, 1000));
+        assertThrows(IllegalArgumentException.class,
+                () -> ContextoEmissao.of(Ambiente.PRODUCAO, Uf.SP, 65, 1).comTipoEmissao(0));
+        assertThrows(NullPointerException.class, () -> ContextoEmissao.of(Ambiente.PRODUCAO, null, 65, 1));
+        assertEquals(Ambiente.PRODUCAO, Ambiente.porCodigo(1));
+        assertThrows(IllegalArgumentException.class, () -> Ambiente.porCodigo(3));
+    }
+
+    @Test
+    void clienteDeveUsarAmbienteEUrlDoContexto() throws Exception {
+        CertificadoDigital certificado = mock(CertificadoDigital.class);
+        when(certificado.isCarregado()).thenReturn(true);
+        when(certificado.getCnpj()).thenReturn("12345678000190");
+        TransporteHttpsSefaz transporte = mock(TransporteHttpsSefaz.class);
+        when(transporte.enviarBytes(any(), any(EnvelopeSoap.Mensagem.class), any()))
+                .thenReturn("<cStat>104</cStat>".getBytes(StandardCharsets.UTF_8));
+        SefazSoapClient cliente = new SefazSoapClient(certificado, new LimitadorTaxa(), transporte,
+                new ExecutorRetentativa(), MetricasSefaz.DESABILITADO);
+        ContextoEmissao rs = ContextoEmissao.of(Ambiente.PRODUCAO, Uf.RS, 65, 1);
+
+        cliente.consultarRecibo("431000000000001", rs);
+        cliente.consultarStatusServico(rs);
+
+        ArgumentCaptor<EnvelopeSoap.Mensagem> mensagens = ArgumentCaptor.forClass(EnvelopeSoap.Mensagem.class);
+        verify(transporte).enviarBytes(eq(rs.getUrlRetAutorizacao()), mensagens.capture(), any(Duration.class));
+        verify(transporte).enviarBytes(eq(rs.getUrlStatusServico()), mensagens.capture(), any(Duration.class));
+        assertTrue(dados(mensagens.getAllValues().get(0)).contains("<tpAmb>1</tpAmb><nRec>431000000000001</nRec>"));
+        assertTrue(dados(mensagens.getAllValues().get(1)).contains("<tpAmb>1</tpAmb><cUF>43</cUF>"));
+    }
+
+    /** Conteúdo do nfeDadosMsg decodificado. */
+    private static String dados(EnvelopeSoap.Mensagem mensagem) {
+        String envelope = mensagem.toString();
+        String base64 = envelope.substring(envelope.indexOf("<nfe:nfeDadosMsg>") + "<nfe:nfeDadosMsg>".length(),
+                envelope.indexOf("</nfe:nfeDadosMsg>"));
+        return new String(Base64.getDecoder().decode(base64), StandardCharsets.UTF_8);
+    }
+}
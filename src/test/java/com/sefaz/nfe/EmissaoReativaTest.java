@@ -0,0 +1,199 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmissaoReativaTest {
+
+    private static final String URL = "https://autorizacao";
+    private static final String URL_RECIBO = "https://recibo";
+
+    private static final String RESPOSTA_103 = soap("<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+            "<cStat>103</cStat><xMotivo>Lote recebido com sucesso</xMotivo>" +
+            "<infRec><nRec>351000000000001</nRec><tMed>1</tMed></infRec></retEnviNFe>");
+
+    private static final String RECIBO_105 = soap("<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+            "<nRec>351000000000001</nRec><cStat>105</cStat><xMotivo>Lote em processamento</xMotivo></retConsReciNFe>");
+
+    @Mock
+    private SefazSoapClient sefazClient;
+
+    @Mock
+    private AssinaturaDigital assinatura;
+
+    private EmissaoReativa emissao;
+
+    @BeforeEach
+    void setUp() {
+        ExecutorRetentativa executor = new ExecutorRetentativa();
+        executor.configurar(ServicoSefaz.AUTORIZACAO, new ExecutorRetentativa.Politica(
+                3, Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(5)));
+        emissao = new EmissaoReativa(sefazClient, assinatura, executor);
+        emissao.setIntervaloConsulta(Duration.ofMillis(1));
+    }
+
+    static String soap(String corpo) {
+        return "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+                "<nfeResultMsg>" + corpo + "</nfeResultMsg></soap:Body></soap:Envelope>";
+    }
+
+    static String chave(int numero) {
+        return String.format("352501123456780001906500100%09d1000000014", numero).substring(0, 44);
+    }
+
+    static String nfe(String chave) {
+        return "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe versao=\"4.00\" Id=\"NFe" + chave + "\"/></NFe>";
+    }
+
+    static String protNFe(String chave) {
+        return "<protNFe versao=\"4.00\"><infProt><tpAmb>2</tpAmb><chNFe>" + chave + "</chNFe>" +
+                "<nProt>1352500" + chave.substring(34) + "</nProt><cStat>100</cStat>" +
+                "<xMotivo>Autorizado o uso da NF-e</xMotivo></infProt></protNFe>";
+    }
+
+    /**
+     * retEnviNFe processado (104) com um protNFe para cada nota do lote.
+     */
+    static String processado(List<String> xmls) {
+        return soap("<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><cStat>104</cStat>" +
+                "<xMotivo>Lote processado</xMotivo>" +
+                xmls.stream().map(x -> protNFe(MetricasSefaz.extrairChave(x))).collect(Collectors.joining()) +
+                "</retEnviNFe>");
+    }
+
+    @Test
+    void deveAutorizarNotaNoModoSincrono() {
+        String xml = nfe(chave(1));
+        when(sefazClient.enviarLoteNFeAssincrono(eq(List.of(xml)), anyLong(), eq(true), eq(URL)))
+                .thenReturn(CompletableFuture.completedFuture(processado(List.of(xml))));
+
+        ResultadoAutorizacao resultado = emissao.autorizar(xml, Ambiente.HOMOLOGACAO, URL, URL_RECIBO).block(Duration.ofSeconds(5));
+
+        assertTrue(resultado.getProtocolo().isAutorizada());
+        assertEquals(chave(1), resultado.getProtocolo().chave());
+        verify(sefazClient, never()).consultarReciboAssincrono(anyString(), any(Ambiente.class), anyString());
+    }
+
+    @Test
+    void deveConsultarReciboSemBloquearQuandoSefazResponder103() {
+        String xml = nfe(chave(1));
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(true), eq(URL)))
+                .thenReturn(CompletableFuture.completedFuture(RESPOSTA_103));
+        when(sefazClient.consultarReciboAssincrono("351000000000001", Ambiente.HOMOLOGACAO, URL_RECIBO)).thenReturn(
+                CompletableFuture.completedFuture(RECIBO_105)).thenReturn(
+                CompletableFuture.completedFuture(soap("<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+                        "<cStat>104</cStat><xMotivo>Lote processado</xMotivo>" + protNFe(chave(1)) + "</retConsReciNFe>")));
+
+        ResultadoAutorizacao resultado = emissao.autorizar(xml, Ambiente.HOMOLOGACAO, URL, URL_RECIBO).block(Duration.ofSeconds(5));
+
+        assertTrue(resultado.isProcessado());
+        assertEquals(chave(1), resultado.getProtocolo().chave());
+        verify(sefazClient, times(2)).consultarReciboAssincrono("351000000000001", Ambiente.HOMOLOGACAO, URL_RECIBO);
+    }
+
+    @Test
+    void deveFalharPorPrazoSeLoteContinuarEmProcessamento() {
+        emissao.setPrazoConsulta(Duration.ofMillis(50));
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(true), eq(URL)))
+                .thenReturn(CompletableFuture.completedFuture(RESPOSTA_103));
+        when(sefazClient.consultarReciboAssincrono("351000000000001", Ambiente.HOMOLOGACAO, URL_RECIBO))
+                .thenAnswer(i -> CompletableFuture.completedFuture(RECIBO_105));
+
+        FalhaSefazException falha = assertThrows(FalhaSefazException.class,
+                () -> emissao.autorizar(nfe(chave(1)), Ambiente.HOMOLOGACAO, URL, URL_RECIBO).block(Duration.ofSeconds(5)));
+
+        assertEquals(FalhaSefazException.Origem.PRAZO, falha.getOrigem());
+    }
+
+    @Test
+    void deveRepetirFalhaRetentavelComAPoliticaDoServico() {
+        String xml = nfe(chave(1));
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(true), eq(URL))).thenReturn(
+                CompletableFuture.failedFuture(ClassificadorFalhas.http(503))).thenReturn(
+                CompletableFuture.completedFuture(processado(List.of(xml))));
+
+        ResultadoAutorizacao resultado = emissao.autorizar(xml, Ambiente.HOMOLOGACAO, URL, URL_RECIBO).block(Duration.ofSeconds(5));
+
+        assertTrue(resultado.getProtocolo().isAutorizada());
+        verify(sefazClient, times(2)).enviarLoteNFeAssincrono(anyList(), anyLong(), eq(true), eq(URL));
+    }
+
+    @Test
+    void naoDeveRepetirFalhaDefinitiva() {
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(true), eq(URL)))
+                .thenReturn(CompletableFuture.failedFuture(ClassificadorFalhas.http(404)));
+
+        assertThrows(FalhaSefazException.class,
+                () -> emissao.autorizar(nfe(chave(1)), Ambiente.HOMOLOGACAO, URL, URL_RECIBO).block(Duration.ofSeconds(5)));
+        verify(sefazClient, times(1)).enviarLoteNFeAssincrono(anyList(), anyLong(), eq(true), eq(URL));
+    }
+
+    @Test
+    void deveConstruirAssinarEAutorizarEmLotes() throws Exception {
+        when(assinatura.assinar(anyString())).thenAnswer(i -> i.getArgument(0));
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(false), eq(URL)))
+                .thenAnswer(i -> CompletableFuture.completedFuture(processado(i.getArgument(0))));
+
+        List<ResultadoAutorizacao.Protocolo> protocolos = emissao.emitir(Flux.range(1, 120),
+                        n -> nfe(chave(n)), Ambiente.HOMOLOGACAO, URL, URL_RECIBO)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(120, protocolos.size());
+        assertEquals(120, protocolos.stream().map(ResultadoAutorizacao.Protocolo::chave).distinct().count());
+        assertTrue(protocolos.stream().allMatch(ResultadoAutorizacao.Protocolo::isAutorizada));
+        verify(sefazClient, atLeast(3)).enviarLoteNFeAssincrono(
+                argThat(lote -> lote.size() <= SefazSoapClient.MAXIMO_NOTAS_LOTE), anyLong(), eq(false), eq(URL));
+    }
+
+    @Test
+    void deveEmitirRejeicaoDoLoteParaCadaNota() {
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(false), eq(URL)))
+                .thenReturn(CompletableFuture.completedFuture(soap("<retEnviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+                        "<cStat>225</cStat><xMotivo>Falha no Schema XML do lote de NFe</xMotivo></retEnviNFe>")));
+
+        List<ResultadoAutorizacao.Protocolo> protocolos = emissao.autorizar(
+                        Flux.just(nfe(chave(1)), nfe(chave(2))), Ambiente.HOMOLOGACAO, URL, URL_RECIBO)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(chave(1), chave(2)), protocolos.stream().map(ResultadoAutorizacao.Protocolo::chave).toList());
+        assertTrue(protocolos.stream().allMatch(p -> "225".equals(p.codigoStatus()) && p.protocolo() == null));
+    }
+
+    @Test
+    void deveConsumirAOrigemApenasNoRitmoDosLotes() throws Exception {
+        emissao.setLote(10, Duration.ofMillis(20));
+        emissao.setLotesSimultaneos(2);
+        emissao.setParalelismoAssinatura(2);
+        when(assinatura.assinar(anyString())).thenAnswer(i -> i.getArgument(0));
+        // A SEFAZ não responde: nenhum lote é concluído
+        when(sefazClient.enviarLoteNFeAssincrono(anyList(), anyLong(), eq(false), eq(URL)))
+                .thenAnswer(i -> new CompletableFuture<String>());
+        AtomicLong emitidas = new AtomicLong();
+
+        Disposable assinatura = emissao.emitir(Flux.range(1, 100_000).doOnNext(n -> emitidas.incrementAndGet()),
+                n -> nfe(chave(n)), Ambiente.HOMOLOGACAO, URL, URL_RECIBO).subscribe();
+        Thread.sleep(300);
+        assinatura.dispose();
+
+        verify(sefazClient, times(2)).enviarLoteNFeAssincrono(anyList(), anyLong(), eq(false), eq(URL));
+        assertTrue(emitidas.get() < 200, "emitidas " + emitidas.get());
+    }
+}
@@ -0,0 +1,97 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvelopeSoapTest {
+
+    static final String XML = "<consReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+            "<tpAmb>2</tpAmb><nRec>351000000000001</nRec></consReciNFe>";
+
+    /** Envelope como era montado por concatenação de Strings no SefazSoapClient. */
+    static String envelopeNFe(String webservice, String operacao, String xml) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" " +
+                "xmlns:nfe=\"http://www.portalfiscal.inf.br/nfe/wsdl/" + webservice + "\">" +
+                "<soap:Header/>" +
+                "<soap:Body>" +
+                "<nfe:" + operacao + ">" +
+                "<nfe:nfeDadosMsg>" + Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)) +
+                "</nfe:nfeDadosMsg>" +
+                "</nfe:" + operacao + ">" +
+                "</soap:Body>" +
+                "</soap:Envelope>";
+    }
+
+    @Test
+    void deveGerarOsMesmosBytesDoEnvelopeConcatenado() throws Exception {
+        assertBytes(envelopeNFe("NFeAutorizacao4", "nfeAutorizacaoLote", XML), EnvelopeSoap.AUTORIZACAO.montar(XML));
+        assertBytes(envelopeNFe("NFeRetAutorizacao4", "nfeRetAutorizacaoLote", XML), EnvelopeSoap.RET_AUTORIZACAO.montar(XML));
+        assertBytes(envelopeNFe("NFeConsultaProtocolo4", "nfeConsultaNF", XML), EnvelopeSoap.CONSULTA_PROTOCOLO.montar(XML));
+        assertBytes(envelopeNFe("NFeStatusServico4", "nfeStatusServicoNF", XML), EnvelopeSoap.STATUS_SERVICO.montar(XML));
+        assertBytes(envelopeNFe("NFeRecepcaoEvento4", "nfeRecepcaoEvento", XML), EnvelopeSoap.EVENTO.montar(XML));
+    }
+
+    @Test
+    void deveEnviarOXmlDaDCeSemBase64() throws Exception {
+        String xml = "<consReciDCe xmlns=\"http://www.portalfiscal.inf.br/dce\" versao=\"1.00\">" +
+                "<tpAmb>2</tpAmb><nRec>ÇÃO</nRec></consReciDCe>";
+
+        assertBytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                        "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\">" +
+                        "<soap:Header/>" +
+                        "<soap:Body>" +
+                        "<dceDadosMsg xmlns=\"http://www.portalfiscal.inf.br/dce/wsdl/DCeRetRecepcao\">" + xml +
+                        "</dceDadosMsg>" +
+                        "</soap:Body>" +
+                        "</soap:Envelope>",
+                EnvelopeSoap.DCE_RET_RECEPCAO.montar(xml));
+    }
+
+    @Test
+    void devePermitirLeituraEEscritaRepetidas() throws Exception {
+        EnvelopeSoap.Mensagem mensagem = EnvelopeSoap.DCE_RECEPCAO.montar("<enviDCe>São Paulo</enviDCe>");
+
+        byte[] primeira = mensagem.abrir().readAllBytes();
+        byte[] segunda = mensagem.abrir().readAllBytes();
+
+        assertArrayEquals(primeira, segunda);
+        assertEquals(mensagem.tamanho(), primeira.length);
+        assertEquals(mensagem.toString(), new String(primeira, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void deveCodificarBase64EmBlocosNosLimitesDoBloco() throws Exception {
+        for (int tamanho : new int[]{0, 1, 2, 3, 6143, 6144, 6145, 20000}) {
+            String xml = "x".repeat(tamanho);
+            EnvelopeSoap.Mensagem mensagem = EnvelopeSoap.AUTORIZACAO.montar(xml);
+
+            ByteArrayOutputStream blocos = new ByteArrayOutputStream();
+            EnvelopeSoap.Mensagem.Leitor leitor = mensagem.leitor();
+            for (ByteBuffer trecho = leitor.proximo(); trecho != null; trecho = leitor.proximo()) {
+                byte[] bytes = new byte[trecho.remaining()];
+                trecho.get(bytes);
+                blocos.write(bytes);
+            }
+
+            assertBytes(envelopeNFe("NFeAutorizacao4", "nfeAutorizacaoLote", xml), mensagem);
+            assertArrayEquals(mensagem.abrir().readAllBytes(), blocos.toByteArray(), "tamanho " + tamanho);
+        }
+    }
+
+    private static void assertBytes(String esperado, EnvelopeSoap.Mensagem mensagem) throws Exception {
+        byte[] bytes = esperado.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        mensagem.escrever(saida);
+
+        assertArrayEquals(bytes, saida.toByteArray());
+        assertEquals(bytes.length, mensagem.tamanho());
+        assertEquals(esperado, mensagem.toString());
+    }
+}
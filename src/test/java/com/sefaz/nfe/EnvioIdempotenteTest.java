@@ -0,0 +1,199 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EnvioIdempotenteTest {
+
+    private static final String URL = "https://autorizacao";
+    private static final String URL_RECIBO = "https://recibo";
+
+    private static final String RESPOSTA_103 = "<retEnviNFe><cStat>103</cStat>" +
+            "<xMotivo>Lote recebido com sucesso</xMotivo><infRec><nRec>351000000000001</nRec></infRec></retEnviNFe>";
+
+    @Mock
+    private SefazSoapClient sefazClient;
+
+    private EnvioIdempotente envio;
+
+    @BeforeEach
+    void setUp() {
+        envio = new EnvioIdempotente(sefazClient, 2);
+    }
+
+    @Test
+    void deveReutilizarRespostaEmRetentativa() throws Exception {
+        when(sefazClient.enviarNFe(anyString(), eq(URL))).thenReturn(RESPOSTA_103);
+
+        String primeira = envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+        String segunda = envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        assertEquals(RESPOSTA_103, primeira);
+        assertSame(primeira, segunda);
+        verify(sefazClient, times(1)).enviarNFe(anyString(), eq(URL));
+    }
+
+    @Test
+    void deveEnviarUmaUnicaVezEmChamadasConcorrentes() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(sefazClient.enviarNFe(anyString(), eq(URL))).thenAnswer(inv -> {
+            liberar.await();
+            return RESPOSTA_103;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> a = executor.submit(() -> envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+            Future<String> b = executor.submit(() -> envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+            Thread.sleep(100);
+            liberar.countDown();
+
+            assertEquals(RESPOSTA_103, a.get());
+            assertEquals(RESPOSTA_103, b.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(sefazClient, times(1)).enviarNFe(anyString(), eq(URL));
+    }
+
+    @Test
+    void naoDeveEnviarAoMesmoTempoLotesComNotaEmComum() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger simultaneos = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        when(sefazClient.enviarNFe(anyString(), eq(URL))).thenAnswer(inv -> {
+            maximo.accumulateAndGet(simultaneos.incrementAndGet(), Math::max);
+            liberar.await();
+            simultaneos.decrementAndGet();
+            return RESPOSTA_103;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = executor.submit(() -> envio.enviarNFe(nfe("1") + nfe("2"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+            Future<String> b = executor.submit(() -> envio.enviarNFe(nfe("2") + nfe("3"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+            Thread.sleep(100);
+            liberar.countDown();
+
+            assertEquals(RESPOSTA_103, a.get());
+            assertEquals(RESPOSTA_103, b.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, maximo.get());
+        verify(sefazClient, times(2)).enviarNFe(anyString(), eq(URL));
+    }
+
+    @Test
+    void deveResolverDuplicidadeConsultandoReciboOriginal() throws Exception {
+        String resposta204 = "<retEnviNFe><cStat>104</cStat><protNFe><infProt>" +
+                "<cStat>204</cStat><xMotivo>Rejeicao: Duplicidade de NF-e [nRec:351000000000777]</xMotivo>" +
+                "</infProt></protNFe></retEnviNFe>";
+        String respostaRecibo = "<retConsReciNFe><cStat>104</cStat><protNFe><infProt><cStat>100</cStat>" +
+                "</infProt></protNFe></retConsReciNFe>";
+        when(sefazClient.enviarNFe(anyString(), eq(URL))).thenReturn(resposta204);
+        when(sefazClient.consultarRecibo("351000000000777", Ambiente.HOMOLOGACAO, URL_RECIBO)).thenReturn(respostaRecibo);
+
+        String resposta = envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        assertEquals(respostaRecibo, resposta);
+    }
+
+    @Test
+    void naoDeveArmazenarRejeicao() throws Exception {
+        String rejeicao = "<retEnviNFe><cStat>104</cStat><protNFe><infProt><chNFe>1</chNFe>" +
+                "<cStat>225</cStat><xMotivo>Rejeicao: Falha no Schema XML da NFe</xMotivo></infProt></protNFe></retEnviNFe>";
+        String autorizada = "<retEnviNFe><cStat>104</cStat><protNFe><infProt><chNFe>1</chNFe>" +
+                "<cStat>100</cStat><xMotivo>Autorizado o uso da NF-e</xMotivo></infProt></protNFe></retEnviNFe>";
+        when(sefazClient.enviarNFe(anyString(), eq(URL))).thenReturn(rejeicao, autorizada);
+
+        assertEquals(rejeicao, envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+        assertEquals(0, envio.getTamanhoCache());
+        assertEquals(autorizada, envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+        assertEquals(autorizada, envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+        verify(sefazClient, times(2)).enviarNFe(anyString(), eq(URL));
+    }
+
+    @Test
+    void deveResolverDuplicidadeNaConsultaDeRecibo() throws Exception {
+        String recibo = "<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><cStat>104</cStat>" +
+                "<protNFe><infProt><chNFe>1</chNFe><cStat>100</cStat><nProt>135000000000001</nProt></infProt></protNFe>" +
+                "<protNFe><infProt><chNFe>2</chNFe><cStat>204</cStat>" +
+                "<xMotivo>Rejeicao: Duplicidade de NF-e [nRec:351000000000777]</xMotivo></infProt></protNFe>" +
+                "</retConsReciNFe>";
+        String original = "<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><cStat>104</cStat>" +
+                "<protNFe><infProt><chNFe>3</chNFe><cStat>100</cStat><nProt>135000000000003</nProt></infProt></protNFe>" +
+                "<protNFe><infProt><chNFe>2</chNFe><cStat>100</cStat><nProt>135000000000002</nProt></infProt></protNFe>" +
+                "</retConsReciNFe>";
+        when(sefazClient.consultarRecibo("351000000000001", Ambiente.PRODUCAO, URL_RECIBO)).thenReturn(recibo);
+        when(sefazClient.consultarRecibo("351000000000777", Ambiente.PRODUCAO, URL_RECIBO)).thenReturn(original);
+
+        ResultadoAutorizacao resultado = ResultadoAutorizacao.ler(
+                envio.consultarRecibo("351000000000001", Ambiente.PRODUCAO, URL_RECIBO));
+
+        assertEquals(2, resultado.protocolos().size());
+        assertEquals("135000000000001", resultado.protocolos().get(0).protocolo());
+        assertEquals("2", resultado.protocolos().get(1).chave());
+        assertEquals("100", resultado.protocolos().get(1).codigoStatus());
+        assertEquals("135000000000002", resultado.protocolos().get(1).protocolo());
+    }
+
+    @Test
+    void naoDeveArmazenarFalhaDeComunicacao() throws Exception {
+        when(sefazClient.enviarNFe(anyString(), eq(URL)))
+                .thenThrow(new IOException("timeout"))
+                .thenReturn(RESPOSTA_103);
+
+        assertThrows(IOException.class, () -> envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+        assertEquals(RESPOSTA_103, envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO));
+        verify(sefazClient, times(2)).enviarNFe(anyString(), eq(URL));
+    }
+
+    @Test
+    void deveDescartarEntradaMaisAntigaAoAtingirCapacidade() throws Exception {
+        when(sefazClient.enviarNFe(anyString(), eq(URL))).thenReturn(RESPOSTA_103);
+
+        envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+        envio.enviarNFe(nfe("2"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+        envio.enviarNFe(nfe("3"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+        envio.enviarNFe(nfe("1"), Ambiente.HOMOLOGACAO, URL, URL_RECIBO);
+
+        assertEquals(2, envio.getTamanhoCache());
+        verify(sefazClient, times(4)).enviarNFe(anyString(), eq(URL));
+    }
+
+    @Test
+    void deveExtrairIdIgnorandoInfNFeSupl() {
+        String xml = "<NFe><infNFe Id=\"NFe123\" versao=\"4.00\"></infNFe><infNFeSupl></infNFeSupl></NFe>";
+
+        assertEquals("NFe123", EnvioIdempotente.extrairId(xml));
+    }
+
+    @Test
+    void deveExtrairIdDeXmlFormatado() {
+        String xml = "<NFe>\n  <infNFe\n      Id=\"NFe123\"\n      versao=\"4.00\">\n  </infNFe>\n" +
+                "  <infNFeSupl>\n  </infNFeSupl>\n</NFe>\n<NFe><infNFe\tId=\"NFe456\"></infNFe></NFe>";
+
+        assertEquals("NFe123,NFe456", EnvioIdempotente.extrairId(xml));
+    }
+
+    private static String nfe(String numero) {
+        return "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe Id=\"NFe" + numero +
+                "\" versao=\"4.00\"></infNFe></NFe>";
+    }
+}
@@ -0,0 +1,204 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutorRetentativaTest {
+
+    private static final ExecutorRetentativa.Politica POLITICA_RAPIDA = new ExecutorRetentativa.Politica(
+            3, Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofSeconds(5));
+
+    private ExecutorRetentativa executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ExecutorRetentativa();
+        for (ServicoSefaz servico : ServicoSefaz.values()) {
+            executor.configurar(servico, POLITICA_RAPIDA);
+        }
+    }
+
+    @Test
+    void deveRepetirFalhaRetentavelAteSucesso() throws Exception {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        String resposta = executor.executar(ServicoSefaz.AUTORIZACAO, prazo -> {
+            if (chamadas.incrementAndGet() < 3) {
+                throw ClassificadorFalhas.transporte(new ConnectException("Connection refused"));
+            }
+            return "<cStat>103</cStat>";
+        });
+
+        assertEquals("<cStat>103</cStat>", resposta);
+        assertEquals(3, chamadas.get());
+    }
+
+    @Test
+    void naoDeveRepetirAutorizacaoAposTimeoutDeLeitura() {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        FalhaSefazException e = assertThrows(FalhaSefazException.class, () ->
+                executor.executar(ServicoSefaz.AUTORIZACAO, prazo -> {
+                    chamadas.incrementAndGet();
+                    throw ClassificadorFalhas.transporte(new SocketTimeoutException("Read timed out"));
+                }));
+
+        assertEquals(1, chamadas.get());
+        assertEquals(FalhaSefazException.Classificacao.RETENTAVEL_SE_IDEMPOTENTE, e.getClassificacao());
+    }
+
+    @Test
+    void deveRepetirConsultaReciboAposTimeoutDeLeitura() throws Exception {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        String resposta = executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> {
+            if (chamadas.incrementAndGet() == 1) {
+                throw ClassificadorFalhas.transporte(new SocketTimeoutException("Read timed out"));
+            }
+            return "<cStat>104</cStat>";
+        });
+
+        assertEquals("<cStat>104</cStat>", resposta);
+        assertEquals(2, chamadas.get());
+    }
+
+    @Test
+    void naoDeveRepetirFalhaDefinitiva() {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        FalhaSefazException e = assertThrows(FalhaSefazException.class, () ->
+                executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> {
+                    chamadas.incrementAndGet();
+                    throw ClassificadorFalhas.http(400);
+                }));
+
+        assertEquals(1, chamadas.get());
+        assertEquals(400, e.getStatusHttp());
+    }
+
+    @Test
+    void deveLancarUltimaFalhaAoEsgotarTentativas() {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        FalhaSefazException e = assertThrows(FalhaSefazException.class, () ->
+                executor.executar(ServicoSefaz.STATUS_SERVICO, prazo -> {
+                    chamadas.incrementAndGet();
+                    throw ClassificadorFalhas.http(503);
+                }));
+
+        assertEquals(3, chamadas.get());
+        assertEquals(FalhaSefazException.Origem.HTTP, e.getOrigem());
+    }
+
+    @Test
+    void deveRespeitarPrazoTotal() {
+        executor.configurar(ServicoSefaz.STATUS_SERVICO, new ExecutorRetentativa.Politica(
+                100, Duration.ofMillis(50), Duration.ofMillis(50), Duration.ofMillis(120)));
+
+        FalhaSefazException e = assertThrows(FalhaSefazException.class, () ->
+                executor.executar(ServicoSefaz.STATUS_SERVICO, prazo -> {
+                    throw ClassificadorFalhas.http(503);
+                }));
+
+        assertEquals(FalhaSefazException.Origem.PRAZO, e.getOrigem());
+    }
+
+    @Test
+    void deveRepetirServicoParalisado() throws Exception {
+        AtomicInteger chamadas = new AtomicInteger();
+
+        String resposta = executor.executar(ServicoSefaz.AUTORIZACAO, prazo -> {
+            String corpo = chamadas.incrementAndGet() == 1 ? "<ret><cStat>108</cStat></ret>" : "<ret><cStat>103</cStat></ret>";
+            FalhaSefazException falha = ClassificadorFalhas.sefaz(corpo);
+            if (falha != null) {
+                throw falha;
+            }
+            return corpo;
+        });
+
+        assertEquals("<ret><cStat>103</cStat></ret>", resposta);
+    }
+
+    @Test
+    void deveDispararRequisicaoHedgedQuandoRespostaExcedeP95() throws Exception {
+        for (int i = 0; i < ExecutorRetentativa.AMOSTRAS_MINIMAS_HEDGE; i++) {
+            executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> "ok");
+        }
+        assertNotNull(executor.getLatenciaP95(ServicoSefaz.RET_AUTORIZACAO));
+
+        AtomicInteger chamadas = new AtomicInteger();
+        long inicio = System.nanoTime();
+        String resposta = executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> {
+            if (chamadas.incrementAndGet() == 1) {
+                Thread.sleep(2000);
+                return "lenta";
+            }
+            return "rapida";
+        });
+        long decorridoMs = Duration.ofNanos(System.nanoTime() - inicio).toMillis();
+
+        assertEquals("rapida", resposta);
+        assertEquals(1, executor.getHedgesDisparados());
+        assertTrue(decorridoMs < 1000, "Resposta hedged deveria vencer, decorrido " + decorridoMs);
+    }
+
+    @Test
+    void deveAbortarRequisicaoPerdedoraDoHedge() throws Exception {
+        for (int i = 0; i < ExecutorRetentativa.AMOSTRAS_MINIMAS_HEDGE; i++) {
+            executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> "ok");
+        }
+
+        AtomicInteger chamadas = new AtomicInteger();
+        CountDownLatch abortada = new CountDownLatch(1);
+        String resposta = executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> {
+            if (chamadas.incrementAndGet() == 1) {
+                ExecutorRetentativa.registrarRequisicao(() -> {
+                    abortada.countDown();
+                    return true;
+                });
+                abortada.await(5, TimeUnit.SECONDS);
+                throw ClassificadorFalhas.transporte(new SocketTimeoutException("Request aborted"));
+            }
+            return "rapida";
+        });
+
+        assertEquals("rapida", resposta);
+        assertTrue(abortada.await(1, TimeUnit.SECONDS), "Requisição perdedora não foi abortada");
+    }
+
+    @Test
+    void deveExecutarSemHedgeAposEncerramento() throws Exception {
+        for (int i = 0; i < ExecutorRetentativa.AMOSTRAS_MINIMAS_HEDGE; i++) {
+            executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> "ok");
+        }
+        executor.close();
+
+        String thread = executor.executar(ServicoSefaz.RET_AUTORIZACAO, prazo -> Thread.currentThread().getName());
+
+        assertEquals(Thread.currentThread().getName(), thread);
+        assertEquals(0, executor.getHedgesDisparados());
+    }
+
+    @Test
+    void naoDevePermitirHedgeEmServicoNaoIdempotente() {
+        assertThrows(IllegalArgumentException.class, () -> executor.setHedge(ServicoSefaz.AUTORIZACAO, true));
+    }
+
+    @Test
+    void deveClassificarStatusHttp() {
+        assertTrue(ClassificadorFalhas.http(503).isRetentavel(ServicoSefaz.AUTORIZACAO));
+        assertFalse(ClassificadorFalhas.http(502).isRetentavel(ServicoSefaz.AUTORIZACAO));
+        assertTrue(ClassificadorFalhas.http(502).isRetentavel(ServicoSefaz.CONSULTA_PROTOCOLO));
+        assertFalse(ClassificadorFalhas.http(404).isRetentavel(ServicoSefaz.STATUS_SERVICO));
+        assertNull(ClassificadorFalhas.sefaz("<ret><cStat>100</cStat></ret>"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilaContingenciaTest {
+
+    static final String CHAVE_1 = "35250112345678000190650010000000019000000011";
+    static final String CHAVE_2 = "35250112345678000190650010000000029000000022";
+
+    @TempDir
+    Path diretorio;
+
+    static String nfce(String chave, String dhEmi) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" +
+                "<infNFe Id=\"NFe" + chave + "\" versao=\"4.00\"><ide><dhEmi>" + dhEmi + "</dhEmi>" +
+                "<tpEmis>9</tpEmis></ide></infNFe></NFe>";
+    }
+
+    @Test
+    void deveOrdenarPorDataDeEmissaoERecarregarDoDisco() throws Exception {
+        FilaContingencia fila = new FilaContingencia(diretorio);
+        fila.adicionar(nfce(CHAVE_2, "2025-01-15T12:31:00-03:00"));
+        fila.adicionar(nfce(CHAVE_1, "2025-01-15T12:30:00-03:00"));
+
+        FilaContingencia reaberta = new FilaContingencia(diretorio);
+
+        List<FilaContingencia.Pendente> proximas = reaberta.proximas(10);
+        assertEquals(2, reaberta.tamanho());
+        assertEquals(CHAVE_1, proximas.get(0).chave());
+        assertEquals(CHAVE_2, proximas.get(1).chave());
+        assertEquals(Instant.parse("2025-01-15T15:30:00Z"), reaberta.getEmissaoMaisAntiga());
+        assertTrue(reaberta.lerXml(proximas.get(0)).contains(CHAVE_1));
+    }
+
+    @Test
+    void deveGravarNfeProcAoConcluir() throws Exception {
+        FilaContingencia fila = new FilaContingencia(diretorio);
+        fila.adicionar(nfce(CHAVE_1, "2025-01-15T12:30:00-03:00"));
+
+        fila.concluir(CHAVE_1, "<protNFe versao=\"4.00\"><infProt><nProt>135250000000001</nProt></infProt></protNFe>");
+
+        assertEquals(0, fila.tamanho());
+        assertNull(fila.getEmissaoMaisAntiga());
+        assertFalse(Files.exists(diretorio.resolve(CHAVE_1 + ".xml")));
+        String nfeProc = Files.readString(fila.getDiretorioAutorizadas().resolve(CHAVE_1 + "-procNFe.xml"));
+        assertTrue(nfeProc.contains("<nfeProc"));
+        assertTrue(nfeProc.contains("<NFe xmlns"));
+        assertTrue(nfeProc.contains("<nProt>135250000000001</nProt>"));
+        assertEquals(1, nfeProc.split("<\\?xml", -1).length - 1);
+    }
+
+    @Test
+    void deveMoverRejeitadaParaDiretorioProprio() throws Exception {
+        FilaContingencia fila = new FilaContingencia(diretorio);
+        fila.adicionar(nfce(CHAVE_1, "2025-01-15T12:30:00-03:00"));
+
+        fila.rejeitar(CHAVE_1);
+
+        assertEquals(0, new FilaContingencia(diretorio).tamanho());
+        assertTrue(Files.exists(fila.getDiretorioRejeitadas().resolve(CHAVE_1 + ".xml")));
+    }
+
+    @Test
+    void deveRejeitarXmlSemChave() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new FilaContingencia(diretorio).adicionar("<NFe><infNFe/></NFe>"));
+    }
+
+    @Test
+    void deveSepararArquivoInvalidoECarregarOsDemais() throws Exception {
+        FilaContingencia fila = new FilaContingencia(diretorio);
+        fila.adicionar(nfce(CHAVE_1, "2025-01-15T12:30:00-03:00"));
+        Files.writeString(diretorio.resolve(CHAVE_2 + ".xml"), nfce(CHAVE_2, "data inválida"));
+
+        FilaContingencia reaberta = new FilaContingencia(diretorio);
+
+        assertEquals(1, reaberta.tamanho());
+        assertEquals(CHAVE_1, reaberta.proximas(10).get(0).chave());
+        assertFalse(Files.exists(diretorio.resolve(CHAVE_2 + ".xml")));
+        assertTrue(Files.exists(reaberta.getDiretorioInvalidas().resolve(CHAVE_2 + ".xml")));
+    }
+}
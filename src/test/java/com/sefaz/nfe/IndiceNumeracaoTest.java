@@ -0,0 +1,127 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceNumeracaoTest {
+
+    private static final String CNPJ = "12345678000190";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void deveDetectarNumeroDuplicado() {
+        IndiceNumeracao indice = new IndiceNumeracao();
+
+        assertTrue(indice.registrar(CNPJ, 65, 1, 10));
+        assertFalse(indice.registrar(CNPJ, 65, 1, 10));
+        assertTrue(indice.isUtilizado(CNPJ, 65, 1, 10));
+        assertFalse(indice.isUtilizado(CNPJ, 65, 1, 11));
+    }
+
+    @Test
+    void deveSepararNumeracaoPorModeloESerie() {
+        IndiceNumeracao indice = new IndiceNumeracao();
+
+        assertTrue(indice.registrar(CNPJ, 65, 1, 1));
+        assertTrue(indice.registrar(CNPJ, 65, 2, 1));
+        assertTrue(indice.registrar(CNPJ, 55, 1, 1));
+        assertTrue(indice.registrar("98765432000110", 65, 1, 1));
+    }
+
+    @Test
+    void deveRegistrarPelaChaveDeAcesso() {
+        IndiceNumeracao indice = new IndiceNumeracao();
+        String chave = "35250112345678000190650010000000011000000014";
+
+        assertTrue(indice.registrar("NFe" + chave));
+        assertFalse(indice.registrar(chave));
+        assertTrue(indice.isUtilizado(CNPJ, 65, 1, 1));
+    }
+
+    @Test
+    void deveListarLacunasParaInutilizacao() {
+        IndiceNumeracao indice = new IndiceNumeracao();
+        for (int n : new int[]{1, 2, 3, 7, 8, 70_000, 70_002}) {
+            indice.registrar(CNPJ, 65, 1, n);
+        }
+
+        List<IndiceNumeracao.Faixa> lacunas = indice.listarLacunas(CNPJ, 65, 1);
+
+        assertEquals(List.of(
+                new IndiceNumeracao.Faixa(4, 6),
+                new IndiceNumeracao.Faixa(9, 69_999),
+                new IndiceNumeracao.Faixa(70_001, 70_001)
+        ), lacunas);
+        assertEquals(70_002, indice.getUltimoNumero(CNPJ, 65, 1));
+    }
+
+    @Test
+    void deveRetornarSemLacunasParaSequenciaContinua() {
+        IndiceNumeracao indice = new IndiceNumeracao();
+        for (int n = 1; n <= 200; n++) {
+            indice.registrar(CNPJ, 65, 1, n);
+        }
+
+        assertTrue(indice.listarLacunas(CNPJ, 65, 1).isEmpty());
+        assertTrue(indice.listarLacunas(CNPJ, 65, 9).isEmpty());
+    }
+
+    @Test
+    void devePersistirERecarregarIndice() throws Exception {
+        IndiceNumeracao indice = new IndiceNumeracao();
+        indice.registrar(CNPJ, 65, 1, 5);
+        indice.registrar(CNPJ, 65, 1, 999_999_999);
+        indice.registrar(CNPJ, 59, 3, 42);
+
+        Path arquivo = tempDir.resolve("numeracao.idx");
+        indice.salvar(arquivo);
+
+        IndiceNumeracao recarregado = new IndiceNumeracao();
+        recarregado.carregar(arquivo);
+
+        assertTrue(recarregado.isUtilizado(CNPJ, 65, 1, 5));
+        assertTrue(recarregado.isUtilizado(CNPJ, 65, 1, 999_999_999));
+        assertTrue(recarregado.isUtilizado(CNPJ, 59, 3, 42));
+        assertFalse(recarregado.isUtilizado(CNPJ, 65, 1, 6));
+        assertEquals(999_999_999, recarregado.getUltimoNumero(CNPJ, 65, 1));
+        assertFalse(recarregado.registrar(CNPJ, 59, 3, 42));
+    }
+
+    @Test
+    void deveRejeitarArquivoCorrompidoComIOException() throws Exception {
+        IndiceNumeracao indice = new IndiceNumeracao();
+        indice.registrar(CNPJ, 65, 1, 5);
+        Path arquivo = tempDir.resolve("numeracao.idx");
+        indice.salvar(arquivo);
+        byte[] conteudo = Files.readAllBytes(arquivo);
+
+        // magic, séries, chave, maior, páginas usadas e então o índice da primeira página
+        ByteBuffer.wrap(conteudo).putInt(24, Integer.MAX_VALUE);
+        Path corrompido = Files.write(tempDir.resolve("corrompido.idx"), conteudo);
+        IOException foraDaFaixa = assertThrows(IOException.class, () -> new IndiceNumeracao().carregar(corrompido));
+        assertTrue(foraDaFaixa.getMessage().contains(corrompido.toString()));
+
+        Path truncado = Files.write(tempDir.resolve("truncado.idx"), Arrays.copyOf(conteudo, 40));
+        IOException incompleto = assertThrows(IOException.class, () -> new IndiceNumeracao().carregar(truncado));
+        assertTrue(incompleto.getMessage().contains(truncado.toString()));
+    }
+
+    @Test
+    void deveRejeitarNumeroForaDaFaixa() {
+        IndiceNumeracao indice = new IndiceNumeracao();
+
+        assertThrows(IllegalArgumentException.class, () -> indice.registrar(CNPJ, 65, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> indice.registrar("123", 65, 1, 1));
+    }
+}
@@ -0,0 +1,96 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeitorCsvTest {
+
+    static List<Map<String, Object>> ler(Iterator<Map<String, Object>> leitor) {
+        List<Map<String, Object>> registros = new ArrayList<>();
+        leitor.forEachRemaining(registros::add);
+        return registros;
+    }
+
+    @Test
+    void deveLerCamposEntreAspasComSeparadorQuebraDeLinhaEAspasDuplicadas() throws Exception {
+        String csv = "\uFEFFnumero,descricao,valor\r\n" +
+                "1,\"Caneta, azul\",2.50\r\n" +
+                "\r\n" +
+                "2,\"Caderno \"\"universitário\"\"\nlinha 2\",\"\"\n" +
+                "3,Lápis,0.90";
+
+        List<Map<String, Object>> registros = ler(new LeitorCsv(new StringReader(csv)));
+
+        assertEquals(3, registros.size());
+        assertEquals("1", registros.get(0).get("numero"));
+        assertEquals("Caneta, azul", registros.get(0).get("descricao"));
+        assertEquals("Caderno \"universitário\"\nlinha 2", registros.get(1).get("descricao"));
+        assertEquals("", registros.get(1).get("valor"));
+        assertEquals("0.90", registros.get(2).get("valor"));
+    }
+
+    @Test
+    void deveAceitarOutroSeparador() throws Exception {
+        List<Map<String, Object>> registros = ler(new LeitorCsv(new StringReader("a;b\n1;2,5\n"), ';'));
+
+        assertEquals(1, registros.size());
+        assertEquals("2,5", registros.get(0).get("b"));
+    }
+
+    @Test
+    void deveRejeitarLinhaComCamposAMaisEContinuar() throws Exception {
+        LeitorCsv leitor = new LeitorCsv(new StringReader("a,b\n1,2\n3,4,5\n6,7\n"));
+
+        assertEquals("1", leitor.next().get("a"));
+        IllegalArgumentException erro = assertThrows(IllegalArgumentException.class, leitor::next);
+        assertTrue(erro.getMessage().startsWith("Linha 3"), erro.getMessage());
+        assertEquals("6", leitor.next().get("a"));
+        assertFalse(leitor.hasNext());
+    }
+
+    @Test
+    void deveRejeitarAspasNaoFechadas() throws Exception {
+        LeitorCsv leitor = new LeitorCsv(new StringReader("a,b\n1,\"2\n"));
+
+        assertThrows(IllegalArgumentException.class, leitor::hasNext);
+        assertFalse(leitor.hasNext());
+    }
+
+    @Test
+    void deveAgruparLinhasConsecutivasDoMesmoPedido() throws Exception {
+        String csv = "numero,codigoProduto\n10,A\n10,B\n11,C\n12,D\n12,E\n12,F\n";
+
+        List<Map<String, Object>> pedidos = ler(LeitorCsv.agrupar(new LeitorCsv(new StringReader(csv)), "numero"));
+
+        assertEquals(3, pedidos.size());
+        assertEquals("10", pedidos.get(0).get("numero"));
+        assertEquals(2, ((List<?>) pedidos.get(0).get(LeitorCsv.ITENS)).size());
+        assertEquals(1, ((List<?>) pedidos.get(1).get(LeitorCsv.ITENS)).size());
+        List<?> itens = (List<?>) pedidos.get(2).get(LeitorCsv.ITENS);
+        assertEquals("F", ((Map<?, ?>) itens.get(2)).get("codigoProduto"));
+    }
+
+    @Test
+    void deveInformarLinhaMalFormadaEntreGruposEContinuar() throws Exception {
+        String csv = "numero,codigoProduto\n10,A\n10,B\n11,C,X\n12,D\n12,E\n13,F\n";
+        Iterator<Map<String, Object>> pedidos = LeitorCsv.agrupar(new LeitorCsv(new StringReader(csv)), "numero");
+
+        Map<String, Object> primeiro = pedidos.next();
+        assertEquals("10", primeiro.get("numero"));
+        assertEquals(2, ((List<?>) primeiro.get(LeitorCsv.ITENS)).size());
+        IllegalArgumentException erro = assertThrows(IllegalArgumentException.class, pedidos::next);
+        assertTrue(erro.getMessage().startsWith("Linha 4"), erro.getMessage());
+        Map<String, Object> segundo = pedidos.next();
+        assertEquals("12", segundo.get("numero"));
+        assertEquals(2, ((List<?>) segundo.get(LeitorCsv.ITENS)).size());
+        assertEquals("13", pedidos.next().get("numero"));
+        assertFalse(pedidos.hasNext());
+    }
+}
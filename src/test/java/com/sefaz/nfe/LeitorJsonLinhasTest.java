@@ -0,0 +1,58 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeitorJsonLinhasTest {
+
+    @Test
+    void deveLerObjetosAninhadosComNumerosComoTexto() {
+        String jsonl = "{\"numero\": 10, \"valorTotal\": 12.50, \"ativo\": true, \"obs\": null," +
+                " \"itens\": [{\"codigoProduto\": \"A\", \"quantidade\": 1.5}, {\"codigoProduto\": \"B\"}]}\n" +
+                "\n" +
+                "  {\"numero\": 11, \"itens\": []}  \n";
+
+        LeitorJsonLinhas leitor = new LeitorJsonLinhas(new StringReader(jsonl));
+
+        Map<String, Object> primeiro = leitor.next();
+        assertEquals("10", primeiro.get("numero"));
+        assertEquals("12.50", primeiro.get("valorTotal"));
+        assertEquals(Boolean.TRUE, primeiro.get("ativo"));
+        assertTrue(primeiro.containsKey("obs"));
+        assertNull(primeiro.get("obs"));
+        List<?> itens = (List<?>) primeiro.get("itens");
+        assertEquals(2, itens.size());
+        assertEquals("1.5", ((Map<?, ?>) itens.get(0)).get("quantidade"));
+
+        Map<String, Object> segundo = leitor.next();
+        assertEquals("11", segundo.get("numero"));
+        assertEquals(List.of(), segundo.get("itens"));
+        assertFalse(leitor.hasNext());
+    }
+
+    @Test
+    void deveDecodificarEscapes() {
+        LeitorJsonLinhas leitor = new LeitorJsonLinhas(new StringReader(
+                "{\"descricao\": \"Caderno \\\"A4\\\"\\n\\u00c1gua\\\\\"}"));
+
+        assertEquals("Caderno \"A4\"\nÁgua\\", leitor.next().get("descricao"));
+    }
+
+    @Test
+    void deveInformarLinhaInvalidaEContinuar() {
+        LeitorJsonLinhas leitor = new LeitorJsonLinhas(new StringReader(
+                "{\"a\": 1}\n{\"a\": }\n[1, 2]\n{\"a\": 4}\n"));
+
+        assertEquals("1", leitor.next().get("a"));
+        IllegalArgumentException erro = assertThrows(IllegalArgumentException.class, leitor::next);
+        assertTrue(erro.getMessage().startsWith("Linha 2"), erro.getMessage());
+        assertThrows(IllegalArgumentException.class, leitor::next);
+        assertEquals("4", leitor.next().get("a"));
+        assertFalse(leitor.hasNext());
+    }
+}
@@ -0,0 +1,70 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitadorTaxaTest {
+
+    private static final String URL_SP = "https://homologacao.nfce.fazenda.sp.gov.br/ws/NFeAutorizacao4.asmx";
+    private static final String URL_MG = "https://hnfce.fazenda.mg.gov.br/nfce/services/NFeAutorizacao4";
+    private static final String CNPJ = "12345678000190";
+
+    @Test
+    void devePermitirRajadaSemEspera() throws Exception {
+        LimitadorTaxa limitador = new LimitadorTaxa();
+        limitador.configurar(ServicoSefaz.STATUS_SERVICO, 1, 3);
+
+        for (int i = 0; i < 3; i++) {
+            limitador.adquirir(URL_SP, CNPJ, ServicoSefaz.STATUS_SERVICO);
+        }
+
+        LimitadorTaxa.Estatisticas est = limitador.getEstatisticas(ServicoSefaz.STATUS_SERVICO);
+        assertEquals(3, est.getRequisicoes());
+        assertEquals(0, est.getLimitadas());
+    }
+
+    @Test
+    void deveAguardarQuandoTaxaExcedida() throws Exception {
+        LimitadorTaxa limitador = new LimitadorTaxa();
+        limitador.configurar(ServicoSefaz.STATUS_SERVICO, 20, 1); // 1 requisição a cada 50 ms
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limitador.adquirir(URL_SP, CNPJ, ServicoSefaz.STATUS_SERVICO);
+        }
+        long decorrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertTrue(decorrido >= 140, "Esperado >= 150 ms, decorrido " + decorrido);
+        LimitadorTaxa.Estatisticas est = limitador.getEstatisticas(ServicoSefaz.STATUS_SERVICO);
+        assertEquals(3, est.getLimitadas());
+        assertTrue(est.getEsperaTotal().toMillis() > 0);
+    }
+
+    @Test
+    void deveManterBaldesSeparadosPorEndpoint() throws Exception {
+        LimitadorTaxa limitador = new LimitadorTaxa();
+        limitador.configurar(ServicoSefaz.STATUS_SERVICO, 1, 1);
+
+        limitador.adquirir(URL_SP, CNPJ, ServicoSefaz.STATUS_SERVICO);
+        limitador.adquirir(URL_MG, CNPJ, ServicoSefaz.STATUS_SERVICO);
+        limitador.adquirir(URL_SP, "98765432000110", ServicoSefaz.STATUS_SERVICO);
+
+        assertEquals(0, limitador.getEstatisticas(ServicoSefaz.STATUS_SERVICO).getLimitadas());
+    }
+
+    @Test
+    void deveBloquearAposConsumoIndevido() {
+        LimitadorTaxa limitador = new LimitadorTaxa();
+
+        limitador.registrarConsumoIndevido(URL_SP, CNPJ, ServicoSefaz.AUTORIZACAO);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> limitador.adquirir(URL_SP, CNPJ, ServicoSefaz.AUTORIZACAO));
+        assertTrue(e.getMessage().contains("656"));
+        assertEquals(1, limitador.getEstatisticas(ServicoSefaz.AUTORIZACAO).getBloqueios());
+        assertDoesNotThrow(() -> limitador.adquirir(URL_MG, CNPJ, ServicoSefaz.AUTORIZACAO));
+    }
+}
@@ -0,0 +1,83 @@
+package com.sefaz.nfe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricasSefazTest {
+
+    private static final String URL_SP = "https://homologacao.nfce.fazenda.sp.gov.br/ws/NFeAutorizacao4.asmx";
+    private static final String CHAVE = "35250112345678000190650010000000011000000014";
+
+    private MeterRegistry registry;
+    private MetricasSefaz metricas;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metricas = new MetricasSefaz(registry);
+    }
+
+    @Test
+    void deveRegistrarTimerPorEtapa() throws Exception {
+        String resultado = metricas.observar(MetricasSefaz.Etapa.ASSINATURA, CHAVE, () -> "assinado");
+
+        assertEquals("assinado", resultado);
+        Timer timer = registry.find(MetricasSefaz.OBSERVACAO_ETAPA).tag("etapa", "assinatura").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    void deveContarRespostasPorCodigoStatusEEndpoint() throws Exception {
+        metricas.observarRequisicao(ServicoSefaz.AUTORIZACAO, URL_SP, CHAVE, () -> "<ret><cStat>103</cStat></ret>");
+        metricas.observarRequisicao(ServicoSefaz.AUTORIZACAO, URL_SP, CHAVE, () -> "<ret><cStat>103</cStat></ret>");
+
+        assertEquals(2, registry.get(MetricasSefaz.CONTADOR_RESPOSTAS)
+                .tag("cstat", "103")
+                .tag("endpoint", "homologacao.nfce.fazenda.sp.gov.br")
+                .counter().count());
+        assertEquals(2, registry.get(MetricasSefaz.OBSERVACAO_REQUISICAO)
+                .tag("servico", "AUTORIZACAO")
+                .timer().count());
+    }
+
+    @Test
+    void deveContarFalhasPorOrigem() {
+        assertThrows(FalhaSefazException.class, () ->
+                metricas.observarRequisicao(ServicoSefaz.STATUS_SERVICO, URL_SP, null, () -> {
+                    throw ClassificadorFalhas.http(503);
+                }));
+
+        assertEquals(1, registry.get(MetricasSefaz.CONTADOR_FALHAS).tag("origem", "HTTP").counter().count());
+    }
+
+    @Test
+    void desabilitadoDeveApenasDelegar() throws Exception {
+        assertFalse(MetricasSefaz.DESABILITADO.isHabilitado());
+        assertEquals("ok", MetricasSefaz.DESABILITADO.observar(MetricasSefaz.Etapa.ENVIO, null, () -> "ok"));
+    }
+
+    @Test
+    void deveExtrairChaveDoAtributoId() {
+        String xml = "<NFe><infNFe versao=\"4.00\" Id=\"NFe" + CHAVE + "\"><ide/></infNFe></NFe>";
+
+        assertEquals(CHAVE, MetricasSefaz.extrairChave(xml));
+        assertNull(MetricasSefaz.extrairChave("<consStatServ/>"));
+    }
+
+    @Test
+    void deveRegistrarGaugesDosRecursos() {
+        LimitadorTaxa limitador = new LimitadorTaxa();
+        new MetricasRecursosSefaz(new TransporteHttpsSefaz(new CertificadoDigital()), limitador, new ExecutorRetentativa())
+                .bindTo(registry);
+
+        assertEquals(0, registry.get("sefaz.http.pool.conexoes").tag("estado", "ativas").gauge().value());
+        assertNotNull(registry.find("sefaz.limitador.requisicoes").tag("servico", "AUTORIZACAO").functionCounter());
+        assertEquals(0, registry.get("sefaz.http.bytes").tag("direcao", "recebidos").functionCounter().count());
+    }
+}
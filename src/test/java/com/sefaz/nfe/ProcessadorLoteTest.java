@@ -0,0 +1,205 @@
+package com.sefaz.nfe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProcessadorLoteTest {
+
+    @TempDir
+    Path diretorio;
+
+    AssinaturaDigital assinatura;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        assinatura = mock(AssinaturaDigital.class);
+        when(assinatura.assinar(anyString(), eq("infDCe")))
+                .thenAnswer(i -> i.getArgument(0, String.class) + "<Signature/>");
+    }
+
+    static String dce(long numero) {
+        return "<DCe><infDCe versao=\"1.00\" Id=\"DCe" + numero + "\"/></DCe>";
+    }
+
+    /**
+     * Registros 0..total-1, contando quantos foram lidos.
+     */
+    static Iterator<Long> registros(long total, AtomicLong lidos) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return lidos.get() < total;
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return lidos.getAndIncrement();
+            }
+        };
+    }
+
+    static void atraso() throws InterruptedException {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+    }
+
+    @Test
+    void deveGravarNaOrdemDaEntradaComAtrasosAleatorios() throws Exception {
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+        processador.setParalelismo(4);
+        List<Long> gravados = new ArrayList<>();
+
+        ProcessadorLote.Resumo resumo = processador.processar(registros(200, new AtomicLong()),
+                n -> {
+                    atraso();
+                    return dce(n);
+                },
+                (indice, xml) -> {
+                    assertEquals(dce(indice) + "<Signature/>", xml);
+                    gravados.add(indice);
+                });
+
+        assertEquals(200, resumo.processados());
+        assertEquals(0, resumo.falhas());
+        assertEquals(LongStream.range(0, 200).boxed().toList(), gravados);
+    }
+
+    @Test
+    void deveGravarTodosEmModoNaoOrdenado() throws Exception {
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+        processador.setParalelismo(4);
+        processador.setOrdenado(false);
+        List<Long> gravados = new ArrayList<>();
+
+        processador.processar(registros(200, new AtomicLong()), n -> {
+            atraso();
+            return dce(n);
+        }, (indice, xml) -> gravados.add(indice));
+
+        Collections.sort(gravados);
+        assertEquals(LongStream.range(0, 200).boxed().toList(), gravados);
+    }
+
+    @Test
+    void deveManterNoMaximoAJanelaEmProcessamento() throws Exception {
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+        processador.setParalelismo(3);
+        processador.setJanela(5);
+        AtomicLong lidos = new AtomicLong();
+        long[] gravados = new long[1];
+
+        processador.processar(registros(1000, lidos), ProcessadorLoteTest::dce, (indice, xml) -> {
+            assertTrue(lidos.get() - gravados[0] <= 5, "lidos " + lidos.get() + ", gravados " + gravados[0]);
+            gravados[0]++;
+        });
+
+        assertEquals(1000, gravados[0]);
+    }
+
+    @Test
+    void deveInformarFalhasSemInterromper() throws Exception {
+        when(assinatura.assinar(eq(dce(7)), eq("infDCe"))).thenThrow(new IllegalStateException("certificado"));
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+        processador.setParalelismo(2);
+        List<ProcessadorLote.Falha> falhas = Collections.synchronizedList(new ArrayList<>());
+        processador.setOuvinteFalhas(falhas::add);
+        AtomicLong lidos = new AtomicLong();
+        Iterator<Long> base = registros(20, lidos);
+        Iterator<Long> entrada = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return base.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                long n = base.next();
+                if (n == 12) {
+                    throw new IllegalArgumentException("Linha 13: registro inválido");
+                }
+                return n;
+            }
+        };
+        List<Long> gravados = new ArrayList<>();
+
+        ProcessadorLote.Resumo resumo = processador.processar(entrada, n -> {
+            if (n == 3) {
+                throw new IllegalArgumentException("Campo obrigatório ausente: ncm");
+            }
+            return dce(n);
+        }, (indice, xml) -> gravados.add(indice));
+
+        assertEquals(17, resumo.processados());
+        assertEquals(3, resumo.falhas());
+        assertEquals(List.of(3L, 7L, 12L), falhas.stream().map(ProcessadorLote.Falha::indice).sorted().toList());
+        assertFalse(gravados.contains(3L) || gravados.contains(7L) || gravados.contains(12L));
+    }
+
+    @Test
+    void deveGravarUmArquivoPorDocumentoNoDiretorio() throws Exception {
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+
+        try (ProcessadorLote.Destino destino = ProcessadorLote.Destino.diretorio(diretorio.resolve("saida"))) {
+            processador.processar(registros(3, new AtomicLong()), ProcessadorLoteTest::dce, destino);
+        }
+
+        assertEquals(dce(2) + "<Signature/>", Files.readString(diretorio.resolve("saida/DCe2.xml")));
+        try (var arquivos = Files.list(diretorio.resolve("saida"))) {
+            assertEquals(3, arquivos.count());
+        }
+    }
+
+    @Test
+    void deveRegistrarEtapaDeConstrucaoPorDocumento() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+        processador.setMetricas(new MetricasSefaz(registry));
+
+        processador.processar(registros(5, new AtomicLong()), ProcessadorLoteTest::dce, (indice, xml) -> { });
+
+        assertEquals(5, registry.find(MetricasSefaz.OBSERVACAO_ETAPA).tag("etapa", "construcao").timer().count());
+    }
+
+    @Test
+    void deveGravarEntradasNoZip() throws Exception {
+        ProcessadorLote processador = new ProcessadorLote(assinatura, "infDCe");
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+
+        try (ProcessadorLote.Destino destino = ProcessadorLote.Destino.zip(saida)) {
+            processador.processar(registros(3, new AtomicLong()), ProcessadorLoteTest::dce, destino);
+        }
+
+        List<String> nomes = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(saida.toByteArray()))) {
+            for (var entrada = zip.getNextEntry(); entrada != null; entrada = zip.getNextEntry()) {
+                nomes.add(entrada.getName());
+            }
+        }
+        assertEquals(List.of("DCe0.xml", "DCe1.xml", "DCe2.xml"), nomes);
+        assertEquals("documento-4.xml", ProcessadorLote.nomeArquivo(4, "<NFe/>"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliacaoProtocolosTest {
+
+    private static final String CHAVE_SP = "35250112345678000190650010000000011000000014";
+    private static final String CHAVE_MG = "31250112345678000190650010000000011000000015";
+
+    private static final String RESPOSTA = "<retConsSitNFe><cStat>100</cStat>" +
+            "<xMotivo>Autorizado o uso da NF-e</xMotivo><protNFe><infProt><nProt>135250000000001</nProt>" +
+            "</infProt></protNFe></retConsSitNFe>";
+
+    @Mock
+    private SefazSoapClient sefazClient;
+
+    @Test
+    void deveConsultarTodasAsChavesRespeitandoParalelismo() throws Exception {
+        AtomicInteger simultaneas = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        when(sefazClient.consultarProtocolo(anyString(), any(Ambiente.class), anyString())).thenAnswer(inv -> {
+            maximo.accumulateAndGet(simultaneas.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            simultaneas.decrementAndGet();
+            return RESPOSTA;
+        });
+
+        ReconciliacaoProtocolos reconciliacao = new ReconciliacaoProtocolos(sefazClient, Ambiente.HOMOLOGACAO, 2);
+        List<ReconciliacaoProtocolos.Resultado> resultados = new ArrayList<>();
+
+        long total = reconciliacao.reconciliar(List.of(CHAVE_SP, CHAVE_SP, CHAVE_SP, CHAVE_SP, CHAVE_SP).iterator(),
+                resultados::add);
+
+        assertEquals(5, total);
+        assertEquals(5, resultados.size());
+        assertTrue(resultados.stream().allMatch(r -> "100".equals(r.codigoStatus())));
+        assertEquals("Autorizado o uso da NF-e", resultados.get(0).mensagem());
+        assertEquals("135250000000001", resultados.get(0).protocolo());
+        assertTrue(maximo.get() <= 2, "Paralelismo por endpoint excedido: " + maximo.get());
+        verify(sefazClient, times(5)).consultarProtocolo(eq(CHAVE_SP), eq(Ambiente.HOMOLOGACAO),
+                eq(SefazEndpoints.getUrlConsultaSituacao("SP", true)));
+    }
+
+    @Test
+    void naoDeveEsperarEndpointLentoParaConsultarOutraUf() throws Exception {
+        CountDownLatch outraUf = new CountDownLatch(1);
+        when(sefazClient.consultarProtocolo(anyString(), any(Ambiente.class), anyString())).thenAnswer(inv -> {
+            if (CHAVE_SP.equals(inv.getArgument(0)) && !outraUf.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Chave de MG não consultada enquanto SP estava lento");
+            }
+            if (CHAVE_MG.equals(inv.getArgument(0))) {
+                outraUf.countDown();
+            }
+            return RESPOSTA;
+        });
+        List<String> chaves = new ArrayList<>(Collections.nCopies(20, CHAVE_SP));
+        chaves.add(CHAVE_MG);
+        ReconciliacaoProtocolos reconciliacao = new ReconciliacaoProtocolos(sefazClient, Ambiente.HOMOLOGACAO, 1);
+        List<ReconciliacaoProtocolos.Resultado> resultados = new ArrayList<>();
+
+        reconciliacao.reconciliar(chaves.iterator(), resultados::add);
+
+        assertEquals(21, resultados.size());
+        assertTrue(resultados.stream().allMatch(ReconciliacaoProtocolos.Resultado::isSucesso));
+    }
+
+    @Test
+    void deveReportarChaveInvalidaSemConsultarSefaz() throws Exception {
+        ReconciliacaoProtocolos reconciliacao = new ReconciliacaoProtocolos(sefazClient, Ambiente.HOMOLOGACAO, 1);
+        StringWriter relatorio = new StringWriter();
+
+        reconciliacao.reconciliar(List.of("123").iterator(), relatorio);
+
+        String[] linhas = relatorio.toString().split("\n");
+        assertEquals("chave;cStat;xMotivo;nProt;erro", linhas[0]);
+        assertTrue(linhas[1].startsWith("123;;;;"));
+        verifyNoInteractions(sefazClient);
+    }
+
+    @Test
+    void deveReportarFalhaDeComunicacaoPorChave() throws Exception {
+        when(sefazClient.consultarProtocolo(anyString(), any(Ambiente.class), anyString())).thenThrow(new RuntimeException("Erro HTTP 503"));
+
+        ReconciliacaoProtocolos reconciliacao = new ReconciliacaoProtocolos(sefazClient, Ambiente.HOMOLOGACAO, 1);
+        List<ReconciliacaoProtocolos.Resultado> resultados = new ArrayList<>();
+
+        reconciliacao.reconciliar(List.of(CHAVE_SP).iterator(), resultados::add);
+
+        assertEquals(1, resultados.size());
+        assertFalse(resultados.get(0).isSucesso());
+        assertEquals("Erro HTTP 503", resultados.get(0).erro());
+    }
+
+    @Test
+    void deveRelancarFalhaDeGravacaoDoRelatorio() throws Exception {
+        when(sefazClient.consultarProtocolo(anyString(), any(Ambiente.class), anyString())).thenReturn(RESPOSTA);
+        Writer relatorio = new FilterWriter(new StringWriter()) {
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                if (str.startsWith(CHAVE_SP)) {
+                    throw new IOException("Disco cheio");
+                }
+                super.write(str, off, len);
+            }
+        };
+        ReconciliacaoProtocolos reconciliacao = new ReconciliacaoProtocolos(sefazClient, Ambiente.HOMOLOGACAO, 2);
+
+        IOException falha = assertThrows(IOException.class,
+                () -> reconciliacao.reconciliar(List.of(CHAVE_SP, CHAVE_SP, CHAVE_SP).iterator(), relatorio));
+
+        assertEquals("Disco cheio", falha.getMessage());
+    }
+}
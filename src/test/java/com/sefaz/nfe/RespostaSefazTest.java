@@ -0,0 +1,113 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RespostaSefazTest {
+
+    static final String CHAVE = "35250112345678000190650010000000011000000014";
+
+    static final String RET_CONS_RECI = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+            "<nfeResultMsg xmlns=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeRetAutorizacao4\">" +
+            "<retConsReciNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+            "<tpAmb>2</tpAmb><nRec>351000000000001</nRec><cStat>104</cStat><xMotivo>Lote processado</xMotivo>" +
+            "<protNFe versao=\"4.00\"><infProt><tpAmb>2</tpAmb><chNFe>" + CHAVE + "</chNFe>" +
+            "<dhRecbto>2025-01-15T12:30:01-03:00</dhRecbto><nProt>135250000000001</nProt>" +
+            "<digVal>q3pWJ5Qx8Z0CEe3iRz6mLkD2p0A=</digVal><cStat>100</cStat>" +
+            "<xMotivo>Autorizado o uso da NF-e</xMotivo></infProt></protNFe></retConsReciNFe>" +
+            "</nfeResultMsg></soap:Body></soap:Envelope>";
+
+    static byte[] bytes(String xml) {
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void deveLerSobDemandaEDescartarOCorpo() {
+        RespostaSefaz resposta = RespostaSefaz.de(bytes(RET_CONS_RECI), false);
+        assertTrue(resposta.isCorpoDisponivel());
+
+        assertTrue(resposta.isProcessado());
+        assertEquals("Lote processado", resposta.getMensagem());
+        ResultadoAutorizacao.Protocolo protocolo = resposta.getProtocolos().get(0);
+        assertEquals(CHAVE, protocolo.chave());
+        assertEquals("135250000000001", protocolo.protocolo());
+        assertEquals("q3pWJ5Qx8Z0CEe3iRz6mLkD2p0A=", protocolo.digestValue());
+        assertEquals("2025-01-15T12:30:01-03:00", protocolo.dataRecebimento());
+        assertTrue(protocolo.isAutorizada());
+
+        assertFalse(resposta.isCorpoDisponivel());
+        assertEquals(RET_CONS_RECI.length(), resposta.getTamanho());
+        assertThrows(IllegalStateException.class, resposta::getXml);
+    }
+
+    @Test
+    void deveManterOCorpoQuandoSolicitado() {
+        RespostaSefaz resposta = RespostaSefaz.de(bytes(RET_CONS_RECI), true);
+
+        assertEquals("104", resposta.getCodigoStatus());
+
+        assertEquals(RET_CONS_RECI, resposta.getXml());
+        byte[] copia = resposta.getCorpo();
+        copia[0] = 'x';
+        assertEquals(RET_CONS_RECI, resposta.getXml(), "corpo interno não deve ser alterado");
+    }
+
+    @Test
+    void deveLerUmaUnicaVezEntreThreads() throws Exception {
+        RespostaSefaz resposta = RespostaSefaz.de(bytes(RET_CONS_RECI), false);
+        CountDownLatch largada = new CountDownLatch(1);
+
+        List<CompletableFuture<ResultadoAutorizacao>> leituras = java.util.stream.IntStream.range(0, 4)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        largada.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return resposta.getResultado();
+                }))
+                .toList();
+        largada.countDown();
+
+        for (CompletableFuture<ResultadoAutorizacao> leitura : leituras) {
+            assertSame(resposta.getResultado(), leitura.get());
+        }
+    }
+
+    @Test
+    void deveRejeitarRespostaSemRetorno() {
+        RespostaSefaz resposta = RespostaSefaz.de(bytes("<soap:Envelope xmlns:soap=\"x\"><soap:Body/></soap:Envelope>"), false);
+
+        assertThrows(IllegalArgumentException.class, resposta::getCodigoStatus);
+        assertThrows(IllegalArgumentException.class, () -> RespostaSefaz.de(bytes("<nao-fechado>"), false).getResultado());
+    }
+
+    @Test
+    void clienteDeveRetornarRespostaTipadaSemDecodificarOCorpo() throws Exception {
+        CertificadoDigital certificado = mock(CertificadoDigital.class);
+        when(certificado.isCarregado()).thenReturn(true);
+        TransporteHttpsSefaz transporte = mock(TransporteHttpsSefaz.class);
+        when(transporte.enviarBytes(any(), any(EnvelopeSoap.Mensagem.class), any())).thenReturn(bytes(RET_CONS_RECI));
+        SefazSoapClient cliente = new SefazSoapClient(certificado, new LimitadorTaxa(), transporte,
+                new ExecutorRetentativa(), MetricasSefaz.DESABILITADO);
+        ContextoEmissao contexto = ContextoEmissao.of(Ambiente.HOMOLOGACAO, Uf.SP, 65, 1);
+
+        RespostaSefaz resposta = cliente.consultarLote("351000000000001", contexto);
+
+        assertEquals("135250000000001", resposta.getProtocolos().get(0).protocolo());
+        assertFalse(resposta.isCorpoDisponivel());
+        verify(transporte, never()).enviar(any(), any(EnvelopeSoap.Mensagem.class), any());
+
+        cliente.setManterRespostaBruta(true);
+        assertEquals(RET_CONS_RECI, cliente.consultarLote("351000000000001", contexto).getXml());
+    }
+}
@@ -77,4 +77,13 @@ class SefazEndpointsTest {
         
         assertEquals(urlMaiuscula, urlMinuscula);
     }
+
+    @Test
+    void deveRetornarUrlConsultaSituacaoSP() {
+        String url = SefazEndpoints.getUrlConsultaSituacao("SP", true);
+
+        assertNotNull(url);
+        assertTrue(url.contains("homologacao"));
+        assertTrue(url.contains("NFeConsultaProtocolo4"));
+    }
 }
@@ -132,4 +132,19 @@ class SefazSoapClientTest {
         assertEquals("215", codigo);
         assertEquals("Rejeição: Falha no schema XML da NFe", mensagem);
     }
+
+    @Test
+    void deveExtrairProtocoloCorretamente() throws Exception {
+        String xmlResposta = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<retConsSitNFe>" +
+                "<tpAmb>2</tpAmb>" +
+                "<cStat>100</cStat>" +
+                "<xMotivo>Autorizado o uso da NF-e</xMotivo>" +
+                "<protNFe><infProt><nProt>135250000000001</nProt></infProt></protNFe>" +
+                "</retConsSitNFe>";
+
+        String protocolo = sefazClient.extrairProtocolo(xmlResposta);
+
+        assertEquals("135250000000001", protocolo);
+    }
 }
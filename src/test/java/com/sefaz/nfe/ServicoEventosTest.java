@@ -0,0 +1,157 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.w3c.dom.Document;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ServicoEventosTest {
+
+    private static final String URL = "https://evento";
+    private static final OffsetDateTime DATA = OffsetDateTime.of(2025, 1, 15, 13, 0, 0, 0, ZoneOffset.ofHours(-3));
+    private static final String JUSTIFICATIVA = "Venda cancelada pelo cliente";
+
+    @Mock
+    private SefazSoapClient sefazClient;
+
+    @Mock
+    private AssinaturaDigital assinaturaDigital;
+
+    private ServicoEventos servico;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servico = new ServicoEventos(sefazClient, assinaturaDigital);
+        lenient().when(assinaturaDigital.assinarTodos(any(Document.class), eq("infEvento"))).thenReturn(1);
+    }
+
+    @Test
+    void deveMontarIdECamposDoCancelamento() {
+        EventoNFe evento = EventoNFe.cancelamento(chave(1), "135250000000001", JUSTIFICATIVA, DATA,
+                Ambiente.HOMOLOGACAO);
+
+        assertEquals("ID110111" + chave(1) + "01", evento.getId());
+        String xml = evento.toXml();
+        assertTrue(xml.contains("<cOrgao>35</cOrgao><tpAmb>2</tpAmb><CNPJ>12345678000190</CNPJ>"));
+        assertTrue(xml.contains("<dhEvento>2025-01-15T13:00:00-03:00</dhEvento>"));
+        assertTrue(xml.contains("<nProt>135250000000001</nProt><xJust>" + JUSTIFICATIVA + "</xJust>"));
+    }
+
+    @Test
+    void deveValidarTamanhoDaJustificativaEDoProtocolo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> EventoNFe.cancelamento(chave(1), "135250000000001", "curta", DATA, Ambiente.HOMOLOGACAO));
+        assertThrows(IllegalArgumentException.class,
+                () -> EventoNFe.cancelamento(chave(1), "123", JUSTIFICATIVA, DATA, Ambiente.HOMOLOGACAO));
+        assertThrows(IllegalArgumentException.class,
+                () -> EventoNFe.cartaCorrecao(chave(1), 21, "Correcao do endereco do destinatario", DATA,
+                        Ambiente.HOMOLOGACAO));
+    }
+
+    @Test
+    void deveAgruparEmLotesDeVinteEventos() throws Exception {
+        List<EventoNFe> eventos = new ArrayList<>();
+        for (int i = 1; i <= 45; i++) {
+            eventos.add(EventoNFe.cancelamento(chave(i), "135250000000001", JUSTIFICATIVA, DATA, Ambiente.HOMOLOGACAO));
+        }
+        when(sefazClient.enviarEvento(anyString(), eq(URL))).thenAnswer(inv -> retornoRegistrado(inv.getArgument(0)));
+
+        List<ServicoEventos.Resultado> resultados = servico.enviar(eventos, URL);
+
+        ArgumentCaptor<String> lotes = ArgumentCaptor.forClass(String.class);
+        verify(sefazClient, times(3)).enviarEvento(lotes.capture(), eq(URL));
+        assertEquals(20, contar(lotes.getAllValues().get(0), "<evento "));
+        assertEquals(20, contar(lotes.getAllValues().get(1), "<evento "));
+        assertEquals(5, contar(lotes.getAllValues().get(2), "<evento "));
+
+        assertEquals(45, resultados.size());
+        for (int i = 0; i < 45; i++) {
+            assertEquals(chave(i + 1), resultados.get(i).chave());
+            assertTrue(resultados.get(i).isRegistrado());
+        }
+        assertTrue(resultados.get(0).toProcEvento().startsWith("<procEventoNFe"));
+    }
+
+    @Test
+    void deveLerResultadoDeCadaEvento() throws Exception {
+        List<EventoNFe> eventos = List.of(
+                EventoNFe.cancelamento(chave(1), "135250000000001", JUSTIFICATIVA, DATA, Ambiente.HOMOLOGACAO),
+                EventoNFe.cancelamento(chave(2), "135250000000002", JUSTIFICATIVA, DATA, Ambiente.HOMOLOGACAO));
+        when(sefazClient.enviarEvento(anyString(), eq(URL))).thenReturn(retEnvEvento("128",
+                retEvento(chave(2), "573", "Rejeicao: Duplicidade de evento", null) +
+                        retEvento(chave(1), "135", "Evento registrado e vinculado a NF-e", "135250000000999")));
+
+        List<ServicoEventos.Resultado> resultados = servico.enviar(eventos, URL);
+
+        assertEquals("135", resultados.get(0).codigoStatus());
+        assertEquals("135250000000999", resultados.get(0).protocolo());
+        assertEquals("2025-01-15T13:00:01-03:00", resultados.get(0).dataRegistro());
+        assertEquals("573", resultados.get(1).codigoStatus());
+        assertFalse(resultados.get(1).isRegistrado());
+        assertNull(resultados.get(1).toProcEvento());
+    }
+
+    @Test
+    void deveAplicarRejeicaoDoLoteATodosOsEventos() throws Exception {
+        List<EventoNFe> eventos = List.of(
+                EventoNFe.cancelamento(chave(1), "135250000000001", JUSTIFICATIVA, DATA, Ambiente.HOMOLOGACAO),
+                EventoNFe.cancelamento(chave(2), "135250000000002", JUSTIFICATIVA, DATA, Ambiente.HOMOLOGACAO));
+        when(sefazClient.enviarEvento(anyString(), eq(URL)))
+                .thenReturn(retEnvEvento("491", "")); // tpEvento inválido para o lote
+
+        List<ServicoEventos.Resultado> resultados = servico.enviar(eventos, URL);
+
+        assertEquals(2, resultados.size());
+        assertTrue(resultados.stream().allMatch(r -> "491".equals(r.codigoStatus()) && r.xmlRetorno() == null));
+    }
+
+    private static String chave(int numero) {
+        String base = "3525011234567800019065001" + String.format("%09d", numero) + "1" + "00000001";
+        return base + ChaveAcesso.calcularDigitoVerificador(base, 43);
+    }
+
+    private static String retornoRegistrado(String envEvento) {
+        StringBuilder retornos = new StringBuilder();
+        int pos = 0;
+        while ((pos = envEvento.indexOf("<chNFe>", pos)) >= 0) {
+            String chave = envEvento.substring(pos + 7, pos + 51);
+            retornos.append(retEvento(chave, "135", "Evento registrado e vinculado a NF-e", "135250000000999"));
+            pos += 51;
+        }
+        return retEnvEvento("128", retornos.toString());
+    }
+
+    private static String retEnvEvento(String cStat, String retEventos) {
+        return "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"><soap:Body>" +
+                "<nfeResultMsg xmlns=\"http://www.portalfiscal.inf.br/nfe/wsdl/NFeRecepcaoEvento4\">" +
+                "<retEnvEvento xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"1.00\"><idLote>1</idLote>" +
+                "<tpAmb>2</tpAmb><cOrgao>35</cOrgao><cStat>" + cStat + "</cStat><xMotivo>Lote</xMotivo>" +
+                retEventos + "</retEnvEvento></nfeResultMsg></soap:Body></soap:Envelope>";
+    }
+
+    private static String retEvento(String chave, String cStat, String xMotivo, String nProt) {
+        return "<retEvento versao=\"1.00\"><infEvento><tpAmb>2</tpAmb><cOrgao>35</cOrgao>" +
+                "<cStat>" + cStat + "</cStat><xMotivo>" + xMotivo + "</xMotivo><chNFe>" + chave + "</chNFe>" +
+                "<tpEvento>110111</tpEvento><nSeqEvento>1</nSeqEvento>" +
+                "<dhRegEvento>2025-01-15T13:00:01-03:00</dhRegEvento>" +
+                (nProt == null ? "" : "<nProt>" + nProt + "</nProt>") +
+                "</infEvento></retEvento>";
+    }
+
+    private static int contar(String texto, String trecho) {
+        return texto.split(trecho, -1).length - 1;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotaisNFeTest {
+
+    static String texto(long valor, int casas) {
+        StringBuilder sb = new StringBuilder();
+        TotaisNFe.escreverDecimal(sb, valor, casas);
+        return sb.toString();
+    }
+
+    @Test
+    void deveArredondarCadaItemAntesDeSomar() {
+        TotaisNFe totais = new TotaisNFe();
+
+        // 18% de 0,25 = 0,045 -> 0,05 em cada item; o total é a soma dos itens (0,15), não 0,135 -> 0,14
+        for (int i = 0; i < 3; i++) {
+            totais.adicionarItem(25, true, 180_000, 0, 0);
+            assertEquals(5, totais.getItemValorIcms());
+        }
+
+        assertEquals(3, totais.getItens());
+        assertEquals(75, totais.getValorBaseIcms());
+        assertEquals(15, totais.getValorIcms());
+        assertEquals(75, totais.getValorNota());
+        assertEquals(15, totais.getValorTributosAproximados());
+    }
+
+    @Test
+    void deveCoincidirComBigDecimalHalfUp() {
+        Random random = new Random(42);
+        TotaisNFe totais = new TotaisNFe();
+        BigDecimal icms = BigDecimal.ZERO;
+        BigDecimal pis = BigDecimal.ZERO;
+
+        for (int i = 0; i < 500; i++) {
+            long vProd = random.nextInt(10_000_000);
+            long pICMS = random.nextInt(300_000);
+            long pPIS = random.nextInt(2) == 0 ? 0 : 16_500;
+            totais.adicionarItem(vProd, true, pICMS, pPIS, 76_000);
+
+            BigDecimal base = BigDecimal.valueOf(vProd, 2);
+            BigDecimal item = base.multiply(BigDecimal.valueOf(pICMS, 4)).movePointLeft(2).setScale(2, RoundingMode.HALF_UP);
+            assertEquals(item.unscaledValue().longValueExact(), totais.getItemValorIcms(), "item " + i);
+            icms = icms.add(item);
+            pis = pis.add(base.multiply(BigDecimal.valueOf(pPIS, 4)).movePointLeft(2).setScale(2, RoundingMode.HALF_UP));
+        }
+
+        assertEquals(icms, BigDecimal.valueOf(totais.getValorIcms(), 2));
+        assertEquals(pis, BigDecimal.valueOf(totais.getValorPis(), 2));
+    }
+
+    @Test
+    void deveEscreverICMSTotNaOrdemDoSchema() {
+        TotaisNFe totais = new TotaisNFe(314_500);
+        totais.adicionarItem(1250, false, 0, 0, 0);
+        totais.adicionarItem(1000, true, 180_000, 16_500, 76_000);
+
+        StringBuilder xml = new StringBuilder();
+        totais.escreverICMSTot(xml);
+
+        assertEquals("<ICMSTot><vBC>10.00</vBC><vICMS>1.80</vICMS><vICMSDeson>0.00</vICMSDeson><vFCP>0.00</vFCP>" +
+                "<vBCST>0.00</vBCST><vST>0.00</vST><vFCPST>0.00</vFCPST><vFCPSTRet>0.00</vFCPSTRet>" +
+                "<vProd>22.50</vProd><vFrete>0.00</vFrete><vSeg>0.00</vSeg><vDesc>0.00</vDesc><vII>0.00</vII>" +
+                "<vIPI>0.00</vIPI><vIPIDevol>0.00</vIPIDevol><vPIS>0.17</vPIS><vCOFINS>0.76</vCOFINS>" +
+                "<vOutro>0.00</vOutro><vNF>22.50</vNF><vTotTrib>7.08</vTotTrib></ICMSTot>", xml.toString());
+    }
+
+    @Test
+    void deveEscreverEConverterValoresEscalados() {
+        assertEquals("0.00", texto(0, 2));
+        assertEquals("0.05", texto(5, 2));
+        assertEquals("12.30", texto(1230, 2));
+        assertEquals("-1.01", texto(-101, 2));
+        assertEquals("18.0050", texto(180_050, 4));
+
+        assertEquals(1235, TotaisNFe.escalar(new BigDecimal("12.345"), 2));
+        assertEquals(0, TotaisNFe.escalar(null, 2));
+        assertEquals(180_000, TotaisNFe.escalar(new BigDecimal("18"), 4));
+
+        assertEquals(1250, TotaisNFe.lerDecimal("12.5", 2));
+        assertEquals(1235, TotaisNFe.lerDecimal("12.345", 2));
+        assertEquals(1200, TotaisNFe.lerDecimal("12", 2));
+        assertEquals(-5, TotaisNFe.lerDecimal("-0.05", 2));
+        assertEquals(25_000_000_000L, TotaisNFe.lerDecimal("2.5000000000", 10));
+        assertThrows(NumberFormatException.class, () -> TotaisNFe.lerDecimal("1,00", 2));
+        assertThrows(NumberFormatException.class, () -> TotaisNFe.lerDecimal("", 2));
+    }
+
+    @Test
+    void deveRejeitarValoresNegativosEReaproveitar() {
+        TotaisNFe totais = new TotaisNFe();
+        assertThrows(IllegalArgumentException.class, () -> totais.adicionarItem(-1, false, 0, 0, 0));
+        assertThrows(ArithmeticException.class, () -> totais.adicionarItem(Long.MAX_VALUE, true, 180_000, 0, 0));
+
+        totais.adicionarItem(100, true, 120_000, 0, 0);
+        totais.limpar();
+        totais.adicionarItem(200, false, 0, 0, 0);
+        assertEquals(200, totais.getValorNota());
+        assertEquals(0, totais.getValorIcms());
+        assertEquals(1, totais.getItens());
+    }
+}
@@ -0,0 +1,149 @@
+package com.sefaz.nfe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.sefaz.nfe.FilaContingenciaTest.CHAVE_1;
+import static com.sefaz.nfe.FilaContingenciaTest.CHAVE_2;
+import static com.sefaz.nfe.FilaContingenciaTest.nfce;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransmissorContingenciaTest {
+
+    private static final String URL = "https://autorizacao";
+    private static final String URL_RECIBO = "https://recibo";
+    private static final String URL_CONSULTA = "https://consulta";
+
+    @TempDir
+    Path diretorio;
+
+    @Mock
+    private AutorizacaoSincrona autorizacao;
+
+    private FilaContingencia fila;
+    private TransmissorContingencia transmissor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fila = new FilaContingencia(diretorio);
+        fila.adicionar(nfce(CHAVE_1, "2025-01-15T12:30:00-03:00"));
+        fila.adicionar(nfce(CHAVE_2, "2025-01-15T12:31:00-03:00"));
+        transmissor = new TransmissorContingencia(fila, autorizacao, Ambiente.HOMOLOGACAO, URL, URL_RECIBO,
+                URL_CONSULTA);
+    }
+
+    @Test
+    void deveTransmitirEmLoteERetirarDaFila() throws Exception {
+        when(autorizacao.autorizarLote(anyList(), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO))).thenReturn(
+                processado(protocolo(CHAVE_1, "100"), protocolo(CHAVE_2, "539")));
+        when(autorizacao.consultarProtocolo(CHAVE_2, Ambiente.HOMOLOGACAO, URL_CONSULTA)).thenReturn(
+                new ResultadoAutorizacao.Protocolo(CHAVE_2, "217", "NF-e nao consta na base", null, null, null, null));
+
+        assertEquals(2, transmissor.transmitir());
+
+        assertEquals(0, fila.tamanho());
+        assertEquals(1, transmissor.getAutorizadas());
+        assertEquals(1, transmissor.getRejeitadas());
+        verify(autorizacao, times(1)).autorizarLote(argThat(l -> l.size() == 2), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO));
+    }
+
+    @Test
+    void deveConcluirComProtocoloConsultadoEmDuplicidade() throws Exception {
+        when(autorizacao.autorizarLote(anyList(), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO))).thenReturn(
+                processado(protocolo(CHAVE_1, "204"), protocolo(CHAVE_2, "100")));
+        when(autorizacao.consultarProtocolo(CHAVE_1, Ambiente.HOMOLOGACAO, URL_CONSULTA))
+                .thenReturn(protocolo(CHAVE_1, "100"));
+        List<ResultadoAutorizacao.Protocolo> notificados = new ArrayList<>();
+        transmissor.setOuvinte(notificados::add);
+
+        assertEquals(2, transmissor.transmitir());
+
+        assertEquals(2, transmissor.getAutorizadas());
+        assertEquals(0, transmissor.getRejeitadas());
+        assertTrue(fila.getDiretorioAutorizadas().resolve(CHAVE_1 + "-procNFe.xml").toFile().exists());
+        assertFalse(fila.getDiretorioRejeitadas().resolve(CHAVE_1 + ".xml").toFile().exists());
+        assertTrue(notificados.stream().allMatch(ResultadoAutorizacao.Protocolo::isAutorizada));
+    }
+
+    @Test
+    void deveManterNotaNaFilaSeConsultaDaDuplicidadeFalhar() throws Exception {
+        when(autorizacao.autorizarLote(anyList(), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO))).thenReturn(
+                processado(protocolo(CHAVE_1, "204"), protocolo(CHAVE_2, "204")));
+        when(autorizacao.consultarProtocolo(anyString(), any(Ambiente.class), anyString())).thenThrow(new FalhaSefazException(
+                "Falha de comunicação com a SEFAZ", FalhaSefazException.Origem.TRANSPORTE,
+                FalhaSefazException.Classificacao.RETENTAVEL, 0, null, null));
+
+        assertEquals(0, transmissor.transmitir());
+        assertEquals(2, fila.tamanho());
+        assertEquals(0, transmissor.getRejeitadas());
+    }
+
+    @Test
+    void deveManterNotasNaFilaEmFalhaDeComunicacao() throws Exception {
+        when(autorizacao.autorizarLote(anyList(), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO))).thenThrow(new FalhaSefazException(
+                "Falha de comunicação com a SEFAZ", FalhaSefazException.Origem.TRANSPORTE,
+                FalhaSefazException.Classificacao.RETENTAVEL, 0, null, null));
+
+        assertEquals(0, transmissor.transmitir());
+        assertEquals(2, fila.tamanho());
+    }
+
+    @Test
+    void deveReenviarIndividualmenteQuandoLoteForRejeitado() throws Exception {
+        ResultadoAutorizacao rejeicaoLote = new ResultadoAutorizacao("225", "Rejeicao: Falha no Schema XML", null, List.of());
+        when(autorizacao.autorizarLote(argThat(l -> l != null && l.size() == 2), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO)))
+                .thenReturn(rejeicaoLote);
+        when(autorizacao.autorizarLote(argThat(l -> l != null && l.size() == 1 && l.get(0).contains(CHAVE_1)),
+                eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO))).thenReturn(rejeicaoLote);
+        when(autorizacao.autorizarLote(argThat(l -> l != null && l.size() == 1 && l.get(0).contains(CHAVE_2)),
+                eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO))).thenReturn(processado(protocolo(CHAVE_2, "100")));
+
+        assertEquals(2, transmissor.transmitir());
+
+        assertEquals(1, transmissor.getAutorizadas());
+        assertEquals(1, transmissor.getRejeitadas());
+        assertTrue(fila.getDiretorioRejeitadas().resolve(CHAVE_1 + ".xml").toFile().exists());
+    }
+
+    @Test
+    void deveInterromperCicloEmConsumoIndevido() throws Exception {
+        when(autorizacao.autorizarLote(anyList(), eq(Ambiente.HOMOLOGACAO), eq(URL), eq(URL_RECIBO)))
+                .thenReturn(new ResultadoAutorizacao("656", "Rejeicao: Consumo Indevido", null, List.of()));
+
+        assertEquals(0, transmissor.transmitir());
+        assertEquals(2, fila.tamanho());
+        verify(autorizacao, times(1)).autorizarLote(anyList(), any(Ambiente.class), anyString(), anyString());
+    }
+
+    @Test
+    void deveExporTamanhoEAtrasoDaFila() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        transmissor.bindTo(registry);
+
+        assertEquals(2.0, registry.get("sefaz.contingencia.fila").gauge().value());
+        assertTrue(registry.get("sefaz.contingencia.atraso").gauge().value() > Duration.ofDays(1).toSeconds());
+    }
+
+    private static ResultadoAutorizacao processado(ResultadoAutorizacao.Protocolo... protocolos) {
+        return new ResultadoAutorizacao("104", "Lote processado", null, List.of(protocolos));
+    }
+
+    private static ResultadoAutorizacao.Protocolo protocolo(String chave, String cStat) {
+        return new ResultadoAutorizacao.Protocolo(chave, cStat, "xMotivo", "135250000000001",
+                "2025-01-15T13:00:00-03:00", "digVal=", "<protNFe versao=\"4.00\"><infProt><chNFe>" + chave +
+                "</chNFe></infProt></protNFe>");
+    }
+}
@@ -0,0 +1,172 @@
+package com.sefaz.nfe;
+
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransporteHttpsSefazTest {
+
+    /** Resposta grande e repetitiva, como um retConsReciNFe com 50 protNFe. */
+    static final String RESPOSTA = "<retConsReciNFe>" +
+            "<protNFe><infProt><cStat>100</cStat><xMotivo>Autorizado o uso da NF-e</xMotivo></infProt></protNFe>".repeat(50) +
+            "</retConsReciNFe>";
+
+    HttpServer servidor;
+    TransporteHttpsSefaz transporte;
+    String url;
+    final Map<String, String> recebido = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void preparar() throws Exception {
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.createContext("/ws", troca -> {
+            String codificacao = troca.getRequestHeaders().getFirst("Content-Encoding");
+            String aceita = troca.getRequestHeaders().getFirst("Accept-Encoding");
+            InputStream corpo = "gzip".equals(codificacao)
+                    ? new GZIPInputStream(troca.getRequestBody())
+                    : troca.getRequestBody();
+            recebido.put("corpo", new String(corpo.readAllBytes(), StandardCharsets.UTF_8));
+            recebido.put("Content-Encoding", String.valueOf(codificacao));
+            recebido.put("Accept-Encoding", String.valueOf(aceita));
+            recebido.put("Content-Length", String.valueOf(troca.getRequestHeaders().getFirst("Content-Length")));
+
+            byte[] resposta = RESPOSTA.getBytes(StandardCharsets.UTF_8);
+            if (aceita != null && aceita.contains("gzip")) {
+                resposta = TransporteHttpsSefaz.compactar(resposta);
+                troca.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            troca.sendResponseHeaders(200, resposta.length);
+            troca.getResponseBody().write(resposta);
+            troca.close();
+        });
+        servidor.start();
+        url = "http://localhost:" + servidor.getAddress().getPort() + "/ws";
+        transporte = new TransporteHttpsSefaz(certificadoDeTeste());
+    }
+
+    @AfterEach
+    void encerrar() {
+        SefazEndpoints.setCompressaoRequisicaoHost("localhost", false);
+        transporte.close();
+        servidor.stop(0);
+    }
+
+    static String envelope(int notas) {
+        return "<soap:Envelope><soap:Body>" +
+                "<NFe><infNFe><det><prod><xProd>PRODUTO DE TESTE</xProd></prod></det></infNFe></NFe>".repeat(notas) +
+                "</soap:Body></soap:Envelope>";
+    }
+
+    @Test
+    void deveCompactarRequisicaoEDescompactarResposta() {
+        SefazEndpoints.setCompressaoRequisicaoHost("localhost", true);
+        String envelope = envelope(50);
+
+        String resposta = transporte.enviar(url, envelope, Duration.ofSeconds(5));
+
+        assertEquals(RESPOSTA, resposta);
+        assertEquals(envelope, recebido.get("corpo"));
+        assertEquals("gzip", recebido.get("Content-Encoding"));
+        assertEquals("gzip", recebido.get("Accept-Encoding"));
+        assertEquals(envelope.length(), transporte.getBytesConteudoEnviado());
+        assertTrue(transporte.getBytesEnviados() < envelope.length() / 5, "enviados " + transporte.getBytesEnviados());
+        assertEquals(RESPOSTA.length(), transporte.getBytesConteudoRecebido());
+        assertTrue(transporte.getBytesRecebidos() < RESPOSTA.length() / 5, "recebidos " + transporte.getBytesRecebidos());
+    }
+
+    @Test
+    void naoDeveCompactarRequisicaoParaServidorNaoHabilitadoOuEnvelopePequeno() {
+        transporte.enviar(url, envelope(50), Duration.ofSeconds(5));
+        assertEquals("null", recebido.get("Content-Encoding"));
+
+        SefazEndpoints.setCompressaoRequisicaoHost("localhost", true);
+        transporte.enviar(url, "<soap:Envelope/>", Duration.ofSeconds(5));
+        assertEquals("null", recebido.get("Content-Encoding"));
+        assertEquals(transporte.getBytesConteudoEnviado(), transporte.getBytesEnviados());
+    }
+
+    @Test
+    void deveReceberRespostaSemCompactacaoQuandoDesabilitada() {
+        transporte.setCompressaoResposta(false);
+
+        String resposta = transporte.enviar(url, envelope(1), Duration.ofSeconds(5));
+
+        assertEquals(RESPOSTA, resposta);
+        assertEquals("null", recebido.get("Accept-Encoding"));
+        assertEquals(RESPOSTA.length(), transporte.getBytesRecebidos());
+    }
+
+    @Test
+    void deveEnviarMensagemEmPartesComContentLength() throws Exception {
+        // XML maior que um bloco do Base64, codificado durante a escrita
+        EnvelopeSoap.Mensagem mensagem = EnvelopeSoap.AUTORIZACAO.montar(envelope(200));
+
+        assertEquals(RESPOSTA, transporte.enviar(url, mensagem, Duration.ofSeconds(5)));
+        assertEquals(mensagem.toString(), recebido.get("corpo"));
+        assertEquals(String.valueOf(mensagem.tamanho()), recebido.get("Content-Length"));
+
+        assertEquals(RESPOSTA, transporte.enviarAssincrono(url, mensagem, Duration.ofSeconds(5)).get());
+        assertEquals(mensagem.toString(), recebido.get("corpo"));
+        assertEquals(String.valueOf(mensagem.tamanho()), recebido.get("Content-Length"));
+
+        SefazEndpoints.setCompressaoRequisicaoHost("localhost", true);
+        transporte.enviarAssincrono(url, mensagem, Duration.ofSeconds(5)).get();
+        assertEquals(mensagem.toString(), recebido.get("corpo"));
+        assertEquals("gzip", recebido.get("Content-Encoding"));
+        assertEquals(3 * mensagem.tamanho(), transporte.getBytesConteudoEnviado());
+    }
+
+    @Test
+    void registroDeveHabilitarTodosOsWebservicesDaUf() {
+        try {
+            SefazEndpoints.setCompressaoRequisicao("MG", true);
+
+            assertTrue(SefazEndpoints.isCompressaoRequisicao(SefazEndpoints.getUrlAutorizacao("MG", false)));
+            assertTrue(SefazEndpoints.isCompressaoRequisicao(SefazEndpoints.getUrlRecepcaoEvento("MG", true)));
+            assertFalse(SefazEndpoints.isCompressaoRequisicao(SefazEndpoints.getUrlAutorizacao("SP", false)));
+        } finally {
+            SefazEndpoints.setCompressaoRequisicao("MG", false);
+        }
+        assertFalse(SefazEndpoints.isCompressaoRequisicao(SefazEndpoints.getUrlAutorizacao("MG", false)));
+    }
+
+    static CertificadoDigital certificadoDeTeste() throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(2048);
+        KeyPair par = gerador.generateKeyPair();
+        Instant agora = Instant.now();
+        X509Certificate certificado = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(new X500Name("CN=EMPRESA TESTE:12345678000190"), BigInteger.ONE,
+                        Date.from(agora), Date.from(agora.plusSeconds(3600)),
+                        new X500Name("CN=EMPRESA TESTE:12345678000190"), par.getPublic())
+                        .build(new JcaContentSignerBuilder("SHA256withRSA").build(par.getPrivate())));
+
+        CertificadoDigital certificadoDigital = mock(CertificadoDigital.class);
+        when(certificadoDigital.getCertificate()).thenReturn(certificado);
+        when(certificadoDigital.getPrivateKey()).thenReturn(par.getPrivate());
+        return certificadoDigital;
+    }
+}
@@ -0,0 +1,132 @@
+package com.sefaz.nfe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidadorRegrasNFeTest {
+
+    private final ValidadorRegrasNFe validador = new ValidadorRegrasNFe();
+
+    static String item(int nItem, String ncm, String cfop, String qCom, String vUnCom, String vProd, String icms,
+                       String vTotTrib) {
+        return "<det nItem=\"" + nItem + "\"><prod><cProd>" + nItem + "</cProd><xProd>PRODUTO</xProd>" +
+                "<NCM>" + ncm + "</NCM><CFOP>" + cfop + "</CFOP><uCom>UN</uCom><qCom>" + qCom + "</qCom>" +
+                "<vUnCom>" + vUnCom + "</vUnCom><vProd>" + vProd + "</vProd><indTot>1</indTot></prod>" +
+                "<imposto><vTotTrib>" + vTotTrib + "</vTotTrib><ICMS>" + icms + "</ICMS>" +
+                "<PIS><PISAliq><CST>01</CST><vBC>" + vProd + "</vBC><pPIS>0.00</pPIS><vPIS>0.00</vPIS></PISAliq></PIS>" +
+                "<COFINS><COFINSOutr><CST>49</CST><vBC>0.00</vBC><pCOFINS>0.00</pCOFINS><vCOFINS>0.00</vCOFINS></COFINSOutr></COFINS>" +
+                "</imposto></det>";
+    }
+
+    static String icms00(String vBC, String vICMS) {
+        return "<ICMS00><orig>0</orig><CST>00</CST><modBC>0</modBC><vBC>" + vBC + "</vBC><pICMS>18.00</pICMS>" +
+                "<vICMS>" + vICMS + "</vICMS></ICMS00>";
+    }
+
+    static final String SN102 = "<ICMSSN102><orig>0</orig><CSOSN>102</CSOSN></ICMSSN102>";
+
+    static String nfe(int crt, int idDest, String itens, String vBC, String vICMS, String vProd, String vNF,
+                      String vTotTrib) {
+        return "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe Id=\"NFe1\" versao=\"4.00\">" +
+                "<ide><cUF>35</cUF><tpNF>1</tpNF><idDest>" + idDest + "</idDest></ide>" +
+                "<emit><CNPJ>12345678000190</CNPJ><enderEmit><UF>SP</UF></enderEmit><CRT>" + crt + "</CRT></emit>" +
+                itens +
+                "<total><ICMSTot><vBC>" + vBC + "</vBC><vICMS>" + vICMS + "</vICMS><vICMSDeson>0.00</vICMSDeson>" +
+                "<vFCP>0.00</vFCP><vBCST>0.00</vBCST><vST>0.00</vST><vFCPST>0.00</vFCPST><vFCPSTRet>0.00</vFCPSTRet>" +
+                "<vProd>" + vProd + "</vProd><vFrete>0.00</vFrete><vSeg>0.00</vSeg><vDesc>0.00</vDesc><vII>0.00</vII>" +
+                "<vIPI>0.00</vIPI><vIPIDevol>0.00</vIPIDevol><vPIS>0.00</vPIS><vCOFINS>0.00</vCOFINS>" +
+                "<vOutro>0.00</vOutro><vNF>" + vNF + "</vNF><vTotTrib>" + vTotTrib + "</vTotTrib></ICMSTot></total>" +
+                "<pag><detPag><tPag>01</tPag><vPag>" + vNF + "</vPag></detPag></pag></infNFe></NFe>";
+    }
+
+    @Test
+    void deveAceitarNotaConsistente() {
+        String itens = item(1, "21069090", "5102", "3.0000", "2.5000000000", "7.50", icms00("7.50", "1.35"), "1.35")
+                + item(2, "00", "5102", "1.00", "12.50", "12.50", icms00("12.50", "2.25"), "2.25");
+
+        ValidadorRegrasNFe.Resultado resultado = validador.validar(nfe(3, 1, itens, "20.00", "3.60", "20.00", "20.00", "3.60"));
+
+        assertTrue(resultado.isValida(), resultado.rejeicoes().toString());
+        assertNull(resultado.getCodigoStatus());
+    }
+
+    @Test
+    void devePreverRejeicoesDosTotais() {
+        String itens = item(1, "21069090", "5102", "1.00", "10.00", "10.00", icms00("10.00", "1.80"), "1.80")
+                + item(2, "21069090", "5102", "1.00", "5.00", "5.00", icms00("5.00", "0.90"), "0.90");
+
+        ValidadorRegrasNFe.Resultado resultado = validador.validar(nfe(3, 1, itens, "15.00", "2.71", "15.01", "15.00", "2.00"));
+
+        assertEquals("532", resultado.getCodigoStatus());
+        assertEquals("532 - Total do ICMS difere do somatório dos itens (vICMS 2.71, somatório dos itens 2.70)",
+                resultado.rejeicoes().get(0).toString());
+        assertEquals(java.util.List.of("532", "564", "610", "685"),
+                resultado.rejeicoes().stream().map(ValidadorRegrasNFe.Rejeicao::codigoStatus).toList());
+    }
+
+    @Test
+    void devePreverRejeicoesDosItens() {
+        String itens = item(1, "21069090", "6102", "2.00", "5.00", "10.00", SN102, "0.00")
+                + item(1, "7701", "1102", "2.00", "5.00", "10.02", icms00("10.02", "1.80"), "1.80");
+
+        ValidadorRegrasNFe.Resultado resultado = validador.validar(nfe(1, 1, itens, "10.02", "1.80", "20.02", "20.02", "1.80"));
+
+        assertEquals("225", resultado.getCodigoStatus());
+        assertEquals(java.util.List.of("225", "521", "523", "590", "629", "778"),
+                resultado.rejeicoes().stream().map(ValidadorRegrasNFe.Rejeicao::codigoStatus).toList());
+        ValidadorRegrasNFe.Rejeicao cfop = resultado.rejeicoes().get(2);
+        assertEquals(1, cfop.item());
+        assertEquals("item 1: CFOP 6102", cfop.detalhe());
+    }
+
+    @Test
+    void devePreverRejeicaoDeNItemForaDaFaixa() {
+        String itens = item(-1, "21069090", "5102", "1.00", "10.00", "10.00", SN102, "0.00")
+                + item(991, "21069090", "5102", "1.00", "10.00", "10.00", SN102, "0.00");
+
+        ValidadorRegrasNFe.Resultado resultado = validador.validar(nfe(1, 1, itens, "0.00", "0.00", "20.00", "20.00", "0.00"));
+
+        assertEquals("225", resultado.getCodigoStatus());
+        assertEquals(ValidadorRegrasNFe.Regra.NITEM_INVALIDO, resultado.rejeicoes().get(0).regra());
+        assertEquals("nItem -1", resultado.rejeicoes().get(0).detalhe());
+        assertEquals(1, resultado.rejeicoes().size());
+    }
+
+    @Test
+    void deveConferirCfopInterestadualECsosnNoRegimeNormal() {
+        String itens = item(1, "21069090", "5102", "1.00", "10.00", "10.00", SN102, "0.00");
+
+        ValidadorRegrasNFe.Resultado resultado = validador.validar(nfe(3, 2, itens, "0.00", "0.00", "10.00", "10.00", "0.00"));
+
+        assertEquals(java.util.List.of("524", "591"),
+                resultado.rejeicoes().stream().map(ValidadorRegrasNFe.Rejeicao::codigoStatus).toList());
+    }
+
+    @Test
+    void deveIgnorarRegrasDesativadas() {
+        String itens = item(1, "99999999", "5102", "1.00", "10.00", "10.00", SN102, "0.00");
+        String xml = nfe(1, 1, itens, "0.00", "0.00", "10.00", "10.00", "0.00");
+
+        assertEquals("778", validador.validar(xml).getCodigoStatus());
+        assertTrue(new ValidadorRegrasNFe(EnumSet.complementOf(EnumSet.of(ValidadorRegrasNFe.Regra.NCM_INEXISTENTE)))
+                .validar(xml).isValida());
+    }
+
+    @Test
+    void deveRejeitarXmlMalFormado() {
+        assertThrows(IllegalArgumentException.class, () -> validador.validar("<NFe><infNFe>"));
+        assertThrows(IllegalArgumentException.class, () -> validador.validar(
+                nfe(1, 1, item(1, "21069090", "5102", "1,00", "10.00", "10.00", SN102, "0.00"),
+                        "0.00", "0.00", "10.00", "10.00", "0.00")));
+    }
+
+    @Test
+    void deveCalcularProdutoComercialEmCentavos() {
+        assertEquals(750, ValidadorRegrasNFe.produtoEmCentavos("3.0000", "2.5000000000"));
+        assertEquals(333, ValidadorRegrasNFe.produtoEmCentavos("1", "3.3333333333"));
+        assertEquals(100_000_000_000L, ValidadorRegrasNFe.produtoEmCentavos("100000.0000", "10000.0000000000"));
+    }
+}
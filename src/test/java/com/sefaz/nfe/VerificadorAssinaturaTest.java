@@ -0,0 +1,274 @@
+package com.sefaz.nfe;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VerificadorAssinaturaTest {
+
+    static final String CHAVE = "35250112345678000190550010000000011000000019";
+    static final String CHAVE_OUTRO_CNPJ = "35250199999999000190550010000000011000000019";
+
+    static X509Certificate raiz;
+    static X509Certificate intermediaria;
+    static X509Certificate emitente;
+    static KeyPair chavesEmitente;
+    static KeyPair chavesIntermediaria;
+
+    @TempDir
+    Path ancoras;
+
+    AssinaturaDigital assinatura;
+    VerificadorAssinatura verificador;
+
+    @BeforeAll
+    static void gerarCadeia() throws Exception {
+        KeyPair chavesRaiz = par();
+        chavesIntermediaria = par();
+        chavesEmitente = par();
+        Instant agora = Instant.now();
+        raiz = certificado("CN=AC Raiz Teste v10, O=ICP-Brasil, C=BR", chavesRaiz.getPublic(),
+                "CN=AC Raiz Teste v10, O=ICP-Brasil, C=BR", chavesRaiz.getPrivate(), true,
+                agora.minus(3650, ChronoUnit.DAYS), agora.plus(3650, ChronoUnit.DAYS));
+        intermediaria = certificado("CN=AC Teste SSL v5, O=ICP-Brasil, C=BR", chavesIntermediaria.getPublic(),
+                "CN=AC Raiz Teste v10, O=ICP-Brasil, C=BR", chavesRaiz.getPrivate(), true,
+                agora.minus(3650, ChronoUnit.DAYS), agora.plus(3650, ChronoUnit.DAYS));
+        emitente = certificado("CN=FORNECEDOR TESTE LTDA:12345678000190, O=ICP-Brasil, C=BR",
+                chavesEmitente.getPublic(), "CN=AC Teste SSL v5, O=ICP-Brasil, C=BR",
+                chavesIntermediaria.getPrivate(), false,
+                Instant.parse("2024-01-01T00:00:00Z"), agora.plus(365, ChronoUnit.DAYS));
+    }
+
+    @BeforeEach
+    void preparar() throws Exception {
+        CertificadoDigital certificado = mock(CertificadoDigital.class);
+        when(certificado.isCarregado()).thenReturn(true);
+        when(certificado.getCertificate()).thenReturn(emitente);
+        when(certificado.getPrivateKey()).thenReturn(chavesEmitente.getPrivate());
+        assinatura = new AssinaturaDigital(certificado);
+
+        Files.write(ancoras.resolve("raiz.cer"), raiz.getEncoded());
+        Files.writeString(ancoras.resolve("intermediaria.pem"), "-----BEGIN CERTIFICATE-----\n" +
+                Base64.getMimeEncoder().encodeToString(intermediaria.getEncoded()) + "\n-----END CERTIFICATE-----\n");
+        verificador = new VerificadorAssinatura();
+        assertEquals(2, verificador.carregarAncoras(ancoras));
+    }
+
+    static KeyPair par() throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(2048);
+        return gerador.generateKeyPair();
+    }
+
+    static X509Certificate certificado(String titular, PublicKey chave, String emissor, PrivateKey chaveEmissor,
+                                       boolean ac, Instant inicio, Instant fim) throws Exception {
+        return new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(new X500Name(emissor), BigInteger.valueOf(System.nanoTime()),
+                        Date.from(inicio), Date.from(fim), new X500Name(titular), chave)
+                        .addExtension(Extension.basicConstraints, true, new BasicConstraints(ac))
+                        .build(new JcaContentSignerBuilder("SHA256withRSA").build(chaveEmissor)));
+    }
+
+    static String nfe(String chave, String dhEmi, String vProd) {
+        return "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe Id=\"NFe" + chave + "\" versao=\"4.00\">" +
+                "<ide><cUF>35</cUF><dhEmi>" + dhEmi + "</dhEmi></ide>" +
+                "<det nItem=\"1\"><prod><xProd>PARAFUSO</xProd><vProd>" + vProd + "</vProd></prod></det>" +
+                "</infNFe></NFe>";
+    }
+
+    String nfeProc(String chave, String dhEmi) throws Exception {
+        return "<nfeProc xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"4.00\">" +
+                assinatura.assinar(nfe(chave, dhEmi, "10.00")) +
+                "<protNFe versao=\"4.00\"><infProt><chNFe>" + chave + "</chNFe><cStat>100</cStat></infProt></protNFe>" +
+                "</nfeProc>";
+    }
+
+    @Test
+    void deveAceitarNotaAssinadaComCadeiaIcpBrasil() throws Exception {
+        VerificadorAssinatura.Resultado r = verificador.verificar(nfeProc(CHAVE, "2025-01-15T10:00:00-03:00"));
+
+        assertEquals(VerificadorAssinatura.Situacao.VALIDA, r.situacao(), r.motivo());
+        assertEquals(CHAVE, r.chave());
+        assertEquals(emitente, r.certificado());
+    }
+
+    @Test
+    void deveDetectarDocumentoAlteradoAposAssinatura() throws Exception {
+        String alterado = nfeProc(CHAVE, "2025-01-15T10:00:00-03:00")
+                .replace("<vProd>10.00</vProd>", "<vProd>1.00</vProd>");
+
+        VerificadorAssinatura.Resultado r = verificador.verificar(alterado);
+
+        assertEquals(VerificadorAssinatura.Situacao.ASSINATURA_INVALIDA, r.situacao());
+        assertTrue(r.motivo().contains("DigestValue"), r.motivo());
+    }
+
+    @Test
+    void deveRecusarCertificadoDeOutroEmitenteOuForaDaValidade() throws Exception {
+        assertEquals(VerificadorAssinatura.Situacao.CNPJ_DIVERGENTE,
+                verificador.verificar(nfeProc(CHAVE_OUTRO_CNPJ, "2025-01-15T10:00:00-03:00")).situacao());
+
+        VerificadorAssinatura.Resultado antes = verificador.verificar(nfeProc(CHAVE, "2023-06-01T10:00:00-03:00"));
+        assertEquals(VerificadorAssinatura.Situacao.CERTIFICADO_NAO_CONFIAVEL, antes.situacao());
+        assertTrue(antes.motivo().contains("validade"), antes.motivo());
+    }
+
+    @Test
+    void deveRecusarCertificadoSemCnpj() throws Exception {
+        X509Certificate semCnpj = certificado("CN=FORNECEDOR TESTE LTDA, O=ICP-Brasil, C=BR",
+                chavesEmitente.getPublic(), "CN=AC Teste SSL v5, O=ICP-Brasil, C=BR",
+                chavesIntermediaria.getPrivate(), false,
+                Instant.parse("2024-01-01T00:00:00Z"), Instant.now().plus(365, ChronoUnit.DAYS));
+        CertificadoDigital certificado = mock(CertificadoDigital.class);
+        when(certificado.isCarregado()).thenReturn(true);
+        when(certificado.getCertificate()).thenReturn(semCnpj);
+        when(certificado.getPrivateKey()).thenReturn(chavesEmitente.getPrivate());
+
+        VerificadorAssinatura.Resultado r = verificador.verificar(
+                new AssinaturaDigital(certificado).assinar(nfe(CHAVE, "2025-01-15T10:00:00-03:00", "10.00")));
+
+        assertEquals(VerificadorAssinatura.Situacao.CNPJ_DIVERGENTE, r.situacao());
+        assertTrue(r.motivo().startsWith("CNPJ não encontrado"), r.motivo());
+    }
+
+    @Test
+    void deveRecusarCadeiaSemAncoraConfiavel() throws Exception {
+        VerificadorAssinatura semAncoras = new VerificadorAssinatura();
+        assertEquals(VerificadorAssinatura.Situacao.CERTIFICADO_NAO_CONFIAVEL,
+                semAncoras.verificar(nfeProc(CHAVE, "2025-01-15T10:00:00-03:00")).situacao());
+
+        // Apenas a raiz: sem a intermediária a cadeia não é construída
+        VerificadorAssinatura soRaiz = new VerificadorAssinatura();
+        soRaiz.adicionarAncoras(List.of(raiz));
+        VerificadorAssinatura.Resultado r = soRaiz.verificar(nfeProc(CHAVE, "2025-01-15T10:00:00-03:00"));
+        assertEquals(VerificadorAssinatura.Situacao.CERTIFICADO_NAO_CONFIAVEL, r.situacao());
+        assertTrue(r.motivo().startsWith("Cadeia"), r.motivo());
+
+        soRaiz.setVerificarCadeia(false);
+        assertTrue(soRaiz.verificar(nfeProc(CHAVE, "2025-01-15T10:00:00-03:00")).isValida());
+    }
+
+    @Test
+    void deveRecusarAssinaturaQueNaoReferenciaOInfNFe() throws Exception {
+        String assinada = nfeProc(CHAVE, "2025-01-15T10:00:00-03:00");
+        String outroId = assinada.replace("Id=\"NFe" + CHAVE + "\"", "Id=\"NFe" + CHAVE.replace("0019", "0027") + "\"");
+
+        VerificadorAssinatura.Resultado r = verificador.verificar(outroId);
+
+        assertEquals(VerificadorAssinatura.Situacao.FORA_DO_PADRAO, r.situacao());
+        assertTrue(r.motivo().startsWith("Reference"), r.motivo());
+    }
+
+    @Test
+    void deveAplicarLimitesDoSecureValidation() throws Exception {
+        String assinada = nfeProc(CHAVE, "2025-01-15T10:00:00-03:00");
+
+        VerificadorAssinatura.Resultado duplicado = verificador.verificar(
+                assinada.replace("<protNFe", "<infNFe Id=\"NFe" + CHAVE + "\"/><protNFe"));
+        assertEquals(VerificadorAssinatura.Situacao.FORA_DO_PADRAO, duplicado.situacao());
+        assertTrue(duplicado.motivo().endsWith("duplicado no documento"), duplicado.motivo());
+
+        int fim = assinada.indexOf("</Reference>") + "</Reference>".length();
+        String referencia = assinada.substring(assinada.indexOf("<Reference"), fim);
+        VerificadorAssinatura.Resultado referencias = verificador.verificar(
+                assinada.substring(0, fim) + referencia.repeat(50) + assinada.substring(fim));
+        assertEquals(VerificadorAssinatura.Situacao.FORA_DO_PADRAO, referencias.situacao());
+        assertEquals("SignedInfo com 51 Reference", referencias.motivo());
+    }
+
+    @Test
+    void deveClassificarXmlSemAssinaturaOuInvalido() {
+        assertEquals(VerificadorAssinatura.Situacao.SEM_ASSINATURA,
+                verificador.verificar(nfe(CHAVE, "2025-01-15T10:00:00-03:00", "10.00")).situacao());
+        assertEquals(VerificadorAssinatura.Situacao.XML_INVALIDO, verificador.verificar("<NFe><infNFe").situacao());
+        assertEquals(VerificadorAssinatura.Situacao.XML_INVALIDO, verificador.verificar(
+                "<!DOCTYPE x [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><NFe>&e;</NFe>").situacao());
+    }
+
+    @Test
+    void deveVerificarZipEmParaleloNaOrdemDaEntrada() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < 60; i++) {
+                String xml = nfeProc(CHAVE, "2025-01-15T10:00:00-03:00");
+                if (i % 20 == 7) {
+                    xml = xml.replace("PARAFUSO", "PORCA");
+                }
+                zip.putNextEntry(new ZipEntry("nota-" + i + ".xml"));
+                zip.write(xml.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("LEIAME.txt"));
+            zip.closeEntry();
+        }
+        verificador.setParalelismo(4);
+        verificador.setJanela(6);
+        List<VerificadorAssinatura.Resultado> resultados = new ArrayList<>();
+
+        VerificadorAssinatura.Resumo resumo = verificador.verificar(
+                VerificadorAssinatura.zip(new ByteArrayInputStream(bytes.toByteArray())), resultados::add);
+
+        assertEquals(60, resumo.verificados());
+        assertEquals(3, resumo.invalidos());
+        for (int i = 0; i < 60; i++) {
+            assertEquals(i, resultados.get(i).indice());
+            assertEquals(i % 20 != 7, resultados.get(i).isValida(), "documento " + i);
+        }
+    }
+
+    @Test
+    void deveLerApenasProcNFeDaDistribuicao() throws Exception {
+        String ret = "<retDistDFeInt xmlns=\"http://www.portalfiscal.inf.br/nfe\" versao=\"1.01\">" +
+                "<cStat>138</cStat><loteDistDFeInt>" +
+                "<docZip NSU=\"000000000000001\" schema=\"resNFe_v1.01.xsd\">" + gzip("<resNFe/>") + "</docZip>" +
+                "<docZip NSU=\"000000000000002\" schema=\"procNFe_v4.00.xsd\">" +
+                gzip(nfeProc(CHAVE, "2025-01-15T10:00:00-03:00")) + "</docZip>" +
+                "</loteDistDFeInt></retDistDFeInt>";
+        List<VerificadorAssinatura.Resultado> resultados = new ArrayList<>();
+
+        verificador.verificar(VerificadorAssinatura.distribuicao(ret), resultados::add);
+
+        assertEquals(1, resultados.size());
+        assertTrue(resultados.get(0).isValida(), resultados.get(0).motivo());
+    }
+
+    static String gzip(String xml) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(xml.getBytes(StandardCharsets.UTF_8));
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+}